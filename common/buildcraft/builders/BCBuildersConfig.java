@@ -23,9 +23,18 @@ public class BCBuildersConfig {
      * drill. */
     public static boolean quarryFrameMoveBoth;
 
+    /** The maximum number of ticks between the quarry sending the progress of its current task to clients. In between
+     * clients extrapolate the progress from the last rate that they were sent. */
+    public static int quarryMaxSyncInterval = 40;
+
+    /** The maximum size (in megabytes) of the snapshot files that are kept loaded at once. */
+    public static int snapshotCacheSize = 256;
+
     private static Property propBptStoreExternalThreshold;
     private static Property propQuarryFrameMinHeight;
     private static Property propQuarryFrameMoveBoth;
+    private static Property propQuarryMaxSyncInterval;
+    private static Property propSnapshotCacheSize;
 
     public static void preInit() {
         EnumRestartRequirement none = EnumRestartRequirement.NONE;
@@ -43,6 +52,16 @@ public class BCBuildersConfig {
         propQuarryFrameMoveBoth.setComment("If true then the quarry frame will move with both of its axis rather than just one.");
         none.setTo(propQuarryFrameMoveBoth);
 
+        propQuarryMaxSyncInterval = BCCoreConfig.config.get("general", "quarryMaxSyncInterval", 40);
+        propQuarryMaxSyncInterval.setComment("The maximum number of ticks between quarry progress updates being sent to clients. Updates are also sent whenever the quarry changes task, or its progress differs from what clients expect. A value of 1 sends an update every tick.");
+        propQuarryMaxSyncInterval.setMinValue(1);
+        none.setTo(propQuarryMaxSyncInterval);
+
+        propSnapshotCacheSize = BCCoreConfig.config.get("general", "snapshotCacheSize", 256);
+        propSnapshotCacheSize.setComment("The maximum size (in megabytes) of the snapshot files that blueprints and templates are kept loaded from. The least recently used ones are unloaded first.");
+        propSnapshotCacheSize.setMinValue(1);
+        game.setTo(propSnapshotCacheSize);
+
         reloadConfig(EnumRestartRequirement.GAME);
         BCCoreConfig.addReloadListener(BCBuildersConfig::reloadConfig);
     }
@@ -51,5 +70,9 @@ public class BCBuildersConfig {
         bptStoreExternalThreshold = propBptStoreExternalThreshold.getInt();
         quarryFrameMinHeight = propQuarryFrameMinHeight.getInt();
         quarryFrameMoveBoth = propQuarryFrameMoveBoth.getBoolean();
+        quarryMaxSyncInterval = propQuarryMaxSyncInterval.getInt();
+        if (EnumRestartRequirement.GAME.hasBeenRestarted(restarted)) {
+            snapshotCacheSize = propSnapshotCacheSize.getInt();
+        }
     }
 }
@@ -38,7 +38,7 @@ public class AddonRendererFillerPlanner implements IFastAddonRenderer<AddonFille
             false
         )
             .filter(blockPos ->
-                addon.buildingInfo.getSnapshot().data.get(
+                addon.buildingInfo.getSnapshot().getData(
                     addon.buildingInfo.getSnapshot().posToIndex(
                         addon.buildingInfo.fromWorld(blockPos)
                     )
@@ -108,7 +108,7 @@ public class RenderQuarry extends TileEntitySpecialRenderer<TileQuarry> {
                 BlockPos pos = taskBreakBlock.breakPos;
 
                 if (tile.drillPos == null) {
-                    if (taskBreakBlock.clientPower != 0) {
+                    if (taskBreakBlock.clientProgress.clientPower != 0) {
                         // Don't render a laser before we have any power
                         Vec3d from = VecUtil.convertCenter(tile.getPos());
                         Vec3d to = VecUtil.convertCenter(pos);
@@ -117,8 +117,9 @@ public class RenderQuarry extends TileEntitySpecialRenderer<TileQuarry> {
                     }
                 } else {
                     long power = (long) (
-                        taskBreakBlock.prevClientPower +
-                            (taskBreakBlock.clientPower - taskBreakBlock.prevClientPower) * (double) partialTicks
+                        taskBreakBlock.clientProgress.prevClientPower +
+                            (taskBreakBlock.clientProgress.clientPower - taskBreakBlock.clientProgress.prevClientPower)
+                                * (double) partialTicks
                     );
                     yOffset = (double) power / taskBreakBlock.getTarget();
                     if (yOffset < 0.9) {
@@ -19,7 +19,6 @@ import buildcraft.api.filler.IFilledTemplate;
 import buildcraft.api.filler.IFillerPattern;
 import buildcraft.api.filler.IFillerRegistry;
 
-import buildcraft.builders.snapshot.Snapshot;
 import buildcraft.builders.snapshot.Template;
 
 public enum FillerRegistry implements IFillerRegistry {
@@ -48,7 +47,7 @@ public enum FillerRegistry implements IFillerRegistry {
         Template template = new Template();
         template.size = size;
         template.offset = pos;
-        template.data = new BitSet(Snapshot.getDataSize(size));
+        template.setData(new BitSet());
         return template.getFilledTemplate();
     }
 }
@@ -6,6 +6,9 @@
 
 package buildcraft.builders.snapshot;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -19,7 +22,6 @@ import com.google.common.collect.ImmutableSet;
 
 import net.minecraft.item.ItemStack;
 import net.minecraft.nbt.NBTTagCompound;
-import net.minecraft.nbt.NBTTagInt;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.util.Rotation;
 import net.minecraft.util.math.BlockPos;
@@ -32,13 +34,45 @@ import buildcraft.api.enums.EnumSnapshotType;
 import buildcraft.api.schematics.ISchematicBlock;
 import buildcraft.api.schematics.ISchematicEntity;
 
+import buildcraft.lib.misc.HashUtil;
 import buildcraft.lib.misc.NBTUtilBC;
 
 public class Blueprint extends Snapshot {
     public final List<ISchematicBlock> palette = new ArrayList<>();
-    public int[] data;
+    /** The palette index of every block, or null if they are read from {@link #pagedData} instead. */
+    private RunLengthVoxels data;
+    private SnapshotFile.PagedData pagedData;
     public final List<ISchematicEntity> entities = new ArrayList<>();
 
+    /** @return The index in the {@link #palette} of the block at the given snapshot index. */
+    public int getData(int index) {
+        return data != null ? data.get(index) : pagedData.get(index);
+    }
+
+    public void setData(int[] data) {
+        this.data = RunLengthVoxels.fromArray(size, data);
+        this.pagedData = null;
+    }
+
+    /** Reads blocks from a paged {@link SnapshotFile} whenever they are needed, rather than keeping them all in the
+     * heap. */
+    void setData(SnapshotFile.PagedData pagedData) {
+        this.data = null;
+        this.pagedData = pagedData;
+    }
+
+    /** @return A new array of the palette index of every block. */
+    public int[] copyData() {
+        if (data != null) {
+            return data.toArray();
+        }
+        int[] copy = new int[getDataSize()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = pagedData.get(i);
+        }
+        return copy;
+    }
+
     @Override
     public Blueprint copy() {
         Blueprint blueprint = new Blueprint();
@@ -46,7 +80,9 @@ public class Blueprint extends Snapshot {
         blueprint.facing = facing;
         blueprint.offset = offset;
         blueprint.palette.addAll(palette);
-        blueprint.data = data.clone();
+        // Paged data is never changed, so the copy can read from the same pages
+        blueprint.data = data != null ? new RunLengthVoxels(data) : null;
+        blueprint.pagedData = pagedData;
         blueprint.entities.addAll(entities);
         blueprint.computeKey();
         return blueprint;
@@ -60,23 +96,62 @@ public class Blueprint extends Snapshot {
     @Override
     public NBTTagCompound serializeNBT() {
         NBTTagCompound nbt = super.serializeNBT();
-        nbt.setTag("palette", NBTUtilBC.writeCompoundList(palette.stream().map(SchematicBlockManager::writeToNBT)));
-        NBTTagList list = new NBTTagList();
-        for (int z = 0; z < size.getZ(); z++) {
-            for (int y = 0; y < size.getY(); y++) {
-                for (int x = 0; x < size.getX(); x++) {
-                    list.appendTag(new NBTTagInt(data[posToIndex(x, y, z)]));
+        writePaletteNBT(nbt);
+        RunLengthVoxels runs = data != null ? data : RunLengthVoxels.fromFunction(size, pagedData::get);
+        nbt.setIntArray("runs", runs.writeRuns());
+        return nbt;
+    }
+
+    @Override
+    void writeKeyNBT(NBTTagCompound nbt) {
+        writePaletteNBT(nbt);
+    }
+
+    @Override
+    HashUtil.ILargeTag getKeyData() {
+        return new HashUtil.ILargeTag() {
+            @Override
+            public byte getId() {
+                return Constants.NBT.TAG_LIST;
+            }
+
+            @Override
+            public void write(DataOutput out) throws IOException {
+                // A list of int tags, in index order
+                int count = getDataSize();
+                out.writeByte(count == 0 ? 0 : Constants.NBT.TAG_INT);
+                out.writeInt(count);
+                if (data != null) {
+                    int[] runs = data.writeRuns();
+                    for (int i = 0; i < runs.length; i += 2) {
+                        for (int j = 0; j < runs[i]; j++) {
+                            out.writeInt(runs[i + 1]);
+                        }
+                    }
+                    return;
+                }
+                try {
+                    pagedData.forEach(value -> {
+                        try {
+                            out.writeInt(value);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
                 }
             }
-        }
-        nbt.setTag("data", list);
+        };
+    }
+
+    /** Writes everything apart from the block data. */
+    void writePaletteNBT(NBTTagCompound nbt) {
+        nbt.setTag("palette", NBTUtilBC.writeCompoundList(palette.stream().map(SchematicBlockManager::writeToNBT)));
         nbt.setTag("entities", NBTUtilBC.writeCompoundList(entities.stream().map(SchematicEntityManager::writeToNBT)));
-        return nbt;
     }
 
-    @Override
-    public void deserializeNBT(NBTTagCompound nbt) throws InvalidInputDataException {
-        super.deserializeNBT(nbt);
+    void readPaletteNBT(NBTTagCompound nbt) throws InvalidInputDataException {
         palette.clear();
         for (NBTTagCompound schematicBlockTag :
             NBTUtilBC.readCompoundList(nbt.getTag("palette")).collect(Collectors.toList())) {
@@ -86,7 +161,24 @@ public class Blueprint extends Snapshot {
             // schematics through mod additions/deletions)
             palette.add(SchematicBlockManager.readFromNBT(schematicBlockTag));
         }
-        data = new int[Snapshot.getDataSize(size)];
+        entities.clear();
+        for (NBTTagCompound schematicEntityTag :
+            NBTUtilBC.readCompoundList(nbt.getTag("entities")).collect(Collectors.toList())) {
+            entities.add(SchematicEntityManager.readFromNBT(schematicEntityTag));
+        }
+    }
+
+    @Override
+    public void deserializeNBT(NBTTagCompound nbt) throws InvalidInputDataException {
+        super.deserializeNBT(nbt);
+        readPaletteNBT(nbt);
+        pagedData = null;
+        if (nbt.hasKey("runs", Constants.NBT.TAG_INT_ARRAY)) {
+            data = RunLengthVoxels.readRuns(size, nbt.getIntArray("runs"));
+            return;
+        }
+        // Written before blueprints were run length encoded
+        int[] legacyData = new int[Snapshot.getDataSize(size)];
         NBTTagList serializedDataList = nbt.hasKey("data", Constants.NBT.TAG_LIST)
             ? nbt.getTagList("data", Constants.NBT.TAG_INT)
             : null;
@@ -109,16 +201,13 @@ public class Blueprint extends Snapshot {
         for (int z = 0; z < size.getZ(); z++) {
             for (int y = 0; y < size.getY(); y++) {
                 for (int x = 0; x < size.getX(); x++) {
-                    data[posToIndex(x, y, z)] = serializedDataList == null
+                    legacyData[posToIndex(x, y, z)] = serializedDataList == null
                         ? serializedDataIntArray[posToIndex(x, y, z)]
                         : serializedDataList.getIntAt(posToIndex(x, y, z));
                 }
             }
         }
-        for (NBTTagCompound schematicEntityTag :
-            NBTUtilBC.readCompoundList(nbt.getTag("entities")).collect(Collectors.toList())) {
-            entities.add(SchematicEntityManager.readFromNBT(schematicEntityTag));
-        }
+        data = RunLengthVoxels.fromArray(size, legacyData);
     }
 
     @Override
@@ -149,7 +238,7 @@ public class Blueprint extends Snapshot {
             for (int z = 0; z < getSnapshot().size.getZ(); z++) {
                 for (int y = 0; y < getSnapshot().size.getY(); y++) {
                     for (int x = 0; x < getSnapshot().size.getX(); x++) {
-                        ISchematicBlock schematicBlock = rotatedPalette.get(data[posToIndex(x, y, z)]);
+                        ISchematicBlock schematicBlock = rotatedPalette.get(getData(posToIndex(x, y, z)));
                         if (!schematicBlock.isAir()) {
                             toPlaceRequiredItems[posToIndex(x, y, z)] = schematicBlock.computeRequiredItems();
                             toPlaceRequiredFluids[posToIndex(x, y, z)] = schematicBlock.computeRequiredFluids();
@@ -58,9 +58,9 @@ public class BlueprintBuilder extends SnapshotBuilder<ITileForBlueprintBuilder>
         return getBuildingInfo().box.contains(blockPos)
             ?
             getBuildingInfo().rotatedPalette.get(
-                getBuildingInfo().getSnapshot().data[getBuildingInfo().getSnapshot().posToIndex(
+                getBuildingInfo().getSnapshot().getData(getBuildingInfo().getSnapshot().posToIndex(
                     getBuildingInfo().fromWorld(blockPos)
-                )]
+                ))
             )
             : null;
     }
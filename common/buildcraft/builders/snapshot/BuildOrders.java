@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.stream.IntStream;
+
+import net.minecraft.util.math.BlockPos;
+
+/** The orders that a {@link SnapshotBuilder} goes through the blocks in its box: each one is a permutation of snapshot
+ * indices.
+ * <p>
+ * Every block gets a primitive sort key, with its position (compared as x, then y, then z) in the low 32 bits to break
+ * ties, exactly like {@link buildcraft.lib.misc.BlockUtil#uniqueBlockPosComparator}. The keys are then sorted with
+ * {@link Arrays#parallelSort(long[])}. This doesn't touch the world, so it's run on a worker thread. */
+public class BuildOrders implements Callable<BuildOrders> {
+    private final int minX, minY, minZ;
+    private final int sizeX, sizeY, sizeZ;
+    private final BlockPos center;
+    private final BlockPos builderPos;
+    private final int indexBase, indexStepX, indexStepY, indexStepZ;
+
+    public int[] breakOrder;
+    public int[] placeOrder;
+    public int[] checkOrder;
+
+    /** @param min The minimum corner of the box, in the world.
+     * @param size The size of the box.
+     * @param center The center of the box (as returned by {@link buildcraft.lib.misc.data.Box#center()}).
+     * @param builderPos The position of the builder.
+     * @param indexBase The snapshot index of the minimum corner of the box.
+     * @param indexStepX The difference in snapshot index when moving one block along the world x axis. As a
+     *            snapshot can only be rotated around the y axis the index is always a linear function of the world
+     *            position.
+     * @param indexStepY The difference in snapshot index when moving one block along the world y axis.
+     * @param indexStepZ The difference in snapshot index when moving one block along the world z axis. */
+    public BuildOrders(BlockPos min, BlockPos size, BlockPos center, BlockPos builderPos, int indexBase,
+        int indexStepX, int indexStepY, int indexStepZ) {
+        this.minX = min.getX();
+        this.minY = min.getY();
+        this.minZ = min.getZ();
+        this.sizeX = size.getX();
+        this.sizeY = size.getY();
+        this.sizeZ = size.getZ();
+        this.center = center;
+        this.builderPos = builderPos;
+        this.indexBase = indexBase;
+        this.indexStepX = indexStepX;
+        this.indexStepY = indexStepY;
+        this.indexStepZ = indexStepZ;
+    }
+
+    @Override
+    public BuildOrders call() {
+        int cx = center.getX();
+        int cy = center.getY();
+        int cz = center.getZ();
+        int bx = builderPos.getX();
+        int by = builderPos.getY();
+        int bz = builderPos.getZ();
+        // Break the layers furthest from the builder first, from the middle of each layer outwards
+        breakOrder = sort((x, y, z) -> sq(x - cx) + sq(z - cz) + 100_000 - Math.abs(y - by) * 100_000L);
+        // Place the layers nearest to the builder first, from the far edges of each layer inwards
+        placeOrder = sort((x, y, z) -> 100_000 - (sq(x - bx) + sq(z - bz)) + Math.abs(y - by) * 100_000L);
+        checkOrder = sort((x, y, z) -> sq(x - cx) + sq(y - cy) + sq(z - cz));
+        return this;
+    }
+
+    private static long sq(int value) {
+        return (long) value * value;
+    }
+
+    @FunctionalInterface
+    private interface IKey {
+        long get(int x, int y, int z);
+    }
+
+    private int[] sort(IKey key) {
+        int count = sizeX * sizeY * sizeZ;
+        int sizeYZ = sizeY * sizeZ;
+        long[] keys = new long[count];
+        // i is the position in x, y, z order, so comparing it is the same as comparing the positions
+        IntStream.range(0, count).parallel().forEach(i -> {
+            int x = minX + i / sizeYZ;
+            int y = minY + (i / sizeZ) % sizeY;
+            int z = minZ + i % sizeZ;
+            long k = key.get(x, y, z);
+            // Only boxes far larger than any snapshot can get to this
+            int clamped = (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, k));
+            keys[i] = ((long) clamped << 32) | i;
+        });
+        Arrays.parallelSort(keys);
+        int[] order = new int[count];
+        IntStream.range(0, count).parallel().forEach(j -> {
+            int i = (int) keys[j];
+            int dx = i / sizeYZ;
+            int dy = (i / sizeZ) % sizeY;
+            int dz = i % sizeZ;
+            order[j] = indexBase + dx * indexStepX + dy * indexStepY + dz * indexStepZ;
+        });
+        return order;
+    }
+}
@@ -8,9 +8,9 @@ package buildcraft.builders.snapshot;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -32,15 +32,30 @@ import net.minecraft.world.World;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.relauncher.Side;
 
+import buildcraft.api.core.InvalidInputDataException;
+
 import buildcraft.lib.misc.data.SingleCache;
 import buildcraft.lib.nbt.NbtSquisher;
 
+import buildcraft.builders.BCBuildersConfig;
+
 public class GlobalSavedDataSnapshots {
-    private static final String SNAPSHOT_FILE_EXTENSION = ".bcnbt";
+    /** The extension of snapshots saved before {@link SnapshotFile} existed. These are converted the first time that
+     * they are read. */
+    private static final String LEGACY_FILE_EXTENSION = ".bcnbt";
     private static final Map<Side, GlobalSavedDataSnapshots> INSTANCES = new EnumMap<>(Side.class);
-    private final LoadingCache<Snapshot.Key, Optional<Snapshot>> snapshotsCache = CacheBuilder.newBuilder()
-        .expireAfterAccess(10, TimeUnit.MINUTES)
-        .build(CacheLoader.from(key -> Optional.ofNullable(readSnapshot(key)).map(Pair::getLeft)));
+    /** Weighed by the size of the file (in kilobytes) that each snapshot was read from. */
+    private final LoadingCache<Snapshot.Key, Optional<Pair<Snapshot, File>>> snapshotsCache = CacheBuilder.newBuilder()
+        .maximumWeight(BCBuildersConfig.snapshotCacheSize * 1024L)
+        .weigher((Snapshot.Key key, Optional<Pair<Snapshot, File>> value) -> value
+            .map(pair -> (int) Math.min(Integer.MAX_VALUE, pair.getRight().length() / 1024 + 1))
+            .orElse(1))
+        .build(CacheLoader.from(key -> Optional.ofNullable(readSnapshot(key))));
+    /** The key of every file that has been listed. Snapshot files are never changed once written, so these never need
+     * to be re-read. */
+    private final Map<String, Snapshot.Key> listedKeys = new HashMap<>();
+    /** The file of every snapshot that has been listed, read or added, so that removing one doesn't have to read it. */
+    private final Map<Snapshot.Key, File> snapshotFiles = new HashMap<>();
     private final SingleCache<List<Snapshot.Key>> listCache = new SingleCache<>(
         this::readList,
         1,
@@ -77,24 +92,68 @@ public class GlobalSavedDataSnapshots {
         return get(world.isRemote ? Side.CLIENT : Side.SERVER);
     }
 
+    private File getSnapshotFile(Snapshot.Key key) {
+        return new File(snapshotsFile, key.toString() + SnapshotFile.EXTENSION);
+    }
+
     private Pair<Snapshot, File> readSnapshot(Snapshot.Key key) {
+        File snapshotFile = getSnapshotFile(key);
+        if (!snapshotFile.exists()) {
+            convertLegacySnapshot(key);
+        }
+        if (snapshotFile.exists()) {
+            try {
+                Snapshot snapshot = SnapshotFile.read(snapshotFile);
+                if (Objects.equals(snapshot.key, key)) {
+                    snapshotFiles.put(key, snapshotFile);
+                    return Pair.of(snapshot, snapshotFile);
+                }
+            } catch (IOException | InvalidInputDataException e) {
+                new IOException("Failed to read the snapshot " + snapshotFile, e).printStackTrace();
+            }
+        }
+        return null;
+    }
+
+    /** Converts the legacy snapshot file with the given key (if there is one) to a {@link SnapshotFile}. */
+    private void convertLegacySnapshot(Snapshot.Key key) {
         File[] files = snapshotsFile.listFiles();
         if (files != null) {
-            for (File snapshotFile : files) {
-                if (snapshotFile.getName().startsWith(key.toString()) &&
-                    snapshotFile.getName().endsWith(SNAPSHOT_FILE_EXTENSION)) {
-                    try (FileInputStream fileInputStream = new FileInputStream(snapshotFile)) {
-                        Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(fileInputStream));
-                        if (Objects.equals(snapshot.key, key)) {
-                            return Pair.of(snapshot, snapshotFile);
-                        }
-                    } catch (IOException e) {
-                        new IOException("Failed to read the snapshot " + snapshotFile, e).printStackTrace();
+            for (File legacyFile : files) {
+                if (legacyFile.getName().startsWith(key.toString()) &&
+                    legacyFile.getName().endsWith(LEGACY_FILE_EXTENSION)) {
+                    Snapshot snapshot = readLegacySnapshot(legacyFile);
+                    if (snapshot != null && Objects.equals(snapshot.key, key)) {
+                        convertLegacySnapshot(legacyFile, snapshot);
+                        return;
                     }
                 }
             }
         }
-        return null;
+    }
+
+    @Nullable
+    private static Snapshot readLegacySnapshot(File legacyFile) {
+        try (FileInputStream fileInputStream = new FileInputStream(legacyFile)) {
+            return Snapshot.readFromNBT(NbtSquisher.expand(fileInputStream));
+        } catch (IOException | InvalidInputDataException e) {
+            new IOException("Failed to read the snapshot " + legacyFile, e).printStackTrace();
+            return null;
+        }
+    }
+
+    /** Writes the given snapshot to a {@link SnapshotFile}, and deletes the legacy file if that succeeded. */
+    private void convertLegacySnapshot(File legacyFile, Snapshot snapshot) {
+        File snapshotFile = getSnapshotFile(snapshot.key);
+        try {
+            SnapshotFile.write(snapshot, snapshotFile);
+        } catch (IOException e) {
+            new IOException("Failed to convert the snapshot " + legacyFile, e).printStackTrace();
+            return;
+        }
+        if (!legacyFile.delete()) {
+            new IOException("Failed to delete the converted snapshot " + legacyFile).printStackTrace();
+        }
     }
 
     private List<Snapshot.Key> readList() {
@@ -102,14 +161,29 @@ public class GlobalSavedDataSnapshots {
         File[] files = snapshotsFile.listFiles();
         if (files != null) {
             for (File snapshotFile : files) {
-                if (snapshotFile.getName().endsWith(SNAPSHOT_FILE_EXTENSION)) {
-                    try (FileInputStream fileInputStream = new FileInputStream(snapshotFile)) {
-                        Snapshot snapshot = Snapshot.readFromNBT(NbtSquisher.expand(fileInputStream));
-                        if (snapshotFile.getName().startsWith(snapshot.key.toString())) {
-                            listBuilder.add(snapshot.key);
+                String name = snapshotFile.getName();
+                if (name.endsWith(LEGACY_FILE_EXTENSION)) {
+                    Snapshot snapshot = readLegacySnapshot(snapshotFile);
+                    if (snapshot != null && name.startsWith(snapshot.key.toString())
+                        && !getSnapshotFile(snapshot.key).exists()) {
+                        convertLegacySnapshot(snapshotFile, snapshot);
+                        snapshotFiles.put(snapshot.key, getSnapshotFile(snapshot.key));
+                        listBuilder.add(snapshot.key);
+                    }
+                } else if (name.endsWith(SnapshotFile.EXTENSION)) {
+                    Snapshot.Key key = listedKeys.get(name);
+                    if (key == null) {
+                        try {
+                            key = SnapshotFile.readKey(snapshotFile);
+                        } catch (IOException e) {
+                            new IOException("Failed to read the snapshot " + snapshotFile, e).printStackTrace();
+                            continue;
                         }
-                    } catch (IOException io) {
-                        new IOException("Failed to read the snapshot " + snapshotFile, io).printStackTrace();
+                        listedKeys.put(name, key);
+                    }
+                    if (name.startsWith(key.toString())) {
+                        snapshotFiles.put(key, snapshotFile);
+                        listBuilder.add(key);
                     }
                 }
             }
@@ -118,35 +192,36 @@ public class GlobalSavedDataSnapshots {
     }
 
     public void addSnapshot(Snapshot snapshot) {
-        File snapshotFile = new File(
-            snapshotsFile,
-            snapshot.key.toString() + SNAPSHOT_FILE_EXTENSION
-        );
+        File snapshotFile = getSnapshotFile(snapshot.key);
         if (!snapshotFile.exists()) {
-            try (FileOutputStream fileOutputStream = new FileOutputStream(snapshotFile)) {
-                NbtSquisher.squishVanilla(Snapshot.writeToNBT(snapshot), fileOutputStream);
+            try {
+                SnapshotFile.write(snapshot, snapshotFile);
             } catch (IOException e) {
                 new IOException("Failed to write the snapshot file: " + snapshotFile, e).printStackTrace();
             }
         }
+        snapshotFiles.put(snapshot.key, snapshotFile);
         snapshotsCache.invalidate(snapshot.key);
         listCache.clear();
     }
 
     public void removeSnapshot(Snapshot.Key key) {
-        Optional.ofNullable(readSnapshot(key)).map(Pair::getRight).ifPresent(snapshotFile -> {
-            if (!snapshotFile.delete()) {
-                new IOException("Failed to read the snapshot file: " + snapshotFile).printStackTrace();
-            }
-            snapshotsCache.invalidate(key);
-        });
+        File snapshotFile = snapshotFiles.remove(key);
+        if (snapshotFile == null) {
+            snapshotFile = getSnapshotFile(key);
+        }
+        snapshotsCache.invalidate(key);
+        listedKeys.remove(snapshotFile.getName());
+        if (snapshotFile.exists() && !snapshotFile.delete()) {
+            new IOException("Failed to delete the snapshot file: " + snapshotFile).printStackTrace();
+        }
         listCache.clear();
     }
 
     @Nullable
     public Snapshot getSnapshot(@Nullable Snapshot.Key key) {
         if (key == null) return null;
-        return snapshotsCache.getUnchecked(key).orElse(null);
+        return snapshotsCache.getUnchecked(key).map(Pair::getLeft).orElse(null);
     }
 
     public List<Snapshot.Key> getList() {
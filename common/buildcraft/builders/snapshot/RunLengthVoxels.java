@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntUnaryOperator;
+
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.api.core.InvalidInputDataException;
+
+/** A non-negative int for every block in a snapshot, stored as runs of equal values along the x axis. This uses the
+ * same indices as {@link Snapshot#posToIndex(BlockPos, BlockPos)}, so every row (a single y and z) is a continuous
+ * range of indices.
+ * <p>
+ * Every row is an array of (start x, value) pairs, in order of x. Rows are copy-on-write, so they can be shared freely:
+ * copies only copy the references, and every row that only contains a single value below {@link #SHARED_UNIFORM_ROWS}
+ * (air, or a template) uses the same array. Identical rows (like the rows of a wall) are also shared when a whole
+ * snapshot is read in at once. Setting a value only changes a row in place if nothing else can see it and the number of
+ * runs stays the same, otherwise the row is replaced. */
+public final class RunLengthVoxels {
+    private static final int SHARED_UNIFORM_ROWS = 256;
+    private static final int[][] UNIFORM_ROWS = new int[SHARED_UNIFORM_ROWS][];
+
+    static {
+        for (int i = 0; i < SHARED_UNIFORM_ROWS; i++) {
+            UNIFORM_ROWS[i] = new int[] { 0, i };
+        }
+    }
+
+    public final BlockPos size;
+    private final int sizeX;
+    private final int[][] rows;
+    /** Every row that was created by (and is only referenced by) this instance, and so can be changed in place. */
+    private final BitSet ownedRows = new BitSet();
+    /** The new runs of a row, before they are copied into it. */
+    private int[] scratch;
+
+    /** Creates a new instance with every value set to the given value. */
+    public RunLengthVoxels(BlockPos size, int value) {
+        this.size = size;
+        this.sizeX = size.getX();
+        this.rows = new int[size.getY() * size.getZ()][];
+        Arrays.fill(rows, uniformRow(value));
+    }
+
+    public RunLengthVoxels(RunLengthVoxels from) {
+        this.size = from.size;
+        this.sizeX = from.sizeX;
+        this.rows = from.rows.clone();
+        // Every row is shared now
+        from.ownedRows.clear();
+    }
+
+    /** Creates a new instance that contains the value of the given function for every index. */
+    public static RunLengthVoxels fromFunction(BlockPos size, IntUnaryOperator indexToValue) {
+        RunLengthVoxels voxels = new RunLengthVoxels(size, 0);
+        RowInterner interner = new RowInterner();
+        int sizeX = size.getX();
+        int[] buffer = new int[sizeX * 2];
+        for (int row = 0; row < voxels.rows.length; row++) {
+            int length = 0;
+            int base = row * sizeX;
+            for (int x = 0; x < sizeX; x++) {
+                int value = indexToValue.applyAsInt(base + x);
+                if (length == 0 || buffer[length - 1] != value) {
+                    buffer[length++] = x;
+                    buffer[length++] = value;
+                }
+            }
+            voxels.rows[row] = interner.intern(toRow(buffer, length));
+        }
+        return voxels;
+    }
+
+    public static RunLengthVoxels fromArray(BlockPos size, int[] data) {
+        return fromFunction(size, i -> data[i]);
+    }
+
+    private static int[] uniformRow(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        return value < SHARED_UNIFORM_ROWS ? UNIFORM_ROWS[value] : new int[] { 0, value };
+    }
+
+    private static int[] toRow(int[] buffer, int length) {
+        if (length == 2) {
+            return uniformRow(buffer[1]);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /** @return The index of the pair (not the array index) of the run that contains the given x. */
+    private static int findRun(int[] row, int x) {
+        int low = 0;
+        int high = row.length / 2 - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (row[mid * 2] <= x) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    public int get(int index) {
+        int[] row = rows[index / sizeX];
+        return row[findRun(row, index % sizeX) * 2 + 1];
+    }
+
+    public void set(int index, int value) {
+        setRange(index, index + 1, value);
+    }
+
+    /** Sets every index from (inclusive) to to (exclusive) to the given value. The range may cover multiple rows. */
+    public void setRange(int from, int to, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value " + value);
+        }
+        while (from < to) {
+            int row = from / sizeX;
+            int fromX = from % sizeX;
+            int toX = Math.min(sizeX, fromX + (to - from));
+            setRowRange(row, fromX, toX, value);
+            from += toX - fromX;
+        }
+    }
+
+    private void setRowRange(int rowIndex, int fromX, int toX, int value) {
+        if (fromX == 0 && toX == sizeX) {
+            rows[rowIndex] = uniformRow(value);
+            ownedRows.clear(rowIndex);
+            return;
+        }
+        int[] row = rows[rowIndex];
+        int first = findRun(row, fromX);
+        int last = findRun(row, toX - 1);
+        if (first == last && row[first * 2 + 1] == value) {
+            return;
+        }
+        int[] buffer = getScratch();
+        int length = 0;
+        // Runs that start before the range
+        for (int i = 0; i < row.length && row[i] < fromX; i += 2) {
+            buffer[length++] = row[i];
+            buffer[length++] = row[i + 1];
+        }
+        length = append(buffer, length, fromX, value);
+        if (toX < sizeX) {
+            if (last * 2 + 2 >= row.length || row[last * 2 + 2] != toX) {
+                // The rest of the run that the range finishes in
+                length = append(buffer, length, toX, row[last * 2 + 1]);
+            }
+            for (int i = last * 2 + 2; i < row.length; i += 2) {
+                length = append(buffer, length, row[i], row[i + 1]);
+            }
+        }
+        replaceRow(rowIndex, buffer, length);
+    }
+
+    private int[] getScratch() {
+        if (scratch == null) {
+            // Every run is at least one block long
+            scratch = new int[sizeX * 2];
+        }
+        return scratch;
+    }
+
+    /** Sets a row to the first length values of the given buffer, changing the row in place if possible. */
+    private void replaceRow(int rowIndex, int[] buffer, int length) {
+        int[] row = rows[rowIndex];
+        if (row.length == length && ownedRows.get(rowIndex)) {
+            System.arraycopy(buffer, 0, row, 0, length);
+        } else {
+            rows[rowIndex] = toRow(buffer, length);
+            // Uniform rows might be shared
+            ownedRows.set(rowIndex, length > 2);
+        }
+    }
+
+    private static int append(int[] buffer, int length, int x, int value) {
+        if (length > 0 && buffer[length - 1] == value) {
+            return length;
+        }
+        buffer[length++] = x;
+        buffer[length++] = value;
+        return length;
+    }
+
+    /** Replaces every value with the result of the given function. */
+    public void replaceAll(IntUnaryOperator function) {
+        int[] buffer = getScratch();
+        for (int r = 0; r < rows.length; r++) {
+            int[] row = rows[r];
+            int length = 0;
+            for (int i = 0; i < row.length; i += 2) {
+                length = append(buffer, length, row[i], function.applyAsInt(row[i + 1]));
+            }
+            replaceRow(r, buffer, length);
+        }
+    }
+
+    public int[] toArray() {
+        int[] array = new int[rows.length * sizeX];
+        for (int r = 0; r < rows.length; r++) {
+            int[] row = rows[r];
+            for (int i = 0; i < row.length; i += 2) {
+                int end = i + 2 < row.length ? row[i + 2] : sizeX;
+                Arrays.fill(array, r * sizeX + row[i], r * sizeX + end, row[i + 1]);
+            }
+        }
+        return array;
+    }
+
+    /** @return The runs over every index, as (length, value) pairs. Unlike the rows these can go over multiple rows. */
+    public int[] writeRuns() {
+        int[] buffer = new int[16];
+        int length = 0;
+        for (int r = 0; r < rows.length; r++) {
+            int[] row = rows[r];
+            for (int i = 0; i < row.length; i += 2) {
+                int runLength = (i + 2 < row.length ? row[i + 2] : sizeX) - row[i];
+                if (length > 0 && buffer[length - 1] == row[i + 1]) {
+                    buffer[length - 2] += runLength;
+                } else {
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    buffer[length++] = runLength;
+                    buffer[length++] = row[i + 1];
+                }
+            }
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /** The inverse of {@link #writeRuns()}. */
+    public static RunLengthVoxels readRuns(BlockPos size, int[] runs) throws InvalidInputDataException {
+        if (runs.length % 2 != 0) {
+            throw new InvalidInputDataException("Runs have an odd length of " + runs.length);
+        }
+        long total = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            if (runs[i] <= 0 || runs[i + 1] < 0) {
+                throw new InvalidInputDataException("Invalid run " + runs[i] + " of " + runs[i + 1]);
+            }
+            total += runs[i];
+        }
+        if (total != Snapshot.getDataSize(size)) {
+            throw new InvalidInputDataException(
+                "Runs have a total length of " + total + ", but we expected " + Snapshot.getDataSize(size) + " ("
+                    + size + ")"
+            );
+        }
+        RunLengthVoxels voxels = new RunLengthVoxels(size, 0);
+        RowInterner interner = new RowInterner();
+        int[] buffer = new int[voxels.sizeX * 2];
+        int length = 0;
+        int row = 0;
+        int x = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            int left = runs[i];
+            while (left > 0) {
+                length = append(buffer, length, x, runs[i + 1]);
+                int taken = Math.min(left, voxels.sizeX - x);
+                x += taken;
+                left -= taken;
+                if (x == voxels.sizeX) {
+                    voxels.rows[row++] = interner.intern(toRow(buffer, length));
+                    length = 0;
+                    x = 0;
+                }
+            }
+        }
+        return voxels;
+    }
+
+    /** @return The total number of runs in every row. */
+    public int getRunCount() {
+        int count = 0;
+        for (int[] row : rows) {
+            count += row.length / 2;
+        }
+        return count;
+    }
+
+    /** @return An estimate of the number of bytes that this takes up in the heap, assuming compressed references. */
+    public long getHeapSize() {
+        Set<int[]> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        long bytes = 16 + 16 + rows.length * 4L;
+        for (int[] row : rows) {
+            boolean shared = row.length == 2 && row[1] < SHARED_UNIFORM_ROWS && row == UNIFORM_ROWS[row[1]];
+            if (!shared && distinct.add(row)) {
+                bytes += 16 + row.length * 4L;
+            }
+        }
+        return bytes;
+    }
+
+    /** Makes identical rows use the same array. */
+    private static final class RowInterner {
+        private final Map<RowKey, int[]> rows = new HashMap<>();
+
+        int[] intern(int[] row) {
+            if (row.length == 2) {
+                // Uniform rows are already shared (or at least small)
+                return row;
+            }
+            return rows.computeIfAbsent(new RowKey(row), key -> key.row);
+        }
+    }
+
+    private static final class RowKey {
+        final int[] row;
+        final int hash;
+
+        RowKey(int[] row) {
+            this.row = row;
+            this.hash = Arrays.hashCode(row);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof RowKey && Arrays.equals(row, ((RowKey) obj).row);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
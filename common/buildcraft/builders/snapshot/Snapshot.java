@@ -21,8 +21,6 @@ import net.minecraft.util.Rotation;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
-import net.minecraftforge.common.util.Constants;
-
 import buildcraft.api.core.InvalidInputDataException;
 import buildcraft.api.enums.EnumSnapshotType;
 
@@ -133,14 +131,24 @@ public abstract class Snapshot {
 
     public NBTTagCompound serializeNBT() {
         NBTTagCompound nbt = new NBTTagCompound();
+        writeMetaNBT(nbt);
+        return nbt;
+    }
+
+    public void deserializeNBT(NBTTagCompound nbt) throws InvalidInputDataException {
+        readMetaNBT(nbt);
+    }
+
+    /** Writes the fields common to every snapshot - everything that {@link SnapshotFile} needs to list a snapshot
+     * without reading the rest of it. */
+    void writeMetaNBT(NBTTagCompound nbt) {
         nbt.setTag("key", key.serializeNBT());
         nbt.setTag("size", NBTUtil.createPosTag(size));
         nbt.setTag("facing", NBTUtilBC.writeEnum(facing));
         nbt.setTag("offset", NBTUtil.createPosTag(offset));
-        return nbt;
     }
 
-    public void deserializeNBT(NBTTagCompound nbt) throws InvalidInputDataException {
+    void readMetaNBT(NBTTagCompound nbt) {
         key = new Key(nbt.getCompoundTag("key"));
         size = NBTUtil.getPosFromTag(nbt.getCompoundTag("size"));
         facing = NBTUtilBC.readEnum(nbt.getTag("facing"), EnumFacing.class);
@@ -151,14 +159,25 @@ public abstract class Snapshot {
 
     abstract public EnumSnapshotType getType();
 
+    /** Computes the key from the same NBT that {@link #writeToNBT(Snapshot)} returns (apart from the key itself), except
+     * that the block data is hashed in the "data" format that was written before it was run length encoded. That way
+     * the key only depends on what is in the snapshot, and not on how it is stored. */
     public void computeKey() {
-        NBTTagCompound nbt = writeToNBT(this);
-        if (nbt.hasKey("key", Constants.NBT.TAG_COMPOUND)) {
-            nbt.removeTag("key");
-        }
-        key = new Key(key, HashUtil.computeHash(nbt));
+        NBTTagCompound nbt = new NBTTagCompound();
+        writeMetaNBT(nbt);
+        nbt.removeTag("key");
+        writeKeyNBT(nbt);
+        nbt.setTag("type", NBTUtilBC.writeEnum(getType()));
+        key = new Key(key, HashUtil.computeHash(nbt, "data", getKeyData()));
     }
 
+    /** Writes everything (apart from the fields written by {@link #writeMetaNBT(NBTTagCompound)} and the block data)
+     * that {@link #computeKey()} should include. */
+    void writeKeyNBT(NBTTagCompound nbt) {}
+
+    /** @return The block data, as it was written before it was run length encoded. */
+    abstract HashUtil.ILargeTag getKeyData();
+
     @Override
     public String toString() {
         return "Snapshot{" +
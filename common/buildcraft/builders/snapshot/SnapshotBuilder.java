@@ -9,12 +9,13 @@ package buildcraft.builders.snapshot;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -36,6 +37,7 @@ import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.common.util.INBTSerializable;
 import net.minecraftforge.event.world.BlockEvent;
 
+import buildcraft.api.core.BCLog;
 import buildcraft.api.core.BuildCraftAPI;
 import buildcraft.api.mj.MjAPI;
 
@@ -43,6 +45,7 @@ import buildcraft.lib.misc.BlockUtil;
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.misc.VecUtil;
+import buildcraft.lib.misc.WorkerThreadUtil;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.world.WorldEventListenerAdapter;
 
@@ -91,6 +94,10 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
     private int[] breakOrder;
     private int[] placeOrder;
     private int[] checkOrder;
+    /** The orders being computed on a worker thread, or null if they have already been computed. */
+    private Future<BuildOrders> pendingOrders;
+    /** True while the orders are being computed. Synced to the client. */
+    private boolean planning;
     private int currentCheckIndex;
     public Vec3d robotPos = null;
     public Vec3d prevRobotPos = null;
@@ -182,33 +189,67 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
                 getBuildingInfo().box.size().getZ()
             ];
         Arrays.fill(requiredCache, REQUIRED_UNKNOWN);
-        breakOrder = getBuildingInfo().box.getBlocksInArea().stream()
-            .sorted(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(blockPos ->
-                Math.pow(blockPos.getX() - getBuildingInfo().box.center().getX(), 2) +
-                    Math.pow(blockPos.getZ() - getBuildingInfo().box.center().getZ(), 2) +
-                    100_000 - Math.abs(blockPos.getY() - tile.getBuilderPos().getY()) * 100_000
-            )))
-            .mapToInt(this::posToIndex)
-            .toArray();
-        placeOrder = getBuildingInfo().box.getBlocksInArea().stream()
-            .sorted(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(blockPos ->
-                100_000 - (Math.pow(blockPos.getX() - tile.getBuilderPos().getX(), 2) +
-                    Math.pow(blockPos.getZ() - tile.getBuilderPos().getZ(), 2)) +
-                    Math.abs(blockPos.getY() - tile.getBuilderPos().getY()) * 100_000
-            )))
-            .mapToInt(this::posToIndex)
-            .toArray();
-        checkOrder = getBuildingInfo().box.getBlocksInArea().stream()
-            .sorted(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(blockPos ->
-                Math.pow(blockPos.getX() - getBuildingInfo().box.center().getX(), 2) +
-                    Math.pow(blockPos.getY() - getBuildingInfo().box.center().getY(), 2) +
-                    Math.pow(blockPos.getZ() - getBuildingInfo().box.center().getZ(), 2)
-            )))
-            .mapToInt(this::posToIndex)
-            .toArray();
+        breakOrder = null;
+        placeOrder = null;
+        checkOrder = null;
+        if (pendingOrders != null) {
+            pendingOrders.cancel(false);
+        }
+        pendingOrders = WorkerThreadUtil.executeWorkTask(createBuildOrders());
+        planning = true;
         tile.getWorldBC().profiler.endSection();
     }
 
+    private BuildOrders createBuildOrders() {
+        BlockPos min = getBuildingInfo().box.min();
+        int indexBase = posToIndex(min);
+        return new BuildOrders(
+            min,
+            getBuildingInfo().box.size(),
+            getBuildingInfo().box.center(),
+            tile.getBuilderPos(),
+            indexBase,
+            posToIndex(min.east()) - indexBase,
+            posToIndex(min.up()) - indexBase,
+            posToIndex(min.south()) - indexBase
+        );
+    }
+
+    /**
+     * @return true if the build orders are ready, false if they are still being computed
+     */
+    private boolean pollOrders() {
+        if (pendingOrders == null) {
+            return true;
+        }
+        if (!pendingOrders.isDone()) {
+            return false;
+        }
+        BuildOrders orders;
+        try {
+            orders = pendingOrders.get();
+        } catch (InterruptedException | ExecutionException e) {
+            BCLog.logger.warn("[builders.snapshot] Failed to compute the build order off-thread!", e);
+            orders = null;
+        }
+        if (orders == null) {
+            orders = createBuildOrders().call();
+        }
+        pendingOrders = null;
+        planning = false;
+        breakOrder = orders.breakOrder;
+        placeOrder = orders.placeOrder;
+        checkOrder = orders.checkOrder;
+        return true;
+    }
+
+    /**
+     * @return true if the order to build in is still being computed
+     */
+    public boolean isPlanning() {
+        return planning;
+    }
+
     public void resourcesChanged() {
         Arrays.fill(requiredCache, REQUIRED_UNKNOWN);
     }
@@ -227,6 +268,11 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
         breakOrder = null;
         placeOrder = null;
         checkOrder = null;
+        if (pendingOrders != null) {
+            pendingOrders.cancel(false);
+            pendingOrders = null;
+        }
+        planning = false;
         currentCheckIndex = 0;
         robotPos = null;
         prevRobotPos = null;
@@ -276,11 +322,15 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
             return false;
         }
 
+        if (!pollOrders()) {
+            return false;
+        }
+
         boolean checkResultsChanged = false;
 
         tile.getWorldBC().profiler.startSection("scan");
         for (int i = 0; i < CHECKS_PER_TICK; i++) {
-            if (check(indexToPos(currentCheckIndex))) {
+            if (check(indexToPos(checkOrder[currentCheckIndex]))) {
                 checkResultsChanged = true;
             }
             currentCheckIndex = (currentCheckIndex + 1) % checkOrder.length;
@@ -518,6 +568,7 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
         placeTasks.forEach(placeTask -> placeTask.writePayload(buffer));
         buffer.writeInt(leftToBreak);
         buffer.writeInt(leftToPlace);
+        buffer.writeBoolean(planning);
     }
 
     public void readFromByteBuf(PacketBufferBC buffer) {
@@ -527,6 +578,7 @@ public abstract class SnapshotBuilder<T extends ITileForSnapshotBuilder> impleme
         IntStream.range(0, buffer.readInt()).mapToObj(i -> new PlaceTask(buffer)).forEach(placeTasks::add);
         leftToBreak = buffer.readInt();
         leftToPlace = buffer.readInt();
+        planning = buffer.readBoolean();
     }
 
     @Override
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagCompound;
+
+import buildcraft.api.core.InvalidInputDataException;
+import buildcraft.api.enums.EnumSnapshotType;
+
+import buildcraft.lib.misc.NBTUtilBC;
+import buildcraft.lib.nbt.NbtSquisher;
+
+/** The on-disk format used by {@link GlobalSavedDataSnapshots}. Unlike a squished {@link Snapshot#writeToNBT} this
+ * is split into 3 sections, so that readers only need to touch the parts that they are interested in:
+ * <ol>
+ * <li>The header: the type, key, size, facing and offset. This is all that is needed to list snapshots.</li>
+ * <li>The palette: the palette and entities of a blueprint (empty for templates).</li>
+ * <li>The body: the block data, as raw big-endian values in snapshot index order. Blueprints use the smallest width
+ * that fits every palette index, templates store their {@link BitSet} as longs.</li>
+ * </ol>
+ * The body of a blueprint is never read all at once: it's read in {@link #PAGE_SIZE} pages as they are used (see
+ * {@link PagedData}). */
+public class SnapshotFile {
+    public static final String EXTENSION = ".bcsnap";
+
+    private static final int MAGIC = 0x42_43_53_50;// "BCSP"
+    private static final int VERSION = 1;
+    private static final int PAGE_SHIFT = 20;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    /** Writes the given snapshot to the file, replacing it if it already exists. The file is written in full to a
+     * temporary file first, so readers will never see a partially written snapshot. */
+    public static void write(Snapshot snapshot, File file) throws IOException {
+        NBTTagCompound header = new NBTTagCompound();
+        snapshot.writeMetaNBT(header);
+        header.setTag("type", NBTUtilBC.writeEnum(snapshot.getType()));
+        NBTTagCompound palette = new NBTTagCompound();
+        int width = 0;
+        if (snapshot instanceof Blueprint) {
+            Blueprint blueprint = (Blueprint) snapshot;
+            blueprint.writePaletteNBT(palette);
+            width = getWidth(blueprint.palette.size());
+            palette.setByte("width", (byte) width);
+        }
+
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeSection(out, header);
+            writeSection(out, palette);
+            if (snapshot instanceof Blueprint) {
+                Blueprint blueprint = (Blueprint) snapshot;
+                int count = blueprint.getDataSize();
+                out.writeLong((long) count * width);
+                for (int i = 0; i < count; i++) {
+                    int value = blueprint.getData(i);
+                    switch (width) {
+                        case 1:
+                            out.writeByte(value);
+                            break;
+                        case 2:
+                            out.writeShort(value);
+                            break;
+                        default:
+                            out.writeInt(value);
+                    }
+                }
+            } else if (snapshot instanceof Template) {
+                long[] words = ((Template) snapshot).toBitSet().toLongArray();
+                int count = (snapshot.getDataSize() + Long.SIZE - 1) / Long.SIZE;
+                out.writeLong((long) count * Long.BYTES);
+                for (int i = 0; i < count; i++) {
+                    out.writeLong(i < words.length ? words[i] : 0);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown snapshot " + snapshot);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeSection(DataOutputStream out, NBTTagCompound nbt) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        NbtSquisher.squishVanilla(nbt, baos);
+        out.writeInt(baos.size());
+        baos.writeTo(out);
+    }
+
+    private static int getWidth(int paletteSize) {
+        if (paletteSize <= 1 << 8) {
+            return 1;
+        } else if (paletteSize <= 1 << 16) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+
+    /** Reads the key of the snapshot stored in the given file, without reading anything other than the header. */
+    public static Snapshot.Key readKey(File file) throws IOException {
+        try (DataInputStream in = open(file)) {
+            return new Snapshot.Key(readSection(in).getCompoundTag("key"));
+        }
+    }
+
+    /** Reads the snapshot stored in the given file. Blueprints read their block data from the file as it's needed. */
+    public static Snapshot read(File file) throws IOException, InvalidInputDataException {
+        try (DataInputStream in = open(file)) {
+            NBTTagCompound header = readSection(in);
+            NBTTagCompound palette = readSection(in);
+            long bodyLength = in.readLong();
+            long bodyOffset = file.length() - bodyLength;
+
+            NBTBase typeTag = header.getTag("type");
+            EnumSnapshotType type = NBTUtilBC.readEnum(typeTag, EnumSnapshotType.class);
+            if (type == null) {
+                throw new InvalidInputDataException("Unknown snapshot type " + typeTag);
+            }
+            Snapshot snapshot = Snapshot.create(type);
+            snapshot.readMetaNBT(header);
+            int count = snapshot.getDataSize();
+            if (snapshot instanceof Blueprint) {
+                Blueprint blueprint = (Blueprint) snapshot;
+                blueprint.readPaletteNBT(palette);
+                int width = palette.getByte("width");
+                if (width != getWidth(blueprint.palette.size()) || bodyLength != (long) count * width) {
+                    throw new InvalidInputDataException(
+                        "Body has length of " + bodyLength + " (width " + width + "), but we expected " + count
+                            + " blocks (" + snapshot.size + ") with a palette of " + blueprint.palette.size()
+                    );
+                }
+                blueprint.setData(new PagedData(file, bodyOffset, bodyLength, width));
+            } else if (snapshot instanceof Template) {
+                // Templates only need a single bit per block, so it isn't worth mapping them
+                long[] words = new long[(count + Long.SIZE - 1) / Long.SIZE];
+                if (bodyLength != (long) words.length * Long.BYTES) {
+                    throw new InvalidInputDataException(
+                        "Body has length of " + bodyLength + ", but we expected " + words.length + " longs ("
+                            + snapshot.size + ")"
+                    );
+                }
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = in.readLong();
+                }
+                ((Template) snapshot).setData(BitSet.valueOf(words));
+            }
+            return snapshot;
+        }
+    }
+
+    private static DataInputStream open(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            int magic = in.readInt();
+            int version = in.readInt();
+            if (magic != MAGIC || version != VERSION) {
+                throw new IOException("Not a snapshot file (magic = " + Integer.toHexString(magic) + ", version = "
+                    + version + ")");
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    private static NBTTagCompound readSection(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative section length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return NbtSquisher.expand(bytes);
+    }
+
+    /** The block data of a blueprint, read directly from its file. Pages are only read the first time that they are
+     * needed, and the file isn't kept open in between.
+     * <p>
+     * Pages are read into plain heap buffers rather than being memory-mapped: mapped buffers can't be unmapped until
+     * they are garbage collected, and (on windows) stop the file from being deleted until then. */
+    public static final class PagedData {
+        private final File file;
+        private final long offset, length;
+        private final int width;
+        private final ByteBuffer[] pages;
+
+        PagedData(File file, long offset, long length, int width) {
+            this.file = file;
+            this.offset = offset;
+            this.length = length;
+            this.width = width;
+            this.pages = new ByteBuffer[(int) ((length + PAGE_SIZE - 1) >> PAGE_SHIFT)];
+        }
+
+        public int get(int index) {
+            // The page size is a multiple of every width, so values never cross pages
+            long position = (long) index * width;
+            return read(getPage((int) (position >> PAGE_SHIFT)), (int) (position & (PAGE_SIZE - 1)));
+        }
+
+        /** Calls the given consumer with every value in index order. Pages that haven't been read yet are only kept
+         * until they have been passed to the consumer, so this never reads the whole body into the heap. */
+        public void forEach(IntConsumer consumer) {
+            for (int p = 0; p < pages.length; p++) {
+                ByteBuffer page = pages[p] != null ? pages[p] : readPage(p);
+                for (int at = 0; at < page.capacity(); at += width) {
+                    consumer.accept(read(page, at));
+                }
+            }
+        }
+
+        private int read(ByteBuffer page, int at) {
+            switch (width) {
+                case 1:
+                    return page.get(at) & 0xFF;
+                case 2:
+                    return page.getShort(at) & 0xFFFF;
+                default:
+                    return page.getInt(at);
+            }
+        }
+
+        private ByteBuffer getPage(int index) {
+            ByteBuffer page = pages[index];
+            if (page == null) {
+                // If two threads race here then both read the same page, which is harmless
+                page = readPage(index);
+                pages[index] = page;
+            }
+            return page;
+        }
+
+        private ByteBuffer readPage(int index) {
+            long start = (long) index << PAGE_SHIFT;
+            ByteBuffer page = ByteBuffer.allocate((int) Math.min(PAGE_SIZE, length - start));
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                while (page.hasRemaining()) {
+                    if (channel.read(page, offset + start + page.position()) < 0) {
+                        throw new EOFException("Only " + page.position() + " of " + page.capacity() + " bytes");
+                    }
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read page " + index + " of the snapshot " + file, e);
+            }
+            return page;
+        }
+    }
+}
@@ -6,6 +6,8 @@
 
 package buildcraft.builders.snapshot;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
@@ -15,14 +17,39 @@ import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.Rotation;
 import net.minecraft.util.math.BlockPos;
 
+import net.minecraftforge.common.util.Constants;
+
 import buildcraft.api.core.InvalidInputDataException;
 import buildcraft.api.enums.EnumSnapshotType;
 import buildcraft.api.filler.IFilledTemplate;
 
+import buildcraft.lib.misc.HashUtil;
 import buildcraft.lib.misc.VecUtil;
 
 public class Template extends Snapshot {
-    public BitSet data;
+    /** 1 for every block that should be filled, 0 otherwise. */
+    private RunLengthVoxels data;
+
+    public boolean getData(int index) {
+        return data.get(index) != 0;
+    }
+
+    public void setData(BitSet bits) {
+        data = RunLengthVoxels.fromFunction(size, i -> bits.get(i) ? 1 : 0);
+    }
+
+    public BitSet toBitSet() {
+        BitSet bits = new BitSet(getDataSize());
+        int[] runs = data.writeRuns();
+        int index = 0;
+        for (int i = 0; i < runs.length; i += 2) {
+            if (runs[i + 1] != 0) {
+                bits.set(index, index + runs[i]);
+            }
+            index += runs[i];
+        }
+        return bits;
+    }
 
     @Override
     public Template copy() {
@@ -30,7 +57,7 @@ public class Template extends Snapshot {
         template.size = size;
         template.facing = facing;
         template.offset = offset;
-        template.data = (BitSet) data.clone();
+        template.data = new RunLengthVoxels(data);
         template.computeKey();
         return template;
     }
@@ -40,27 +67,50 @@ public class Template extends Snapshot {
     }
 
     public void invert() {
-        data.flip(0, getDataSize());
+        data.replaceAll(value -> value ^ 1);
     }
 
     @Override
     public NBTTagCompound serializeNBT() {
         NBTTagCompound nbt = super.serializeNBT();
-        nbt.setByteArray("data", data.toByteArray());
+        nbt.setIntArray("runs", data.writeRuns());
         return nbt;
     }
 
     @Override
     public void deserializeNBT(NBTTagCompound nbt) throws InvalidInputDataException {
         super.deserializeNBT(nbt);
-        data = BitSet.valueOf(nbt.getByteArray("data"));
-        if (data.length() > getDataSize()) {
+        if (nbt.hasKey("runs", Constants.NBT.TAG_INT_ARRAY)) {
+            data = RunLengthVoxels.readRuns(size, nbt.getIntArray("runs"));
+            return;
+        }
+        // Written before templates were run length encoded
+        BitSet bits = BitSet.valueOf(nbt.getByteArray("data"));
+        if (bits.length() > getDataSize()) {
             throw new InvalidInputDataException(
-                "Serialized data has length of " + data.length() +
+                "Serialized data has length of " + bits.length() +
                     ", but we expected at most " +
                     getDataSize() + " (" + size.toString() + ")"
             );
         }
+        setData(bits);
+    }
+
+    @Override
+    HashUtil.ILargeTag getKeyData() {
+        return new HashUtil.ILargeTag() {
+            @Override
+            public byte getId() {
+                return Constants.NBT.TAG_BYTE_ARRAY;
+            }
+
+            @Override
+            public void write(DataOutput out) throws IOException {
+                byte[] bytes = toBitSet().toByteArray();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        };
     }
 
     @Override
@@ -105,20 +155,20 @@ public class Template extends Snapshot {
         @Override
         public void set(int x, int y, int z, boolean value) {
             checkPos(x, y, z);
-            data.set(posToIndex(x, y, z), value);
+            data.set(posToIndex(x, y, z), value ? 1 : 0);
         }
 
         @Override
         public boolean get(int x, int y, int z) {
             checkPos(x, y, z);
-            return data.get(posToIndex(x, y, z));
+            return data.get(posToIndex(x, y, z)) != 0;
         }
 
         @Override
         public void setLineX(int fromX, int toX, int y, int z, boolean value) {
             checkPos(fromX, y, z);
             checkPos(toX, y, z);
-            data.set(posToIndex(fromX, y, z), posToIndex(toX, y, z) + 1, value);
+            data.setRange(posToIndex(fromX, y, z), posToIndex(toX, y, z) + 1, value ? 1 : 0);
         }
 
         @Override
@@ -153,7 +203,7 @@ public class Template extends Snapshot {
             checkPos(fromX, y, fromZ);
             checkPos(toX, y, toZ);
             for (int z = fromZ; z <= toZ; z++) {
-                setLineX(fromX, toX, y, z, true);
+                setLineX(fromX, toX, y, z, value);
             }
         }
 
@@ -162,7 +212,7 @@ public class Template extends Snapshot {
             checkPos(fromX, fromY, z);
             checkPos(toX, toY, z);
             for (int y = fromY; y <= toY; y++) {
-                setLineX(fromX, toX, y, z, true);
+                setLineX(fromX, toX, y, z, value);
             }
         }
 
@@ -181,12 +231,12 @@ public class Template extends Snapshot {
         @Override
         public void setPlaneXY(int z, boolean value) {
             checkPos(0, 0, z);
-            data.set(posToIndex(0, 0, z), posToIndex(max.getX(), max.getY(), z) + 1, value);
+            data.setRange(posToIndex(0, 0, z), posToIndex(max.getX(), max.getY(), z) + 1, value ? 1 : 0);
         }
 
         @Override
         public void setAll(boolean value) {
-            data.set(0, getDataSize(), value);
+            data.setRange(0, getDataSize(), value ? 1 : 0);
         }
 
         @Override
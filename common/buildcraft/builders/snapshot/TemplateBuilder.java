@@ -31,7 +31,7 @@ public class TemplateBuilder extends SnapshotBuilder<ITileForTemplateBuilder> {
     @Override
     protected boolean isAir(BlockPos blockPos) {
         return !getBuildingInfo().box.contains(blockPos) ||
-            !getBuildingInfo().getSnapshot().data.get(
+            !getBuildingInfo().getSnapshot().getData(
                 getBuildingInfo().getSnapshot().posToIndex(
                     getBuildingInfo().fromWorld(blockPos)
                 )
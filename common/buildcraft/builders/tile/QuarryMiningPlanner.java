@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.tile;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockPos.MutableBlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import net.minecraftforge.fluids.Fluid;
+
+import buildcraft.api.core.BCLog;
+
+import buildcraft.lib.misc.BlockUtil;
+import buildcraft.lib.misc.WorkerThreadUtil;
+import buildcraft.lib.misc.data.BoxIterator;
+
+/** Finds the next blocks that a {@link TileQuarry} should mine on a worker thread, so that the quarry doesn't have to
+ * walk through every air block in its mining box on the main thread.
+ * <p>
+ * The main thread captures every chunk section that the quarry needs into a byte per block (see {@link #PASSABLE},
+ * {@link #MINEABLE} and {@link #BLOCKED}), a few sections per tick. A worker then walks through the mining box in the
+ * same order as the quarry, and returns up to {@link #MAX_TARGETS} targets from a single layer. The quarry still
+ * re-checks every target with the real world before it mines it, so a wrong guess from here only costs a bit of time.
+ * <p>
+ * Block changes that the quarry hears about are applied to the captured sections (copying them first if a worker might
+ * be reading them) and remove any queued target in the same column at or below the change. */
+public class QuarryMiningPlanner {
+    /** The quarry can move through this block: air, or a thin fluid. */
+    static final byte PASSABLE = 0;
+    /** The quarry can mine this block. */
+    static final byte MINEABLE = 1;
+    /** The quarry can't mine or move through this block. */
+    static final byte BLOCKED = 2;
+    /** Only used in {@link #stateClasses}: blocks with this state have to be classified at their own position. */
+    private static final byte AT_POSITION = 3;
+
+    private static final int MAX_TARGETS = 64;
+    private static final int SECTIONS_PER_TICK = 8;
+
+    private final World world;
+    private final BlockPos min, max;
+
+    private final Map<Long, Section> sections = new HashMap<>();
+    /** The classification of every block state that has been seen so far, or {@link #AT_POSITION} if it depends on the
+     * position of the block. Only accessed from the main thread. */
+    private final Map<IBlockState, Byte> stateClasses = new IdentityHashMap<>();
+    private final ArrayDeque<BoxIterator> queue = new ArrayDeque<>();
+
+    private Future<Plan> pending;
+    /** Every block that changed while {@link #pending} was running. */
+    private final List<BlockPos> changedWhilePlanning = new ArrayList<>();
+    /** Where to start the next plan from, if the last plan got to a section that hadn't been captured yet without
+     * finding anything. */
+    private BoxIterator resumeFrom;
+
+    static final class Section {
+        byte[] data;
+        /** True if {@link #data} might be being read by a worker, so it must be copied before changing it. */
+        boolean shared;
+
+        Section(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    static final class Plan {
+        final List<BoxIterator> targets;
+        /** Where the plan stopped. */
+        final BoxIterator end;
+        /** True if the plan stopped because it needed a section that hadn't been captured. */
+        final boolean incomplete;
+
+        Plan(List<BoxIterator> targets, BoxIterator end, boolean incomplete) {
+            this.targets = targets;
+            this.end = end;
+            this.incomplete = incomplete;
+        }
+    }
+
+    public QuarryMiningPlanner(World world, BlockPos min, BlockPos max) {
+        this.world = world;
+        this.min = min;
+        this.max = max;
+    }
+
+    public boolean isFor(BlockPos min, BlockPos max) {
+        return this.min.equals(min) && this.max.equals(max);
+    }
+
+    /** Throws away every planned target, for when the quarry's iterator goes backwards. The captured sections are
+     * kept. */
+    public void clear() {
+        queue.clear();
+        if (pending != null) {
+            pending.cancel(false);
+            pending = null;
+        }
+        changedWhilePlanning.clear();
+        resumeFrom = null;
+    }
+
+    /** @param from The quarry's current iterator, which isn't changed by this.
+     * @return An iterator at the next block to mine, a finished iterator if there is nothing left to mine, or null if
+     *         the next plan isn't ready yet. If the world around the quarry isn't loaded then this returns {@code from}
+     *         so that the quarry can look through the world itself. */
+    public BoxIterator nextTarget(BoxIterator from) {
+        if (!queue.isEmpty()) {
+            return queue.poll();
+        }
+        if (pending != null) {
+            if (!pending.isDone()) {
+                return null;
+            }
+            Plan plan = getPlan();
+            pending = null;
+            resumeFrom = null;
+            if (plan == null) {
+                changedWhilePlanning.clear();
+                return from;
+            }
+            for (BoxIterator target : plan.targets) {
+                if (!wasChanged(target.getCurrent(), changedWhilePlanning)) {
+                    queue.add(target);
+                }
+            }
+            boolean anyChanged = !changedWhilePlanning.isEmpty();
+            changedWhilePlanning.clear();
+            if (!queue.isEmpty()) {
+                return queue.poll();
+            }
+            if (plan.targets.isEmpty() && !anyChanged) {
+                if (!plan.incomplete) {
+                    return plan.end;
+                }
+                resumeFrom = plan.end;
+            }
+            // Otherwise every target changed while we were planning, so plan again
+        }
+        BoxIterator start = resumeFrom != null ? resumeFrom : from;
+        switch (captureSections(start.getCurrent().getY())) {
+            case NOT_LOADED:
+                return from;
+            case IN_PROGRESS:
+                return null;
+            default:
+                break;
+        }
+        Map<Long, byte[]> snapshot = new HashMap<>();
+        for (Map.Entry<Long, Section> entry : sections.entrySet()) {
+            Section section = entry.getValue();
+            section.shared = true;
+            snapshot.put(entry.getKey(), section.data);
+        }
+        pending = WorkerThreadUtil.executeWorkTask(new PlanTask(snapshot, min, max, start.copy()));
+        return null;
+    }
+
+    private Plan getPlan() {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            BCLog.logger.warn("[builders.quarry] Failed to plan the next blocks to mine!", e);
+            return null;
+        }
+    }
+
+    private static boolean wasChanged(BlockPos target, List<BlockPos> changes) {
+        for (BlockPos change : changes) {
+            if (affects(change, target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** A target stays valid as long as nothing at it or above it changes. */
+    private static boolean affects(BlockPos change, BlockPos target) {
+        return change.getX() == target.getX() && change.getZ() == target.getZ() && change.getY() >= target.getY();
+    }
+
+    /** Called whenever a block inside the mining box changes. */
+    public void onBlockChanged(BlockPos pos, IBlockState state) {
+        Section section = sections.get(sectionKey(pos.getX(), pos.getY(), pos.getZ()));
+        if (section != null) {
+            if (section.shared) {
+                section.data = section.data.clone();
+                section.shared = false;
+            }
+            section.data[sectionIndex(pos.getX(), pos.getY(), pos.getZ())] = classify(state, pos);
+        }
+        queue.removeIf(target -> affects(pos, target.getCurrent()));
+        if (pending != null) {
+            changedWhilePlanning.add(pos);
+        }
+        // The section that we stopped at might have changed
+        resumeFrom = null;
+    }
+
+    private enum CaptureResult {
+        DONE,
+        IN_PROGRESS,
+        NOT_LOADED
+    }
+
+    /** Captures the sections that a plan starting at the given y will need: all of them from that height up to the top
+     * of the mining box. */
+    private CaptureResult captureSections(int fromY) {
+        int captured = 0;
+        for (int sy = Math.max(min.getY(), fromY) >> 4; sy <= max.getY() >> 4; sy++) {
+            for (int cx = min.getX() >> 4; cx <= max.getX() >> 4; cx++) {
+                for (int cz = min.getZ() >> 4; cz <= max.getZ() >> 4; cz++) {
+                    long key = sectionKey(cx << 4, sy << 4, cz << 4);
+                    if (sections.containsKey(key)) {
+                        continue;
+                    }
+                    if (captured >= SECTIONS_PER_TICK) {
+                        return CaptureResult.IN_PROGRESS;
+                    }
+                    Chunk chunk = world.getChunkProvider().getLoadedChunk(cx, cz);
+                    if (chunk == null) {
+                        return CaptureResult.NOT_LOADED;
+                    }
+                    sections.put(key, new Section(captureSection(chunk, sy)));
+                    captured++;
+                }
+            }
+        }
+        return CaptureResult.DONE;
+    }
+
+    private byte[] captureSection(Chunk chunk, int sy) {
+        byte[] data = new byte[16 * 16 * 16];
+        ExtendedBlockStorage storage = sy >= 0 && sy < 16 ? chunk.getBlockStorageArray()[sy] : null;
+        if (storage == Chunk.NULL_BLOCK_STORAGE || storage.isEmpty()) {
+            // All air, which is PASSABLE
+            return data;
+        }
+        MutableBlockPos pos = new MutableBlockPos();
+        int baseX = chunk.x << 4;
+        int baseY = sy << 4;
+        int baseZ = chunk.z << 4;
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    IBlockState state = storage.get(x, y, z);
+                    data[(y << 8) | (z << 4) | x] = classify(state, pos.setPos(baseX + x, baseY + y, baseZ + z));
+                }
+            }
+        }
+        return data;
+    }
+
+    /** Works out what the quarry can do with the block at the given position. Only fluids are cached per state, as
+     * any other block can be air or unbreakable in some places but not in others. */
+    private byte classify(IBlockState state, BlockPos pos) {
+        Byte cached = stateClasses.get(state);
+        if (cached == null) {
+            cached = classifyState(state);
+            stateClasses.put(state, cached);
+        }
+        if (cached != AT_POSITION) {
+            return cached;
+        }
+        if (state.getBlock().isAir(state, world, pos)) {
+            return PASSABLE;
+        }
+        return state.getBlockHardness(world, pos) < 0 ? BLOCKED : MINEABLE;
+    }
+
+    /** @return The classification of every block with the given state, or {@link #AT_POSITION} if that depends on
+     *         where the block is. */
+    private static byte classifyState(IBlockState state) {
+        Fluid fluid = BlockUtil.getFluidWithFlowing(state.getBlock());
+        if (fluid == null) {
+            return AT_POSITION;
+        }
+        return fluid.getViscosity() <= 1000 ? PASSABLE : BLOCKED;
+    }
+
+    static long sectionKey(int x, int y, int z) {
+        return ((long) (x >> 4) << 36) | (((long) (z >> 4) & 0xFFFF_FFFFL) << 4) | ((y >> 4) & 15);
+    }
+
+    static int sectionIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    public void getDebugInfo(List<String> left) {
+        left.add("planner = " + queue.size() + " queued, " + sections.size() + " sections"
+            + (pending != null ? ", planning" : ""));
+    }
+
+    /** Walks through the mining box with the captured sections. Nothing in here touches the world. */
+    static final class PlanTask implements Callable<Plan> {
+        private static final int TOP_UNKNOWN = Integer.MIN_VALUE;
+        private static final int TOP_MISSING = Integer.MIN_VALUE + 1;
+
+        private final Map<Long, byte[]> sections;
+        private final BlockPos min, max;
+        private final BoxIterator iterator;
+        /** The highest block in each column that isn't {@link #PASSABLE}, as only that one can be reached by the
+         * drill. */
+        private final int[] columnTops;
+        private final int sizeX;
+
+        private long lastKey = Long.MIN_VALUE;
+        private byte[] lastSection;
+
+        PlanTask(Map<Long, byte[]> sections, BlockPos min, BlockPos max, BoxIterator iterator) {
+            this.sections = sections;
+            this.min = min;
+            this.max = max;
+            this.iterator = iterator;
+            this.sizeX = max.getX() - min.getX() + 1;
+            this.columnTops = new int[sizeX * (max.getZ() - min.getZ() + 1)];
+            Arrays.fill(columnTops, TOP_UNKNOWN);
+        }
+
+        @Override
+        public Plan call() {
+            List<BoxIterator> targets = new ArrayList<>();
+            int layer = 0;
+            while (iterator.hasNext()) {
+                BlockPos pos = iterator.getCurrent();
+                if (!targets.isEmpty() && pos.getY() != layer) {
+                    // Mining a block uncovers the one below it, which the next plan will pick up
+                    break;
+                }
+                byte[] section = getSection(pos.getX(), pos.getY(), pos.getZ());
+                if (section == null) {
+                    return new Plan(targets, iterator, true);
+                }
+                if (section[sectionIndex(pos.getX(), pos.getY(), pos.getZ())] == MINEABLE) {
+                    int top = getColumnTop(pos.getX(), pos.getY(), pos.getZ());
+                    if (top == TOP_MISSING) {
+                        return new Plan(targets, iterator, true);
+                    }
+                    if (top == pos.getY()) {
+                        targets.add(iterator.copy());
+                        layer = pos.getY();
+                        if (targets.size() >= MAX_TARGETS) {
+                            iterator.advance();
+                            break;
+                        }
+                    }
+                }
+                iterator.advance();
+            }
+            return new Plan(targets, iterator, false);
+        }
+
+        private byte[] getSection(int x, int y, int z) {
+            long key = sectionKey(x, y, z);
+            if (key != lastKey) {
+                lastKey = key;
+                lastSection = sections.get(key);
+            }
+            return lastSection;
+        }
+
+        /** @param y A block in the column that isn't {@link #PASSABLE}, so the search never needs to go below it. */
+        private int getColumnTop(int x, int y, int z) {
+            int index = (z - min.getZ()) * sizeX + (x - min.getX());
+            int top = columnTops[index];
+            if (top != TOP_UNKNOWN) {
+                return top;
+            }
+            for (top = max.getY(); top > y; top--) {
+                byte[] section = getSection(x, top, z);
+                if (section == null) {
+                    return TOP_MISSING;
+                }
+                if (section[sectionIndex(x, top, z)] != PASSABLE) {
+                    break;
+                }
+            }
+            columnTops[index] = top;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.builders.tile;
+
+import net.minecraft.util.math.Vec3d;
+
+import buildcraft.builders.BCBuildersConfig;
+
+/** The progress of a {@link TileQuarry} task, as a client sees it. The server only sends the power, rate and target of
+ * the current task when it changes, when the client's guess is too far out, or every
+ * {@link BCBuildersConfig#quarryMaxSyncInterval} ticks. In between clients assume that power keeps arriving at the
+ * same rate.
+ * <p>
+ * The server uses {@link #predict(long, long, long, long)} to work out what clients will have guessed, so that it knows
+ * when to send the progress again. None of this needs a world, so it can be tested without a quarry. */
+public final class TaskProgress {
+    private long power, rate, target;
+    /** The (extrapolated) power at the end of the last two client ticks, for interpolating between them while
+     * rendering. */
+    public long clientPower, prevClientPower;
+
+    /** Called whenever the server sends the progress of the task. */
+    public void receive(long power, long rate, long target) {
+        this.power = power;
+        this.rate = rate;
+        this.target = target;
+    }
+
+    /** Called whenever the server sends the progress of the task, but keeps {@link #clientPower} and
+     * {@link #prevClientPower} so that rendering stays smooth. */
+    public void receive(TaskProgress from) {
+        receive(from.power, from.rate, from.target);
+    }
+
+    /** Called once per client tick. */
+    public void tick() {
+        prevClientPower = clientPower;
+        clientPower = power;
+        power = predict(power, rate, target, 1);
+    }
+
+    /** @return The power that the next {@link #tick()} will move to. */
+    public long getPower() {
+        return power;
+    }
+
+    public long getTarget() {
+        return target;
+    }
+
+    /** @return How far through the task {@link #clientPower} is, between 0 and 1. */
+    public double getClientFraction() {
+        if (target <= 0) {
+            return 0;
+        }
+        return Math.min(1, clientPower / (double) target);
+    }
+
+    /** @return The position between the two given positions that is as far along as {@link #clientPower}. */
+    public Vec3d getClientPos(Vec3d from, Vec3d to) {
+        double fraction = getClientFraction();
+        return from.scale(1 - fraction).add(to.scale(fraction));
+    }
+
+    /** @return The power that a client will have extrapolated to the given number of ticks after it was sent the given
+     *         progress. */
+    public static long predict(long power, long rate, long target, long ticks) {
+        if (power >= target) {
+            return power;
+        }
+        return Math.min(power + rate * ticks, target);
+    }
+
+    /** @return True if the difference between the real power of a task and the power that clients have predicted is
+     *         large enough to be seen. Anything less than 1/64th of the target won't be visible. */
+    public static boolean isOutOfSync(long power, long predicted, long target) {
+        return Math.abs(power - predicted) > target / 64;
+    }
+}
@@ -273,11 +273,11 @@ public class TileArchitectTable extends TileBC_Neptune implements ITickable, IDe
         snapshot.facing = facing;
         snapshot.offset = box.min().subtract(pos.offset(facing.getOpposite()));
         if (snapshot instanceof Template) {
-            ((Template) snapshot).data = templateScannedBlocks;
+            ((Template) snapshot).setData(templateScannedBlocks);
         }
         if (snapshot instanceof Blueprint) {
             ((Blueprint) snapshot).palette.addAll(blueprintScannedPalette);
-            ((Blueprint) snapshot).data = blueprintScannedData;
+            ((Blueprint) snapshot).setData(blueprintScannedData);
             ((Blueprint) snapshot).entities.addAll(blueprintScannedEntities);
         }
         snapshot.computeKey();
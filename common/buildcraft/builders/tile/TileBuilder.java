@@ -431,6 +431,7 @@ public class TileBuilder extends TileBC_Neptune
         left.add("basePoses = " + (basePoses == null ? "null" : basePoses.size()));
         left.add("currentBasePosIndex = " + currentBasePosIndex);
         left.add("isDone = " + isDone);
+        left.add("planning = " + (getBuilder() != null && getBuilder().isPlanning()));
     }
 
     @Override
@@ -277,16 +277,16 @@ public class TileFiller extends TileBC_Neptune
                 markerBox = buffer.readBoolean();
                 if (buffer.readBoolean()) {
                     UUID volumeBoxId = buffer.readUniqueId();
+                    // Volume boxes are only sent to nearby players, so the client might not have this one yet
                     VolumeBox volumeBox = world.isRemote
                         ?
                         ClientVolumeBoxes.INSTANCE.volumeBoxes.stream()
                             .filter(localVolumeBox -> localVolumeBox.id.equals(volumeBoxId))
                             .findFirst()
-                            .orElseThrow(NullPointerException::new)
+                            .orElse(null)
                         : WorldSavedDataVolumeBoxes.get(world).getVolumeBoxFromId(volumeBoxId);
-                    addon = (AddonFillerPlanner) volumeBox
-                        .addons
-                        .get(buffer.readEnumValue(EnumAddonSlot.class));
+                    EnumAddonSlot slot = buffer.readEnumValue(EnumAddonSlot.class);
+                    addon = volumeBox == null ? null : (AddonFillerPlanner) volumeBox.addons.get(slot);
                 }
             } else if (id == NET_CAN_EXCAVATE) {
                 canExcavate = buffer.readBoolean();
@@ -404,6 +404,7 @@ public class TileFiller extends TileBC_Neptune
         left.add("mode = " + mode);
         left.add("is_finished = " + finished);
         left.add("lockedTicks = " + lockedTicks);
+        left.add("planning = " + (builder != null && builder.isPlanning()));
         left.add("addon = " + addon);
     }
 
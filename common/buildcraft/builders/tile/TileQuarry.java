@@ -75,16 +75,20 @@ import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.misc.PositionUtil;
 import buildcraft.lib.misc.VecUtil;
+import buildcraft.lib.misc.data.AverageInt;
 import buildcraft.lib.misc.data.AxisOrder;
 import buildcraft.lib.misc.data.Box;
 import buildcraft.lib.misc.data.BoxIterator;
 import buildcraft.lib.misc.data.EnumAxisOrder;
+import buildcraft.lib.misc.data.IdAllocator;
 import buildcraft.lib.mj.MjBatteryReceiver;
+import buildcraft.lib.net.MessageUpdateTile;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.TileBC_Neptune;
 import buildcraft.lib.world.WorldEventListenerAdapter;
 
 import buildcraft.builders.BCBuildersBlocks;
+import buildcraft.builders.BCBuildersConfig;
 import buildcraft.builders.BCBuildersEventDist;
 import buildcraft.core.marker.VolumeCache;
 import buildcraft.core.marker.VolumeConnection;
@@ -92,6 +96,10 @@ import buildcraft.core.marker.VolumeSubCache;
 import buildcraft.core.tile.TileMarkerVolume;
 
 public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable, IChunkLoadingTile {
+    public static final IdAllocator IDS = TileBC_Neptune.IDS.makeChild("quarry");
+    /** Sent instead of {@link #NET_RENDER_DATA} when only the progress of the current task has changed. */
+    public static final int NET_TASK_PROGRESS = IDS.allocId("TASK_PROGRESS");
+
     private static final long MAX_POWER_PER_TICK = 64 * MjAPI.MJ;
     private static final ResourceLocation ADVANCEMENT_COMPLETE =
         new ResourceLocation("buildcraftbuilders:diggy_diggy_hole");
@@ -100,6 +108,7 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
     public final Box frameBox = new Box();
     private final Box miningBox = new Box();
     private BoxIterator boxIterator;
+    private QuarryMiningPlanner miningPlanner;
     public final List<BlockPos> framePoses = new ArrayList<>();
     private int frameBoxPosesCount = 0;
     private final LinkedList<BlockPos> toCheck = new LinkedList<>();
@@ -113,6 +122,11 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
     public Vec3d clientDrillPos;
     public Vec3d prevClientDrillPos;
     private long debugPowerRate = 0;
+    /** The world time, power, rate and target of the current task when it was last sent to clients. Clients extrapolate
+     * from these, so the server uses them to work out when the clients have drifted too far. */
+    private long syncTick, syncPower, syncRate, syncTarget;
+    private final AverageInt debugSyncPackets = new AverageInt(20);
+    private final AverageInt debugSyncBytes = new AverageInt(20);
     private List<AxisAlignedBB> collisionboxes = null;
     private final IWorldEventListener worldEventListener = new WorldEventListenerAdapter() {
         @Override
@@ -122,9 +136,16 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
                 if (frameBox.contains(pos)) {
                     check(pos);
                 } else if (miningBox.contains(pos)) {
+                    if (miningPlanner != null) {
+                        miningPlanner.onBlockChanged(pos, newState);
+                    }
                     if (boxIterator != null
                         && (boxIterator.getCurrent() == null || pos.getY() >= boxIterator.getCurrent().getY())
                         && !canMoveThrough(pos) && canMoveTo(pos)) {
+                        // A new block to mine that might be in between the ones that have already been planned
+                        if (miningPlanner != null) {
+                            miningPlanner.clear();
+                        }
                         BoxIterator tempBoxIterator = createBoxIterator();
                         while (!Objects.equals(tempBoxIterator.getCurrent(), pos)) {
                             if (tempBoxIterator.advance() == null) {
@@ -147,6 +168,11 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             EnumPipePart.VALUES);
     }
 
+    @Override
+    public IdAllocator getIdAllocator() {
+        return IDS;
+    }
+
     @Nonnull
     private BoxIterator createBoxIterator() {
         return new BoxIterator(miningBox, AxisOrder.getFor(EnumAxisOrder.XZY, AxisOrder.Inversion.NNN), true);
@@ -286,6 +312,17 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         return fluid != null && fluid.getViscosity() <= 1000;
     }
 
+    private boolean isMiningTarget(BlockPos blockPos) {
+        return !canMoveThrough(blockPos) && canMine(blockPos) && canMoveTo(blockPos);
+    }
+
+    private QuarryMiningPlanner getMiningPlanner() {
+        if (miningPlanner == null || !miningPlanner.isFor(miningBox.min(), miningBox.max())) {
+            miningPlanner = new QuarryMiningPlanner(world, miningBox.min(), miningBox.max());
+        }
+        return miningPlanner;
+    }
+
     private boolean canMoveTo(BlockPos blockPos) {
         for (int y = miningBox.max().getY(); y > blockPos.getY(); y--) {
             if (!canMoveThrough(VecUtil.replaceValue(blockPos, Axis.Y, y))) {
@@ -371,6 +408,7 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
     }
 
     private void updatePoses() {
+        miningPlanner = null;
         framePoses.clear();
         frameBoxPosesCount = 0;
         toCheck.clear();
@@ -391,14 +429,17 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
     @Override
     public void update() {
         if (world.isRemote) {
-            prevClientDrillPos = clientDrillPos;
-            clientDrillPos = drillPos;
             if (currentTask != null) {
                 currentTask.clientTick();
             }
+            prevClientDrillPos = clientDrillPos;
+            clientDrillPos = drillPos;
             return;
         }
 
+        debugSyncPackets.tick();
+        debugSyncBytes.tick();
+
         if (!frameBox.isInitialized() || !miningBox.isInitialized()) {
             return;
         }
@@ -420,8 +461,10 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             long power = battery.extractPower(0, max);
             if (currentTask.addPower(power)) {
                 currentTask = null;
+                sendRenderUpdate();
+            } else {
+                syncTaskProgress();
             }
-            sendNetworkUpdate(NET_RENDER_DATA);
             return;
         }
 
@@ -434,7 +477,7 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             if (canMine(blockPos)) {
                 drillPos = null;
                 currentTask = new TaskBreakBlock(blockPos);
-                sendNetworkUpdate(NET_RENDER_DATA);
+                sendRenderUpdate();
             }
             check(blockPos);
             return;
@@ -451,25 +494,29 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
                 }
                 drillPos = null;
                 currentTask = new TaskAddFrame(blockPos);
-                sendNetworkUpdate(NET_RENDER_DATA);
+                sendRenderUpdate();
                 return;
             }
         }
 
         if (boxIterator == null || drillPos == null) {
             boxIterator = createBoxIterator();
-            while (canMoveThrough(boxIterator.getCurrent()) || !canMine(boxIterator.getCurrent())
-                || !canMoveTo(boxIterator.getCurrent())) {
-                if (boxIterator.advance() == null) {
-                    break;
-                }
-            }
+            getMiningPlanner().clear();
             drillPos = new Vec3d(miningBox.closestInsideTo(pos));
         }
 
-        if (boxIterator != null && boxIterator.hasNext()) {
-            while (canMoveThrough(boxIterator.getCurrent()) || !canMine(boxIterator.getCurrent())
-                || !canMoveTo(boxIterator.getCurrent())) {
+        if (boxIterator.hasNext() && !isMiningTarget(boxIterator.getCurrent())) {
+            BoxIterator planned = getMiningPlanner().nextTarget(boxIterator);
+            if (planned == null) {
+                // Still looking for the next block to mine
+                return;
+            }
+            boxIterator = planned;
+        }
+
+        if (boxIterator.hasNext()) {
+            // The planner only looked at a copy of the world, so this makes sure that it's still right
+            while (!isMiningTarget(boxIterator.getCurrent())) {
                 if (boxIterator.advance() == null) {
                     break;
                 }
@@ -487,7 +534,7 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
                 }
 
                 if (found) {
-                    sendNetworkUpdate(NET_RENDER_DATA);
+                    sendRenderUpdate();
                 } else {
                     AxisAlignedBB box = miningBox.getBoundingBox();
                     if (box.maxX - box.minX == 63 && box.maxZ - box.minZ == 63) {
@@ -498,6 +545,44 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         }
     }
 
+    /** Sends everything to clients. Used whenever the current task changes. */
+    private void sendRenderUpdate() {
+        if (currentTask != null && currentTask.power == 0) {
+            // Assume that a new task will get power at the same rate as the previous one did
+            currentTask.rate = debugPowerRate;
+        }
+        sendSyncMessage(NET_RENDER_DATA);
+    }
+
+    /** Sends the progress of the current task if the client's extrapolation of it is likely to be too far from the real
+     * progress, or if it hasn't been sent for {@link BCBuildersConfig#quarryMaxSyncInterval} ticks. */
+    private void syncTaskProgress() {
+        long ticks = world.getTotalWorldTime() - syncTick;
+        if (ticks >= BCBuildersConfig.quarryMaxSyncInterval) {
+            sendSyncMessage(NET_TASK_PROGRESS);
+            return;
+        }
+        long predicted = TaskProgress.predict(syncPower, syncRate, syncTarget, ticks);
+        if (TaskProgress.isOutOfSync(currentTask.power, predicted, syncTarget)) {
+            sendSyncMessage(NET_TASK_PROGRESS);
+        }
+    }
+
+    private void sendSyncMessage(int id) {
+        if (currentTask != null) {
+            syncTick = world.getTotalWorldTime();
+            syncPower = currentTask.power;
+            syncRate = currentTask.rate;
+            syncTarget = currentTask.getTarget();
+        }
+        MessageUpdateTile message = createNetworkUpdate(id);
+        if (message != null) {
+            debugSyncPackets.push(1);
+            debugSyncBytes.push(message.getPayloadSize());
+            sendNetworkUpdate(id, message);
+        }
+    }
+
     @Override
     public NBTTagCompound writeToNBT(NBTTagCompound nbt) {
         super.writeToNBT(nbt);
@@ -553,9 +638,12 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
                     buffer.writeByte(
                         (byte) Arrays.stream(EnumTaskType.values()).filter(type -> type.clazz == currentTask.getClass())
                             .findFirst().orElseThrow(IllegalStateException::new).ordinal());
-                    for (int i = 0; i < 2; i++) {
-                        currentTask.toBytes(buffer);
-                    }
+                    currentTask.toBytes(buffer);
+                }
+            } else if (id == NET_TASK_PROGRESS) {
+                buffer.writeBoolean(currentTask != null);
+                if (currentTask != null) {
+                    currentTask.writeProgress(buffer);
                 }
             }
         }
@@ -579,14 +667,22 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
                     task.fromBytes(buffer);
                     if (currentTask == null || !currentTask.equals(task)) {
                         currentTask = task;
-                        Task tempTask = EnumTaskType.values()[taskId].supplier.apply(this);
-                        tempTask.fromBytes(buffer);
                     } else {
-                        currentTask.fromBytes(buffer);
+                        // Keep the old task so that the client power can still be interpolated
+                        currentTask.clientProgress.receive(task.clientProgress);
                     }
                 } else {
                     currentTask = null;
                 }
+            } else if (id == NET_TASK_PROGRESS) {
+                if (buffer.readBoolean()) {
+                    Task task = currentTask;
+                    if (task == null) {
+                        // We don't know what task this is for, but the data still needs reading
+                        task = new TaskAddFrame();
+                    }
+                    task.readProgress(buffer);
+                }
             }
         }
     }
@@ -621,6 +717,8 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
     public void getDebugInfo(List<String> left, List<String> right, EnumFacing side) {
         left.add("battery = " + battery.getDebugString());
         left.add("rate = " + LocaleUtil.localizeMjFlow(debugPowerRate));
+        left.add("sync = " + Math.round(debugSyncPackets.getAverage() * 20) + " packets/s, "
+            + Math.round(debugSyncBytes.getAverage() * 20) + " bytes/s");
         left.add("frameBox");
         left.add(" - min = " + frameBox.min());
         left.add(" - max = " + frameBox.max());
@@ -630,6 +728,10 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
 
         BoxIterator iter = boxIterator;
         left.add("current = " + (iter == null ? "null" : iter.getCurrent()));
+        QuarryMiningPlanner planner = miningPlanner;
+        if (planner != null) {
+            planner.getDebugInfo(left);
+        }
 
         Task task = currentTask;
         if (task != null) {
@@ -671,8 +773,10 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
 
     private abstract class Task {
         protected long power;
-        public long clientPower;
-        public long prevClientPower;
+        /** The power that was added last tick. Sent to the client so that it can extrapolate {@link #power}. */
+        protected long rate;
+        /** The progress that the server last sent. Only used on the client. */
+        public final TaskProgress clientProgress = new TaskProgress();
 
         public NBTTagCompound serializeNBT() {
             NBTTagCompound nbt = new NBTTagCompound();
@@ -685,16 +789,27 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         }
 
         public void toBytes(PacketBufferBC buffer) {
-            buffer.writeLong(power);
+            writeProgress(buffer);
         }
 
         public void fromBytes(PacketBufferBC buffer) {
-            power = buffer.readLong();
+            readProgress(buffer);
+        }
+
+        public void writeProgress(PacketBufferBC buffer) {
+            buffer.writeVarLong(power);
+            buffer.writeVarLong(rate);
+            buffer.writeVarLong(getTarget());
+        }
+
+        public void readProgress(PacketBufferBC buffer) {
+            long power = buffer.readVarLong();
+            long rate = buffer.readVarLong();
+            clientProgress.receive(power, rate, buffer.readVarLong());
         }
 
         public void clientTick() {
-            prevClientPower = clientPower;
-            clientPower = power;
+            clientProgress.tick();
         }
 
         public abstract long getTarget();
@@ -711,6 +826,7 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
         /** @return {@code true} if this task has been completed, or cancelled. */
         public final boolean addPower(long microJoules) {
             power += microJoules;
+            rate = microJoules;
             if (power >= getTarget()) {
                 if (!finish()) {
                     battery.addPower(Math.min(power, battery.getCapacity() - battery.getStored()), false);
@@ -930,6 +1046,14 @@ public class TileQuarry extends TileBC_Neptune implements ITickable, IDebuggable
             return (long) (from.distanceTo(to) * 20 * MjAPI.MJ);
         }
 
+        @Override
+        public void clientTick() {
+            super.clientTick();
+            if (clientProgress.getTarget() > 0) {
+                drillPos = clientProgress.getClientPos(from, to);
+            }
+        }
+
         @Override
         protected boolean onReceivePower() {
             // Vec3d oldDrillPos = drillPos;
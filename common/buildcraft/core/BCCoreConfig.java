@@ -26,6 +26,7 @@ import buildcraft.lib.BCLibConfig;
 import buildcraft.lib.BCLibConfig.TimeGap;
 import buildcraft.lib.config.EnumRestartRequirement;
 import buildcraft.lib.config.FileConfigManager;
+import buildcraft.lib.expression.NodeBytecodeCompiler;
 import buildcraft.lib.misc.ConfigUtil;
 import buildcraft.lib.registry.RegistryConfig;
 
@@ -59,6 +60,8 @@ public class BCCoreConfig {
     private static Property propItemLifespan;
     private static Property propMarkerMaxDistance;
     private static Property propNetworkUpdateRate;
+    private static Property propCompileExpressions;
+    private static Property propBatchTileUpdates;
 
     public static void preInit(File cfgFolder) {
         config = new Configuration(new File(cfgFolder, "main.cfg"));
@@ -150,6 +153,16 @@ public class BCCoreConfig {
             "How often, in ticks, should network update packets be sent? Increasing this might help network performance.");
         none.setTo(propNetworkUpdateRate);
 
+        propCompileExpressions = config.get(general, "compileExpressions", false);
+        propCompileExpressions.setComment(
+            "Should the expressions used by animated models and guis be compiled to bytecode when they are loaded? This makes them faster to render, but slower to load.");
+        none.setTo(propCompileExpressions);
+
+        propBatchTileUpdates = config.get(general, "batchTileUpdates", true);
+        propBatchTileUpdates.setComment(
+            "Should the updates that machines send to each player be collected up and sent as one compressed packet at the end of every tick?");
+        none.setTo(propBatchTileUpdates);
+
         reloadConfig(game);
         addReloadListener(BCCoreConfig::reloadConfig);
 
@@ -197,6 +210,8 @@ public class BCCoreConfig {
         markerMaxDistance = propMarkerMaxDistance.getInt();
         BCLibConfig.colourBlindMode = propColourBlindMode.getBoolean();
         BCLibConfig.displayTimeGap = ConfigUtil.parseEnumForConfig(propDisplayTimeGap.getString(), TimeGap.values(), TimeGap.TICKS);
+        NodeBytecodeCompiler.enabled = propCompileExpressions.getBoolean();
+        BCLibConfig.batchTileUpdates = propBatchTileUpdates.getBoolean();
 
         if (EnumRestartRequirement.GAME.hasBeenRestarted(restarted)) {
             worldGen = propWorldGen.getBoolean();
@@ -8,14 +8,11 @@ package buildcraft.core;
 
 import net.minecraft.entity.player.EntityPlayerMP;
 
+import net.minecraftforge.event.world.ChunkWatchEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.PlayerEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 
-import buildcraft.lib.misc.MessageUtil;
-import buildcraft.lib.net.MessageManager;
-
-import buildcraft.core.marker.volume.MessageVolumeBoxes;
 import buildcraft.core.marker.volume.VolumeBox;
 import buildcraft.core.marker.volume.WorldSavedDataVolumeBoxes;
 
@@ -32,16 +29,24 @@ public enum BCCoreEventDist {
     @SubscribeEvent
     public void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
         if (event.player instanceof EntityPlayerMP) {
-            // Delay sending join messages to player as it makes it work when in single-player
-            MessageUtil.doDelayed(() ->
-                MessageManager.sendTo(
-                    new MessageVolumeBoxes(WorldSavedDataVolumeBoxes.get(event.player.world).volumeBoxes),
-                    (EntityPlayerMP) event.player
-                )
-            );
-            WorldSavedDataVolumeBoxes.get(((EntityPlayerMP) event.player).world).volumeBoxes.stream()
-                .filter(volumeBox -> volumeBox.isPausedEditingBy(event.player))
-                .forEach(VolumeBox::resumeEditing);
+            // The boxes themselves are sent in the next tick
+            WorldSavedDataVolumeBoxes volumeBoxes = WorldSavedDataVolumeBoxes.get(event.player.world);
+            boolean resumed = false;
+            for (VolumeBox volumeBox : volumeBoxes.volumeBoxes) {
+                if (volumeBox.isPausedEditingBy(event.player)) {
+                    volumeBox.resumeEditing();
+                    resumed = true;
+                }
+            }
+            if (resumed) {
+                volumeBoxes.markDirty();
+            }
         }
     }
+
+    @SubscribeEvent
+    public void onChunkWatch(ChunkWatchEvent.Watch event) {
+        EntityPlayerMP player = event.getPlayer();
+        WorldSavedDataVolumeBoxes.get(player.world).changedPlayers.add(player);
+    }
 }
@@ -47,6 +47,9 @@ import buildcraft.lib.misc.MatrixUtil;
 import buildcraft.lib.misc.StackUtil;
 import buildcraft.lib.misc.VecUtil;
 import buildcraft.lib.misc.data.Box;
+import buildcraft.lib.net.MessageManager;
+import buildcraft.lib.net.TileUpdateBatcher;
+import buildcraft.lib.net.cache.BuildCraftObjectCaches;
 
 import buildcraft.core.BCCoreItems;
 import buildcraft.core.item.ItemMapLocation;
@@ -89,6 +92,13 @@ public class RenderTickListener {
     @SubscribeEvent
     public static void renderOverlay(RenderGameOverlayEvent.Text event) {
         Minecraft mc = Minecraft.getMinecraft();
+        if (mc.gameSettings.showDebugInfo) {
+            BuildCraftObjectCaches.addDebugInfo(event.getRight());
+            if (MessageManager.DEBUG) {
+                event.getRight().add("");
+                TileUpdateBatcher.getDebugInfo(event.getRight());
+            }
+        }
         IDebuggable debuggable = ClientDebuggables.getDebuggableObject(mc.objectMouseOver);
         if (debuggable != null) {
             List<String> clientLeft = new ArrayList<>();
@@ -8,52 +8,69 @@ package buildcraft.core.marker.volume;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.UUID;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 
-import org.apache.commons.lang3.tuple.Pair;
-
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 
 import buildcraft.lib.BCLibProxy;
 import buildcraft.lib.net.PacketBufferBC;
 
+/** Sends the changes to the {@link VolumeBox}'s that a player can see. */
 public class MessageVolumeBoxes implements IMessage {
+    /** If true then the client should remove every box that isn't in {@link #buffers}, as this is the first message
+     * from the world that the player is now in. */
+    private boolean clear;
+    private final List<UUID> removed;
     private final List<PacketBufferBC> buffers;
 
     @SuppressWarnings("unused")
     public MessageVolumeBoxes() {
+        removed = new ArrayList<>();
         buffers = new ArrayList<>();
     }
 
-    public MessageVolumeBoxes(List<VolumeBox> volumeBoxes) {
-        this.buffers = volumeBoxes.stream()
-            .map(volumeBox -> {
-                PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer());
-                volumeBox.toBytes(buffer);
-                return buffer;
-            })
-            .collect(Collectors.toList());
+    /** @param volumeBoxes The data written by {@link VolumeBox#toBytes(PacketBufferBC)} of every box that has been
+     *            added or changed. */
+    public MessageVolumeBoxes(boolean clear, List<UUID> removed, List<byte[]> volumeBoxes) {
+        this.clear = clear;
+        this.removed = removed;
+        this.buffers = new ArrayList<>(volumeBoxes.size());
+        for (byte[] data : volumeBoxes) {
+            buffers.add(new PacketBufferBC(Unpooled.wrappedBuffer(data)));
+        }
     }
 
     @Override
     public void toBytes(ByteBuf buffer) {
         PacketBufferBC buf = PacketBufferBC.asPacketBufferBc(buffer);
+        buf.writeBoolean(clear);
+        buf.writeVarInt(removed.size());
+        for (UUID id : removed) {
+            buf.writeUniqueId(id);
+        }
         buf.writeInt(buffers.size());
         for (PacketBufferBC localBuffer : buffers) {
             buf.writeVarInt(localBuffer.readableBytes());
-            buf.writeBytes(localBuffer, 0, localBuffer.readableBytes());
+            buf.writeBytes(localBuffer, localBuffer.readerIndex(), localBuffer.readableBytes());
         }
     }
 
     @Override
     public void fromBytes(ByteBuf buffer) {
         PacketBufferBC buf = PacketBufferBC.asPacketBufferBc(buffer);
+        clear = buf.readBoolean();
+        removed.clear();
+        int removedCount = buf.readVarInt();
+        for (int i = 0; i < removedCount; i++) {
+            removed.add(buf.readUniqueId());
+        }
         buffers.clear();
         int count = buf.readInt();
         for (int i = 0; i < count; i++) {
@@ -64,41 +81,40 @@ public class MessageVolumeBoxes implements IMessage {
     }
 
     public static final IMessageHandler<MessageVolumeBoxes, IMessage> HANDLER = (message, ctx) -> {
-        Map<PacketBufferBC, VolumeBox> volumeBoxes = message.buffers.stream()
-            .map(buffer -> {
-                VolumeBox volumeBox;
-                try {
-                    volumeBox = new VolumeBox(BCLibProxy.getProxy().getClientWorld(), buffer);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-                PacketBufferBC buf = new PacketBufferBC(Unpooled.buffer());
-                volumeBox.toBytes(buf);
-                return Pair.of(buf, volumeBox);
-            })
-            .collect(Collectors.toMap(Pair::getLeft, Pair::getRight));
+        List<VolumeBox> clientVolumeBoxes = ClientVolumeBoxes.INSTANCE.volumeBoxes;
+        Set<UUID> sent = new HashSet<>();
+        for (PacketBufferBC buffer : message.buffers) {
+            // VolumeBox.toBytes writes the id first
+            sent.add(buffer.readUniqueId());
+            buffer.readerIndex(0);
+        }
+        clientVolumeBoxes.removeIf(volumeBox ->
+            message.removed.contains(volumeBox.id) || (message.clear && !sent.contains(volumeBox.id))
+        );
 
-        ClientVolumeBoxes.INSTANCE.volumeBoxes.removeIf(volumeBox -> !volumeBoxes.values().contains(volumeBox));
-        for (Map.Entry<PacketBufferBC, VolumeBox> entry : volumeBoxes.entrySet()) {
-            boolean wasContained = false;
-            for (VolumeBox clientVolumeBox : ClientVolumeBoxes.INSTANCE.volumeBoxes) {
-                if (clientVolumeBox.equals(entry.getValue())) {
-                    try {
-                        clientVolumeBox.fromBytes(entry.getKey());
-                    } catch (IOException io) {
-                        throw new RuntimeException(io);
+        for (PacketBufferBC buffer : message.buffers) {
+            try {
+                VolumeBox volumeBox = new VolumeBox(BCLibProxy.getProxy().getClientWorld(), buffer);
+                boolean wasContained = false;
+                for (VolumeBox clientVolumeBox : clientVolumeBoxes) {
+                    if (clientVolumeBox.equals(volumeBox)) {
+                        PacketBufferBC buf = new PacketBufferBC(Unpooled.buffer());
+                        volumeBox.toBytes(buf);
+                        clientVolumeBox.fromBytes(buf);
+                        wasContained = true;
+                        break;
                     }
-                    wasContained = true;
-                    break;
                 }
-            }
-            if (!wasContained) {
-                ClientVolumeBoxes.INSTANCE.volumeBoxes.add(entry.getValue());
-                for (Addon addon : entry.getValue().addons.values()) {
-                    if (addon != null) {
-                        addon.onAdded();
+                if (!wasContained) {
+                    clientVolumeBoxes.add(volumeBox);
+                    for (Addon addon : volumeBox.addons.values()) {
+                        if (addon != null) {
+                            addon.onAdded();
+                        }
                     }
                 }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
             }
         }
         return null;
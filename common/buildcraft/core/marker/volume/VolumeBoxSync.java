@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.core.marker.volume;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+import buildcraft.lib.net.PacketBufferBC;
+
+/** Works out which {@link VolumeBox}'s need to be sent to (or removed from) every player in a world. This keeps the
+ * last data sent for every box, so only boxes that have actually changed are sent again, and only to the players that
+ * are within range of them. None of this needs a world, so it can be tested without one.
+ *
+ * @param <P> The type of player. */
+public final class VolumeBoxSync<P> {
+    /** Sends the changes to the boxes that a single player can see, like {@link MessageVolumeBoxes}. */
+    public interface ISender<P> {
+        /** @param clear True if this is the first message that the player has been sent, so the client should forget
+         *            every box that isn't in volumeBoxes.
+         * @param volumeBoxes The data written by {@link VolumeBox#toBytes(PacketBufferBC)} of every box that has been
+         *            added or changed. */
+        void send(P player, boolean clear, List<UUID> removed, List<byte[]> volumeBoxes);
+    }
+
+    /** True if every box needs to be checked for changes, or false if only {@link #changedBoxes} do. */
+    private boolean allChanged = true;
+    private final Set<VolumeBox> changedBoxes = new HashSet<>();
+
+    /** The last data sent to clients for every box. */
+    private final Map<UUID, byte[]> sentData = new HashMap<>();
+
+    /** The ids of the boxes that every player has been sent. */
+    private final Map<P, Set<UUID>> playerBoxes = new WeakHashMap<>();
+
+    /** Called when any number of boxes have been added, removed or changed. */
+    public void markAllChanged() {
+        allChanged = true;
+    }
+
+    /** Called when only the given box has changed. */
+    public void markChanged(VolumeBox volumeBox) {
+        changedBoxes.add(volumeBox);
+    }
+
+    /** Sends every change since the last call to the players that need it.
+     *
+     * @param players Every player in the world. Players that aren't in this are forgotten about, so they will be sent
+     *            everything again (with clear set) if they come back.
+     * @param recheckPlayers Players that need every box checked, as they have moved to a different chunk.
+     * @param getChunk Gets the chunk that a player is currently in.
+     * @param viewDistance The distance (in chunks) that players can see boxes from. */
+    public void sendChanges(Collection<VolumeBox> volumeBoxes, Collection<P> players, Set<P> recheckPlayers,
+        Function<P, ChunkPos> getChunk, int viewDistance, ISender<P> sender) {
+        // Work out which boxes have actually changed since they were last sent
+        Set<VolumeBox> updated = new LinkedHashSet<>();
+        Set<UUID> removed = new HashSet<>();
+        if (allChanged) {
+            Set<UUID> ids = new HashSet<>();
+            for (VolumeBox volumeBox : volumeBoxes) {
+                ids.add(volumeBox.id);
+                if (updateSentData(volumeBox)) {
+                    updated.add(volumeBox);
+                }
+            }
+            sentData.keySet().removeIf(id -> !ids.contains(id) && removed.add(id));
+        } else {
+            for (VolumeBox volumeBox : changedBoxes) {
+                if (sentData.containsKey(volumeBox.id) && updateSentData(volumeBox)) {
+                    updated.add(volumeBox);
+                }
+            }
+        }
+        allChanged = false;
+        changedBoxes.clear();
+
+        playerBoxes.keySet().retainAll(players);
+        for (P player : players) {
+            Set<UUID> known = playerBoxes.get(player);
+            boolean first = known == null;
+            if (first) {
+                known = new HashSet<>();
+                playerBoxes.put(player, known);
+            }
+            boolean recheck = first || recheckPlayers.contains(player);
+            if (!recheck && updated.isEmpty() && removed.isEmpty()) {
+                continue;
+            }
+            ChunkPos chunk = getChunk.apply(player);
+            List<byte[]> toSend = new ArrayList<>();
+            List<UUID> toRemove = new ArrayList<>();
+            Collection<VolumeBox> toCheck = recheck ? volumeBoxes : updated;
+            for (VolumeBox volumeBox : toCheck) {
+                byte[] data = sentData.get(volumeBox.id);
+                if (data == null) {
+                    continue;
+                }
+                boolean wasKnown = known.contains(volumeBox.id);
+                if (isInRange(volumeBox, chunk, viewDistance)) {
+                    if (!wasKnown || updated.contains(volumeBox)) {
+                        toSend.add(data);
+                        known.add(volumeBox.id);
+                    }
+                } else if (wasKnown) {
+                    toRemove.add(volumeBox.id);
+                    known.remove(volumeBox.id);
+                }
+            }
+            for (UUID id : removed) {
+                if (known.remove(id)) {
+                    toRemove.add(id);
+                }
+            }
+            if (first || !toSend.isEmpty() || !toRemove.isEmpty()) {
+                sender.send(player, first, toRemove, toSend);
+            }
+        }
+    }
+
+    /** @return True if the data that would be sent to clients for the given box has changed. */
+    private boolean updateSentData(VolumeBox volumeBox) {
+        PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer());
+        volumeBox.toBytes(buffer);
+        byte[] data = new byte[buffer.readableBytes()];
+        buffer.readBytes(data);
+        return !Arrays.equals(sentData.put(volumeBox.id, data), data);
+    }
+
+    /** @return True if any of the given box is within the given distance (in chunks) of the given chunk. */
+    private static boolean isInRange(VolumeBox volumeBox, ChunkPos chunk, int distance) {
+        if (!volumeBox.box.isInitialized()) {
+            return false;
+        }
+        BlockPos min = volumeBox.box.min();
+        BlockPos max = volumeBox.box.max();
+        int dx = Math.max(0, Math.max((min.getX() >> 4) - chunk.x, chunk.x - (max.getX() >> 4)));
+        int dz = Math.max(0, Math.max((min.getZ() >> 4) - chunk.z, chunk.z - (max.getZ() >> 4)));
+        return Math.max(dx, dz) <= distance;
+    }
+}
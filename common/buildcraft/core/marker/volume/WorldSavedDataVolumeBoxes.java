@@ -7,15 +7,23 @@
 package buildcraft.core.marker.volume;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.stream.Collectors;
+
+import com.google.common.base.Predicates;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
 
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.util.math.AxisAlignedBB;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 import net.minecraft.world.storage.MapStorage;
 import net.minecraft.world.storage.WorldSavedData;
@@ -23,12 +31,34 @@ import net.minecraft.world.storage.WorldSavedData;
 import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.net.MessageManager;
 
+/** Every {@link VolumeBox} in a world. Anything that changes {@link #volumeBoxes} (or any of the boxes in it) must call
+ * {@link #markDirty()} afterwards, so that the index is rebuilt and the changed boxes are sent to clients.
+ * <p>
+ * Players are only sent the boxes that are within their view distance, and only the boxes that have changed since
+ * they were last sent. */
 public class WorldSavedDataVolumeBoxes extends WorldSavedData {
     private static final String DATA_NAME = "buildcraft_volume_boxes";
+
+    /** Boxes that cover more chunks than this are kept in {@link #largeBoxes} rather than in every chunk. */
+    private static final int MAX_INDEXED_CHUNKS = 256;
+
     private static World currentWorld;
     public World world = currentWorld;
     public final List<VolumeBox> volumeBoxes = new ArrayList<>();
 
+    /** Players that need to be checked for boxes that have come into (or gone out of) range. */
+    public final Set<EntityPlayerMP> changedPlayers = new HashSet<>();
+
+    // The index, which is rebuilt (when it's next used) whenever this is marked dirty
+    private boolean indexDirty = true;
+    private final Map<UUID, VolumeBox> boxesById = new HashMap<>();
+    private final TLongObjectHashMap<List<VolumeBox>> boxesByChunk = new TLongObjectHashMap<>();
+    private final List<VolumeBox> largeBoxes = new ArrayList<>();
+    private final List<VolumeBox> editingBoxes = new ArrayList<>();
+
+    /** Works out which boxes have changed since they were last sent, and which players need them. */
+    private final VolumeBoxSync<EntityPlayerMP> sync = new VolumeBoxSync<>();
+
     public WorldSavedDataVolumeBoxes() {
         super(DATA_NAME);
     }
@@ -39,61 +69,134 @@ public class WorldSavedDataVolumeBoxes extends WorldSavedData {
     }
 
     public VolumeBox getVolumeBoxAt(BlockPos pos) {
-        return volumeBoxes.stream().filter(volumeBox -> volumeBox.box.contains(pos)).findFirst().orElse(null);
+        updateIndex();
+        List<VolumeBox> boxes = boxesByChunk.get(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4));
+        if (boxes != null) {
+            for (VolumeBox volumeBox : boxes) {
+                if (volumeBox.box.contains(pos)) {
+                    return volumeBox;
+                }
+            }
+        }
+        for (VolumeBox volumeBox : largeBoxes) {
+            if (volumeBox.box.contains(pos)) {
+                return volumeBox;
+            }
+        }
+        return null;
     }
 
     public void addVolumeBox(BlockPos pos) {
         volumeBoxes.add(new VolumeBox(world, pos));
+        indexDirty = true;
     }
 
     public VolumeBox getVolumeBoxFromId(UUID id) {
-        return volumeBoxes.stream().filter(volumeBox -> volumeBox.id.equals(id)).findFirst().orElse(null);
+        updateIndex();
+        return boxesById.get(id);
     }
 
     public VolumeBox getCurrentEditing(EntityPlayer player) {
-        return volumeBoxes.stream().filter(volumeBox -> volumeBox.isEditingBy(player)).findFirst().orElse(null);
+        updateIndex();
+        for (VolumeBox volumeBox : editingBoxes) {
+            if (volumeBox.isEditingBy(player)) {
+                return volumeBox;
+            }
+        }
+        return null;
     }
 
-    public void tick() {
-        AtomicBoolean dirty = new AtomicBoolean(false);
-        volumeBoxes.stream().filter(VolumeBox::isEditing).forEach(volumeBox -> {
-            EntityPlayer player = volumeBox.getPlayer(world);
-            if (player == null) {
-                volumeBox.pauseEditing();
-                dirty.set(true);
-            } else {
-                AxisAlignedBB oldAabb = volumeBox.box.getBoundingBox();
-                volumeBox.box.reset();
-                volumeBox.box.extendToEncompass(volumeBox.getHeld());
-                BlockPos lookingAt = new BlockPos(
-                    player.getPositionVector()
-                        .addVector(0, player.getEyeHeight(), 0)
-                        .add(player.getLookVec().scale(volumeBox.getDist()))
-                );
-                volumeBox.box.extendToEncompass(lookingAt);
-                if (!volumeBox.box.getBoundingBox().equals(oldAabb)) {
-                    dirty.set(true);
+    private void updateIndex() {
+        if (!indexDirty) {
+            return;
+        }
+        indexDirty = false;
+        boxesById.clear();
+        boxesByChunk.clear();
+        largeBoxes.clear();
+        editingBoxes.clear();
+        for (VolumeBox volumeBox : volumeBoxes) {
+            boxesById.put(volumeBox.id, volumeBox);
+            if (volumeBox.isEditing()) {
+                editingBoxes.add(volumeBox);
+            }
+            if (!volumeBox.box.isInitialized()) {
+                continue;
+            }
+            BlockPos min = volumeBox.box.min();
+            BlockPos max = volumeBox.box.max();
+            int minX = min.getX() >> 4;
+            int minZ = min.getZ() >> 4;
+            int maxX = max.getX() >> 4;
+            int maxZ = max.getZ() >> 4;
+            if ((long) (maxX - minX + 1) * (maxZ - minZ + 1) > MAX_INDEXED_CHUNKS) {
+                largeBoxes.add(volumeBox);
+                continue;
+            }
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    long key = ChunkPos.asLong(x, z);
+                    List<VolumeBox> boxes = boxesByChunk.get(key);
+                    if (boxes == null) {
+                        boxes = new ArrayList<>(1);
+                        boxesByChunk.put(key, boxes);
+                    }
+                    boxes.add(volumeBox);
                 }
             }
-        });
+        }
+    }
+
+    public void tick() {
         for (VolumeBox volumeBox : volumeBoxes) {
-            List<Lock> locksToRemove = new ArrayList<>(volumeBox.locks).stream()
-                .filter(lock -> !lock.cause.stillWorks(world))
-                .collect(Collectors.toList());
-            if (!locksToRemove.isEmpty()) {
-                volumeBox.locks.removeAll(locksToRemove);
-                dirty.set(true);
+            if (volumeBox.isEditing()) {
+                EntityPlayer player = volumeBox.getPlayer(world);
+                if (player == null) {
+                    volumeBox.pauseEditing();
+                    markDirty(volumeBox);
+                } else {
+                    AxisAlignedBB oldAabb = volumeBox.box.getBoundingBox();
+                    volumeBox.box.reset();
+                    volumeBox.box.extendToEncompass(volumeBox.getHeld());
+                    BlockPos lookingAt = new BlockPos(
+                        player.getPositionVector()
+                            .addVector(0, player.getEyeHeight(), 0)
+                            .add(player.getLookVec().scale(volumeBox.getDist()))
+                    );
+                    volumeBox.box.extendToEncompass(lookingAt);
+                    if (!volumeBox.box.getBoundingBox().equals(oldAabb)) {
+                        markDirty(volumeBox);
+                    }
+                }
+            }
+            if (!volumeBox.locks.isEmpty() && volumeBox.locks.removeIf(lock -> !lock.cause.stillWorks(world))) {
+                markDirty(volumeBox);
             }
         }
-        if (dirty.get()) {
-            markDirty();
-        }
+        sendChanges();
     }
 
     @Override
     public void markDirty() {
-        super.markDirty();
-        MessageManager.sendToDimension(new MessageVolumeBoxes(volumeBoxes), world.provider.getDimension());
+        setDirty(true);
+        indexDirty = true;
+        sync.markAllChanged();
+    }
+
+    /** Like {@link #markDirty()}, but only the given box has changed. */
+    public void markDirty(VolumeBox volumeBox) {
+        setDirty(true);
+        indexDirty = true;
+        sync.markChanged(volumeBox);
+    }
+
+    private void sendChanges() {
+        int viewDistance = world.getMinecraftServer().getPlayerList().getViewDistance() + 1;
+        sync.sendChanges(volumeBoxes, world.getPlayers(EntityPlayerMP.class, Predicates.alwaysTrue()),
+            changedPlayers, player -> new ChunkPos(player.getPosition()), viewDistance,
+            (player, clear, removed, boxes) -> MessageManager.sendTo(
+                new MessageVolumeBoxes(clear, removed, boxes), player));
+        changedPlayers.clear();
     }
 
     @SuppressWarnings("NullableProblems")
@@ -107,6 +210,8 @@ public class WorldSavedDataVolumeBoxes extends WorldSavedData {
     @Override
     public void readFromNBT(NBTTagCompound nbt) {
         volumeBoxes.clear();
+        indexDirty = true;
+        sync.markAllChanged();
         NBTUtilBC.readCompoundList(nbt.getTag("volumeBoxes"))
             .map(volumeBoxTag -> new VolumeBox(world, volumeBoxTag))
             .forEach(volumeBoxes::add);
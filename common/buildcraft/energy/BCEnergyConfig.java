@@ -23,6 +23,8 @@ import buildcraft.lib.config.EnumRestartRequirement;
 
 import buildcraft.core.BCCoreConfig;
 
+import buildcraft.energy.generation.OilGenerator;
+
 public class BCEnergyConfig {
 
     public static boolean enableOilGeneration;
@@ -87,6 +89,7 @@ public class BCEnergyConfig {
             addBiomeNames(propSurfaceDepositBiomes, surfaceDepositBiomes);
             excludedDimensions.clear();
             excludedDimensions.addAll(propExcludedDimensions.getIntList());
+            OilGenerator.invalidateStructureCache();
 
             if (EnumRestartRequirement.GAME.hasBeenRestarted(restarted)) {
                 enableOilGeneration = propEnableOilGeneration.getBoolean();
@@ -40,6 +40,14 @@ public abstract class OilGenStructure {
     /** Generates this structure in the world, but only between the given coordinates. */
     protected abstract void generateWithin(World world, Box intersect);
 
+    /** Structures are shared between every thread that generates chunks (see {@link OilGenerator#getStructures}), so
+     * any structure that remembers something while generating must return a new copy of itself here.
+     *
+     * @return A structure that can be generated (and then counted) by the calling thread. */
+    public OilGenStructure copyForGeneration() {
+        return this;
+    }
+
     /** @return The number of oil blocks that this structure will set. Note that this is called *after*
      *         {@link #generateWithin(World, Box)}, by the Spring type, so this can store the number set. */
     protected abstract int countOilBlocks();
@@ -162,6 +170,11 @@ public abstract class OilGenStructure {
             this.height = height;
         }
 
+        @Override
+        public OilGenStructure copyForGeneration() {
+            return new Spout(start, replaceType, radius, height);
+        }
+
         private static Box createBox(BlockPos start) {
             // Only a block 1 x 256 x 1 -- that way we area only called once.
             // FIXME: This 256 will need to be rethought for cubic chunk support
@@ -3,8 +3,11 @@ package buildcraft.energy.generation;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 
 import net.minecraft.util.EnumFacing.Axis;
@@ -36,6 +39,18 @@ public enum OilGenerator implements IWorldGenerator {
      * is too big then oil generation will be slightly slower */
     private static final int MAX_CHUNK_RADIUS = 5;
 
+    /** The maximum number of chunks to remember the structures of. Every generated chunk looks at the structures of
+     * every chunk within {@link #MAX_CHUNK_RADIUS}, so this is large enough to hold the (2 * MAX_CHUNK_RADIUS + 1) rows
+     * of chunks around a pregenerator that works through a 10k x 10k area row by row. Nearly every chunk has no
+     * structures, so most of these entries are tiny. */
+    private static final int MAX_CACHED_CHUNKS = 1 << 13;
+
+    /** Chunk to the structures that start in it. This is a {@link Cache} (rather than a map) as chunks can be generated
+     * from more than one thread, and it forgets about the chunks that generation has moved away from. */
+    private static final Cache<StructureKey, List<OilGenStructure>> STRUCTURE_CACHE = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_CHUNKS)
+        .build();
+
     public enum GenType {
         LARGE,
         MEDIUM,
@@ -63,17 +78,24 @@ public enum OilGenerator implements IWorldGenerator {
                 int cz = chunkZ + cdz;
                 world.profiler.startSection("scan");
                 List<OilGenStructure> structures = getStructures(world, cx, cz);
+                if (structures.isEmpty()) {
+                    world.profiler.endSection();
+                    continue;
+                }
                 OilGenStructure.Spring spring = null;
                 world.profiler.endStartSection("gen");
-                for (OilGenStructure struct : structures) {
+                List<OilGenStructure> generated = new ArrayList<>(structures.size());
+                for (OilGenStructure cached : structures) {
+                    OilGenStructure struct = cached.copyForGeneration();
                     struct.generate(world, box);
+                    generated.add(struct);
                     if (struct instanceof OilGenStructure.Spring) {
                         spring = (Spring) struct;
                     }
                 }
                 if (spring != null && box.contains(spring.pos)) {
                     int count = 0;
-                    for (OilGenStructure struct : structures) {
+                    for (OilGenStructure struct : generated) {
                         count += struct.countOilBlocks();
                     }
                     spring.generate(world, count);
@@ -85,13 +107,40 @@ public enum OilGenerator implements IWorldGenerator {
     }
 
     public static List<OilGenStructure> getStructures(World world, int cx, int cz) {
-        Random rand = RandUtil.createRandomForChunk(world, cx, cz, MAGIC_GEN_NUMBER);
+        return getStructures(world.provider.getDimension(), world.getSeed(), cx, cz, world::getBiome);
+    }
+
+    /** @return The (cached) structures that start in the given chunk. The returned list must not be modified, and as it
+     *         can be shared between threads every structure must be copied with
+     *         {@link OilGenStructure#copyForGeneration()} before it is generated. */
+    public static List<OilGenStructure> getStructures(int dimension, long seed, int cx, int cz,
+        Function<BlockPos, Biome> biomes) {
+        StructureKey key = new StructureKey(dimension, seed, cx, cz);
+        List<OilGenStructure> structures = STRUCTURE_CACHE.getIfPresent(key);
+        if (structures == null) {
+            // Two threads might both create the same structures here, but that's fine as they are always the same
+            structures = createStructures(seed, cx, cz, biomes);
+            STRUCTURE_CACHE.put(key, structures);
+        }
+        return structures;
+    }
+
+    /** Forgets about the structures of every chunk. BCEnergyConfig calls this whenever the biome lists change. */
+    public static void invalidateStructureCache() {
+        STRUCTURE_CACHE.invalidateAll();
+    }
+
+    /** Creates the structures that start in the given chunk, without looking in the cache.
+     *
+     * @param biomes Gets the biome at a given position. This is only called once. */
+    public static List<OilGenStructure> createStructures(long seed, int cx, int cz, Function<BlockPos, Biome> biomes) {
+        Random rand = RandUtil.createRandomForChunk(seed, cx, cz, MAGIC_GEN_NUMBER);
 
         // shift to world coordinates
         int x = cx * 16 + 8 + rand.nextInt(16);
         int z = cz * 16 + 8 + rand.nextInt(16);
 
-        Biome biome = world.getBiome(new BlockPos(x, 0, z));
+        Biome biome = biomes.apply(new BlockPos(x, 0, z));
 
         // Do not generate oil in the End or Nether
         if (BCEnergyConfig.excludedBiomes.contains(biome.getRegistryName())) {
@@ -164,7 +213,7 @@ public enum OilGenerator implements IWorldGenerator {
                 structures.add(createSpring(new BlockPos(x, 0, z)));
             }
         }
-        return structures;
+        return ImmutableList.copyOf(structures);
     }
 
     private static OilGenStructure createSpout(BlockPos start, int height, int radius) {
@@ -256,4 +305,30 @@ public enum OilGenerator implements IWorldGenerator {
         if (z < 0 || z >= pattern[x].length) return false;
         return pattern[x][z];
     }
+
+    private static final class StructureKey {
+        private final int dimension;
+        private final long seed;
+        private final int cx, cz;
+
+        StructureKey(int dimension, long seed, int cx, int cz) {
+            this.dimension = dimension;
+            this.seed = seed;
+            this.cx = cx;
+            this.cz = cz;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) return true;
+            if (obj == null || obj.getClass() != getClass()) return false;
+            StructureKey other = (StructureKey) obj;
+            return cx == other.cx && cz == other.cz && dimension == other.dimension && seed == other.seed;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((Long.hashCode(seed) * 31 + dimension) * 31 + cx) * 31 + cz;
+        }
+    }
 }
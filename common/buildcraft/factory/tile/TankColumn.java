@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.factory.tile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.FluidTankProperties;
+import net.minecraftforge.fluids.capability.IFluidTankProperties;
+
+import buildcraft.api.core.IFluidFilter;
+
+import buildcraft.lib.fluid.Tank;
+
+/** A vertical stack of {@link TileTank}'s that act as a single tank. Every tank in the stack points to the same column,
+ * which is only rebuilt when a tank in it is placed, removed or unloaded (see {@link #get(Member)}).
+ * <p>
+ * This keeps the total amount of fluid in the column, and remembers which tanks are known to be full or empty, so
+ * filling and draining normally only has to look at the tanks at the surface of the fluid. */
+public final class TankColumn {
+    /** Something that holds one of the tanks in a column, like a {@link TileTank}. */
+    public interface Member {
+        Tank getColumnTank();
+
+        /** @return The member directly above (or below) this one, or null if there isn't one (or if this has been
+         *         removed). */
+        @Nullable
+        Member getColumnNeighbour(boolean up);
+
+        /** @return The column that was last passed to {@link #setCachedColumn(TankColumn)}. */
+        @Nullable
+        TankColumn getCachedColumn();
+
+        void setCachedColumn(@Nullable TankColumn column);
+
+        /** Called when the column changes the contents of this member's tank, and the change should be sent to
+         * clients straight away. */
+        void sendColumnUpdate();
+    }
+
+    /** Bottom to top. */
+    final Member[] tanks;
+    private final int capacity;
+
+    private boolean valid = true;
+
+    /** True if the totals below need to be worked out again, as one of the tanks was changed by something other than
+     * this column. */
+    private boolean dirty = true;
+
+    /** True while this column is changing one of its tanks, so {@link #onTankChanged()} can be ignored. */
+    private boolean changing = false;
+
+    /** The fluid in this column, with the total amount of every tank. */
+    private FluidStack fluid;
+
+    /** True if different tanks contain different fluids. (This can happen if two different columns are joined
+     * together). */
+    private boolean mixed;
+
+    // Every tank below "fullBelow" is full, and every tank above "fullAbove" is full.
+    private int fullBelow, fullAbove;
+
+    // Every tank below "emptyBelow" is empty, and every tank above "emptyAbove" is empty.
+    private int emptyBelow, emptyAbove;
+
+    private TankColumn(Member[] tanks) {
+        this.tanks = tanks;
+        int cap = 0;
+        for (Member tile : tanks) {
+            cap += tile.getColumnTank().getCapacity();
+        }
+        capacity = cap;
+    }
+
+    /** @return The column that the given member is in, finding it again if any of the tanks in it have been placed,
+     *         removed or unloaded since it was last found. */
+    public static TankColumn get(Member member) {
+        TankColumn column = member.getCachedColumn();
+        if (column == null || !column.valid) {
+            List<Member> tanks = new ArrayList<>();
+            Member below = member.getColumnNeighbour(false);
+            while (below != null) {
+                tanks.add(0, below);
+                below = below.getColumnNeighbour(false);
+            }
+            for (Member above = member; above != null; above = above.getColumnNeighbour(true)) {
+                tanks.add(above);
+            }
+            column = new TankColumn(tanks.toArray(new Member[0]));
+            for (Member tile : tanks) {
+                tile.setCachedColumn(column);
+            }
+        }
+        return column;
+    }
+
+    /** Called when the given member is added to the world, as the columns above and below it are now joined to it. */
+    public static void onMemberAdded(Member member) {
+        onMemberRemoved(member.getColumnNeighbour(true));
+        onMemberRemoved(member.getColumnNeighbour(false));
+    }
+
+    /** Called when the given member is removed from the world or unloaded. */
+    public static void onMemberRemoved(@Nullable Member member) {
+        if (member != null) {
+            TankColumn column = member.getCachedColumn();
+            if (column != null) {
+                column.valid = false;
+                member.setCachedColumn(null);
+            }
+        }
+    }
+
+    /** Called by every {@link Member} in this column whenever the contents of its tank change. */
+    public void onTankChanged() {
+        if (!changing) {
+            dirty = true;
+        }
+    }
+
+    private void refresh() {
+        dirty = false;
+        fluid = null;
+        mixed = false;
+        fullBelow = tanks.length;
+        fullAbove = -1;
+        emptyBelow = tanks.length;
+        emptyAbove = -1;
+        for (int i = 0; i < tanks.length; i++) {
+            Tank tank = tanks[i].getColumnTank();
+            FluidStack held = tank.getFluid();
+            if (held != null && held.amount > 0) {
+                if (fluid == null) {
+                    fluid = held.copy();
+                } else {
+                    mixed |= !fluid.isFluidEqual(held);
+                    fluid.amount += held.amount;
+                }
+                emptyBelow = Math.min(emptyBelow, i);
+                emptyAbove = i;
+            }
+            if (!tank.isFull()) {
+                fullBelow = Math.min(fullBelow, i);
+                fullAbove = i;
+            }
+        }
+    }
+
+    public IFluidTankProperties[] getTankProperties() {
+        return new IFluidTankProperties[] { new FluidTankProperties(getContents(), capacity) };
+    }
+
+    /** Fills the tanks from the bottom up (or the top down for gases).
+     *
+     * @param sendUpdates If true then every tank that changes will send its new contents to the client. */
+    public int fill(FluidStack resource, boolean doFill, boolean sendUpdates) {
+        if (dirty) {
+            refresh();
+        }
+        if (mixed || (fluid != null && !fluid.isFluidEqual(resource))) {
+            return 0;
+        }
+        boolean gas = resource.getFluid().isGaseous(resource);
+        int step;
+        int i;
+        if (gas) {
+            while (fullAbove >= 0 && tanks[fullAbove].getColumnTank().isFull()) {
+                fullAbove--;
+            }
+            step = -1;
+            i = fullAbove;
+        } else {
+            while (fullBelow < tanks.length && tanks[fullBelow].getColumnTank().isFull()) {
+                fullBelow++;
+            }
+            step = 1;
+            i = fullBelow;
+        }
+        int filled = 0;
+        changing = true;
+        for (; i >= 0 && i < tanks.length; i += step) {
+            Member tile = tanks[i];
+            int tankFilled = tile.getColumnTank().fill(resource, doFill);
+            if (tankFilled > 0) {
+                if (doFill) {
+                    if (sendUpdates) {
+                        tile.sendColumnUpdate();
+                    }
+                    if (fluid == null) {
+                        fluid = resource.copy();
+                        fluid.amount = 0;
+                    }
+                    fluid.amount += tankFilled;
+                    emptyBelow = Math.min(emptyBelow, i);
+                    emptyAbove = Math.max(emptyAbove, i);
+                }
+                resource.amount -= tankFilled;
+                filled += tankFilled;
+                if (resource.amount == 0) {
+                    break;
+                }
+            }
+        }
+        changing = false;
+        return filled;
+    }
+
+    /** Drains the tanks from the top down (or the bottom up for gases).
+     *
+     * @param sendUpdates If true then every tank that changes will send its new contents to the client. */
+    public FluidStack drain(IFluidFilter filter, int maxDrain, boolean doDrain, boolean sendUpdates) {
+        if (dirty) {
+            refresh();
+        }
+        if (fluid == null) {
+            return null;
+        }
+        boolean gas = fluid.getFluid().isGaseous(fluid);
+        int step;
+        int i;
+        if (gas) {
+            while (emptyBelow < tanks.length && tanks[emptyBelow].getColumnTank().isEmpty()) {
+                emptyBelow++;
+            }
+            step = 1;
+            i = emptyBelow;
+        } else {
+            while (emptyAbove >= 0 && tanks[emptyAbove].getColumnTank().isEmpty()) {
+                emptyAbove--;
+            }
+            step = -1;
+            i = emptyAbove;
+        }
+        FluidStack total = null;
+        IFluidFilter tankFilter = filter;
+        changing = true;
+        for (; i >= 0 && i < tanks.length; i += step) {
+            int realMax = maxDrain - (total == null ? 0 : total.amount);
+            if (realMax <= 0) {
+                break;
+            }
+            Member tile = tanks[i];
+            FluidStack drained = tile.getColumnTank().drain(tankFilter, realMax, doDrain);
+            if (drained == null) continue;
+            if (doDrain) {
+                if (sendUpdates) {
+                    tile.sendColumnUpdate();
+                }
+                fullBelow = Math.min(fullBelow, i);
+                fullAbove = Math.max(fullAbove, i);
+            }
+            if (total == null) {
+                total = drained.copy();
+                total.amount = 0;
+                if (mixed) {
+                    // Only drain one fluid at a time
+                    tankFilter = total::isFluidEqual;
+                }
+            }
+            total.amount += drained.amount;
+        }
+        changing = false;
+        if (doDrain && total != null) {
+            if (mixed) {
+                // Draining might have removed one of the fluids
+                dirty = true;
+            } else {
+                fluid.amount -= total.amount;
+                if (fluid.amount <= 0) {
+                    fluid = null;
+                }
+            }
+        }
+        return total;
+    }
+
+    /** @return The fluid in this column, with the total amount of every tank. */
+    @Nullable
+    public FluidStack getContents() {
+        if (dirty) {
+            refresh();
+        }
+        return fluid == null ? null : fluid.copy();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
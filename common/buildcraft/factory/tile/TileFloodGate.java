@@ -7,20 +7,17 @@
 package buildcraft.factory.tile;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.BitSet;
-import java.util.Deque;
 import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import com.google.common.collect.ImmutableList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TLongHashSet;
 
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTPrimitive;
 import net.minecraft.nbt.NBTTagByteArray;
@@ -30,6 +27,7 @@ import net.minecraft.util.EnumFacing.Axis;
 import net.minecraft.util.EnumFacing.AxisDirection;
 import net.minecraft.util.ITickable;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 
 import net.minecraftforge.common.util.FakePlayer;
@@ -43,30 +41,45 @@ import buildcraft.api.core.BuildCraftAPI;
 import buildcraft.api.core.EnumPipePart;
 import buildcraft.api.tiles.IDebuggable;
 
+import buildcraft.lib.block.ILocalBlockUpdateSubscriber;
+import buildcraft.lib.block.LocalBlockUpdateNotifier;
 import buildcraft.lib.fluid.Tank;
 import buildcraft.lib.misc.BlockUtil;
 import buildcraft.lib.misc.CapUtil;
 import buildcraft.lib.misc.FluidUtilBC;
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.VecUtil;
+import buildcraft.lib.misc.data.FloodFillTree;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.TileBC_Neptune;
 
 import buildcraft.factory.BCFactoryBlocks;
 import buildcraft.factory.block.BlockFloodGate;
 
-public class TileFloodGate extends TileBC_Neptune implements ITickable, IDebuggable {
+public class TileFloodGate extends TileBC_Neptune implements ITickable, IDebuggable, ILocalBlockUpdateSubscriber {
     private static final EnumFacing[] SEARCH_DIRECTIONS = new EnumFacing[] { //
         EnumFacing.DOWN, EnumFacing.NORTH, EnumFacing.SOUTH, //
         EnumFacing.WEST, EnumFacing.EAST //
     };
 
     private static final int[] REBUILD_DELAYS = { 16, 32, 64, 128, 256 };
+    private static final int SEARCH_RADIUS = 64;
+    private static final int MAX_QUEUE_SIZE = 4096;
+    /** The maximum amount of time (in nanoseconds) that the flood gate will spend searching each tick. */
+    private static final long SEARCH_TIME_PER_TICK = TimeUnit.MILLISECONDS.toNanos(1);
 
     private final Tank tank = new Tank("tank", 2 * Fluid.BUCKET_VOLUME, this);
     public final Set<EnumFacing> openSides = EnumSet.copyOf(BlockFloodGate.CONNECTED_MAP.keySet());
-    public final Deque<BlockPos> queue = new ArrayDeque<>();
-    private final Map<BlockPos, List<BlockPos>> paths = new HashMap<>();
+    /** Every block that the flood gate can fill or fill through, along with the block that it was reached from. */
+    private final FloodFillTree fillTree = new FloodFillTree();
+    private Fluid fillFluid;
+    /** The indices (in {@link #fillTree}) of every block to fill, in order from {@link #queueHead}. */
+    private final TIntArrayList queue = new TIntArrayList();
+    private int queueHead = 0;
+    private final BitSet queued = new BitSet();
+    /** Every block near the flood gate that has changed since the last tick, as {@link BlockPos#toLong()}. */
+    private final TLongHashSet changedPositions = new TLongHashSet();
+    private boolean needsRebuild;
     private int delayIndex = 0;
     private int tick = 0;
 
@@ -79,67 +92,161 @@ public class TileFloodGate extends TileBC_Neptune implements ITickable, IDebugga
         return REBUILD_DELAYS[delayIndex];
     }
 
+    private int getQueueSize() {
+        return queue.size() - queueHead;
+    }
+
+    /** Forgets about everything that has been searched, so the next rebuild starts again from scratch. */
+    public void clearQueue() {
+        fillTree.clear();
+        queue.resetQuick();
+        queueHead = 0;
+        queued.clear();
+        changedPositions.clear();
+    }
+
     private void buildQueue() {
         world.profiler.startSection("prepare");
-        queue.clear();
-        paths.clear();
+        clearQueue();
+        needsRebuild = false;
+        fillFluid = tank.getFluidType();
         if (tank.isEmpty()) {
             world.profiler.endSection();
             return;
         }
-        Set<BlockPos> checked = new HashSet<>();
-        checked.add(pos);
-        List<BlockPos> nextPosesToCheck = new ArrayList<>();
         for (EnumFacing face : openSides) {
-            BlockPos offset = pos.offset(face);
-            nextPosesToCheck.add(offset);
-            paths.put(offset, ImmutableList.of(offset));
+            addIfSearchable(pos.offset(face), FloodFillTree.NO_PARENT);
         }
-        world.profiler.endStartSection("build");
-        outer: while (!nextPosesToCheck.isEmpty()) {
-            List<BlockPos> nextPosesToCheckCopy = new ArrayList<>(nextPosesToCheck);
-            nextPosesToCheck.clear();
-            for (BlockPos toCheck : nextPosesToCheckCopy) {
-                if (toCheck.distanceSq(pos) > 64 * 64) {
-                    continue;
-                }
-                if (checked.add(toCheck)) {
-                    if (canSearch(toCheck)) {
-                        if (canFill(toCheck)) {
-                            queue.push(toCheck);
-                            if (queue.size() >= 4096) {
-                                break outer;
-                            }
-                        }
-                        List<BlockPos> checkPath = paths.get(toCheck);
-                        for (EnumFacing side : SEARCH_DIRECTIONS) {
-                            BlockPos next = toCheck.offset(side);
-                            if (!openSides.contains(side)) {
-                                Axis axis = side.getAxis();
-                                int dist = VecUtil.getValue(next, axis) - VecUtil.getValue(getPos(), axis);
-                                if (side.getAxisDirection() == AxisDirection.NEGATIVE) {
-                                    dist = -dist;
-                                }
-                                if (dist > 0) {
-                                    continue;
-                                }
-                            }
-                            if (checked.contains(next)) {
-                                continue;
-                            }
-                            ImmutableList.Builder<BlockPos> pathBuilder = ImmutableList.builder();
-                            pathBuilder.addAll(checkPath);
-                            pathBuilder.add(next);
-                            paths.put(next, pathBuilder.build());
-                            nextPosesToCheck.add(next);
-                        }
-                    }
+        world.profiler.endSection();
+        continueSearch();
+    }
+
+    /** Carries on the flood fill from wherever it got to, for at most {@link #SEARCH_TIME_PER_TICK}, or until
+     * {@link #MAX_QUEUE_SIZE} blocks are waiting to be filled. */
+    private void continueSearch() {
+        world.profiler.startSection("build");
+        long end = System.nanoTime() + SEARCH_TIME_PER_TICK;
+        int searched = 0;
+        while (fillTree.isSearching() && getQueueSize() < MAX_QUEUE_SIZE) {
+            if (++searched % 64 == 0 && System.nanoTime() > end) {
+                break;
+            }
+            int index = fillTree.nextToSearch();
+            BlockPos toCheck = fillTree.getPos(index);
+            for (EnumFacing side : SEARCH_DIRECTIONS) {
+                BlockPos next = toCheck.offset(side);
+                if (canSearchTowards(next, side)) {
+                    addIfSearchable(next, index);
                 }
             }
         }
         world.profiler.endSection();
     }
 
+    /** @return True if the search can move in the given direction to the given position: the flood gate can only fill
+     *         up to its own level in the directions of its closed sides. */
+    private boolean canSearchTowards(BlockPos next, EnumFacing side) {
+        if (openSides.contains(side)) {
+            return true;
+        }
+        Axis axis = side.getAxis();
+        int dist = VecUtil.getValue(next, axis) - VecUtil.getValue(getPos(), axis);
+        if (side.getAxisDirection() == AxisDirection.NEGATIVE) {
+            dist = -dist;
+        }
+        return dist <= 0;
+    }
+
+    /** Adds the given position to the fill tree (and the queue if it can be filled) if it can be searched through.
+     *
+     * @return True if the position was added. */
+    private boolean addIfSearchable(BlockPos blockPos, int parent) {
+        if (blockPos.equals(pos) || blockPos.distanceSq(pos) > SEARCH_RADIUS * SEARCH_RADIUS) {
+            return false;
+        }
+        if (fillTree.contains(blockPos) || !canSearch(blockPos)) {
+            return false;
+        }
+        int index = fillTree.add(blockPos, parent);
+        if (canFill(blockPos)) {
+            enqueue(index);
+        }
+        return true;
+    }
+
+    private void enqueue(int index) {
+        if (!queued.get(index)) {
+            queued.set(index);
+            queue.add(index);
+        }
+    }
+
+    /** Patches the fill tree for every block that has changed since the last tick, rather than searching everything
+     * again. New space next to the tree is added to it (and the search carries on from there) and known blocks that
+     * can be filled again are queued. Blocks that can no longer be searched through are left in the tree, as every
+     * path is checked before it's used anyway. */
+    private void applyChanges() {
+        if (changedPositions.isEmpty()) {
+            return;
+        }
+        if (fillTree.isEmpty()) {
+            changedPositions.clear();
+            return;
+        }
+        world.profiler.startSection("patch");
+        changedPositions.forEach(key -> {
+            BlockPos changed = BlockPos.fromLong(key);
+            int index = fillTree.indexOf(changed);
+            if (index != FloodFillTree.NOT_FOUND) {
+                if (canFill(changed)) {
+                    enqueue(index);
+                }
+                return true;
+            }
+            for (EnumFacing face : openSides) {
+                if (pos.offset(face).equals(changed)) {
+                    addIfSearchable(changed, FloodFillTree.NO_PARENT);
+                    return true;
+                }
+            }
+            for (EnumFacing side : SEARCH_DIRECTIONS) {
+                int parent = fillTree.indexOf(changed.offset(side.getOpposite()));
+                if (parent != FloodFillTree.NOT_FOUND && canSearchTowards(changed, side)) {
+                    addIfSearchable(changed, parent);
+                    break;
+                }
+            }
+            return true;
+        });
+        changedPositions.clear();
+        world.profiler.endSection();
+    }
+
+    /** @return The next queued position that can be filled, or null if there isn't one. */
+    private BlockPos nextPos() {
+        while (getQueueSize() > 0) {
+            int index = queue.get(queueHead++);
+            queued.clear(index);
+            BlockPos blockPos = fillTree.getPos(index);
+            if (!canFill(blockPos)) {
+                continue;
+            }
+            if (fillTree.testPath(fillTree.getParent(index), this::canFillThrough)) {
+                return blockPos;
+            }
+            // Something has blocked the path to this block: try again once everything else has been filled
+            needsRebuild = true;
+        }
+        queue.resetQuick();
+        queueHead = 0;
+        return null;
+    }
+
+    /** @return True if the fill tree can't be patched up any more, and needs to be searched again from scratch. */
+    private boolean isRebuildNeeded() {
+        return needsRebuild || fillTree.isEmpty() || !FluidUtilBC.areFluidsEqual(fillFluid, tank.getFluidType());
+    }
+
     private boolean canFill(BlockPos offsetPos) {
         if (world.isAirBlock(offsetPos)) {
             return true;
@@ -173,30 +280,22 @@ public class TileFloodGate extends TileBC_Neptune implements ITickable, IDebugga
             return;
         }
 
+        applyChanges();
+        if (fillTree.isSearching()) {
+            continueSearch();
+        }
+
         if (tank.getFluidAmount() < Fluid.BUCKET_VOLUME) {
             return;
         }
 
         tick++;
         if (tick % 16 == 0) {
-            if (!tank.isEmpty() && !queue.isEmpty()) {
+            if (!tank.isEmpty() && getQueueSize() > 0) {
                 FluidStack fluid = tank.drain(Fluid.BUCKET_VOLUME, false);
                 if (fluid != null && fluid.amount >= Fluid.BUCKET_VOLUME) {
-                    BlockPos currentPos = queue.removeLast();
-                    List<BlockPos> path = paths.get(currentPos);
-                    boolean canFill = true;
-                    if (path != null) {
-                        for (BlockPos p : path) {
-                            if (p.equals(currentPos)) {
-                                continue;
-                            }
-                            if (!canFillThrough(currentPos)) {
-                                canFill = false;
-                                break;
-                            }
-                        }
-                    }
-                    if (canFill && canFill(currentPos)) {
+                    BlockPos currentPos = nextPos();
+                    if (currentPos != null) {
                         FakePlayer fakePlayer =
                             BuildCraftAPI.fakePlayerProvider.getFakePlayer((WorldServer) world, getOwner(), currentPos);
                         if (FluidUtil.tryPlaceFluid(fakePlayer, world, currentPos, tank, fluid)) {
@@ -207,17 +306,60 @@ public class TileFloodGate extends TileBC_Neptune implements ITickable, IDebugga
                             delayIndex = 0;
                             tick = 0;
                         }
-                    } else {
-                        buildQueue();
                     }
                 }
             }
         }
 
-        if (queue.isEmpty() && tick % getCurrentDelay() == 0) {
+        if (getQueueSize() == 0 && tick % getCurrentDelay() == 0) {
             delayIndex = Math.min(delayIndex + 1, REBUILD_DELAYS.length - 1);
             tick = 0;
-            buildQueue();
+            if (isRebuildNeeded()) {
+                buildQueue();
+            }
+        }
+    }
+
+    @Override
+    public void validate() {
+        super.validate();
+        if (!world.isRemote) {
+            LocalBlockUpdateNotifier.instance(world).registerSubscriberForUpdateNotifications(this);
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        if (!world.isRemote) {
+            LocalBlockUpdateNotifier.instance(world).removeSubscriberFromUpdateNotifications(this);
+        }
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        if (!world.isRemote) {
+            LocalBlockUpdateNotifier.instance(world).removeSubscriberFromUpdateNotifications(this);
+        }
+    }
+
+    // ILocalBlockUpdateSubscriber
+
+    @Override
+    public BlockPos getSubscriberPos() {
+        return getPos();
+    }
+
+    @Override
+    public int getUpdateRange() {
+        return SEARCH_RADIUS;
+    }
+
+    @Override
+    public void setWorldUpdated(World world, BlockPos eventPos, IBlockState oldState, IBlockState newState, int flags) {
+        if (!fillTree.isEmpty()) {
+            changedPositions.add(eventPos.toLong());
         }
     }
 
@@ -300,6 +442,7 @@ public class TileFloodGate extends TileBC_Neptune implements ITickable, IDebugga
         left.add("open sides = " + openSides.stream().map(Enum::name).collect(Collectors.joining(", ")));
         left.add("delay = " + getCurrentDelay());
         left.add("tick = " + tick);
-        left.add("queue size = " + queue.size());
+        left.add("queue size = " + getQueueSize());
+        left.add("searched = " + fillTree.size() + (fillTree.isSearching() ? " (searching)" : ""));
     }
 }
@@ -7,20 +7,15 @@
 package buildcraft.factory.tile;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
-import com.google.common.collect.ImmutableList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TLongHashSet;
 
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTTagCompound;
@@ -28,6 +23,7 @@ import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
 import net.minecraft.util.EnumFacing.Axis;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
 
 import net.minecraftforge.fluids.Fluid;
 import net.minecraftforge.fluids.FluidRegistry;
@@ -39,12 +35,15 @@ import buildcraft.api.core.EnumPipePart;
 import buildcraft.api.mj.IMjReceiver;
 import buildcraft.api.mj.MjAPI;
 
+import buildcraft.lib.block.ILocalBlockUpdateSubscriber;
+import buildcraft.lib.block.LocalBlockUpdateNotifier;
 import buildcraft.lib.fluid.Tank;
 import buildcraft.lib.misc.BlockUtil;
 import buildcraft.lib.misc.CapUtil;
 import buildcraft.lib.misc.FluidUtilBC;
 import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.misc.VecUtil;
+import buildcraft.lib.misc.data.FloodFillTree;
 import buildcraft.lib.mj.MjRedstoneBatteryReceiver;
 import buildcraft.lib.net.PacketBufferBC;
 
@@ -53,7 +52,10 @@ import buildcraft.energy.BCEnergyFluids;
 import buildcraft.energy.tile.TileSpringOil;
 import buildcraft.factory.BCFactoryBlocks;
 
-public class TilePump extends TileMiner {
+public class TilePump extends TileMiner implements ILocalBlockUpdateSubscriber {
+    private static final int SEARCH_RADIUS = 64;
+    /** The maximum amount of time (in nanoseconds) that the pump will spend searching for fluid each tick. */
+    private static final long SEARCH_TIME_PER_TICK = TimeUnit.MILLISECONDS.toNanos(1);
     private static final EnumFacing[] SEARCH_DIRECTIONS = new EnumFacing[] { //
         EnumFacing.UP, EnumFacing.NORTH, EnumFacing.SOUTH, //
         EnumFacing.WEST, EnumFacing.EAST //
@@ -61,9 +63,16 @@ public class TilePump extends TileMiner {
 
     private final Tank tank = new Tank("tank", 16 * Fluid.BUCKET_VOLUME, this);
     private boolean queueBuilt = false;
-    private final Map<BlockPos, List<BlockPos>> paths = new HashMap<>();
+    /** Every block of fluid that is connected to the pump, along with the block that it was reached from. */
+    private final FloodFillTree fluidTree = new FloodFillTree();
     private BlockPos fluidConnection;
-    private final Deque<BlockPos> queue = new ArrayDeque<>();
+    private Fluid queueFluid;
+    private boolean isWater;
+    /** The indices (in {@link #fluidTree}) of every source block to drain. The last one is drained first. */
+    private final TIntArrayList queue = new TIntArrayList();
+    /** Every block near the pump that has changed since the last tick, as {@link BlockPos#toLong()}. */
+    private final TLongHashSet changedPositions = new TLongHashSet();
+    private boolean needsRebuild;
     private boolean isInfiniteWaterSource;
 
     @Nullable
@@ -83,20 +92,16 @@ public class TilePump extends TileMiner {
     private void buildQueue() {
         world.profiler.startSection("prepare");
         queue.clear();
-        paths.clear();
-        Fluid queueFluid = null;
+        fluidTree.clear();
+        changedPositions.clear();
+        needsRebuild = false;
+        currentPos = null;
+        queueFluid = null;
         isInfiniteWaterSource = false;
-        Set<BlockPos> checked = new HashSet<>();
-        List<BlockPos> nextPosesToCheck = new ArrayList<>();
         for (BlockPos posToCheck = pos.down(); posToCheck.getY() > 0; posToCheck = posToCheck.down()) {
             if (BlockUtil.getFluidWithFlowing(world, posToCheck) != null) {
                 queueFluid = BlockUtil.getFluidWithFlowing(world, posToCheck);
-                nextPosesToCheck.add(posToCheck);
-                paths.put(posToCheck, Collections.singletonList(posToCheck));
-                checked.add(posToCheck);
-                if (BlockUtil.getFluid(world, posToCheck) != null) {
-                    queue.add(posToCheck);
-                }
+                addFluid(posToCheck, FloodFillTree.NO_PARENT);
                 fluidConnection = posToCheck;
                 break;
             } else if (!world.isAirBlock(posToCheck) &&
@@ -104,53 +109,12 @@ public class TilePump extends TileMiner {
                 break;
             }
         }
-        if (nextPosesToCheck.isEmpty()) {
+        if (fluidTree.isEmpty()) {
             world.profiler.endSection();
             return;
         }
-        world.profiler.endStartSection("build");
-        boolean isWater =
-            /* BCFactoryConfig.consumeWaterSources && */ FluidUtilBC.areFluidsEqual(queueFluid, FluidRegistry.WATER);
-        outer: while (!nextPosesToCheck.isEmpty()) {
-            List<BlockPos> nextPosesToCheckCopy = new ArrayList<>(nextPosesToCheck);
-            nextPosesToCheck.clear();
-            for (BlockPos posToCheck : nextPosesToCheckCopy) {
-                int count = 0;
-                for (EnumFacing side : SEARCH_DIRECTIONS) {
-                    BlockPos offsetPos = posToCheck.offset(side);
-                    if (offsetPos.distanceSq(pos) > 64 * 64) {
-                        continue;
-                    }
-                    if (checked.add(offsetPos)) {
-                        if (FluidUtilBC.areFluidsEqual(BlockUtil.getFluidWithFlowing(world, offsetPos), queueFluid)) {
-                            ImmutableList.Builder<BlockPos> pathBuilder = new ImmutableList.Builder<>();
-                            pathBuilder.addAll(paths.get(posToCheck));
-                            pathBuilder.add(offsetPos);
-                            paths.put(offsetPos, pathBuilder.build());
-                            if (BlockUtil.getFluid(world, offsetPos) != null) {
-                                queue.add(offsetPos);
-                            }
-                            nextPosesToCheck.add(offsetPos);
-                            count++;
-                        }
-                    } else {
-                        // We've already tested this block: it *must* be a valid water source
-                        count++;
-                    }
-                }
-                if (isWater && count > 2) {
-                    IBlockState below = world.getBlockState(posToCheck.down());
-                    // Same check as in BlockDynamicLiquid.updateTick:
-                    // if that method changes how it checks for adjacent
-                    // water sources then this also needs updating
-                    Fluid fluidBelow = BlockUtil.getFluidWithoutFlowing(below);
-                    if (FluidUtilBC.areFluidsEqual(fluidBelow, FluidRegistry.WATER) || below.getMaterial().isSolid()) {
-                        isInfiniteWaterSource = true;
-                        break outer;
-                    }
-                }
-            }
-        }
+        isWater = /* BCFactoryConfig.consumeWaterSources && */ FluidUtilBC.areFluidsEqual(queueFluid,
+            FluidRegistry.WATER);
         world.profiler.endStartSection("oil_spring_search");
         if (FluidUtilBC.areFluidsEqual(queueFluid, BCEnergyFluids.crudeOil[0])) {
             List<BlockPos> springPositions = new ArrayList<>();
@@ -176,6 +140,107 @@ public class TilePump extends TileMiner {
 
         }
         world.profiler.endSection();
+        continueSearch();
+    }
+
+    /** Carries on the flood fill from wherever it got to, for at most {@link #SEARCH_TIME_PER_TICK}. */
+    private void continueSearch() {
+        world.profiler.startSection("build");
+        long end = System.nanoTime() + SEARCH_TIME_PER_TICK;
+        int searched = 0;
+        while (fluidTree.isSearching()) {
+            if (++searched % 64 == 0 && System.nanoTime() > end) {
+                break;
+            }
+            int index = fluidTree.nextToSearch();
+            BlockPos posToCheck = fluidTree.getPos(index);
+            int count = 0;
+            for (EnumFacing side : SEARCH_DIRECTIONS) {
+                BlockPos offsetPos = posToCheck.offset(side);
+                if (offsetPos.distanceSq(pos) > SEARCH_RADIUS * SEARCH_RADIUS) {
+                    continue;
+                }
+                // If we've already added this block then it *must* be a valid water source
+                if (fluidTree.contains(offsetPos) || addFluid(offsetPos, index)) {
+                    count++;
+                }
+            }
+            if (isWater && count > 2) {
+                IBlockState below = world.getBlockState(posToCheck.down());
+                // Same check as in BlockDynamicLiquid.updateTick:
+                // if that method changes how it checks for adjacent
+                // water sources then this also needs updating
+                Fluid fluidBelow = BlockUtil.getFluidWithoutFlowing(below);
+                if (FluidUtilBC.areFluidsEqual(fluidBelow, FluidRegistry.WATER) || below.getMaterial().isSolid()) {
+                    isInfiniteWaterSource = true;
+                    fluidTree.stopSearching();
+                    break;
+                }
+            }
+        }
+        world.profiler.endSection();
+    }
+
+    /** Adds the given position to the fluid tree (and the queue if it's a source) if it contains the fluid that is
+     * being pumped.
+     *
+     * @return True if the position was added. */
+    private boolean addFluid(BlockPos blockPos, int parent) {
+        if (!FluidUtilBC.areFluidsEqual(BlockUtil.getFluidWithFlowing(world, blockPos), queueFluid)) {
+            return false;
+        }
+        int index = fluidTree.add(blockPos, parent);
+        if (index == FloodFillTree.NOT_FOUND) {
+            return false;
+        }
+        if (BlockUtil.getFluid(world, blockPos) != null) {
+            queue.add(index);
+        }
+        return true;
+    }
+
+    /** Patches the fluid tree for every block that has changed since the last tick, rather than searching everything
+     * again. New fluid next to the tree is added to it (and the search carries on from there) and known fluid that has
+     * become a source again is queued. Fluid that has gone away is left in the tree, as every path is checked before
+     * it's used anyway. */
+    private void applyChanges() {
+        if (changedPositions.isEmpty()) {
+            return;
+        }
+        if (fluidTree.isEmpty() || isInfiniteWaterSource) {
+            changedPositions.clear();
+            return;
+        }
+        world.profiler.startSection("patch");
+        changedPositions.forEach(key -> {
+            BlockPos changed = BlockPos.fromLong(key);
+            int index = fluidTree.indexOf(changed);
+            if (index != FloodFillTree.NOT_FOUND) {
+                if (FluidUtilBC.areFluidsEqual(BlockUtil.getFluid(world, changed), queueFluid)) {
+                    // This might queue the same block twice, but nextPos() skips over anything that can't be drained
+                    queue.add(index);
+                }
+            } else if (changed.distanceSq(pos) <= SEARCH_RADIUS * SEARCH_RADIUS) {
+                for (EnumFacing side : SEARCH_DIRECTIONS) {
+                    int parent = fluidTree.indexOf(changed.offset(side.getOpposite()));
+                    if (parent != FloodFillTree.NOT_FOUND) {
+                        addFluid(changed, parent);
+                        break;
+                    }
+                }
+            }
+            return true;
+        });
+        changedPositions.clear();
+        world.profiler.endSection();
+    }
+
+    /** @return True if the fluid tree can't be patched up any more, and needs to be searched again from scratch. This
+     *         is only the case if a path to a queued block was broken, or if the fluid directly below the pump has gone
+     *         away or been replaced with a different fluid. */
+    private boolean isRebuildNeeded() {
+        return needsRebuild || fluidConnection == null
+            || !FluidUtilBC.areFluidsEqual(BlockUtil.getFluidWithFlowing(world, fluidConnection), queueFluid);
     }
 
     private boolean canDrain(BlockPos blockPos) {
@@ -185,7 +250,7 @@ public class TilePump extends TileMiner {
 
     private void nextPos() {
         while (!queue.isEmpty()) {
-            currentPos = queue.removeLast();
+            currentPos = fluidTree.getPos(queue.removeAt(queue.size() - 1));
             if (canDrain(currentPos)) {
                 updateLength();
                 return;
@@ -205,16 +270,23 @@ public class TilePump extends TileMiner {
 
     @Override
     protected void initCurrentPos() {
-        if (currentPos == null) {
+        if (currentPos == null && !fluidTree.isSearching()) {
             nextPos();
         }
     }
 
     @Override
     public void update() {
-        if (!queueBuilt && !world.isRemote) {
-            buildQueue();
-            queueBuilt = true;
+        if (!world.isRemote) {
+            if (!queueBuilt) {
+                buildQueue();
+                queueBuilt = true;
+            } else {
+                applyChanges();
+                if (fluidTree.isSearching()) {
+                    continueSearch();
+                }
+            }
         }
 
         super.update();
@@ -224,6 +296,10 @@ public class TilePump extends TileMiner {
 
     @Override
     public void mine() {
+        if (fluidTree.isSearching()) {
+            // Always drain the furthest blocks first, so wait until we know which ones they are
+            return;
+        }
         boolean prevResult = true;
         while (prevResult) {
             prevResult = false;
@@ -231,13 +307,13 @@ public class TilePump extends TileMiner {
                 return;
             }
             long target = 10 * MjAPI.MJ;
-            if (currentPos != null && paths.containsKey(currentPos)) {
+            int index = currentPos == null ? FloodFillTree.NOT_FOUND : fluidTree.indexOf(currentPos);
+            if (index != FloodFillTree.NOT_FOUND) {
                 progress += battery.extractPower(0, target - progress);
                 if (progress >= target) {
                     FluidStack drain = BlockUtil.drainBlock(world, currentPos, false);
                     if (drain != null &&
-                        paths.get(currentPos).stream()
-                            .allMatch(blockPos -> BlockUtil.getFluidWithFlowing(world, blockPos) != null) &&
+                        fluidTree.testPath(index, p -> BlockUtil.getFluidWithFlowing(world, p) != null) &&
                         canDrain(currentPos)) {
                         tank.fillInternal(drain, true);
                         progress = 0;
@@ -260,18 +336,67 @@ public class TilePump extends TileMiner {
                             nextPos();
                         }
                     } else {
-                        buildQueue();
+                        // The path to this block has been broken: skip it, and search again once the queue is empty
+                        needsRebuild = true;
                         nextPos();
                     }
                     prevResult = true;
                 }
-            } else {
+            } else if (currentPos != null || isRebuildNeeded()) {
+                // An empty queue on its own doesn't need a rebuild: it just means that there is nothing left to drain,
+                // and applyChanges() adds any fluid that appears next to the tree later on
                 buildQueue();
+                if (fluidTree.isSearching()) {
+                    return;
+                }
                 nextPos();
             }
         }
     }
 
+    @Override
+    public void validate() {
+        super.validate();
+        if (!world.isRemote) {
+            LocalBlockUpdateNotifier.instance(world).registerSubscriberForUpdateNotifications(this);
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        if (!world.isRemote) {
+            LocalBlockUpdateNotifier.instance(world).removeSubscriberFromUpdateNotifications(this);
+        }
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        if (!world.isRemote) {
+            LocalBlockUpdateNotifier.instance(world).removeSubscriberFromUpdateNotifications(this);
+        }
+    }
+
+    // ILocalBlockUpdateSubscriber
+
+    @Override
+    public BlockPos getSubscriberPos() {
+        return getPos();
+    }
+
+    @Override
+    public int getUpdateRange() {
+        return SEARCH_RADIUS;
+    }
+
+    @Override
+    public void setWorldUpdated(World world, BlockPos eventPos, IBlockState oldState, IBlockState newState, int flags) {
+        if (!fluidTree.isEmpty()) {
+            changedPositions.add(eventPos.toLong());
+        }
+    }
+
     // NBT
 
     @Override
@@ -320,6 +445,7 @@ public class TilePump extends TileMiner {
         super.getDebugInfo(left, right, side);
         left.add("fluid = " + tank.getDebugString());
         left.add("queue size = " + queue.size());
+        left.add("searched = " + fluidTree.size() + (fluidTree.isSearching() ? " (searching)" : ""));
         left.add("infinite = " + isInfiniteWaterSource);
     }
 
@@ -8,9 +8,12 @@ package buildcraft.factory.tile;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.entity.EntityLivingBase;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.ItemStack;
@@ -21,7 +24,6 @@ import net.minecraft.util.ITickable;
 import net.minecraft.util.math.BlockPos;
 
 import net.minecraftforge.fluids.FluidStack;
-import net.minecraftforge.fluids.capability.FluidTankProperties;
 import net.minecraftforge.fluids.capability.IFluidTankProperties;
 import net.minecraftforge.fml.common.network.simpleimpl.MessageContext;
 import net.minecraftforge.fml.relauncher.Side;
@@ -41,17 +43,34 @@ import buildcraft.lib.misc.data.IdAllocator;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.TileBC_Neptune;
 
-public class TileTank extends TileBC_Neptune implements ITickable, IDebuggable, IFluidHandlerAdv {
+public class TileTank extends TileBC_Neptune
+    implements ITickable, IDebuggable, IFluidHandlerAdv, TankColumn.Member {
     public static final IdAllocator IDS = TileBC_Neptune.IDS.makeChild("tank");
     public static final int NET_FLUID_DELTA = IDS.allocId("FLUID_DELTA");
 
     private static boolean isPlayerInteracting = false;
 
-    public final Tank tank = new Tank("tank", 16000, this);
+    public final Tank tank = new Tank("tank", 16000, this) {
+        @Override
+        protected void onContentsChanged() {
+            super.onContentsChanged();
+            onTankChanged();
+        }
+
+        @Override
+        public void setFluid(FluidStack fluid) {
+            super.setFluid(fluid);
+            onTankChanged();
+        }
+    };
     public final FluidSmoother smoothedTank = new FluidSmoother(w -> createAndSendMessage(NET_FLUID_DELTA, w), tank);
 
     private int lastComparatorLevel;
 
+    /** The column of tanks that this is in, shared with every other tank in it. Null if it hasn't been found yet. */
+    @Nullable
+    private TankColumn column;
+
     public TileTank() {
         tankManager.add(tank);
         caps.addCapabilityInstance(CapUtil.CAP_FLUIDS, this, EnumPipePart.VALUES);
@@ -85,14 +104,33 @@ public class TileTank extends TileBC_Neptune implements ITickable, IDebuggable,
 
     // TileEntity
 
+    @Override
+    public void onLoad() {
+        super.onLoad();
+        // The tanks above and below are now part of a different column
+        TankColumn.onMemberAdded(this);
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        TankColumn.onMemberRemoved(this);
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        TankColumn.onMemberRemoved(this);
+    }
+
     @Override
     public void onPlacedBy(EntityLivingBase placer, ItemStack stack) {
         super.onPlacedBy(placer, stack);
         if (!placer.world.isRemote) {
-            List<TileTank> tanks = getTanks();
+            List<TankColumn.Member> tanks = new ArrayList<>(Arrays.asList(getColumn().tanks));
             FluidStack fluid = null;
-            for (TileTank tile : tanks) {
-                FluidStack held = tile.tank.getFluid();
+            for (TankColumn.Member tile : tanks) {
+                FluidStack held = tile.getColumnTank().getFluid();
                 if (held == null) {
                     continue;
                 }
@@ -108,11 +146,11 @@ public class TileTank extends TileBC_Neptune implements ITickable, IDebuggable,
             if (fluid.getFluid().isGaseous(fluid)) {
                 Collections.reverse(tanks);
             }
-            TileTank prev = null;
+            TankColumn.Member prev = null;
             isPlayerInteracting = true;
-            for (TileTank tile : tanks) {
+            for (TankColumn.Member tile : tanks) {
                 if (prev != null) {
-                    FluidUtilBC.move(tile.tank, prev.tank);
+                    FluidUtilBC.move(tile.getColumnTank(), prev.getColumnTank());
                 }
                 prev = tile;
             }
@@ -181,55 +219,53 @@ public class TileTank extends TileBC_Neptune implements ITickable, IDebuggable,
         return null;
     }
 
-    private List<TileTank> getTanks() {
-        List<TileTank> tanks = new ArrayList<>();
-        BlockPos currentPos = pos;
-        while (true) {
-            TileTank tankUp = getTank(currentPos);
-            if (tankUp != null) {
-                tanks.add(tankUp);
-            } else {
-                break;
-            }
-            currentPos = currentPos.up();
+    private void onTankChanged() {
+        if (column != null) {
+            column.onTankChanged();
         }
-        currentPos = pos.down();
-        while (true) {
-            TileTank tankBelow = getTank(currentPos);
-            if (tankBelow != null) {
-                tanks.add(0, tankBelow);
-            } else {
-                break;
-            }
-            currentPos = currentPos.down();
+    }
+
+    TankColumn getColumn() {
+        return TankColumn.get(this);
+    }
+
+    // TankColumn.Member
+
+    @Override
+    public Tank getColumnTank() {
+        return tank;
+    }
+
+    @Override
+    @Nullable
+    public TankColumn.Member getColumnNeighbour(boolean up) {
+        if (isInvalid()) {
+            return null;
         }
-        return tanks;
+        return getTank(up ? pos.up() : pos.down());
+    }
+
+    @Override
+    @Nullable
+    public TankColumn getCachedColumn() {
+        return column;
+    }
+
+    @Override
+    public void setCachedColumn(@Nullable TankColumn column) {
+        this.column = column;
+    }
+
+    @Override
+    public void sendColumnUpdate() {
+        sendNetworkUpdate(NET_RENDER_DATA);
     }
 
     // IFluidHandler
 
     @Override
     public IFluidTankProperties[] getTankProperties() {
-        List<TileTank> tanks = getTanks();
-        TileTank bottom = tanks.get(0);
-        FluidStack total = bottom.tank.getFluid();
-        int capacity = 0;
-        if (total == null) {
-            for (TileTank t : tanks) {
-                capacity += t.tank.getCapacity();
-            }
-        } else {
-            total = total.copy();
-            total.amount = 0;
-            for (TileTank t : tanks) {
-                FluidStack other = t.tank.getFluid();
-                if (other != null) {
-                    total.amount += other.amount;
-                }
-                capacity += t.tank.getCapacity();
-            }
-        }
-        return new IFluidTankProperties[] { new FluidTankProperties(total, capacity) };
+        return getColumn().getTankProperties();
     }
 
     @Override
@@ -237,32 +273,7 @@ public class TileTank extends TileBC_Neptune implements ITickable, IDebuggable,
         if (resource == null || resource.amount <= 0) {
             return 0;
         }
-        int filled = 0;
-        List<TileTank> tanks = getTanks();
-        for (TileTank t : tanks) {
-            FluidStack current = t.tank.getFluid();
-            if (current != null && !current.isFluidEqual(resource)) {
-                return 0;
-            }
-        }
-        boolean gas = resource.getFluid().isGaseous(resource);
-        if (gas) {
-            Collections.reverse(tanks);
-        }
-        for (TileTank t : tanks) {
-            int tankFilled = t.tank.fill(resource, doFill);
-            if (tankFilled > 0) {
-                if (isPlayerInteracting & doFill) {
-                    t.sendNetworkUpdate(NET_RENDER_DATA);
-                }
-                resource.amount -= tankFilled;
-                filled += tankFilled;
-                if (resource.amount == 0) {
-                    break;
-                }
-            }
-        }
-        return filled;
+        return getColumn().fill(resource, doFill, isPlayerInteracting);
     }
 
     @Override
@@ -285,35 +296,6 @@ public class TileTank extends TileBC_Neptune implements ITickable, IDebuggable,
         if (maxDrain <= 0) {
             return null;
         }
-        List<TileTank> tanks = getTanks();
-        boolean gas = false;
-        for (TileTank tile : tanks) {
-            FluidStack fluid = tile.tank.getFluid();
-            if (fluid != null) {
-                gas = fluid.getFluid().isGaseous(fluid);
-                break;
-            }
-        }
-        if (!gas) {
-            Collections.reverse(tanks);
-        }
-        FluidStack total = null;
-        for (TileTank t : tanks) {
-            int realMax = maxDrain - (total == null ? 0 : total.amount);
-            if (realMax <= 0) {
-                break;
-            }
-            FluidStack drained = t.tank.drain(filter, realMax, doDrain);
-            if (drained == null) continue;
-            if (isPlayerInteracting & doDrain) {
-                t.sendNetworkUpdate(NET_RENDER_DATA);
-            }
-            if (total == null) {
-                total = drained.copy();
-                total.amount = 0;
-            }
-            total.amount += drained.amount;
-        }
-        return total;
+        return getColumn().drain(filter, maxDrain, doDrain, isPlayerInteracting);
     }
 }
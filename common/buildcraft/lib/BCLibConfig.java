@@ -20,6 +20,7 @@ import buildcraft.lib.chunkload.IChunkLoadingTile;
 import buildcraft.lib.chunkload.IChunkLoadingTile.LoadType;
 import buildcraft.lib.misc.ColourUtil;
 import buildcraft.lib.misc.LocaleUtil;
+import buildcraft.lib.net.TileUpdateBatcher;
 
 /** Configuration file for lib. In order to keep lib as close to being just a library mod as possible, these are not set
  * by a config file, but instead by BC Core. Feel free to set them yourself, from your own configs, if you do not depend
@@ -64,6 +65,10 @@ public class BCLibConfig {
 
     public static ChunkLoaderLevel chunkLoadingLevel = ChunkLoaderLevel.SELF_TILES;
 
+    /** If true then the tile update messages sent to each player are collected up and sent as a single (compressed)
+     * message at the end of every server tick. See {@link TileUpdateBatcher}. */
+    public static boolean batchTileUpdates = true;
+
     public static final List<Runnable> configChangeListeners = new ArrayList<>();
 
     /** Resets cached values across various BCLib classes that rely on these config options. */
@@ -11,6 +11,7 @@ import net.minecraft.client.renderer.texture.TextureMap;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.item.crafting.IRecipe;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.math.RayTraceResult;
 import net.minecraft.util.text.ITextComponent;
@@ -22,10 +23,12 @@ import net.minecraft.world.WorldServer;
 import net.minecraftforge.client.event.ModelBakeEvent;
 import net.minecraftforge.client.event.RenderWorldLastEvent;
 import net.minecraftforge.client.event.TextureStitchEvent;
+import net.minecraftforge.event.RegistryEvent;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.Loader;
 import net.minecraftforge.fml.common.ModContainer;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent.ClientTickEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent.Phase;
@@ -45,12 +48,14 @@ import buildcraft.lib.client.sprite.SpriteHolderRegistry;
 import buildcraft.lib.debug.BCAdvDebugging;
 import buildcraft.lib.debug.ClientDebuggables;
 import buildcraft.lib.marker.MarkerCache;
+import buildcraft.lib.misc.CraftingUtil;
 import buildcraft.lib.misc.FakePlayerProvider;
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.data.ModelVariableData;
 import buildcraft.lib.net.MessageDebugRequest;
 import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.cache.BuildCraftObjectCaches;
+import buildcraft.lib.recipe.AssemblyRecipeRegistry;
 
 public enum BCLibEventDist {
     INSTANCE;
@@ -73,6 +78,18 @@ public enum BCLibEventDist {
         }
     }
 
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onRegisterRecipes(RegistryEvent.Register<IRecipe> event) {
+        CraftingUtil.invalidateRecipeCache();
+    }
+
+    @SubscribeEvent
+    public static void onIdMapping(RegistryEvent.IdMappingEvent event) {
+        // The recipe indexes are keyed by item id
+        CraftingUtil.invalidateRecipeCache();
+        AssemblyRecipeRegistry.invalidateIndex();
+    }
+
     @SubscribeEvent
     @SideOnly(Side.CLIENT)
     public static void onConnectToServer(ClientConnectedToServerEvent event) {
@@ -179,7 +196,9 @@ public enum BCLibEventDist {
     public static void serverTick(ServerTickEvent event) {
         if (event.phase == Phase.END) {
             BCAdvDebugging.INSTANCE.onServerPostTick();
+            BuildCraftObjectCaches.onServerTick();
             MessageUtil.postTick();
+            MessageUtil.postServerTick();
         }
     }
 
@@ -45,6 +45,7 @@ import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.MessageManager.MessageId;
 import buildcraft.lib.net.MessageMarker;
 import buildcraft.lib.net.MessageUpdateTile;
+import buildcraft.lib.net.MessageUpdateTileBatch;
 import buildcraft.lib.net.cache.MessageObjectCacheRequest;
 import buildcraft.lib.net.cache.MessageObjectCacheResponse;
 
@@ -59,6 +60,8 @@ public abstract class BCLibProxy implements IGuiHandler {
     void fmlPreInit() {
         MessageManager.addType(MessageId.BC_LIB_TILE_UPDATE, MessageUpdateTile.class, MessageUpdateTile.HANDLER);
         MessageManager.addType(MessageId.BC_LIB_CONTAINER, MessageContainer.class, MessageContainer.HANDLER);
+        MessageManager.addType(MessageId.BC_LIB_TILE_UPDATE_BATCH, MessageUpdateTileBatch.class,
+            MessageUpdateTileBatch.HANDLER, Side.CLIENT);
     }
 
     void fmlInit() {}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.block;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+/** Stores {@link ILocalBlockUpdateSubscriber}s by every chunk that their update range covers, so that a block update
+ * only has to look at the subscribers that could be in range of it, rather than every one in the world.
+ * <p>
+ * The position and range of a subscriber are read when it is added: if either of them changes then it must be added
+ * again. */
+public final class LocalBlockUpdateIndex {
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final Map<ILocalBlockUpdateSubscriber, Entry> entries = new HashMap<>();
+    /** Chunk key (from {@link ChunkPos#asLong(int, int)}) to every entry whose range covers that chunk. These arrays
+     * are replaced rather than changed, so it's safe to add or remove subscribers while iterating over one. */
+    private final TLongObjectHashMap<Entry[]> entriesByChunk = new TLongObjectHashMap<>();
+
+    public void add(ILocalBlockUpdateSubscriber subscriber) {
+        remove(subscriber);
+        Entry entry = new Entry(subscriber);
+        entries.put(subscriber, entry);
+        for (int cx = entry.minChunkX; cx <= entry.maxChunkX; cx++) {
+            for (int cz = entry.minChunkZ; cz <= entry.maxChunkZ; cz++) {
+                long key = ChunkPos.asLong(cx, cz);
+                Entry[] existing = entriesByChunk.get(key);
+                if (existing == null) {
+                    entriesByChunk.put(key, new Entry[] { entry });
+                } else {
+                    Entry[] added = Arrays.copyOf(existing, existing.length + 1);
+                    added[existing.length] = entry;
+                    entriesByChunk.put(key, added);
+                }
+            }
+        }
+    }
+
+    public void remove(ILocalBlockUpdateSubscriber subscriber) {
+        Entry entry = entries.remove(subscriber);
+        if (entry == null) {
+            return;
+        }
+        for (int cx = entry.minChunkX; cx <= entry.maxChunkX; cx++) {
+            for (int cz = entry.minChunkZ; cz <= entry.maxChunkZ; cz++) {
+                long key = ChunkPos.asLong(cx, cz);
+                Entry[] existing = entriesByChunk.get(key);
+                if (existing == null) {
+                    continue;
+                }
+                if (existing.length == 1) {
+                    entriesByChunk.remove(key);
+                    continue;
+                }
+                Entry[] removed = new Entry[existing.length - 1];
+                int i = 0;
+                for (Entry e : existing) {
+                    if (e != entry) {
+                        removed[i++] = e;
+                    }
+                }
+                entriesByChunk.put(key, removed);
+            }
+        }
+    }
+
+    public boolean contains(ILocalBlockUpdateSubscriber subscriber) {
+        return entries.containsKey(subscriber);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** @return Every entry whose range covers the chunk that the given position is in. Only the ones that return true
+     *         from {@link Entry#isInRange(BlockPos)} should be notified. The returned array must not be modified. */
+    public Entry[] getEntriesNear(BlockPos pos) {
+        Entry[] found = entriesByChunk.get(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4));
+        return found == null ? NO_ENTRIES : found;
+    }
+
+    public static final class Entry {
+        public final ILocalBlockUpdateSubscriber subscriber;
+        private final int x, y, z, range;
+        private final int minChunkX, minChunkZ, maxChunkX, maxChunkZ;
+
+        Entry(ILocalBlockUpdateSubscriber subscriber) {
+            this.subscriber = subscriber;
+            BlockPos pos = subscriber.getSubscriberPos();
+            x = pos.getX();
+            y = pos.getY();
+            z = pos.getZ();
+            range = subscriber.getUpdateRange();
+            minChunkX = (x - range) >> 4;
+            minChunkZ = (z - range) >> 4;
+            maxChunkX = (x + range) >> 4;
+            maxChunkZ = (z + range) >> 4;
+        }
+
+        public boolean isInRange(BlockPos pos) {
+            return Math.abs(x - pos.getX()) <= range //
+                && Math.abs(y - pos.getY()) <= range //
+                && Math.abs(z - pos.getZ()) <= range;
+        }
+    }
+}
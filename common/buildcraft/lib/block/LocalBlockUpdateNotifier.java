@@ -1,8 +1,7 @@
 package buildcraft.lib.block;
 
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.WeakHashMap;
 
 import javax.annotation.Nonnull;
@@ -12,6 +11,7 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.IWorldEventListener;
 import net.minecraft.world.World;
 
+import buildcraft.lib.block.LocalBlockUpdateIndex.Entry;
 import buildcraft.lib.world.WorldEventListenerAdapter;
 
 
@@ -22,7 +22,17 @@ import buildcraft.lib.world.WorldEventListenerAdapter;
 public class LocalBlockUpdateNotifier {
 
     private static final Map<World, LocalBlockUpdateNotifier> instanceMap = new WeakHashMap<>();
-    private final Set<ILocalBlockUpdateSubscriber> subscriberSet = new HashSet<>();
+    private static final long STATS_PERIOD = 1_000_000_000;
+
+    private final LocalBlockUpdateIndex subscribers = new LocalBlockUpdateIndex();
+
+    /** Counts for the current (partial) second. */
+    private long statsStart = System.nanoTime();
+    private int notifications, notified;
+    private long timeSpent;
+    /** Counts for the last full second. */
+    private int notificationsPerSecond, notifiedPerSecond;
+    private long timeSpentPerSecond;
 
 
     private LocalBlockUpdateNotifier(World world) {
@@ -51,12 +61,13 @@ public class LocalBlockUpdateNotifier {
     }
 
     /**
-     * Register an @{ILocalBlockUpdateSubscriber} to receive notifications about block updates
+     * Register an @{ILocalBlockUpdateSubscriber} to receive notifications about block updates. The position and range
+     * of the subscriber are read now, so it must be registered again if either of them change.
      *
      * @param subscriber the subscriber to receive notifications about local block updates
      */
     public void registerSubscriberForUpdateNotifications(ILocalBlockUpdateSubscriber subscriber) {
-        subscriberSet.add(subscriber);
+        subscribers.add(subscriber);
     }
 
     /**
@@ -65,7 +76,7 @@ public class LocalBlockUpdateNotifier {
      * @param subscriber the subscriber to no longer receive notifications about local block update
      */
     public void removeSubscriberFromUpdateNotifications(ILocalBlockUpdateSubscriber subscriber) {
-        subscriberSet.remove(subscriber);
+        subscribers.remove(subscriber);
     }
 
     /**
@@ -81,15 +92,55 @@ public class LocalBlockUpdateNotifier {
      */
     private void notifySubscribersInRange(World world, BlockPos eventPos, IBlockState oldState, IBlockState newState,
                                           int flags) {
-        for (ILocalBlockUpdateSubscriber subscriber : subscriberSet) {
-            BlockPos keyPos = subscriber.getSubscriberPos();
-            int updateRange = subscriber.getUpdateRange();
-            if (Math.abs(keyPos.getX() - eventPos.getX()) <= updateRange &&
-                    Math.abs(keyPos.getY() - eventPos.getY()) <= updateRange &&
-                    Math.abs(keyPos.getZ() - eventPos.getZ()) <= updateRange) {
-                subscriber.setWorldUpdated(world, eventPos, oldState, newState, flags);
+        long start = System.nanoTime();
+        for (Entry entry : subscribers.getEntriesNear(eventPos)) {
+            if (entry.isInRange(eventPos)) {
+                entry.subscriber.setWorldUpdated(world, eventPos, oldState, newState, flags);
+                notified++;
             }
         }
+        long end = System.nanoTime();
+        notifications++;
+        timeSpent += end - start;
+        updateStats(end);
+    }
+
+    private void updateStats(long now) {
+        if (now - statsStart >= STATS_PERIOD) {
+            // If nothing happened for over a second then the last second was empty as well
+            boolean skipped = now - statsStart >= STATS_PERIOD * 2;
+            notificationsPerSecond = skipped ? 0 : notifications;
+            notifiedPerSecond = skipped ? 0 : notified;
+            timeSpentPerSecond = skipped ? 0 : timeSpent;
+            notifications = 0;
+            notified = 0;
+            timeSpent = 0;
+            statsStart = now;
+        }
+    }
+
+    /**
+     * @return the number of block updates in the last second
+     */
+    public int getNotificationsPerSecond() {
+        updateStats(System.nanoTime());
+        return notificationsPerSecond;
+    }
+
+    /**
+     * @return the time (in nanoseconds) spent notifying subscribers in the last second
+     */
+    public long getTimeSpentPerSecond() {
+        updateStats(System.nanoTime());
+        return timeSpentPerSecond;
+    }
+
+    public void getDebugInfo(List<String> left) {
+        updateStats(System.nanoTime());
+        left.add("Block update notifier:");
+        left.add("  subscribers = " + subscribers.size());
+        left.add("  updates = " + notificationsPerSecond + "/s, notified " + notifiedPerSecond + "/s");
+        left.add("  time = " + timeSpentPerSecond / 1000 + "µs/s");
     }
 
 }
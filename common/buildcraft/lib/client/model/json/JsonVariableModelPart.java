@@ -19,6 +19,7 @@ import buildcraft.lib.client.model.ResourceLoaderContext;
 import buildcraft.lib.client.model.json.JsonVariableModel.ITextureGetter;
 import buildcraft.lib.expression.FunctionContext;
 import buildcraft.lib.expression.GenericExpressionCompiler;
+import buildcraft.lib.expression.NodeBytecodeCompiler;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -64,7 +65,8 @@ public abstract class JsonVariableModelPart {
 
     public static INodeDouble convertStringToDoubleNode(String expression, FunctionContext context) {
         try {
-            return GenericExpressionCompiler.compileExpressionDouble(expression, context);
+            INodeDouble node = GenericExpressionCompiler.compileExpressionDouble(expression, context);
+            return NodeBytecodeCompiler.compileIfEnabled(node);
         } catch (InvalidExpressionException e) {
             throw new JsonSyntaxException("Invalid expression " + expression, e);
         }
@@ -72,7 +74,8 @@ public abstract class JsonVariableModelPart {
 
     public static INodeObject<String> convertStringToStringNode(String expression, FunctionContext context) {
         try {
-            return GenericExpressionCompiler.compileExpressionString(expression, context);
+            INodeObject<String> node = GenericExpressionCompiler.compileExpressionString(expression, context);
+            return NodeBytecodeCompiler.compileIfEnabled(node);
         } catch (InvalidExpressionException e) {
             throw new JsonSyntaxException("Invalid expression " + expression, e);
         }
@@ -80,7 +83,8 @@ public abstract class JsonVariableModelPart {
 
     public static INodeBoolean convertStringToBooleanNode(String expression, FunctionContext context) {
         try {
-            return GenericExpressionCompiler.compileExpressionBoolean(expression, context);
+            INodeBoolean node = GenericExpressionCompiler.compileExpressionBoolean(expression, context);
+            return NodeBytecodeCompiler.compileIfEnabled(node);
         } catch (InvalidExpressionException e) {
             throw new JsonSyntaxException("Invalid expression " + expression, e);
         }
@@ -88,7 +92,8 @@ public abstract class JsonVariableModelPart {
 
     public static INodeLong convertStringToLongNode(String expression, FunctionContext context) {
         try {
-            return GenericExpressionCompiler.compileExpressionLong(expression, context);
+            INodeLong node = GenericExpressionCompiler.compileExpressionLong(expression, context);
+            return NodeBytecodeCompiler.compileIfEnabled(node);
         } catch (InvalidExpressionException e) {
             throw new JsonSyntaxException("Invalid expression " + expression, e);
         }
@@ -96,7 +101,8 @@ public abstract class JsonVariableModelPart {
     
     public static <T> INodeObject<T> convertStringToObjectNode(String expression, FunctionContext context, Class<T> clazz) {
         try {
-            return GenericExpressionCompiler.compileExpressionObject(clazz, expression, context);
+            INodeObject<T> node = GenericExpressionCompiler.compileExpressionObject(clazz, expression, context);
+            return NodeBytecodeCompiler.compileIfEnabled(node);
         } catch (InvalidExpressionException e) {
             throw new JsonSyntaxException("Invalid expression " + expression, e);
         }
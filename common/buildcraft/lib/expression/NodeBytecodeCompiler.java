@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.expression;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import buildcraft.lib.expression.api.IConstantNode;
+import buildcraft.lib.expression.api.IExpressionNode;
+import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
+import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
+import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
+import buildcraft.lib.expression.api.IExpressionNode.INodeObject;
+import buildcraft.lib.expression.api.IVariableNode;
+import buildcraft.lib.expression.node.cast.NodeCastLongToDouble;
+import buildcraft.lib.expression.node.condition.NodeConditionalBoolean;
+import buildcraft.lib.expression.node.condition.NodeConditionalDouble;
+import buildcraft.lib.expression.node.condition.NodeConditionalLong;
+import buildcraft.lib.expression.node.condition.NodeConditionalObject;
+import buildcraft.lib.expression.node.func.NodeFuncBase.IFunctionNode;
+import buildcraft.lib.expression.node.value.NodeConstantBoolean;
+import buildcraft.lib.expression.node.value.NodeConstantDouble;
+import buildcraft.lib.expression.node.value.NodeConstantLong;
+import buildcraft.lib.expression.node.value.NodeVariableBoolean;
+import buildcraft.lib.expression.node.value.NodeVariableDouble;
+import buildcraft.lib.expression.node.value.NodeVariableLong;
+import buildcraft.lib.expression.node.value.NodeVariableObject;
+
+/** Compiles (inlined) expression trees into a single class each, so that evaluating them doesn't have to go through a
+ * virtual call per node. Variables are read directly from their fields, functions are called directly through their
+ * (static final) function objects, and conditionals whose condition is constant are removed entirely.
+ * <p>
+ * Any node that isn't known here is kept as it is and called through its evaluate method, and if compiling fails for
+ * any reason then the (inlined) tree itself is returned instead. */
+public final class NodeBytecodeCompiler {
+
+    /** If false then {@link #compileIfEnabled(INodeLong)} (etc) will just return the node given. Set by BC Core from
+     * its config. */
+    public static boolean enabled = false;
+
+    private static final String PACKAGE = "buildcraft/lib/expression/compiled/";
+    private static final String OWN_NAME = Type.getInternalName(NodeBytecodeCompiler.class);
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+    private static final Map<String, Object[]> PENDING_FIELDS = new ConcurrentHashMap<>();
+
+    private NodeBytecodeCompiler() {}
+
+    public static INodeLong compileIfEnabled(INodeLong node) {
+        return enabled ? compile(node) : node;
+    }
+
+    public static INodeDouble compileIfEnabled(INodeDouble node) {
+        return enabled ? compile(node) : node;
+    }
+
+    public static INodeBoolean compileIfEnabled(INodeBoolean node) {
+        return enabled ? compile(node) : node;
+    }
+
+    public static <T> INodeObject<T> compileIfEnabled(INodeObject<T> node) {
+        return enabled ? compile(node) : node;
+    }
+
+    public static INodeLong compile(INodeLong node) {
+        return (INodeLong) compile0(node.inline(), INodeLong.class);
+    }
+
+    public static INodeDouble compile(INodeDouble node) {
+        return (INodeDouble) compile0(node.inline(), INodeDouble.class);
+    }
+
+    public static INodeBoolean compile(INodeBoolean node) {
+        return (INodeBoolean) compile0(node.inline(), INodeBoolean.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> INodeObject<T> compile(INodeObject<T> node) {
+        return (INodeObject<T>) compile0(node.inline(), INodeObject.class);
+    }
+
+    /** Only public so that the compiled classes can get their fields: this shouldn't be called from anywhere else. */
+    public static Object[] takeFields(String className) {
+        return PENDING_FIELDS.remove(className);
+    }
+
+    private static IExpressionNode compile0(IExpressionNode node, Class<?> nodeType) {
+        if (node instanceof IConstantNode || node instanceof IVariableNode) {
+            // Nothing would be gained from compiling these
+            return node;
+        }
+        String name = PACKAGE + "Expression" + NEXT_ID.incrementAndGet();
+        try {
+            ClassCompiler compiler = new ClassCompiler(name, nodeType);
+            byte[] bytes = compiler.compile(node);
+            String className = name.replace('/', '.');
+            PENDING_FIELDS.put(className, compiler.fieldValues.toArray());
+            try {
+                Class<?> cls = new ExpressionClassLoader().define(className, bytes);
+                return (IExpressionNode) cls.newInstance();
+            } finally {
+                PENDING_FIELDS.remove(className);
+            }
+        } catch (Throwable t) {
+            ExpressionDebugManager.logger.accept("[lib.expression] Failed to compile " + node + ": " + t);
+            return node;
+        }
+    }
+
+    private static final class ExpressionClassLoader extends ClassLoader {
+        ExpressionClassLoader() {
+            super(NodeBytecodeCompiler.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class ClassCompiler {
+        private final String name;
+        private final Class<?> nodeType;
+        private final ClassWriter cw;
+        final List<Object> fieldValues = new ArrayList<>();
+        private final List<String> fieldDescs = new ArrayList<>();
+
+        ClassCompiler(String name, Class<?> nodeType) {
+            this.name = name;
+            this.nodeType = nodeType;
+            this.cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+                @Override
+                protected String getCommonSuperClass(String type1, String type2) {
+                    // Every object value that we branch with is typed as Object, and we can't load classes from here
+                    return "java/lang/Object";
+                }
+            };
+        }
+
+        byte[] compile(IExpressionNode node) {
+            String[] interfaces = { Type.getInternalName(nodeType) };
+            cw.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, name, null,
+                "java/lang/Object", interfaces);
+
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+
+            Class<?> returnType = getReturnType(nodeType);
+            mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "evaluate", "()" + Type.getDescriptor(returnType), null, null);
+            mv.visitCode();
+            emit(mv, node);
+            mv.visitInsn(Type.getType(returnType).getOpcode(Opcodes.IRETURN));
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+
+            if (nodeType == INodeObject.class) {
+                emitGetter("getType", Class.class, ((INodeObject<?>) node).getType());
+            }
+            emitGetter("toString", String.class, node.toString());
+
+            // Added last, as the above add fields as they are needed
+            mv = cw.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+            mv.visitCode();
+            mv.visitLdcInsn(name.replace('/', '.'));
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, OWN_NAME, "takeFields", "(Ljava/lang/String;)[Ljava/lang/Object;",
+                false);
+            for (int i = 0; i < fieldDescs.size(); i++) {
+                String desc = fieldDescs.get(i);
+                mv.visitInsn(Opcodes.DUP);
+                mv.visitLdcInsn(i);
+                mv.visitInsn(Opcodes.AALOAD);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getType(desc).getInternalName());
+                mv.visitFieldInsn(Opcodes.PUTSTATIC, name, "f" + i, desc);
+            }
+            mv.visitInsn(Opcodes.POP);
+            mv.visitInsn(Opcodes.RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        private void emitGetter(String method, Class<?> type, Object value) {
+            MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method, "()" + Type.getDescriptor(type), null, null);
+            mv.visitCode();
+            emitField(mv, value, type);
+            mv.visitInsn(Opcodes.ARETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        /** Adds a static final field holding the given value, and loads it. */
+        private void emitField(MethodVisitor mv, Object value, Class<?> type) {
+            String field = "f" + fieldValues.size();
+            String desc = Type.getDescriptor(type);
+            fieldValues.add(value);
+            fieldDescs.add(desc);
+            cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, field, desc, null, null)
+                .visitEnd();
+            mv.visitFieldInsn(Opcodes.GETSTATIC, name, field, desc);
+        }
+
+        /** Emits the instructions to evaluate the given node, leaving its value on the stack. */
+        private void emit(MethodVisitor mv, IExpressionNode node) {
+            Class<?> cls = node.getClass();
+            if (node instanceof NodeConstantLong) {
+                mv.visitLdcInsn(((NodeConstantLong) node).value);
+            } else if (node instanceof NodeConstantDouble) {
+                mv.visitLdcInsn(((NodeConstantDouble) node).value);
+            } else if (node instanceof NodeConstantBoolean) {
+                mv.visitInsn(((NodeConstantBoolean) node).value ? Opcodes.ICONST_1 : Opcodes.ICONST_0);
+            } else if (cls == NodeVariableLong.class) {
+                emitVariable(mv, node, "J");
+            } else if (cls == NodeVariableDouble.class) {
+                emitVariable(mv, node, "D");
+            } else if (cls == NodeVariableBoolean.class) {
+                emitVariable(mv, node, "Z");
+            } else if (cls == NodeVariableObject.class) {
+                emitVariable(mv, node, "Ljava/lang/Object;");
+            } else if (cls == NodeConditionalLong.class) {
+                NodeConditionalLong cond = (NodeConditionalLong) node;
+                emitConditional(mv, cond.getCondition(), cond.getIfTrue(), cond.getIfFalse());
+            } else if (cls == NodeConditionalDouble.class) {
+                NodeConditionalDouble cond = (NodeConditionalDouble) node;
+                emitConditional(mv, cond.getCondition(), cond.getIfTrue(), cond.getIfFalse());
+            } else if (cls == NodeConditionalBoolean.class) {
+                NodeConditionalBoolean cond = (NodeConditionalBoolean) node;
+                emitConditional(mv, cond.getCondition(), cond.getIfTrue(), cond.getIfFalse());
+            } else if (cls == NodeConditionalObject.class) {
+                NodeConditionalObject<?> cond = (NodeConditionalObject<?>) node;
+                emitConditional(mv, cond.getCondition(), cond.getIfTrue(), cond.getIfFalse());
+            } else if (cls == NodeCastLongToDouble.class) {
+                emit(mv, ((NodeCastLongToDouble) node).getFrom());
+                mv.visitInsn(Opcodes.L2D);
+            } else if (node instanceof IFunctionNode) {
+                emitFunction(mv, (IFunctionNode) node);
+            } else {
+                Class<?> type = getNodeType(node);
+                emitField(mv, node, type);
+                String desc = "()" + Type.getDescriptor(getReturnType(type));
+                mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, Type.getInternalName(type), "evaluate", desc, true);
+            }
+        }
+
+        private void emitVariable(MethodVisitor mv, IExpressionNode node, String desc) {
+            Class<?> cls = node.getClass();
+            emitField(mv, node, cls);
+            mv.visitFieldInsn(Opcodes.GETFIELD, Type.getInternalName(cls), "value", desc);
+        }
+
+        private void emitConditional(MethodVisitor mv, INodeBoolean condition, IExpressionNode ifTrue,
+            IExpressionNode ifFalse) {
+            if (condition instanceof NodeConstantBoolean) {
+                // Inlining only removes the conditional if both branches are constant as well
+                emit(mv, ((NodeConstantBoolean) condition).value ? ifTrue : ifFalse);
+                return;
+            }
+            Label labelFalse = new Label();
+            Label labelEnd = new Label();
+            emit(mv, condition);
+            mv.visitJumpInsn(Opcodes.IFEQ, labelFalse);
+            emit(mv, ifTrue);
+            mv.visitJumpInsn(Opcodes.GOTO, labelEnd);
+            mv.visitLabel(labelFalse);
+            emit(mv, ifFalse);
+            mv.visitLabel(labelEnd);
+        }
+
+        private void emitFunction(MethodVisitor mv, IFunctionNode node) {
+            Class<?> type = node.getFunctionType();
+            Method method = getFunctionMethod(type);
+            emitField(mv, node.getFunction(), type);
+            for (IExpressionNode arg : node.getArguments()) {
+                emit(mv, arg);
+            }
+            mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, Type.getInternalName(type), method.getName(),
+                Type.getMethodDescriptor(method), true);
+        }
+    }
+
+    private static Method getFunctionMethod(Class<?> functionType) {
+        for (Method method : functionType.getMethods()) {
+            if (Modifier.isAbstract(method.getModifiers())) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException("No function method in " + functionType);
+    }
+
+    private static Class<?> getNodeType(IExpressionNode node) {
+        if (node instanceof INodeLong) {
+            return INodeLong.class;
+        } else if (node instanceof INodeDouble) {
+            return INodeDouble.class;
+        } else if (node instanceof INodeBoolean) {
+            return INodeBoolean.class;
+        } else if (node instanceof INodeObject) {
+            return INodeObject.class;
+        }
+        throw new IllegalArgumentException("Unknown node " + node.getClass());
+    }
+
+    private static Class<?> getReturnType(Class<?> nodeType) {
+        if (nodeType == INodeLong.class) {
+            return long.class;
+        } else if (nodeType == INodeDouble.class) {
+            return double.class;
+        } else if (nodeType == INodeBoolean.class) {
+            return boolean.class;
+        }
+        return Object.class;
+    }
+}
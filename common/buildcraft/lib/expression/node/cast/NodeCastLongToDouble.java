@@ -27,6 +27,10 @@ public class NodeCastLongToDouble implements INodeDouble {
         return NodeInliningHelper.tryInline(this, from, NodeCastLongToDouble::new, (f) -> new NodeConstantDouble(f.evaluate()));
     }
 
+    public INodeLong getFrom() {
+        return from;
+    }
+
     @Override
     public String toString() {
         return "_long_to_double( " + from + " )";
@@ -38,6 +38,18 @@ public class NodeConditionalBoolean implements INodeBoolean {
         }
     }
 
+    public INodeBoolean getCondition() {
+        return condition;
+    }
+
+    public INodeBoolean getIfTrue() {
+        return ifTrue;
+    }
+
+    public INodeBoolean getIfFalse() {
+        return ifFalse;
+    }
+
     @Override
     public String toString() {
         return "(" + condition + ") ? (" + ifTrue + ") : (" + ifFalse + ")";
@@ -39,6 +39,18 @@ public class NodeConditionalDouble implements INodeDouble {
         }
     }
 
+    public INodeBoolean getCondition() {
+        return condition;
+    }
+
+    public INodeDouble getIfTrue() {
+        return ifTrue;
+    }
+
+    public INodeDouble getIfFalse() {
+        return ifFalse;
+    }
+
     @Override
     public String toString() {
         return "(" + condition + ") ? (" + ifTrue + ") : (" + ifFalse + ")";
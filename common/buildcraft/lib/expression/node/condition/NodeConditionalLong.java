@@ -39,6 +39,18 @@ public class NodeConditionalLong implements INodeLong {
         }
     }
 
+    public INodeBoolean getCondition() {
+        return condition;
+    }
+
+    public INodeLong getIfTrue() {
+        return ifTrue;
+    }
+
+    public INodeLong getIfFalse() {
+        return ifFalse;
+    }
+
     @Override
     public String toString() {
         return "(" + condition + ") ? (" + ifTrue + ") : (" + ifFalse + ")";
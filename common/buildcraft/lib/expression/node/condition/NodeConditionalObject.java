@@ -65,6 +65,18 @@ public class NodeConditionalObject<T> implements INodeObject<T> {
         }
     }
 
+    public INodeBoolean getCondition() {
+        return condition;
+    }
+
+    public INodeObject<T> getIfTrue() {
+        return ifTrue;
+    }
+
+    public INodeObject<T> getIfFalse() {
+        return ifFalse;
+    }
+
     @Override
     public String toString() {
         return "(" + condition + ") ? (" + ifTrue + ") : (" + ifFalse + ")";
@@ -13,4 +13,15 @@ public abstract class NodeFuncBase implements INodeFunc {
     public void setNeverInline() {
         canInline = false;
     }
+
+    /** A node that calls a function with the values of its argument nodes. This is exposed so that
+     * {@link buildcraft.lib.expression.NodeBytecodeCompiler} can call the function directly rather than going through the node. */
+    public interface IFunctionNode extends IExpressionNode {
+        /** @return The function that this node calls: an instance of {@link #getFunctionType()}. */
+        Object getFunction();
+
+        Class<?> getFunctionType();
+
+        IExpressionNode[] getArguments();
+    }
 }
@@ -13,6 +13,7 @@ import buildcraft.api.core.BCLog;
 import buildcraft.lib.expression.FunctionContext;
 import buildcraft.lib.expression.GenericExpressionCompiler;
 import buildcraft.lib.expression.InternalCompiler;
+import buildcraft.lib.expression.NodeBytecodeCompiler;
 import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
@@ -161,10 +162,14 @@ public abstract class ElementType {
     }
 
     public static int resolveEquationInt(JsonGuiElement json, String member, FunctionContext ctx) {
-        return (int) getEquationLong(json, member, ctx).evaluate();
+        return (int) parseEquationLong(json, member, ctx).evaluate();
     }
 
     public static INodeLong getEquationLong(JsonGuiElement json, String member, FunctionContext ctx) {
+        return NodeBytecodeCompiler.compileIfEnabled(parseEquationLong(json, member, ctx));
+    }
+
+    private static INodeLong parseEquationLong(JsonGuiElement json, String member, FunctionContext ctx) {
         String eqn = json.properties.get(member);
         if (eqn == null) {
             return NodeConstantLong.ZERO;
@@ -177,10 +182,14 @@ public abstract class ElementType {
     }
 
     public static double resolveEquationDouble(JsonGuiElement json, String member, FunctionContext ctx) {
-        return getEquationDouble(json, member, ctx).evaluate();
+        return parseEquationDouble(json, member, ctx).evaluate();
     }
 
     public static INodeDouble getEquationDouble(JsonGuiElement json, String member, FunctionContext ctx) {
+        return NodeBytecodeCompiler.compileIfEnabled(parseEquationDouble(json, member, ctx));
+    }
+
+    private static INodeDouble parseEquationDouble(JsonGuiElement json, String member, FunctionContext ctx) {
         String eqn = json.properties.get(member);
         if (eqn == null) {
             return NodeConstantDouble.ZERO;
@@ -194,10 +203,15 @@ public abstract class ElementType {
 
     public static boolean resolveEquationBool(JsonGuiElement json, String member, FunctionContext ctx,
         boolean _default) {
-        return getEquationBool(json, member, ctx, _default).evaluate();
+        return parseEquationBool(json, member, ctx, _default).evaluate();
     }
 
     public static INodeBoolean getEquationBool(JsonGuiElement json, String member, FunctionContext ctx,
+        boolean _default) {
+        return NodeBytecodeCompiler.compileIfEnabled(parseEquationBool(json, member, ctx, _default));
+    }
+
+    private static INodeBoolean parseEquationBool(JsonGuiElement json, String member, FunctionContext ctx,
         boolean _default) {
         String eqn = json.properties.get(member);
         if (eqn == null) {
@@ -4,6 +4,7 @@ import com.google.gson.JsonSyntaxException;
 
 import buildcraft.lib.expression.FunctionContext;
 import buildcraft.lib.expression.GenericExpressionCompiler;
+import buildcraft.lib.expression.NodeBytecodeCompiler;
 import buildcraft.lib.expression.api.IExpressionNode.INodeObject;
 import buildcraft.lib.expression.api.InvalidExpressionException;
 import buildcraft.lib.expression.node.value.NodeConstantObject;
@@ -41,6 +42,7 @@ public class ElementTypeText extends ElementType {
         } else if ((prop = json.properties.get("expression")) != null) {
             try {
                 text = GenericExpressionCompiler.compileExpressionString(prop, ctx);
+                text = NodeBytecodeCompiler.compileIfEnabled(text);
             } catch (InvalidExpressionException e) {
                 throw new JsonSyntaxException("Invalid expression for '" + json.name + "'", e);
             }
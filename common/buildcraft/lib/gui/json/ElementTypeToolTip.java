@@ -7,6 +7,7 @@ import com.google.gson.JsonSyntaxException;
 
 import buildcraft.lib.expression.FunctionContext;
 import buildcraft.lib.expression.GenericExpressionCompiler;
+import buildcraft.lib.expression.NodeBytecodeCompiler;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeObject;
 import buildcraft.lib.expression.api.InvalidExpressionException;
@@ -63,7 +64,8 @@ public class ElementTypeToolTip extends ElementType {
             List<INodeObject<String>> nodes = new ArrayList<>(text.size());
             try {
                 for (String s : text) {
-                    nodes.add(GenericExpressionCompiler.compileExpressionString(s, ctx));
+                    INodeObject<String> node = GenericExpressionCompiler.compileExpressionString(s, ctx);
+                    nodes.add(NodeBytecodeCompiler.compileIfEnabled(node));
                 }
             } catch (InvalidExpressionException e) {
                 throw new JsonSyntaxException(e);
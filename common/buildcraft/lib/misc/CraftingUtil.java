@@ -6,7 +6,11 @@
 
 package buildcraft.lib.misc;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.Optional;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import net.minecraft.inventory.InventoryCrafting;
 import net.minecraft.item.crafting.IRecipe;
@@ -14,8 +18,21 @@ import net.minecraft.world.World;
 
 import net.minecraftforge.fml.common.registry.GameRegistry;
 
+import buildcraft.lib.recipe.CraftingRecipeIndex;
+
 public final class CraftingUtil {
 
+    /** The maximum number of different crafting grids to remember the recipe of. This is shared between every auto
+     * workbench, so it only needs to be large enough to cover the ones that are loaded at once. */
+    private static final int MAX_CACHED_GRIDS = 512;
+
+    private static volatile CraftingRecipeIndex recipeIndex;
+
+    /** Grid to its recipe. This ignores the world: none of the recipes that we know about care about it. */
+    private static final Cache<GridKey, Optional<IRecipe>> RECIPE_CACHE = CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_GRIDS)
+        .build();
+
     /**
      * Deactivate constructor
      */
@@ -23,13 +40,58 @@ public final class CraftingUtil {
     }
 
     public static IRecipe findMatchingRecipe(InventoryCrafting par1InventoryCrafting, World par2World) {
-            List<IRecipe> recipes = GameRegistry.findRegistry(IRecipe.class).getValues();
-            for (IRecipe recipe : recipes) {
-                if (recipe.matches(par1InventoryCrafting, par2World)) {
-                    return recipe;
-                }
+        GridKey key = new GridKey(par1InventoryCrafting);
+        Optional<IRecipe> cached = RECIPE_CACHE.getIfPresent(key);
+        if (cached == null) {
+            cached = Optional.ofNullable(getRecipeIndex().findMatchingRecipe(par1InventoryCrafting, par2World));
+            RECIPE_CACHE.put(key, cached);
+        }
+        return cached.orElse(null);
+    }
+
+    private static CraftingRecipeIndex getRecipeIndex() {
+        CraftingRecipeIndex index = recipeIndex;
+        if (index == null) {
+            index = CraftingRecipeIndex.create(GameRegistry.findRegistry(IRecipe.class).getValues());
+            recipeIndex = index;
+        }
+        return index;
+    }
+
+    /** Forgets about every recipe lookup. BCLibEventDist calls this whenever recipes are registered or item ids are
+     * remapped. */
+    public static void invalidateRecipeCache() {
+        recipeIndex = null;
+        RECIPE_CACHE.invalidateAll();
+    }
+
+    private static final class GridKey {
+        private final int width, height;
+        private final ItemStackKey[] stacks;
+        private final int hash;
+
+        GridKey(InventoryCrafting inventory) {
+            width = inventory.getWidth();
+            height = inventory.getHeight();
+            stacks = new ItemStackKey[inventory.getSizeInventory()];
+            for (int i = 0; i < stacks.length; i++) {
+                stacks[i] = new ItemStackKey(inventory.getStackInSlot(i));
             }
-            return null;
+            hash = (width * 31 + height) * 31 + Arrays.hashCode(stacks);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) return true;
+            if (obj == null || obj.getClass() != getClass()) return false;
+            GridKey other = (GridKey) obj;
+            return hash == other.hash && width == other.width && height == other.height
+                && Arrays.equals(stacks, other.stacks);
+        }
 
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
 }
@@ -1,5 +1,6 @@
 package buildcraft.lib.misc;
 
+import java.io.BufferedOutputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -13,6 +14,8 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.TreeMap;
 
+import javax.annotation.Nullable;
+
 import com.google.common.base.Throwables;
 import com.google.common.io.ByteStreams;
 
@@ -67,11 +70,20 @@ public class HashUtil {
     }
 
     public static byte[] computeHash(NBTTagCompound nbt) {
+        return computeHash(nbt, null, null);
+    }
+
+    /** Computes the hash of the given compound as if it also contained the given large tag.
+     *
+     * @param largeKey The key of the large tag, which must not be in the compound already. */
+    public static byte[] computeHash(NBTTagCompound nbt, @Nullable String largeKey, @Nullable ILargeTag largeTag) {
         // Order is important here - we have to use a stable algorithm for the order
         // (Otherwise we depend on the order that HashMap assigns us)
         try (DigestOutputStream dos = createDigestStream()) {
 
-            writeStableCompound(nbt, new DataOutputStream(dos));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(dos));
+            writeStableCompound(nbt, largeKey, largeTag, out);
+            out.flush();
 
         } catch (IOException io) {
             throw new RuntimeException("Failed to write to a perfectly good DigestOutputStream!", io);
@@ -104,6 +116,15 @@ public class HashUtil {
         return hash;
     }
 
+    /** A tag that is too big to create as an {@link NBTBase}, so it writes itself straight to the hash instead. */
+    public interface ILargeTag {
+        /** @return The NBT id of the tag that this writes. */
+        byte getId();
+
+        /** Writes the tag in exactly the same way as the NBTBase with the same contents would. */
+        void write(DataOutput out) throws IOException;
+    }
+
     // #####################
     //
     // Stable NBT writer
@@ -111,11 +132,21 @@ public class HashUtil {
     // #####################
 
     private static void writeStableCompound(NBTTagCompound nbt, DataOutput out) throws IOException {
+        writeStableCompound(nbt, null, null, out);
+    }
+
+    private static void writeStableCompound(NBTTagCompound nbt, @Nullable String largeKey,
+        @Nullable ILargeTag largeTag, DataOutput out) throws IOException {
         TreeMap<String, NBTBase> entries = new TreeMap<>();
         for (String key : nbt.getKeySet()) {
             entries.put(key, nbt.getTag(key));
         }
+        boolean largeWritten = largeTag == null;
         for (String key : entries.keySet()) {
+            if (!largeWritten && largeKey.compareTo(key) < 0) {
+                writeLargeTag(largeKey, largeTag, out);
+                largeWritten = true;
+            }
             NBTBase tag = entries.get(key);
             byte id = tag.getId();
             out.writeByte(id);
@@ -125,6 +156,16 @@ public class HashUtil {
             }
             out.writeByte(0);
         }
+        if (!largeWritten) {
+            writeLargeTag(largeKey, largeTag, out);
+        }
+    }
+
+    private static void writeLargeTag(String key, ILargeTag tag, DataOutput out) throws IOException {
+        out.writeByte(tag.getId());
+        out.writeUTF(key);
+        tag.write(out);
+        out.writeByte(0);
     }
 
     private static void writeStableList(NBTTagList nbt, DataOutput out) throws IOException {
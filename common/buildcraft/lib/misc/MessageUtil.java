@@ -10,6 +10,7 @@ import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import com.mojang.authlib.GameProfile;
 
@@ -36,6 +37,7 @@ import buildcraft.lib.BCLibProxy;
 import buildcraft.lib.misc.data.DelayedList;
 import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.PacketBufferBC;
+import buildcraft.lib.net.TileUpdateBatcher;
 
 public class MessageUtil {
     private static final DelayedList<Runnable> DELAYED_TASKS = DelayedList.createConcurrent();
@@ -54,7 +56,21 @@ public class MessageUtil {
         }
     }
 
+    /** Called at the end of every server tick, after {@link #postTick()}. */
+    public static void postServerTick() {
+        TileUpdateBatcher.flush();
+    }
+
     public static void sendToAllWatching(World worldObj, BlockPos pos, IMessage message) {
+        forAllWatching(worldObj, pos, player -> MessageManager.sendTo(message, player));
+        // We could just use this instead, but that requires extra packet size as we are wrapping our
+        // packet in an FML packet and sending it through the vanilla system, which is not really desired
+        // playerChunkMap.sendPacket(MessageManager.getPacketFrom(message));
+    }
+
+    /** Calls the given consumer for every player that is watching the chunk that contains the given position. Does
+     * nothing on the client. */
+    public static void forAllWatching(World worldObj, BlockPos pos, Consumer<EntityPlayerMP> action) {
         if (worldObj instanceof WorldServer) {
             WorldServer server = (WorldServer) worldObj;
             PlayerChunkMapEntry playerChunkMap = server.getPlayerChunkMap().getEntry(pos.getX() >> 4, pos.getZ() >> 4);
@@ -64,13 +80,10 @@ public class MessageUtil {
             }
             // Slightly ugly hack to iterate through all players watching the chunk
             playerChunkMap.hasPlayerMatchingInRange(0, player -> {
-                MessageManager.sendTo(message, player);
+                action.accept(player);
                 // Always return false so that the iteration doesn't stop early
                 return false;
             });
-            // We could just use this instead, but that requires extra packet size as we are wrapping our
-            // packet in an FML packet and sending it through the vanilla system, which is not really desired
-            // playerChunkMap.sendPacket(MessageManager.getPacketFrom(message));
         }
     }
 
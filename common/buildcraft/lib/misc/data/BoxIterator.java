@@ -85,6 +85,14 @@ public class BoxIterator implements Iterator<BlockPos> {
         return VecUtil.replaceValue(toReplace, facing.getAxis(), VecUtil.getValue(with, facing.getAxis()));
     }
 
+    /** @return A new iterator at the same position as this one, which can be advanced independently of this one. */
+    public BoxIterator copy() {
+        BoxIterator copy = new BoxIterator(min, max, invert, repeat, order, current);
+        // The constructor would restart a finished iterator
+        copy.current = current;
+        return copy;
+    }
+
     public BlockPos getCurrent() {
         return current;
     }
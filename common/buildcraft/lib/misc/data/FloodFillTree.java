@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.misc.data;
+
+import java.util.function.Predicate;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import net.minecraft.util.math.BlockPos;
+
+/** The state of a breadth first flood fill: every position that has been reached, and the position that it was
+ * reached from (its parent). The path from any position back to where the fill started can be walked by following the
+ * parents, so it doesn't need to be stored separately for every position.
+ * <p>
+ * Positions are stored as {@link BlockPos#toLong()} in primitive arrays, indexed by the order that they were added in.
+ * As every position is added after its parent, the positions that still need to be searched from are simply all of
+ * the ones after {@link #nextToSearch()}, which makes it easy to spread a large fill over several ticks, or to carry on
+ * filling from a position that is added later on. */
+public class FloodFillTree {
+    public static final int NO_PARENT = -1;
+    public static final int NOT_FOUND = -1;
+
+    private final TLongArrayList positions = new TLongArrayList();
+    private final TIntArrayList parents = new TIntArrayList();
+    private final TLongIntHashMap indices =
+        new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, NOT_FOUND);
+    private int searchIndex = 0;
+
+    public void clear() {
+        positions.clear();
+        parents.clear();
+        indices.clear();
+        searchIndex = 0;
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    public boolean isEmpty() {
+        return positions.isEmpty();
+    }
+
+    /** @param parent The index of the position that the given position was reached from, or {@link #NO_PARENT} if
+     *            this is where the fill starts from.
+     * @return The index of the added position, or {@link #NOT_FOUND} if the position had already been added. */
+    public int add(BlockPos pos, int parent) {
+        int index = positions.size();
+        if (indices.putIfAbsent(pos.toLong(), index) != NOT_FOUND) {
+            return NOT_FOUND;
+        }
+        positions.add(pos.toLong());
+        parents.add(parent);
+        return index;
+    }
+
+    /** @return The index of the given position, or {@link #NOT_FOUND} if it hasn't been added. */
+    public int indexOf(BlockPos pos) {
+        return indices.get(pos.toLong());
+    }
+
+    public boolean contains(BlockPos pos) {
+        return indices.containsKey(pos.toLong());
+    }
+
+    public BlockPos getPos(int index) {
+        return BlockPos.fromLong(positions.get(index));
+    }
+
+    /** @return The index of the parent of the given position, or {@link #NO_PARENT} if it doesn't have one. */
+    public int getParent(int index) {
+        return parents.get(index);
+    }
+
+    /** @return The number of positions between the given position and the one that the fill started from. */
+    public int getDepth(int index) {
+        int depth = 0;
+        for (int i = parents.get(index); i != NO_PARENT; i = parents.get(i)) {
+            depth++;
+        }
+        return depth;
+    }
+
+    /** @return True if the given test passes for the given position, its parent, its parent's parent and so on. */
+    public boolean testPath(int index, Predicate<BlockPos> test) {
+        for (int i = index; i != NO_PARENT; i = parents.get(i)) {
+            if (!test.test(getPos(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return True if there are any positions that haven't been returned by {@link #nextToSearch()} yet. */
+    public boolean isSearching() {
+        return searchIndex < positions.size();
+    }
+
+    /** @return The index of the next position to search from, in the order that they were added. */
+    public int nextToSearch() {
+        if (!isSearching()) {
+            throw new IllegalStateException("Nothing left to search!");
+        }
+        return searchIndex++;
+    }
+
+    /** Stops the current search: nothing that has already been added will be returned by {@link #nextToSearch()}. */
+    public void stopSearching() {
+        searchIndex = positions.size();
+    }
+}
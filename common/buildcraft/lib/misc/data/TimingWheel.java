@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.misc.data;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/** A hierarchical timing wheel: an ordered queue of elements keyed by the tick that they are due on. This does the same
+ * job as {@link DelayedList}, but doesn't allocate anything per tick or per element (once the internal arrays have
+ * grown large enough), and {@link #advance(Consumer)} is O(1) when nothing is due.
+ * <p>
+ * Elements are stored in a pool of intrusive doubly linked nodes (indexed into primitive arrays), and each slot of the
+ * wheel just stores the index of the first node in it. Deadlines that are far in the future are stored in a coarser
+ * level, and are moved ("cascaded") down into finer levels as the current tick approaches them.
+ * <p>
+ * This is not thread safe: it is intended to be owned by a single world (or single object) and only ticked from the
+ * thread that owns it. */
+public class TimingWheel<E> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    /** The maximum number of ticks in the future that can be stored exactly. Anything further than this will be
+     * stored in the furthest slot, and moved back up once it gets cascaded down. */
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private static final int NONE = -1;
+
+    /** The first node in every slot, indexed by [level * SLOTS + slot]. */
+    private final int[] slotHeads = new int[LEVELS * SLOTS];
+    /** A bit mask of the non-empty slots in every level, so that {@link #getEarliestTick()} doesn't need to look at
+     * every slot. */
+    private final long[] occupied = new long[LEVELS];
+
+    // Node pool
+    private Object[] nodeValues;
+    private long[] nodeDeadlines;
+    private int[] nodeNext, nodePrev, nodeSlot;
+    private int freeHead = NONE;
+    private int nodeCount = 0;
+
+    private int size = 0;
+    private long currentTick;
+
+    public TimingWheel() {
+        this(0);
+    }
+
+    /** @param currentTick The tick that this wheel is currently on. Everything that is scheduled on or before this tick
+     *            will be returned by the next call to {@link #advance(Consumer)}. */
+    public TimingWheel(long currentTick) {
+        this.currentTick = currentTick;
+        Arrays.fill(slotHeads, NONE);
+        nodeValues = new Object[16];
+        nodeDeadlines = new long[16];
+        nodeNext = new int[16];
+        nodePrev = new int[16];
+        nodeSlot = new int[16];
+    }
+
+    /** @return The last tick that {@link #advance(Consumer)} moved this wheel to. */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Adds an element that will by returned by {@link #advance(Consumer)} after it has been called delay times. This
+     * is equivalent to {@link DelayedList#add(int, Object)}.
+     *
+     * @param delay The number of times that advance needs to be called for the *next* advance to return this element.
+     *            Negative numbers default up to 0.
+     * @return A handle that can be passed to {@link #remove(int)}. */
+    public int add(int delay, E element) {
+        return schedule(currentTick + 1 + Math.max(0, delay), element);
+    }
+
+    /** Schedules the given element to be returned when this wheel is advanced to the given tick. Ticks that are on or
+     * before {@link #getCurrentTick()} will be returned by the next call to {@link #advance(Consumer)}.
+     *
+     * @return A handle that can be passed to {@link #remove(int)}. This is only valid until the element is returned
+     *         by {@link #advance(Consumer)}, removed, or the wheel is cleared. */
+    public int schedule(long tick, E element) {
+        if (element == null) {
+            throw new NullPointerException("element");
+        }
+        int node = allocNode();
+        nodeValues[node] = element;
+        nodeDeadlines[node] = Math.max(tick, currentTick + 1);
+        insert(node);
+        size++;
+        return node;
+    }
+
+    /** Removes the element with the given handle (as returned by {@link #schedule(long, Object)}).
+     *
+     * @return The element that was removed. */
+    @SuppressWarnings("unchecked")
+    public E remove(int handle) {
+        E value = (E) nodeValues[handle];
+        if (value == null) {
+            throw new IllegalArgumentException("Unknown handle " + handle);
+        }
+        unlink(handle);
+        freeNode(handle);
+        size--;
+        return value;
+    }
+
+    /** @return The tick that the element with the given handle is scheduled for. */
+    public long getDeadline(int handle) {
+        return nodeDeadlines[handle];
+    }
+
+    /** Advances this wheel by one tick, passing every element that is due on the new tick to the given consumer.
+     * Elements can be (re)scheduled from inside the consumer, but they will not be returned until the next advance
+     * (at the earliest). */
+    public void advance(Consumer<? super E> consumer) {
+        currentTick++;
+        if (size == 0) {
+            return;
+        }
+        int index = (int) (currentTick & SLOT_MASK);
+        if (index == 0) {
+            cascade(1);
+        }
+        int head = slotHeads[index];
+        if (head == NONE) {
+            return;
+        }
+        slotHeads[index] = NONE;
+        occupied[0] &= ~(1L << index);
+        int node = head;
+        while (node != NONE) {
+            int next = nodeNext[node];
+            @SuppressWarnings("unchecked")
+            E value = (E) nodeValues[node];
+            freeNode(node);
+            size--;
+            consumer.accept(value);
+            node = next;
+        }
+    }
+
+    /** Advances this wheel until it reaches the given tick, passing every element that becomes due to the consumer. */
+    public void advanceTo(long tick, Consumer<? super E> consumer) {
+        while (currentTick < tick) {
+            if (size == 0) {
+                currentTick = tick;
+                return;
+            }
+            advance(consumer);
+        }
+    }
+
+    /** @return The earliest tick that any element in this wheel is scheduled for, or {@link Long#MAX_VALUE} if this is
+     *         empty. This only looks at the first non-empty slot of every level, so it's O(1) for elements that are
+     *         due in the next {@link #SLOTS} ticks, and otherwise O(n) in the number of elements in those slots. */
+    public long getEarliestTick() {
+        long earliest = Long.MAX_VALUE;
+        if (size == 0) {
+            return earliest;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            long mask = occupied[level];
+            if (mask == 0) {
+                continue;
+            }
+            // The slot after the current one is the earliest, and the current one is the latest (as it's either been
+            // cascaded down already, or it's a whole rotation of this level away)
+            int current = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            int offset = Long.numberOfTrailingZeros(Long.rotateRight(mask, current + 1));
+            int slot = level * SLOTS + ((current + 1 + offset) & SLOT_MASK);
+            int node = slotHeads[slot];
+            if (level == 0) {
+                // Every element in a single slot of the first level is due on the same tick
+                earliest = Math.min(earliest, nodeDeadlines[node]);
+                continue;
+            }
+            while (node != NONE) {
+                earliest = Math.min(earliest, nodeDeadlines[node]);
+                node = nodeNext[node];
+            }
+        }
+        return earliest;
+    }
+
+    /** Passes every element in this wheel to the given consumer, in no particular order. The consumer must not modify
+     * this wheel. */
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super E> consumer) {
+        for (int i = 0; i < nodeCount; i++) {
+            Object value = nodeValues[i];
+            if (value != null) {
+                consumer.accept((E) value);
+            }
+        }
+    }
+
+    /** Iterates over every element without allocating anything, in the same order as {@link #forEach(Consumer)}:
+     *
+     * <pre>
+     * for (int h = wheel.nextHandle(0); h &gt;= 0; h = wheel.nextHandle(h + 1)) {
+     *     E element = wheel.get(h);
+     * }
+     * </pre>
+     *
+     * @return The first handle that is equal to or after the given one, or -1 if there are no more elements. */
+    public int nextHandle(int from) {
+        for (int i = Math.max(0, from); i < nodeCount; i++) {
+            if (nodeValues[i] != null) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    /** @return The element with the given handle, or null if the handle isn't in use. */
+    @SuppressWarnings("unchecked")
+    public E get(int handle) {
+        return (E) nodeValues[handle];
+    }
+
+    /** Removes *all* elements from this wheel. */
+    public void clear() {
+        Arrays.fill(slotHeads, NONE);
+        Arrays.fill(occupied, 0);
+        Arrays.fill(nodeValues, 0, nodeCount, null);
+        nodeCount = 0;
+        freeHead = NONE;
+        size = 0;
+    }
+
+    private void cascade(int level) {
+        if (level >= LEVELS) {
+            return;
+        }
+        int index = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        if (index == 0) {
+            cascade(level + 1);
+        }
+        int slot = level * SLOTS + index;
+        int node = slotHeads[slot];
+        slotHeads[slot] = NONE;
+        occupied[level] &= ~(1L << index);
+        while (node != NONE) {
+            int next = nodeNext[node];
+            insert(node);
+            node = next;
+        }
+    }
+
+    private void insert(int node) {
+        long deadline = nodeDeadlines[node];
+        long delta = deadline - currentTick;
+        int level = 0;
+        if (delta > MAX_DELTA) {
+            // Too far in the future to store exactly, so store it in the last slot for now
+            deadline = currentTick + MAX_DELTA;
+            delta = MAX_DELTA;
+        }
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int index = (int) ((deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+        int slot = level * SLOTS + index;
+        occupied[level] |= 1L << index;
+        int head = slotHeads[slot];
+        nodeSlot[node] = slot;
+        nodePrev[node] = NONE;
+        nodeNext[node] = head;
+        if (head != NONE) {
+            nodePrev[head] = node;
+        }
+        slotHeads[slot] = node;
+    }
+
+    private void unlink(int node) {
+        int prev = nodePrev[node];
+        int next = nodeNext[node];
+        if (prev == NONE) {
+            int slot = nodeSlot[node];
+            slotHeads[slot] = next;
+            if (next == NONE) {
+                occupied[slot >> SLOT_BITS] &= ~(1L << (slot & SLOT_MASK));
+            }
+        } else {
+            nodeNext[prev] = next;
+        }
+        if (next != NONE) {
+            nodePrev[next] = prev;
+        }
+    }
+
+    private int allocNode() {
+        if (freeHead != NONE) {
+            int node = freeHead;
+            freeHead = nodeNext[node];
+            return node;
+        }
+        if (nodeCount == nodeValues.length) {
+            int newLength = nodeCount * 2;
+            nodeValues = Arrays.copyOf(nodeValues, newLength);
+            nodeDeadlines = Arrays.copyOf(nodeDeadlines, newLength);
+            nodeNext = Arrays.copyOf(nodeNext, newLength);
+            nodePrev = Arrays.copyOf(nodePrev, newLength);
+            nodeSlot = Arrays.copyOf(nodeSlot, newLength);
+        }
+        return nodeCount++;
+    }
+
+    private void freeNode(int node) {
+        nodeValues[node] = null;
+        nodeNext[node] = freeHead;
+        freeHead = node;
+    }
+}
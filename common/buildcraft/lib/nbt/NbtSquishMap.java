@@ -8,7 +8,11 @@ package buildcraft.lib.nbt;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import gnu.trove.list.array.TByteArrayList;
 import gnu.trove.list.array.TDoubleArrayList;
@@ -16,6 +20,11 @@ import gnu.trove.list.array.TFloatArrayList;
 import gnu.trove.list.array.TIntArrayList;
 import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.list.array.TShortArrayList;
+import gnu.trove.map.hash.TByteIntHashMap;
+import gnu.trove.map.hash.TIntIntHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.map.hash.TShortIntHashMap;
 
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagByte;
@@ -56,139 +65,260 @@ public class NbtSquishMap {
     final List<String> strings = new ArrayList<>();
     final List<NBTBase> complex = new ArrayList<>();
 
+    // The index of every value in the above lists, so that adding or finding a tag doesn't have to search through the
+    // whole list. Floats and doubles are stored by their bits, so that -0 and NaN are kept as they are.
+    // These are only used when writing: reading only adds to the lists.
+    private final TByteIntHashMap byteIndexes = new TByteIntHashMap(10, 0.5f, (byte) 0, -1);
+    private final TShortIntHashMap shortIndexes = new TShortIntHashMap(10, 0.5f, (short) 0, -1);
+    private final TIntIntHashMap intIndexes = new TIntIntHashMap(10, 0.5f, 0, -1);
+    private final TLongIntHashMap longIndexes = new TLongIntHashMap(10, 0.5f, 0, -1);
+    private final TIntIntHashMap floatIndexes = new TIntIntHashMap(10, 0.5f, 0, -1);
+    private final TLongIntHashMap doubleIndexes = new TLongIntHashMap(10, 0.5f, 0, -1);
+    private final Map<TByteArrayList, Integer> byteArrayIndexes = new HashMap<>();
+    private final Map<TIntArrayList, Integer> intArrayIndexes = new HashMap<>();
+    private final TObjectIntHashMap<String> stringIndexes = new TObjectIntHashMap<>(10, 0.5f, -1);
+    private final TObjectIntHashMap<NBTBase> complexIndexes = new TObjectIntHashMap<>(10, 0.5f, -1);
+    /** The same tag object is often added many times (for example every air block in a blueprint), and hashing a
+     * compound or list means hashing everything in it, so the exact objects are looked up first. */
+    private final Map<NBTBase, Integer> complexIdentityIndexes = new IdentityHashMap<>();
+
     public NbtSquishMap() {}
 
+    /** Removes every value, but keeps the (already grown) dictionaries so that this can be reused without allocating
+     * them again. */
+    void clear() {
+        bytes.resetQuick();
+        shorts.resetQuick();
+        ints.resetQuick();
+        longs.resetQuick();
+        floats.resetQuick();
+        doubles.resetQuick();
+        byteArrays.clear();
+        intArrays.clear();
+        strings.clear();
+        complex.clear();
+
+        byteIndexes.clear();
+        shortIndexes.clear();
+        intIndexes.clear();
+        longIndexes.clear();
+        floatIndexes.clear();
+        doubleIndexes.clear();
+        byteArrayIndexes.clear();
+        intArrayIndexes.clear();
+        stringIndexes.clear();
+        complexIndexes.clear();
+        complexIdentityIndexes.clear();
+    }
+
     public void addTag(NBTBase nbt) {
         if (nbt instanceof NBTTagString) {
-            String val = ((NBTTagString) nbt).getString();
-            if (!strings.contains(val)) {
-                strings.add(val);
-            }
+            addString(((NBTTagString) nbt).getString());
         } else if (nbt instanceof NBTTagByte) {
             byte val = ((NBTTagByte) nbt).getByte();
-            if (!bytes.contains(val)) {
+            if (!byteIndexes.containsKey(val)) {
+                byteIndexes.put(val, bytes.size());
                 bytes.add(val);
             }
         } else if (nbt instanceof NBTTagShort) {
             short val = ((NBTTagShort) nbt).getShort();
-            if (!shorts.contains(val)) {
+            if (!shortIndexes.containsKey(val)) {
+                shortIndexes.put(val, shorts.size());
                 shorts.add(val);
             }
         } else if (nbt instanceof NBTTagInt) {
             int val = ((NBTTagInt) nbt).getInt();
-            if (!ints.contains(val)) {
+            if (!intIndexes.containsKey(val)) {
+                intIndexes.put(val, ints.size());
                 ints.add(val);
             }
         } else if (nbt instanceof NBTTagLong) {
             long val = ((NBTTagLong) nbt).getLong();
-            if (!longs.contains(val)) {
+            if (!longIndexes.containsKey(val)) {
+                longIndexes.put(val, longs.size());
                 longs.add(val);
             }
         } else if (nbt instanceof NBTTagFloat) {
             float val = ((NBTTagFloat) nbt).getFloat();
-            if (!floats.contains(val)) {
+            int bits = Float.floatToRawIntBits(val);
+            if (!floatIndexes.containsKey(bits)) {
+                floatIndexes.put(bits, floats.size());
                 floats.add(val);
             }
         } else if (nbt instanceof NBTTagDouble) {
             double val = ((NBTTagDouble) nbt).getDouble();
-            if (!doubles.contains(val)) {
+            long bits = Double.doubleToRawLongBits(val);
+            if (!doubleIndexes.containsKey(bits)) {
+                doubleIndexes.put(bits, doubles.size());
                 doubles.add(val);
             }
         } else if (nbt instanceof NBTTagByteArray) {
             byte[] val = ((NBTTagByteArray) nbt).getByteArray();
             TByteArrayList array = new TByteArrayList(val);
-            if (!byteArrays.contains(array)) {
+            if (!byteArrayIndexes.containsKey(array)) {
+                byteArrayIndexes.put(array, byteArrays.size());
                 byteArrays.add(array);
             }
         } else if (nbt instanceof NBTTagIntArray) {
             int[] val = ((NBTTagIntArray) nbt).getIntArray();
             TIntArrayList array = new TIntArrayList(val);
-            if (!intArrays.contains(array)) {
+            if (!intArrayIndexes.containsKey(array)) {
+                intArrayIndexes.put(array, intArrays.size());
                 intArrays.add(array);
             }
         } else if (nbt instanceof NBTTagList) {
             NBTTagList list = (NBTTagList) nbt;
-            if (!complex.contains(list)) {
+            if (indexOfComplex(list) < 0) {
                 for (int i = 0; i < list.tagCount(); i++) {
                     addTag(list.get(i));
                 }
-                complex.add(list);
+                addComplex(list);
             }
         } else if (nbt instanceof NBTTagCompound) {
             NBTTagCompound compound = (NBTTagCompound) nbt;
-            if (!complex.contains(compound)) {
+            if (indexOfComplex(compound) < 0) {
                 for (String key : compound.getKeySet()) {
-                    if (!strings.contains(key)) {
-                        strings.add(key);
-                    }
+                    addString(key);
                     addTag(compound.getTag(key));
                 }
-                complex.add(compound);
+                addComplex(compound);
             }
         } else {
             throw new IllegalArgumentException("Cannot handle tag " + nbt);
         }
     }
 
+    private void addString(String val) {
+        if (!stringIndexes.containsKey(val)) {
+            stringIndexes.put(val, strings.size());
+            strings.add(val);
+        }
+    }
+
+    private void addComplex(NBTBase nbt) {
+        int index = complex.size();
+        complex.add(nbt);
+        complexIndexes.put(nbt, index);
+        complexIdentityIndexes.put(nbt, index);
+    }
+
+    private int indexOfComplex(NBTBase nbt) {
+        Integer index = complexIdentityIndexes.get(nbt);
+        if (index != null) {
+            return index;
+        }
+        int equalIndex = complexIndexes.get(nbt);
+        if (equalIndex >= 0) {
+            complexIdentityIndexes.put(nbt, equalIndex);
+        }
+        return equalIndex;
+    }
+
+    /** Sorts the primitive and string dictionaries, so that similar values are written next to each other. This
+     * changes the index of those tags, so this must be called before any indexes are written. */
+    void sortDictionaries() {
+        bytes.sort();
+        shorts.sort();
+        ints.sort();
+        longs.sort();
+        floats.sort();
+        doubles.sort();
+        Collections.sort(strings);
+
+        byteIndexes.clear();
+        for (int i = 0; i < bytes.size(); i++) {
+            byteIndexes.put(bytes.get(i), i);
+        }
+        shortIndexes.clear();
+        for (int i = 0; i < shorts.size(); i++) {
+            shortIndexes.put(shorts.get(i), i);
+        }
+        intIndexes.clear();
+        for (int i = 0; i < ints.size(); i++) {
+            intIndexes.put(ints.get(i), i);
+        }
+        longIndexes.clear();
+        for (int i = 0; i < longs.size(); i++) {
+            longIndexes.put(longs.get(i), i);
+        }
+        floatIndexes.clear();
+        for (int i = 0; i < floats.size(); i++) {
+            floatIndexes.put(Float.floatToRawIntBits(floats.get(i)), i);
+        }
+        doubleIndexes.clear();
+        for (int i = 0; i < doubles.size(); i++) {
+            doubleIndexes.put(Double.doubleToRawLongBits(doubles.get(i)), i);
+        }
+        stringIndexes.clear();
+        for (int i = 0; i < strings.size(); i++) {
+            stringIndexes.put(strings.get(i), i);
+        }
+    }
+
     public int indexOfTag(NBTBase nbt) {
         int offset = 0;
         if (nbt instanceof NBTTagByte) {
-            return bytes.indexOf(((NBTTagByte) nbt).getByte());
+            return byteIndexes.get(((NBTTagByte) nbt).getByte());
         } else {
             offset += bytes.size();
         }
         if (nbt instanceof NBTTagShort) {
-            return offset + shorts.indexOf(((NBTTagShort) nbt).getShort());
+            return offset + shortIndexes.get(((NBTTagShort) nbt).getShort());
         } else {
             offset += shorts.size();
         }
         if (nbt instanceof NBTTagInt) {
-            return offset + ints.indexOf(((NBTTagInt) nbt).getInt());
+            return offset + intIndexes.get(((NBTTagInt) nbt).getInt());
         } else {
             offset += ints.size();
         }
         if (nbt instanceof NBTTagLong) {
-            return offset + longs.indexOf(((NBTTagLong) nbt).getLong());
+            return offset + longIndexes.get(((NBTTagLong) nbt).getLong());
         } else {
             offset += longs.size();
         }
         if (nbt instanceof NBTTagFloat) {
-            return offset + floats.indexOf(((NBTTagFloat) nbt).getFloat());
+            return offset + floatIndexes.get(Float.floatToRawIntBits(((NBTTagFloat) nbt).getFloat()));
         } else {
             offset += floats.size();
         }
         if (nbt instanceof NBTTagDouble) {
-            return offset + doubles.indexOf(((NBTTagDouble) nbt).getDouble());
+            return offset + doubleIndexes.get(Double.doubleToRawLongBits(((NBTTagDouble) nbt).getDouble()));
         } else {
             offset += doubles.size();
         }
         if (nbt instanceof NBTTagByteArray) {
             byte[] val = ((NBTTagByteArray) nbt).getByteArray();
-            TByteArrayList array = new TByteArrayList(val);
-            return offset + byteArrays.indexOf(array);
+            Integer index = byteArrayIndexes.get(new TByteArrayList(val));
+            return offset + (index == null ? -1 : index);
         } else {
             offset += byteArrays.size();
         }
         if (nbt instanceof NBTTagIntArray) {
             int[] val = ((NBTTagIntArray) nbt).getIntArray();
-            TIntArrayList array = new TIntArrayList(val);
-            return offset + intArrays.indexOf(array);
+            Integer index = intArrayIndexes.get(new TIntArrayList(val));
+            return offset + (index == null ? -1 : index);
         } else {
             offset += intArrays.size();
         }
         if (nbt instanceof NBTTagString) {
-            return offset + strings.indexOf(((NBTTagString) nbt).getString());
+            return offset + indexOfString(((NBTTagString) nbt).getString());
         } else {
             offset += strings.size();
         }
         if (nbt instanceof NBTTagList) {
-            return offset + complex.indexOf(nbt);
+            return offset + indexOfComplex(nbt);
         } else if (nbt instanceof NBTTagCompound) {
-            return offset + complex.indexOf(nbt);
+            return offset + indexOfComplex(nbt);
         }
         throw new IllegalArgumentException("Cannot handle tag " + nbt);
     }
 
+    /** @return The index of the given string within the string dictionary, or -1 if it hasn't been added. */
+    public int indexOfString(String string) {
+        return stringIndexes.get(string);
+    }
+
     private NBTBase getTagAt(int index) {
         if (index < 0) {
             throw new IndexOutOfBoundsException(index + " was less than 0!");
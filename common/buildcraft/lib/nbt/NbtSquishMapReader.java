@@ -26,10 +26,19 @@ import buildcraft.api.data.NbtSquishConstants;
 import buildcraft.lib.misc.data.DecompactingBitSet;
 
 class NbtSquishMapReader {
-    private final NbtSquishMap map = new NbtSquishMap();
+    private final NbtSquishMap map;
+
+    private NbtSquishMapReader(NbtSquishMap map) {
+        this.map = map;
+    }
 
     public static NbtSquishMap read(DataInput in) throws IOException {
-        return new NbtSquishMapReader().readInternal(in);
+        return read(in, new NbtSquishMap());
+    }
+
+    /** Reads the dictionaries into the given (empty) map, so that maps can be reused between calls. */
+    public static NbtSquishMap read(DataInput in, NbtSquishMap into) throws IOException {
+        return new NbtSquishMapReader(into).readInternal(in);
     }
 
     private NbtSquishMap readInternal(DataInput in) throws IOException {
@@ -81,24 +90,20 @@ class NbtSquishMapReader {
         if (isFlag(flags, NbtSquishConstants.FLAG_HAS_BYTE_ARRAYS)) {
             int count = readVarInt(in);
             for (int i = 0; i < count; i++) {
-                int arraySize = in.readUnsignedShort();
-                TByteArrayList list = new TByteArrayList();
-                for (int j = 0; j < arraySize; j++) {
-                    list.add(in.readByte());
-                }
-                map.byteArrays.add(list);
+                byte[] array = new byte[in.readUnsignedShort()];
+                in.readFully(array);
+                map.byteArrays.add(TByteArrayList.wrap(array));
             }
         }
 
         if (isFlag(flags, NbtSquishConstants.FLAG_HAS_INT_ARRAYS)) {
             int count = readVarInt(in);
             for (int i = 0; i < count; i++) {
-                int arraySize = in.readUnsignedShort();
-                TIntArrayList list = new TIntArrayList();
-                for (int j = 0; j < arraySize; j++) {
-                    list.add(in.readInt());
+                int[] array = new int[in.readUnsignedShort()];
+                for (int j = 0; j < array.length; j++) {
+                    array[j] = in.readInt();
                 }
-                map.intArrays.add(list);
+                map.intArrays.add(TIntArrayList.wrap(array));
             }
         }
 
@@ -10,7 +10,6 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
@@ -60,6 +59,7 @@ class NbtSquishMapWriter {
     private void write(DataOutput to) throws IOException {
         profiler.startSection("write");
         profiler.startSection("flags");
+        if (sort) map.sortDictionaries();
         WrittenType type = map.getWrittenType();
 
         type.writeType(to);
@@ -93,55 +93,49 @@ class NbtSquishMapWriter {
         profiler.endStartSection("bytes");
         if (!bytes.isEmpty()) {
             if (debug) log("\nByte dictionary size = " + bytes.size());
-            if (sort) bytes.sort();
             writeVarInt(to, bytes.size());
-            for (byte b : bytes.toArray()) {
-                to.writeByte(b);
+            for (int i = 0; i < bytes.size(); i++) {
+                to.writeByte(bytes.get(i));
             }
         }
         profiler.endStartSection("shorts");
         if (!shorts.isEmpty()) {
             if (debug) log("\nShort dictionary size = " + shorts.size());
-            if (sort) shorts.sort();
             writeVarInt(to, shorts.size());
-            for (short s : shorts.toArray()) {
-                to.writeShort(s);
+            for (int i = 0; i < shorts.size(); i++) {
+                to.writeShort(shorts.get(i));
             }
         }
         profiler.endStartSection("integers");
         if (!ints.isEmpty()) {
             if (debug) log("\nInt dictionary size = " + ints.size());
-            if (sort) ints.sort();
             writeVarInt(to, ints.size());
-            for (int i : ints.toArray()) {
-                to.writeInt(i);
+            for (int i = 0; i < ints.size(); i++) {
+                to.writeInt(ints.get(i));
             }
         }
         profiler.endStartSection("longs");
         if (!longs.isEmpty()) {
             if (debug) log("\nLong dictionary size = " + longs.size());
-            if (sort) longs.sort();
             writeVarInt(to, longs.size());
-            for (long l : longs.toArray()) {
-                to.writeLong(l);
+            for (int i = 0; i < longs.size(); i++) {
+                to.writeLong(longs.get(i));
             }
         }
         profiler.endStartSection("floats");
         if (!floats.isEmpty()) {
             if (debug) log("\nFloat dictionary size = " + floats.size());
-            if (sort) floats.sort();
             writeVarInt(to, floats.size());
-            for (float f : floats.toArray()) {
-                to.writeFloat(f);
+            for (int i = 0; i < floats.size(); i++) {
+                to.writeFloat(floats.get(i));
             }
         }
         profiler.endStartSection("doubles");
         if (!doubles.isEmpty()) {
             if (debug) log("\nDouble dictionary size = " + doubles.size());
-            if (sort) doubles.sort();
             writeVarInt(to, doubles.size());
-            for (double d : doubles.toArray()) {
-                to.writeDouble(d);
+            for (int i = 0; i < doubles.size(); i++) {
+                to.writeDouble(doubles.get(i));
             }
         }
         profiler.endStartSection("byte_arrays");
@@ -150,9 +144,7 @@ class NbtSquishMapWriter {
             writeVarInt(to, byteArrays.size());
             for (TByteArrayList ba : byteArrays) {
                 to.writeShort(ba.size());
-                for (byte b : ba.toArray()) {
-                    to.writeByte(b);
-                }
+                to.write(ba.toArray());
             }
         }
         profiler.endStartSection("int_arrays");
@@ -161,15 +153,14 @@ class NbtSquishMapWriter {
             writeVarInt(to, intArrays.size());
             for (TIntArrayList ia : intArrays) {
                 to.writeShort(ia.size());
-                for (int i : ia.toArray()) {
-                    to.writeInt(i);
+                for (int i = 0; i < ia.size(); i++) {
+                    to.writeInt(ia.get(i));
                 }
             }
         }
         profiler.endStartSection("strings");
         if (!strings.isEmpty()) {
             if (debug) log("\nString dictionary size = " + strings.size());
-            if (sort) Collections.sort(strings);
             writeVarInt(to, strings.size());
             for (int i = 0; i < strings.size(); i++) {
                 String s = strings.get(i);
@@ -241,7 +232,7 @@ class NbtSquishMapWriter {
             profiler.endSection();
             if (debug) log("\n             \"" + key + "\" -> " + index + " (" + safeToString(nbt) + ")");
             profiler.startSection("index_key");
-            stringType.writeIndex(to, map.strings.indexOf(key));
+            stringType.writeIndex(to, map.indexOfString(key));
             profiler.endSection();
             type.writeIndex(to, index);
             profiler.endSection();
@@ -300,16 +291,15 @@ class NbtSquishMapWriter {
         writeVarInt(to, entries.size());
         profiler.endStartSection("write");
 
-        TIntArrayList sortedIndexes = new TIntArrayList();
+        // The position of each index within the (sorted) entries
+        TIntIntHashMap sortedIndexes = new TIntIntHashMap(entries.size(), 0.5f, -1, -1);
         int i = 0;
         for (IndexEntry entry : entries) {
-            final int j = i;
-
-            NBTBase base = map.getTagForWriting(entry.index);
-            String n = safeToString(base);
-            if (debug) log("\n List entry #" + j + " = " + entry.count + "x" + entry.index + " (" + n + ")");
-
-            sortedIndexes.add(entry.index);
+            if (debug) {
+                String n = safeToString(map.getTagForWriting(entry.index));
+                log("\n List entry #" + i + " = " + entry.count + "x" + entry.index + " (" + n + ")");
+            }
+            sortedIndexes.put(entry.index, i);
             type.writeIndex(to, entry.index);
             i++;
         }
@@ -319,6 +309,8 @@ class NbtSquishMapWriter {
         writeVarInt(to, data.length);
         profiler.endSection();
         profiler.endStartSection("contents");
+        // Every bitset removes the most common entries that it could write from the entries that are left
+        int removed = 0;
         for (int b = 1; !nextData.isEmpty(); b++) {
             profiler.startSection("entry");
             CompactingBitSet bitset = new CompactingBitSet(b);
@@ -326,10 +318,11 @@ class NbtSquishMapWriter {
             TIntArrayList nextNextData = new TIntArrayList();
             int maxVal = (1 << b) - 1;
             profiler.startSection("iter");
-            for (int d : nextData.toArray()) {
+            for (int n = 0; n < nextData.size(); n++) {
+                int d = nextData.get(n);
                 // profiler.startSection("entry");
                 // profiler.startSection("index");
-                int index = sortedIndexes.indexOf(d);
+                int index = sortedIndexes.get(d) - removed;
                 // profiler.endSection();
                 if (index < maxVal) {
                     // profiler.startSection("bitset_append");
@@ -345,7 +338,7 @@ class NbtSquishMapWriter {
                 // profiler.endSection();
             }
             profiler.endSection();
-            sortedIndexes.remove(0, Math.min(sortedIndexes.size(), maxVal));
+            removed += maxVal;
             byte[] bitsetBytes = bitset.getBytes();
             if (debug) log("\n List bitset #" + (bitset.bits - 1));
             writeVarInt(to, bitsetBytes.length);
@@ -0,0 +1,567 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.nbt;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import io.netty.buffer.ByteBuf;
+
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagByte;
+import net.minecraft.nbt.NBTTagByteArray;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagDouble;
+import net.minecraft.nbt.NBTTagFloat;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.nbt.NBTTagLong;
+import net.minecraft.nbt.NBTTagShort;
+import net.minecraft.nbt.NBTTagString;
+
+import net.minecraftforge.common.util.Constants;
+
+import buildcraft.api.core.InvalidInputDataException;
+import buildcraft.api.data.NbtSquishConstants;
+
+import buildcraft.lib.misc.data.DecompactingBitSet;
+
+/** Reads values out of squished nbt (in the {@link NbtSquishConstants#BUILDCRAFT_V1} format) on demand, rather than
+ * creating every tag up front like {@link NbtSquisher#expand(ByteBuf)} does. Opening a view only finds where each
+ * dictionary entry starts: strings are decoded the first time they are used, and compounds and lists are read straight
+ * out of the buffer whenever they are accessed. Use {@link NbtSquisher#view(ByteBuf)} to create one.
+ * <p>
+ * Values are indexed in the same order as {@link NbtSquishMap}: bytes, shorts, ints, longs, floats, doubles, byte
+ * arrays, int arrays, strings and then compounds and lists. */
+public final class NbtSquishView {
+    private final ByteBuf buf;
+    private final WrittenType type, stringType;
+
+    /** The offset of the first value in each fixed size dictionary. */
+    private final int bytesStart, shortsStart, intsStart, longsStart, floatsStart, doublesStart;
+    /** The offset of every entry in each variable size dictionary. */
+    private final int[] byteArrays, intArrays, strings, complex;
+    /** The first index of each dictionary, in the order given above. The last element is the total size. */
+    private final int[] firstIndex = new int[11];
+
+    private final String[] stringCache;
+    private final int rootIndex;
+
+    /** The offset that the constructor is reading from. Only used while scanning. */
+    private int pos;
+
+    NbtSquishView(ByteBuf buf) throws IOException {
+        this.buf = buf;
+        this.pos = buf.readerIndex();
+        ensureReadable(1);
+        type = WrittenType.getForType(buf.getByte(pos++));
+        int flags = readInt();
+
+        int[] counts = new int[10];
+        bytesStart = pos;
+        counts[0] = skipFixed(flags, NbtSquishConstants.FLAG_HAS_BYTES, 1);
+        shortsStart = pos;
+        counts[1] = skipFixed(flags, NbtSquishConstants.FLAG_HAS_SHORTS, 2);
+        intsStart = pos;
+        counts[2] = skipFixed(flags, NbtSquishConstants.FLAG_HAS_INTS, 4);
+        longsStart = pos;
+        counts[3] = skipFixed(flags, NbtSquishConstants.FLAG_HAS_LONGS, 8);
+        floatsStart = pos;
+        counts[4] = skipFixed(flags, NbtSquishConstants.FLAG_HAS_FLOATS, 4);
+        doublesStart = pos;
+        counts[5] = skipFixed(flags, NbtSquishConstants.FLAG_HAS_DOUBLES, 8);
+        byteArrays = skipArrays(flags, NbtSquishConstants.FLAG_HAS_BYTE_ARRAYS, 1);
+        counts[6] = byteArrays.length;
+        intArrays = skipArrays(flags, NbtSquishConstants.FLAG_HAS_INT_ARRAYS, 4);
+        counts[7] = intArrays.length;
+        strings = skipArrays(flags, NbtSquishConstants.FLAG_HAS_STRINGS, 1);
+        counts[8] = strings.length;
+        stringCache = new String[strings.length];
+        stringType = WrittenType.getForSize(strings.length);
+
+        if ((flags & NbtSquishConstants.FLAG_HAS_COMPLEX) != 0) {
+            int count = readVarInt();
+            ensureReadable(count);
+            complex = new int[count];
+            for (int i = 0; i < complex.length; i++) {
+                complex[i] = pos;
+                skipComplex();
+            }
+        } else {
+            complex = new int[0];
+        }
+        counts[9] = complex.length;
+
+        for (int i = 0; i < counts.length; i++) {
+            firstIndex[i + 1] = firstIndex[i] + counts[i];
+        }
+        ensureReadable(type.numBytes);
+        rootIndex = type.getIndex(buf, pos);
+        if (getTagType(rootIndex) != Constants.NBT.TAG_COMPOUND) {
+            throw new InvalidInputDataException("The root tag (" + rootIndex + ") wasn't a compound!");
+        }
+    }
+
+    // Scanning
+
+    private void ensureReadable(long length) throws InvalidInputDataException {
+        if (length < 0 || pos + length > buf.writerIndex()) {
+            throw new InvalidInputDataException("Tried to read " + length + " bytes at " + pos
+                + ", but the buffer ends at " + buf.writerIndex());
+        }
+    }
+
+    private int readInt() throws InvalidInputDataException {
+        ensureReadable(4);
+        int value = buf.getInt(pos);
+        pos += 4;
+        return value;
+    }
+
+    /** Similar to {@link NbtSquishMapReader}'s readVarInt */
+    private int readVarInt() throws InvalidInputDataException {
+        int value = 0;
+        for (int bytesRead = 0; bytesRead < 5; bytesRead++) {
+            ensureReadable(1);
+            int b = buf.getUnsignedByte(pos++);
+            value |= (b & 0x7f) << bytesRead * 7;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new InvalidInputDataException("VarInt can only be up to 5 bytes long!");
+    }
+
+    private int skipFixed(int flags, int flag, int size) throws InvalidInputDataException {
+        if ((flags & flag) == 0) {
+            return 0;
+        }
+        int count = readVarInt();
+        ensureReadable((long) count * size);
+        pos += count * size;
+        return count;
+    }
+
+    /** Skips a dictionary of arrays (or strings) that start with their length as an unsigned short. */
+    private int[] skipArrays(int flags, int flag, int elementSize) throws InvalidInputDataException {
+        if ((flags & flag) == 0) {
+            return new int[0];
+        }
+        int count = readVarInt();
+        // Every entry is at least 2 bytes long, so this stops invalid counts from allocating huge arrays
+        ensureReadable(count * 2L);
+        int[] offsets = new int[count];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = pos;
+            ensureReadable(2);
+            int length = buf.getUnsignedShort(pos);
+            pos += 2;
+            ensureReadable((long) length * elementSize);
+            pos += length * elementSize;
+        }
+        return offsets;
+    }
+
+    private void skipComplex() throws InvalidInputDataException {
+        ensureReadable(1);
+        int complexType = buf.getUnsignedByte(pos++);
+        if (complexType == NbtSquishConstants.COMPLEX_COMPOUND) {
+            int count = readVarInt();
+            ensureReadable((long) count * (stringType.numBytes + type.numBytes));
+            pos += count * (stringType.numBytes + type.numBytes);
+        } else if (complexType == NbtSquishConstants.COMPLEX_LIST) {
+            int count = readVarInt();
+            ensureReadable((long) count * type.numBytes);
+            pos += count * type.numBytes;
+        } else if (complexType == NbtSquishConstants.COMPLEX_LIST_PACKED) {
+            int dictionarySize = readVarInt();
+            ensureReadable((long) dictionarySize * type.numBytes);
+            pos += dictionarySize * type.numBytes;
+            readVarInt();
+            // One bitset per bit size, each of which removes (2 ^ bits - 1) entries from the dictionary
+            for (int bits = 1; dictionarySize > 0; bits++) {
+                int bitsetSize = readVarInt();
+                ensureReadable(bitsetSize);
+                pos += bitsetSize;
+                dictionarySize -= (1 << bits) - 1;
+            }
+        } else {
+            throw new InvalidInputDataException("Unknown complex type " + complexType);
+        }
+    }
+
+    // Reading
+
+    /** @return The number of values in every dictionary. Valid indexes are between 0 (inclusive) and this
+     *         (exclusive). */
+    public int size() {
+        return firstIndex[10];
+    }
+
+    public int getRootIndex() {
+        return rootIndex;
+    }
+
+    public CompoundView getRoot() {
+        return new CompoundView(complex[rootIndex - firstIndex[9]]);
+    }
+
+    /** @return The {@link Constants.NBT} type of the value at the given index, or {@link Constants.NBT#TAG_END} if the
+     *         index is invalid. */
+    public int getTagType(int index) {
+        if (index < 0 || index >= size()) {
+            return Constants.NBT.TAG_END;
+        } else if (index < firstIndex[1]) {
+            return Constants.NBT.TAG_BYTE;
+        } else if (index < firstIndex[2]) {
+            return Constants.NBT.TAG_SHORT;
+        } else if (index < firstIndex[3]) {
+            return Constants.NBT.TAG_INT;
+        } else if (index < firstIndex[4]) {
+            return Constants.NBT.TAG_LONG;
+        } else if (index < firstIndex[5]) {
+            return Constants.NBT.TAG_FLOAT;
+        } else if (index < firstIndex[6]) {
+            return Constants.NBT.TAG_DOUBLE;
+        } else if (index < firstIndex[7]) {
+            return Constants.NBT.TAG_BYTE_ARRAY;
+        } else if (index < firstIndex[8]) {
+            return Constants.NBT.TAG_INT_ARRAY;
+        } else if (index < firstIndex[9]) {
+            return Constants.NBT.TAG_STRING;
+        } else {
+            int complexType = buf.getUnsignedByte(complex[index - firstIndex[9]]);
+            return complexType == NbtSquishConstants.COMPLEX_COMPOUND ? Constants.NBT.TAG_COMPOUND
+                : Constants.NBT.TAG_LIST;
+        }
+    }
+
+    /** @return The value at the given index as a long, or 0 if it isn't a number. Floating point values are rounded
+     *         towards zero. */
+    public long getLong(int index) {
+        switch (getTagType(index)) {
+            case Constants.NBT.TAG_BYTE:
+                return buf.getByte(bytesStart + index);
+            case Constants.NBT.TAG_SHORT:
+                return buf.getShort(shortsStart + (index - firstIndex[1]) * 2);
+            case Constants.NBT.TAG_INT:
+                return buf.getInt(intsStart + (index - firstIndex[2]) * 4);
+            case Constants.NBT.TAG_LONG:
+                return buf.getLong(longsStart + (index - firstIndex[3]) * 8);
+            case Constants.NBT.TAG_FLOAT:
+            case Constants.NBT.TAG_DOUBLE:
+                return (long) getDouble(index);
+            default:
+                return 0;
+        }
+    }
+
+    /** @return The value at the given index as a double, or 0 if it isn't a number. */
+    public double getDouble(int index) {
+        switch (getTagType(index)) {
+            case Constants.NBT.TAG_FLOAT:
+                return buf.getFloat(floatsStart + (index - firstIndex[4]) * 4);
+            case Constants.NBT.TAG_DOUBLE:
+                return buf.getDouble(doublesStart + (index - firstIndex[5]) * 8);
+            default:
+                return getLong(index);
+        }
+    }
+
+    /** @return The string at the given index, or an empty string if the value isn't a string. */
+    public String getString(int index) {
+        if (getTagType(index) != Constants.NBT.TAG_STRING) {
+            return "";
+        }
+        return getStringAt(index - firstIndex[8]);
+    }
+
+    private String getStringAt(int stringIndex) {
+        String value = stringCache[stringIndex];
+        if (value == null) {
+            int offset = strings[stringIndex];
+            int length = buf.getUnsignedShort(offset);
+            value = buf.toString(offset + 2, length, StandardCharsets.UTF_8);
+            stringCache[stringIndex] = value;
+        }
+        return value;
+    }
+
+    /** @return A view of the compound at the given index, or null if the value isn't a compound. */
+    public CompoundView getCompound(int index) {
+        if (getTagType(index) != Constants.NBT.TAG_COMPOUND) {
+            return null;
+        }
+        return new CompoundView(complex[index - firstIndex[9]]);
+    }
+
+    /** @return A view of the list at the given index, or null if the value isn't a list. */
+    public ListView getList(int index) {
+        if (getTagType(index) != Constants.NBT.TAG_LIST) {
+            return null;
+        }
+        return new ListView(complex[index - firstIndex[9]]);
+    }
+
+    /** Creates a new tag (and every tag inside it) for the value at the given index. */
+    public NBTBase getTag(int index) {
+        switch (getTagType(index)) {
+            case Constants.NBT.TAG_BYTE:
+                return new NBTTagByte((byte) getLong(index));
+            case Constants.NBT.TAG_SHORT:
+                return new NBTTagShort((short) getLong(index));
+            case Constants.NBT.TAG_INT:
+                return new NBTTagInt((int) getLong(index));
+            case Constants.NBT.TAG_LONG:
+                return new NBTTagLong(getLong(index));
+            case Constants.NBT.TAG_FLOAT:
+                return new NBTTagFloat((float) getDouble(index));
+            case Constants.NBT.TAG_DOUBLE:
+                return new NBTTagDouble(getDouble(index));
+            case Constants.NBT.TAG_BYTE_ARRAY: {
+                int offset = byteArrays[index - firstIndex[6]];
+                byte[] array = new byte[buf.getUnsignedShort(offset)];
+                buf.getBytes(offset + 2, array);
+                return new NBTTagByteArray(array);
+            }
+            case Constants.NBT.TAG_INT_ARRAY: {
+                int offset = intArrays[index - firstIndex[7]];
+                int[] array = new int[buf.getUnsignedShort(offset)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = buf.getInt(offset + 2 + i * 4);
+                }
+                return new NBTTagIntArray(array);
+            }
+            case Constants.NBT.TAG_STRING:
+                return new NBTTagString(getString(index));
+            case Constants.NBT.TAG_COMPOUND:
+                return getCompound(index).toNbt();
+            case Constants.NBT.TAG_LIST:
+                return getList(index).toNbt();
+            default:
+                throw new IndexOutOfBoundsException("Invalid index " + index + " (size = " + size() + ")");
+        }
+    }
+
+    /** A compound in the buffer. Every entry is a pair of (string index, value index) written with a fixed size, so
+     * entries can be read in any order without reading the ones before them. */
+    public final class CompoundView {
+        private final int entriesStart;
+        private final int size;
+
+        CompoundView(int offset) {
+            // Skip the complex type
+            size = getVarInt(offset + 1);
+            entriesStart = offset + 1 + varIntSize(size);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public String getKey(int entry) {
+            int offset = entriesStart + entry * (stringType.numBytes + type.numBytes);
+            return getStringAt(stringType.getIndex(buf, offset));
+        }
+
+        /** @return The index (in the whole view) of the value of the given entry. */
+        public int getValueIndex(int entry) {
+            int offset = entriesStart + entry * (stringType.numBytes + type.numBytes) + stringType.numBytes;
+            return type.getIndex(buf, offset);
+        }
+
+        /** @return The index (in the whole view) of the value with the given key, or -1 if there isn't one. */
+        public int indexOf(String key) {
+            for (int i = 0; i < size; i++) {
+                if (getKey(i).equals(key)) {
+                    return getValueIndex(i);
+                }
+            }
+            return -1;
+        }
+
+        public boolean hasKey(String key) {
+            return indexOf(key) != -1;
+        }
+
+        public int getTagType(String key) {
+            return NbtSquishView.this.getTagType(indexOf(key));
+        }
+
+        public byte getByte(String key) {
+            return (byte) NbtSquishView.this.getLong(indexOf(key));
+        }
+
+        public boolean getBoolean(String key) {
+            return getByte(key) != 0;
+        }
+
+        public short getShort(String key) {
+            return (short) NbtSquishView.this.getLong(indexOf(key));
+        }
+
+        public int getInteger(String key) {
+            return (int) NbtSquishView.this.getLong(indexOf(key));
+        }
+
+        public long getLong(String key) {
+            return NbtSquishView.this.getLong(indexOf(key));
+        }
+
+        public float getFloat(String key) {
+            return (float) NbtSquishView.this.getDouble(indexOf(key));
+        }
+
+        public double getDouble(String key) {
+            return NbtSquishView.this.getDouble(indexOf(key));
+        }
+
+        public String getString(String key) {
+            return NbtSquishView.this.getString(indexOf(key));
+        }
+
+        /** @return The compound with the given key, or null if there isn't one. */
+        public CompoundView getCompound(String key) {
+            return NbtSquishView.this.getCompound(indexOf(key));
+        }
+
+        /** @return The list with the given key, or null if there isn't one. */
+        public ListView getList(String key) {
+            return NbtSquishView.this.getList(indexOf(key));
+        }
+
+        /** @return A new tag for the value with the given key, or null if there isn't one. */
+        public NBTBase getTag(String key) {
+            int index = indexOf(key);
+            return index == -1 ? null : NbtSquishView.this.getTag(index);
+        }
+
+        public NBTTagCompound toNbt() {
+            NBTTagCompound nbt = new NBTTagCompound();
+            for (int i = 0; i < size; i++) {
+                nbt.setTag(getKey(i), NbtSquishView.this.getTag(getValueIndex(i)));
+            }
+            return nbt;
+        }
+    }
+
+    /** A list in the buffer. Normal lists can be read in any order, but packed lists are unpacked (into the index of
+     * every entry) the first time that they are read. */
+    public final class ListView {
+        private final int offset;
+        private final int size;
+        private final boolean packed;
+        private int[] unpacked;
+
+        ListView(int offset) {
+            this.offset = offset;
+            packed = buf.getUnsignedByte(offset) == NbtSquishConstants.COMPLEX_LIST_PACKED;
+            int sizeOffset = offset + 1;
+            if (packed) {
+                int dictionarySize = getVarInt(sizeOffset);
+                sizeOffset += varIntSize(dictionarySize) + dictionarySize * type.numBytes;
+            }
+            size = getVarInt(sizeOffset);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** @return The index (in the whole view) of the given entry. */
+        public int getValueIndex(int entry) {
+            if (entry < 0 || entry >= size) {
+                throw new IndexOutOfBoundsException("Tried to get entry " + entry + " of " + size);
+            }
+            if (!packed) {
+                int start = offset + 1 + varIntSize(size);
+                return type.getIndex(buf, start + entry * type.numBytes);
+            }
+            if (unpacked == null) {
+                unpacked = unpack();
+            }
+            return unpacked[entry];
+        }
+
+        private int[] unpack() {
+            int at = offset + 1;
+            int dictionarySize = getVarInt(at);
+            at += varIntSize(dictionarySize);
+            int[] dictionary = new int[dictionarySize];
+            for (int i = 0; i < dictionarySize; i++) {
+                dictionary[i] = type.getIndex(buf, at);
+                at += type.numBytes;
+            }
+            at += varIntSize(size);
+
+            // The same as NbtSquishMapReader.readPackedList
+            int[] values = new int[size];
+            int[] left = new int[size];
+            for (int i = 0; i < size; i++) {
+                left[i] = i;
+            }
+            int leftCount = size;
+            int removed = 0;
+            for (int bits = 1; removed < dictionarySize; bits++) {
+                int bitsetSize = getVarInt(at);
+                at += varIntSize(bitsetSize);
+                byte[] bitset = new byte[bitsetSize];
+                buf.getBytes(at, bitset);
+                at += bitsetSize;
+                DecompactingBitSet decompactor = new DecompactingBitSet(bits, bitset);
+                int maxVal = (1 << bits) - 1;
+                int nextCount = 0;
+                for (int i = 0; i < leftCount; i++) {
+                    int index = decompactor.next();
+                    if (index < maxVal) {
+                        if (removed + index >= dictionarySize) {
+                            throw new IllegalStateException("Packed list entry " + (removed + index)
+                                + " is outside of its dictionary (" + dictionarySize + ")");
+                        }
+                        values[left[i]] = dictionary[removed + index];
+                    } else {
+                        left[nextCount++] = left[i];
+                    }
+                }
+                leftCount = nextCount;
+                removed += maxVal;
+            }
+            return values;
+        }
+
+        public NBTTagList toNbt() {
+            NBTTagList list = new NBTTagList();
+            for (int i = 0; i < size; i++) {
+                list.appendTag(getTag(getValueIndex(i)));
+            }
+            return list;
+        }
+    }
+
+    /** Reads a var int that was already checked by the constructor. */
+    private int getVarInt(int offset) {
+        int value = 0;
+        for (int i = 0; i < 5; i++) {
+            int b = buf.getUnsignedByte(offset + i);
+            value |= (b & 0x7f) << i * 7;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & -128) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -7,8 +7,8 @@
 package buildcraft.lib.nbt;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
@@ -23,6 +23,8 @@ import java.util.zip.GZIPOutputStream;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 
 import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTTagCompound;
@@ -45,19 +47,37 @@ public class NbtSquisher {
     private static final int TYPE_BC_1_GZIP = NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED;
     private static final int TYPE_BC_1 = NbtSquishConstants.BUILDCRAFT_V1;
 
+    /** Maps with more values than this aren't kept for the next call, so that a single huge blueprint doesn't keep its
+     * dictionaries in memory forever. */
+    private static final int MAX_REUSED_MAP_SIZE = 1 << 16;
+
+    /** The dictionaries of the last squish or expand on each thread, so that they don't have to be allocated (and
+     * grown) again every time. Null while they are in use. */
+    private static final ThreadLocal<NbtSquishMap> reusedMap = new ThreadLocal<>();
+
     public static byte[] squish(NBTTagCompound nbt, int type) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.heapBuffer();
         try {
-            squish(nbt, type, baos);
-        } catch (IOException e) {
-            throw new IllegalStateException("Failed to write to a perfectly good ByteArrayOutputStream", e);
+            squish(nbt, type, buf);
+            byte[] bytes = new byte[buf.readableBytes()];
+            buf.readBytes(bytes);
+            return bytes;
+        } finally {
+            buf.release();
         }
-        return baos.toByteArray();
     }
 
+    /** Writes the given nbt straight into the given buffer. */
     public static void squish(NBTTagCompound nbt, int type, ByteBuf buf) {
         try (ByteBufOutputStream bbos = new ByteBufOutputStream(buf)) {
-            squish(nbt, type, bbos);
+            // ByteBufOutputStream is already a DataOutput, so the uncompressed types don't need another wrapper
+            if (type == TYPE_MC) {
+                squishVanillaUncompressed(nbt, bbos);
+            } else if (type == TYPE_BC_1) {
+                squishBuildCraftV1Uncompressed(nbt, bbos);
+            } else {
+                squish(nbt, type, (OutputStream) bbos);
+            }
         } catch (IOException e) {
             throw new IllegalStateException("Failed to write to a perfectly good ByteBufOutputStream", e);
         }
@@ -99,8 +119,9 @@ public class NbtSquisher {
         to.write(NbtSquishConstants.BUILDCRAFT_MAGIC_1);
         to.write(NbtSquishConstants.BUILDCRAFT_MAGIC_2);
         to.write(TYPE_BC_1_GZIP);
-        try (GZIPOutputStream gzip = new GZIPOutputStream(to, true)) {
-            squishBuildCraftV1Direct(nbt, new DataOutputStream(gzip));
+        // Buffered as the squisher writes a few bytes at a time, which is very slow to compress directly
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(to, true)))) {
+            squishBuildCraftV1Direct(nbt, data);
         }
     }
 
@@ -137,7 +158,7 @@ public class NbtSquisher {
             } else if (type == TYPE_BC_1) {
                 return readBuildCraftV1Direct(new DataInputStream(stream));
             } else if (type == TYPE_BC_1_GZIP) {
-                return readBuildCraftV1Direct(new DataInputStream(new GZIPInputStream(stream)));
+                return readBuildCraftV1Direct(openBuildCraftV1Compressed(stream));
             } else {
                 throw new InvalidInputDataException("Cannot handle BuildCraft saved NBT type " + type);
             }
@@ -160,7 +181,7 @@ public class NbtSquisher {
         } else if (type == TYPE_BC_1) {
             return readBuildCraftV1Direct(new DataInputStream(stream));
         } else if (type == TYPE_BC_1_GZIP) {
-            return readBuildCraftV1Direct(new DataInputStream(new GZIPInputStream(stream)));
+            return readBuildCraftV1Direct(openBuildCraftV1Compressed(stream));
         } else if (type == Constants.NBT.TAG_COMPOUND) {
             // Assume vanilla, but reset back to the first byte as vanilla needs
             stream.reset();
@@ -170,19 +191,83 @@ public class NbtSquisher {
         }
     }
 
+    /** Opens the given squished nbt without reading it into an {@link NBTTagCompound}. Uncompressed BuildCraft nbt is
+     * read straight out of the given buffer, so the buffer must not be changed or released while the view is in use.
+     * Compressed BuildCraft nbt is decompressed into a new buffer first.
+     *
+     * @throws InvalidInputDataException if the nbt wasn't squished with {@link NbtSquishConstants#BUILDCRAFT_V1} or
+     *             {@link NbtSquishConstants#BUILDCRAFT_V1_COMPRESSED}. */
+    public static NbtSquishView view(ByteBuf buf) throws IOException {
+        buf = buf.slice();
+        if (buf.readableBytes() < 3 || buf.readUnsignedByte() != NbtSquishConstants.BUILDCRAFT_MAGIC_1
+            || buf.readUnsignedByte() != NbtSquishConstants.BUILDCRAFT_MAGIC_2) {
+            throw new InvalidInputDataException("Only BuildCraft squished nbt can be viewed");
+        }
+        int type = buf.readUnsignedByte();
+        if (type == TYPE_BC_1) {
+            return new NbtSquishView(buf);
+        } else if (type == TYPE_BC_1_GZIP) {
+            ByteBuf decompressed = Unpooled.buffer();
+            try (InputStream in = new GZIPInputStream(new ByteBufInputStream(buf))) {
+                int read;
+                do {
+                    read = decompressed.writeBytes(in, 8192);
+                } while (read != -1);
+            }
+            return new NbtSquishView(decompressed);
+        } else {
+            throw new InvalidInputDataException("Only BuildCraft squished nbt can be viewed, not type " + type);
+        }
+    }
+
+    public static NbtSquishView view(byte[] bytes) throws IOException {
+        return view(Unpooled.wrappedBuffer(bytes));
+    }
+
+    private static DataInput openBuildCraftV1Compressed(InputStream stream) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)));
+    }
+
     private static NBTTagCompound readBuildCraftV1Direct(DataInput in) throws IOException {
-        NbtSquishMap map = NbtSquishMapReader.read(in);
-        WrittenType type = map.getWrittenType();
-        int index = type.readIndex(in);
-        return map.getFullyReadComp(index);
+        NbtSquishMap map = takeMap();
+        try {
+            NbtSquishMapReader.read(in, map);
+            WrittenType type = map.getWrittenType();
+            int index = type.readIndex(in);
+            return map.getFullyReadComp(index);
+        } finally {
+            returnMap(map);
+        }
     }
 
     private static void squishBuildCraftV1Direct(NBTTagCompound nbt, DataOutput to) throws IOException {
-        NbtSquishMap map = new NbtSquishMap();
-        map.addTag(nbt);
-        NbtSquishMapWriter.debug = debugBuffer != null;
-        NbtSquishMapWriter.write(map, to);
-        WrittenType type = map.getWrittenType();
-        type.writeIndex(to, map.indexOfTag(nbt));
+        NbtSquishMap map = takeMap();
+        try {
+            map.addTag(nbt);
+            NbtSquishMapWriter.debug = debugBuffer != null;
+            NbtSquishMapWriter.write(map, to);
+            WrittenType type = map.getWrittenType();
+            type.writeIndex(to, map.indexOfTag(nbt));
+        } finally {
+            returnMap(map);
+        }
+    }
+
+    private static NbtSquishMap takeMap() {
+        NbtSquishMap map = reusedMap.get();
+        if (map == null) {
+            return new NbtSquishMap();
+        }
+        reusedMap.set(null);
+        return map;
+    }
+
+    private static void returnMap(NbtSquishMap map) {
+        boolean keep = map.size() <= MAX_REUSED_MAP_SIZE;
+        // Always cleared, as the complex dictionary holds on to the tags that were read or written
+        map.clear();
+        if (keep) {
+            reusedMap.set(map);
+        }
     }
 }
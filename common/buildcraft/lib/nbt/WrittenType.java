@@ -10,6 +10,8 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import io.netty.buffer.ByteBuf;
+
 import buildcraft.api.core.InvalidInputDataException;
 
 public enum WrittenType {
@@ -42,7 +44,11 @@ public enum WrittenType {
     }
 
     public static WrittenType readType(DataInput in) throws IOException {
-        byte val = in.readByte();
+        return getForType(in.readByte());
+    }
+
+    /** @param val The byte written by {@link #writeType(DataOutput)} */
+    public static WrittenType getForType(byte val) throws InvalidInputDataException {
         for (WrittenType type : ORDERED_VALUES) {
             if (val == type.numBytes - 1) {
                 return type;
@@ -93,4 +99,19 @@ public enum WrittenType {
                 return in.readInt();
         }
     }
+
+    /** Reads an index at the given position in the buffer, without changing its reader index. */
+    public int getIndex(ByteBuf buf, int offset) {
+        switch (this) {
+            case BYTE:
+                return buf.getUnsignedByte(offset);
+            case SHORT:
+                return buf.getUnsignedShort(offset);
+            case MEDIUM:
+                return buf.getUnsignedByte(offset) | buf.getUnsignedShort(offset + 1) << 8;
+            default:
+            case INT:
+                return buf.getInt(offset);
+        }
+    }
 }
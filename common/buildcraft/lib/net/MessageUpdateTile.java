@@ -42,6 +42,12 @@ public class MessageUpdateTile implements IMessage {
         return payload == null ? 0 : payload.readableBytes();
     }
 
+    /** @return The number of bytes that {@link #toBytes(ByteBuf)} will write. */
+    int getEncodedSize() {
+        return PacketBuffer.getVarIntSize(pos.getX()) + PacketBuffer.getVarIntSize(pos.getY())
+            + PacketBuffer.getVarIntSize(pos.getZ()) + 3 + getPayloadSize();
+    }
+
     @Override
     public void fromBytes(ByteBuf buf) {
         this.pos = MessageUtil.readBlockPos(new PacketBuffer(buf));
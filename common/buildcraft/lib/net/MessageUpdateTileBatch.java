@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.net;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.network.PacketBuffer;
+
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
+
+import buildcraft.lib.misc.MessageUtil;
+
+/** Several {@link MessageUpdateTile}'s that are sent to a single player in one go, by {@link TileUpdateBatcher}. Larger
+ * batches are compressed. */
+public class MessageUpdateTileBatch implements IMessage {
+    /** Batches smaller than this (in bytes) aren't worth compressing. */
+    private static final int COMPRESSION_THRESHOLD = 256;
+    /** The largest batch that will be read, to guard against a broken length making us allocate a huge array. */
+    private static final int MAX_RAW_LENGTH = 1 << 24;
+
+    private MessageUpdateTile[] messages;
+
+    /** The encoded messages, compressed if {@link #rawLength} is positive. Only used when sending. */
+    private byte[] data;
+    private int rawLength;
+
+    @SuppressWarnings("unused")
+    public MessageUpdateTileBatch() {}
+
+    MessageUpdateTileBatch(List<MessageUpdateTile> messages) {
+        this.messages = messages.toArray(new MessageUpdateTile[0]);
+        PacketBuffer buffer = new PacketBuffer(Unpooled.buffer());
+        buffer.writeVarInt(this.messages.length);
+        for (MessageUpdateTile message : this.messages) {
+            message.toBytes(buffer);
+        }
+        byte[] raw = new byte[buffer.readableBytes()];
+        buffer.readBytes(raw);
+        if (raw.length >= COMPRESSION_THRESHOLD) {
+            data = compress(raw);
+            rawLength = raw.length;
+        } else {
+            data = raw;
+            rawLength = 0;
+        }
+    }
+
+    /** @return The messages in this batch, in the order that they were (or will be) handled. */
+    public List<MessageUpdateTile> getMessages() {
+        return Arrays.asList(messages);
+    }
+
+    /** @return The number of bytes that {@link #toBytes(ByteBuf)} will write. */
+    int getEncodedSize() {
+        return PacketBuffer.getVarIntSize(rawLength) + PacketBuffer.getVarIntSize(data.length) + data.length;
+    }
+
+    @Override
+    public void toBytes(ByteBuf buf) {
+        PacketBuffer buffer = new PacketBuffer(buf);
+        // 0 means "not compressed"
+        buffer.writeVarInt(rawLength);
+        buffer.writeVarInt(data.length);
+        buffer.writeBytes(data);
+    }
+
+    @Override
+    public void fromBytes(ByteBuf buf) {
+        PacketBuffer buffer = new PacketBuffer(buf);
+        int raw = buffer.readVarInt();
+        byte[] read = new byte[buffer.readVarInt()];
+        buffer.readBytes(read);
+        if (raw > 0) {
+            if (raw > MAX_RAW_LENGTH) {
+                throw new IllegalStateException("Tried to read " + raw + " bytes of tile updates!");
+            }
+            read = decompress(read, raw);
+        }
+        PacketBuffer entries = new PacketBuffer(Unpooled.wrappedBuffer(read));
+        messages = new MessageUpdateTile[entries.readVarInt()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new MessageUpdateTile();
+            messages[i].fromBytes(entries);
+        }
+    }
+
+    private static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2);
+        byte[] chunk = new byte[4096];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(chunk);
+            out.write(chunk, 0, length);
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] compressed, int rawLength) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(compressed);
+        byte[] raw = new byte[rawLength];
+        try {
+            int read = 0;
+            while (read < rawLength && !inflater.finished()) {
+                int length = inflater.inflate(raw, read, rawLength - read);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += length;
+            }
+            if (read != rawLength) {
+                throw new IllegalStateException("Expected " + rawLength + " bytes of tile updates, but got " + read);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Invalid compressed tile updates!", e);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    public static final IMessageHandler<MessageUpdateTileBatch, IMessage> HANDLER = (message, ctx) -> {
+        for (MessageUpdateTile update : message.messages) {
+            IMessage reply = MessageUpdateTile.HANDLER.onMessage(update, ctx);
+            if (reply != null) {
+                MessageUtil.sendReturnMessage(ctx, reply);
+            }
+        }
+        return null;
+    };
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.net;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.tileentity.TileEntity;
+
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+
+import buildcraft.lib.misc.MessageUtil;
+
+/** Collects the {@link MessageUpdateTile}'s that tiles send to players during a server tick, and sends each player
+ * a single {@link MessageUpdateTileBatch} at the end of the tick (from {@link MessageUtil#postServerTick()}).
+ * <p>
+ * Updates that are sent with {@link #queueReplacing(EntityPlayerMP, TileEntity, int, MessageUpdateTile)} contain the
+ * whole state of a tile for that ID, so if the same tile sends the same ID again in the same tick then only the last
+ * one is sent (in the position of the last one). Every other update is sent as-is, in the order that it was queued.
+ * <p>
+ * This is SERVER SIDE only, and may only be used from the server thread. */
+public class TileUpdateBatcher {
+    /** Batches are split up when they would be larger than this (before compression), to keep packets a sensible
+     * size. */
+    private static final int MAX_BATCH_SIZE = 1 << 20;
+
+    private static final Map<EntityPlayerMP, PlayerBatch> BATCHES = new IdentityHashMap<>();
+
+    // Statistics, for the debug screen. "Queued" is what would have been sent without batching.
+    private static int tick;
+    private static int tickQueuedPackets, tickQueuedBytes, tickSentPackets, tickSentBytes;
+    private static int lastQueuedPackets, lastQueuedBytes, lastSentPackets, lastSentBytes;
+
+    /** Queues the given message to be sent to the player at the end of this tick. */
+    public static void queue(EntityPlayerMP player, MessageUpdateTile message) {
+        getBatch(player).add(message);
+    }
+
+    /** Queues the given message to be sent to the player at the end of this tick, replacing any message that has
+     * already been queued for the same tile and ID. */
+    public static void queueReplacing(EntityPlayerMP player, TileEntity tile, int id, MessageUpdateTile message) {
+        getBatch(player).replace(tile, id, message);
+    }
+
+    private static PlayerBatch getBatch(EntityPlayerMP player) {
+        return BATCHES.computeIfAbsent(player, p -> new PlayerBatch());
+    }
+
+    /** Sends every queued message. */
+    public static void flush() {
+        for (Map.Entry<EntityPlayerMP, PlayerBatch> entry : BATCHES.entrySet()) {
+            EntityPlayerMP player = entry.getKey();
+            if (!player.hasDisconnected()) {
+                entry.getValue().send(player);
+            }
+        }
+        BATCHES.clear();
+
+        tick++;
+        if (tick % 20 == 0) {
+            lastQueuedPackets = tickQueuedPackets;
+            lastQueuedBytes = tickQueuedBytes;
+            lastSentPackets = tickSentPackets;
+            lastSentBytes = tickSentBytes;
+            tickQueuedPackets = tickQueuedBytes = tickSentPackets = tickSentBytes = 0;
+        }
+    }
+
+    /** Adds the packet and byte rates (over the last second) of tile updates to the given list. These are only known
+     * for the integrated server. */
+    public static void getDebugInfo(List<String> info) {
+        info.add("Tile updates: " + lastQueuedPackets + " packets/s, " + lastQueuedBytes + " B/s");
+        info.add("  batched into " + lastSentPackets + " packets/s, " + lastSentBytes + " B/s");
+    }
+
+    /** The messages that have been queued for a single player. */
+    public static final class PlayerBatch {
+        /** Messages that were replaced by later ones are set to null, rather than removed. */
+        private final List<MessageUpdateTile> messages = new ArrayList<>();
+        private final Map<ReplaceKey, Integer> replaceable = new HashMap<>();
+
+        /** @see TileUpdateBatcher#queue(EntityPlayerMP, MessageUpdateTile) */
+        public void add(MessageUpdateTile message) {
+            tickQueuedPackets++;
+            tickQueuedBytes += message.getEncodedSize();
+            messages.add(message);
+        }
+
+        /** @see TileUpdateBatcher#queueReplacing(EntityPlayerMP, TileEntity, int, MessageUpdateTile) */
+        public void replace(TileEntity tile, int id, MessageUpdateTile message) {
+            Integer existing = replaceable.put(new ReplaceKey(tile, id), messages.size());
+            if (existing != null) {
+                messages.set(existing, null);
+            }
+            add(message);
+        }
+
+        void send(EntityPlayerMP player) {
+            for (IMessage message : createMessages()) {
+                MessageManager.sendTo(message, player);
+            }
+        }
+
+        /** @return The messages that should be sent for everything that has been queued, in order. Each one is either
+         *         a {@link MessageUpdateTileBatch}, or a {@link MessageUpdateTile} if a batch would only contain a
+         *         single update. */
+        public List<IMessage> createMessages() {
+            List<IMessage> toSend = new ArrayList<>();
+            List<MessageUpdateTile> batch = new ArrayList<>();
+            int batchSize = 0;
+            for (MessageUpdateTile message : messages) {
+                if (message == null) {
+                    continue;
+                }
+                int size = message.getEncodedSize();
+                if (!batch.isEmpty() && batchSize + size > MAX_BATCH_SIZE) {
+                    toSend.add(createBatch(batch));
+                    batch.clear();
+                    batchSize = 0;
+                }
+                batch.add(message);
+                batchSize += size;
+            }
+            if (!batch.isEmpty()) {
+                toSend.add(createBatch(batch));
+            }
+            return toSend;
+        }
+
+        private static IMessage createBatch(List<MessageUpdateTile> batch) {
+            tickSentPackets++;
+            if (batch.size() == 1) {
+                // Not worth the overhead of a batch
+                MessageUpdateTile message = batch.get(0);
+                tickSentBytes += message.getEncodedSize();
+                return message;
+            } else {
+                MessageUpdateTileBatch message = new MessageUpdateTileBatch(batch);
+                tickSentBytes += message.getEncodedSize();
+                return message;
+            }
+        }
+    }
+
+    private static final class ReplaceKey {
+        final TileEntity tile;
+        final int id;
+
+        ReplaceKey(TileEntity tile, int id) {
+            this.tile = tile;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) return true;
+            if (obj == null || obj.getClass() != getClass()) return false;
+            ReplaceKey other = (ReplaceKey) obj;
+            return tile == other.tile && id == other.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(tile) * 31 + id;
+        }
+    }
+}
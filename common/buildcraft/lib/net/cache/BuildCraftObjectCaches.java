@@ -79,6 +79,13 @@ public class BuildCraftObjectCaches {
         }
     }
 
+    /** Called by BuildCraftLib at the end of every server tick. */
+    public static void onServerTick() {
+        for (NetworkedObjectCache<?> cache : CACHES) {
+            cache.onServerTick();
+        }
+    }
+
     /** Called by BuildCraftLib on every client tick. */
     public static void onClientTick() {
         for (NetworkedObjectCache<?> cache : CACHES) {
@@ -92,4 +99,15 @@ public class BuildCraftObjectCaches {
             cache.onClientJoinServer();
         }
     }
+
+    /** Adds the statistics of every cache to the given list, if the debug option "lib.net.cache" is enabled. */
+    public static void addDebugInfo(List<String> info) {
+        if (!NetworkedObjectCache.DEBUG_LOG) {
+            return;
+        }
+        info.add("");
+        for (NetworkedObjectCache<?> cache : CACHES) {
+            cache.getDebugInfo(info);
+        }
+    }
 }
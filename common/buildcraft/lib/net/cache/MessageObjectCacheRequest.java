@@ -30,7 +30,7 @@ public class MessageObjectCacheRequest implements IMessage {
     MessageObjectCacheRequest(NetworkedObjectCache<?> cache, int[] ids) {
         this.cacheId = BuildCraftObjectCaches.CACHES.indexOf(cache);
         this.ids = ids;
-        if (ids.length > Short.MAX_VALUE) {
+        if (ids.length > NetworkedObjectCache.MAX_REQUEST_SIZE) {
             throw new IllegalStateException("Tried to request too many ID's! (" + ids.length + ")");
         }
     }
@@ -61,10 +61,12 @@ public class MessageObjectCacheRequest implements IMessage {
         PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer());
         for (int i = 0; i < values.length; i++) {
             int id = message.ids[i];
-            cache.writeObjectServer(id, buffer);
-            values[i] = new byte[buffer.readableBytes()];
-            buffer.readBytes(values[i]);
-            buffer.clear();
+            if (cache.writeObjectServer(id, buffer)) {
+                values[i] = new byte[buffer.readableBytes()];
+                buffer.readBytes(values[i]);
+                buffer.clear();
+            }
+            // Otherwise the value stays null, to tell the client that it has been evicted
         }
         return new MessageObjectCacheResponse(message.cacheId, message.ids, values);
     };
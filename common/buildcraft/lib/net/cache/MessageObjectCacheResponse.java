@@ -39,8 +39,12 @@ public class MessageObjectCacheResponse implements IMessage {
         buf.writeShort(ids.length);
         for (int i = 0; i < ids.length; i++) {
             buf.writeInt(ids[i]);
-            buf.writeShort(values[i].length);
-            buf.writeBytes(values[i]);
+            if (values[i] == null) {
+                buf.writeShort(-1);
+            } else {
+                buf.writeShort(values[i].length);
+                buf.writeBytes(values[i]);
+            }
         }
     }
 
@@ -52,8 +56,11 @@ public class MessageObjectCacheResponse implements IMessage {
         values = new byte[idCount][];
         for (int i = 0; i < idCount; i++) {
             ids[i] = buf.readInt();
-            values[i] = new byte[buf.readShort()];
-            buf.readBytes(values[i]);
+            int length = buf.readShort();
+            if (length >= 0) {
+                values[i] = new byte[length];
+                buf.readBytes(values[i]);
+            }
         }
     }
 
@@ -63,7 +70,11 @@ public class MessageObjectCacheResponse implements IMessage {
             for (int i = 0; i < message.ids.length; i++) {
                 int id = message.ids[i];
                 byte[] payload = message.values[i];
-                cache.readObjectClient(id, new PacketBufferBC(Unpooled.copiedBuffer(payload)));
+                if (payload == null) {
+                    cache.onObjectMissingClient(id);
+                } else {
+                    cache.readObjectClient(id, new PacketBufferBC(Unpooled.copiedBuffer(payload)));
+                }
             }
             return null;
         } catch (IOException io) {
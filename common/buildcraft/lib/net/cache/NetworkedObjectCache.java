@@ -7,13 +7,19 @@
 package buildcraft.lib.net.cache;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.function.Supplier;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
+import javax.annotation.Nullable;
+
+import gnu.trove.list.array.TIntArrayList;
 
 import net.minecraft.client.Minecraft;
 import net.minecraft.item.ItemStack;
@@ -30,6 +36,7 @@ import buildcraft.lib.net.PacketBufferBC;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
 /** Provides a way of defining a cache of *some object* that will be sent from server to every client (when they are
  * needed). Each object has a specific integer ID.
@@ -44,25 +51,58 @@ public abstract class NetworkedObjectCache<T> {
     static final boolean DEBUG_LOG = BCDebugging.shouldDebugLog("lib.net.cache");
     static final boolean DEBUG_CPLX = BCDebugging.shouldDebugComplex("lib.net.cache");
 
-    /* Implementation notes -- this currently is a simple, never expiring object<->id cache.
+    /* Implementation notes -- objects that haven't been used for a while are removed from both sides of the cache.
+     * 
+     * The server keeps every object in a "slot", and the ID of an object is made up of its slot and the generation of
+     * that slot. Every time a slot is reused its generation is incremented, so a client that still has the ID of an
+     * evicted object will never be given a different object for it. (Well, not unless the same slot is reused 2048
+     * times in between a client receiving an ID and requesting it, which is only possible for a *very* slow client).
      * 
-     * Because it doesn't ever clear objects out of the cache we can guarantee that the index of an object is unique,
-     * just by incrementing a single variable. */
+     * The client forgets links that haven't been retrieved for a while: anything that holds on to a link can still use
+     * it, but the next call to retrieve the same ID will request it again. */
+
+    /** The number of low bits of an ID that are the slot -- the high bits are the slot's generation. */
+    private static final int SLOT_BITS = 20;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    /** Keeps IDs positive, as -1 is used for "not stored". */
+    private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+
+    /** How often (in ticks) both sides look for objects to evict. */
+    private static final int EVICTION_INTERVAL = 20 * 30;
+    /** The number of ticks after an object was last stored (or requested) before the server will evict it. */
+    private static final int SERVER_EXPIRY_TICKS = 20 * 60 * 5;
+    /** The number of ticks after a link was last retrieved before the client will forget it. */
+    private static final int CLIENT_EXPIRY_TICKS = 20 * 60 * 5;
+    /** The number of objects the server will keep, even if they haven't expired yet. */
+    private static final int SERVER_MAX_ENTRIES = 1 << 16;
+    /** The maximum number of ID's sent in a single {@link MessageObjectCacheRequest}. */
+    static final int MAX_REQUEST_SIZE = 1024;
 
     /** The default object -- used at the client in case the object hasn't been sent to the client yet. */
     protected final T defaultObject;
 
-    private final BiMap<Integer, T> serverIdToObject = HashBiMap.create();
-    /** Server side map of the object to its integer ID. Inverse of {@link #serverIdToObject} */
-    private final BiMap<T, Integer> serverObjectToId = serverIdToObject.inverse();
-
-    /** The ID for the next stored object. */
-    private int serverCurrentId = 0;
+    /** Server side map of the canonical object to its entry. */
+    private final Map<T, ServerEntry<T>> serverObjectToEntry = new HashMap<>();
+    /** Every server entry, indexed by its slot. */
+    @SuppressWarnings("unchecked")
+    private ServerEntry<T>[] serverSlots = new ServerEntry[64];
+    /** The current generation of every slot (including empty ones). */
+    private int[] serverSlotGenerations = new int[64];
+    /** Slots below {@link #serverNextSlot} that are empty. */
+    private final TIntArrayList serverFreeSlots = new TIntArrayList();
+    /** The lowest slot that has never been used. */
+    private int serverNextSlot = 0;
+    private int serverTick = 0;
 
     /** The list of cached client-side objects. */
     private final Int2ObjectMap<Link> clientObjects = new Int2ObjectOpenHashMap<>();
     /** The list of all links that are currently unknown. */
     private final Queue<Link> clientUnknowns = new LinkedList<>();
+    private int clientTick = 0;
+
+    // Statistics, for debugging and monitoring.
+    private long serverStoreHits, serverStoreMisses, serverEvictions, serverRequested, serverRequestedMissing;
+    private long clientRetrieveHits, clientRetrieveMisses, clientEvictions, clientRequestMessages;
 
     /** A server view of this cache. Contains methods specific to */
     private final ServerView serverView = new ServerView();
@@ -117,6 +157,14 @@ public abstract class NetworkedObjectCache<T> {
         public int getId(T value) {
             return serverGetId(value);
         }
+
+        /** @param id An ID that was returned by {@link #store(Object)}.
+         * @return The object with the given ID, or null if it has been evicted since the ID was returned. */
+        @Nullable
+        public T get(int id) {
+            ServerEntry<T> entry = serverGetEntry(id);
+            return entry == null ? null : entry.value;
+        }
     }
 
     /** The client view of the cache. */
@@ -141,8 +189,12 @@ public abstract class NetworkedObjectCache<T> {
         /** The id of this value. */
         final int id;
 
+        /** The last client tick that this link was retrieved on. */
+        int lastUsed;
+
         Link(int id) {
             this.id = id;
+            this.lastUsed = clientTick;
         }
 
         @Override
@@ -190,11 +242,15 @@ public abstract class NetworkedObjectCache<T> {
      * @return */
     private int serverStore(T object) {
         T canonical = getCanonical(object);
-        Integer current = serverObjectToId.get(canonical);
+        ServerEntry<T> current = serverObjectToEntry.get(canonical);
         if (current == null) {
             // new entry
-            int id = serverCurrentId++;
-            serverObjectToId.put(canonical, id);
+            serverStoreMisses++;
+            int slot = serverAllocateSlot();
+            int id = (serverSlotGenerations[slot] << SLOT_BITS) | slot;
+            ServerEntry<T> entry = new ServerEntry<>(canonical, id, serverTick);
+            serverSlots[slot] = entry;
+            serverObjectToEntry.put(canonical, entry);
             if (DEBUG_CPLX) {
                 String toString;
                 if (canonical instanceof FluidStack) {
@@ -208,10 +264,31 @@ public abstract class NetworkedObjectCache<T> {
             return id;
         } else {
             // existing entry
-            return current;
+            serverStoreHits++;
+            current.lastUsed = serverTick;
+            return current.id;
         }
     }
 
+    private int serverAllocateSlot() {
+        if (serverFreeSlots.isEmpty()) {
+            if (serverNextSlot > SLOT_MASK) {
+                serverEvict();
+                if (serverFreeSlots.isEmpty()) {
+                    throw new IllegalStateException("The cache " + getNameAndId() + " is full!");
+                }
+            } else {
+                int slot = serverNextSlot++;
+                if (slot == serverSlots.length) {
+                    serverSlots = Arrays.copyOf(serverSlots, slot * 2);
+                    serverSlotGenerations = Arrays.copyOf(serverSlotGenerations, slot * 2);
+                }
+                return slot;
+            }
+        }
+        return serverFreeSlots.removeAt(serverFreeSlots.size() - 1);
+    }
+
     /** Gets the ID for the given object, or -1 if this was not stored in the cache. SERVER SIDE.
      * {@link #serverStore(Object)} if preferred to this, as most uses (such as network sending) want the value to be
      * stored and get a valid ID.
@@ -220,13 +297,61 @@ public abstract class NetworkedObjectCache<T> {
      * @return */
     private int serverGetId(T object) {
         T canonical = getCanonical(object);
-        Integer current = serverObjectToId.get(canonical);
+        ServerEntry<T> current = serverObjectToEntry.get(canonical);
         if (current == null) {
             // Unknown entry
             return -1;
         } else {
-            return current;
+            return current.id;
+        }
+    }
+
+    /** @return The entry with the given ID, or null if it has been evicted (or was never stored). SERVER SIDE. */
+    private ServerEntry<T> serverGetEntry(int id) {
+        int slot = id & SLOT_MASK;
+        if (id < 0 || slot >= serverNextSlot) {
+            return null;
         }
+        ServerEntry<T> entry = serverSlots[slot];
+        return entry != null && entry.id == id ? entry : null;
+    }
+
+    /** Removes every entry that hasn't been used recently, and then the least recently used entries if there are still
+     * too many. SERVER SIDE. */
+    private void serverEvict() {
+        int before = serverObjectToEntry.size();
+        List<ServerEntry<T>> remaining = new ArrayList<>();
+        for (int slot = 0; slot < serverNextSlot; slot++) {
+            ServerEntry<T> entry = serverSlots[slot];
+            if (entry == null) {
+                continue;
+            }
+            if (serverTick - entry.lastUsed > SERVER_EXPIRY_TICKS) {
+                serverRemove(entry);
+            } else {
+                remaining.add(entry);
+            }
+        }
+        if (remaining.size() > SERVER_MAX_ENTRIES) {
+            remaining.sort(Comparator.comparingInt(e -> e.lastUsed));
+            for (int i = 0; i < remaining.size() - SERVER_MAX_ENTRIES; i++) {
+                serverRemove(remaining.get(i));
+            }
+        }
+        int evicted = before - serverObjectToEntry.size();
+        if (DEBUG_LOG && evicted > 0) {
+            BCLog.logger.info("[lib.net.cache] The cache " + getNameAndId() + " evicted " + evicted + " objects, "
+                + serverObjectToEntry.size() + " remain");
+        }
+    }
+
+    private void serverRemove(ServerEntry<T> entry) {
+        int slot = entry.id & SLOT_MASK;
+        serverSlots[slot] = null;
+        serverSlotGenerations[slot] = (serverSlotGenerations[slot] + 1) & GENERATION_MASK;
+        serverFreeSlots.add(slot);
+        serverObjectToEntry.remove(entry.value);
+        serverEvictions++;
     }
 
     /** Retrieves a link to the specified ID. CLIENT SIDE.
@@ -236,20 +361,36 @@ public abstract class NetworkedObjectCache<T> {
     private Link clientRetrieve(int id) {
         Link current = clientObjects.get(id);
         if (current == null) {
+            clientRetrieveMisses++;
             if (DEBUG_CPLX) {
                 BCLog.logger.info("[lib.net.cache] The cache " + getNameAndId() + " tried to retrieve #" + id + " for the first time");
             }
             current = new Link(id);
             clientUnknowns.add(current);
             clientObjects.put(id, current);
+        } else {
+            clientRetrieveHits++;
+            current.lastUsed = clientTick;
         }
         return current;
     }
 
-    /** Used by {@link MessageObjectCacheRequest#HANDLER} to write the actual object out. */
-    void writeObjectServer(int id, PacketBufferBC buffer) {
-        T obj = serverIdToObject.get(id);
-        writeObject(obj, buffer);
+    /** Used by {@link MessageObjectCacheRequest#HANDLER} to write the actual object out.
+     * 
+     * @return False if the object has been evicted, in which case nothing was written. */
+    boolean writeObjectServer(int id, PacketBufferBC buffer) {
+        serverRequested++;
+        ServerEntry<T> entry = serverGetEntry(id);
+        if (entry == null) {
+            serverRequestedMissing++;
+            if (DEBUG_CPLX) {
+                BCLog.logger.info("[lib.net.cache] The cache " + getNameAndId() + " was asked for the evicted #" + id);
+            }
+            return false;
+        }
+        entry.lastUsed = serverTick;
+        writeObject(entry.value, buffer);
+        return true;
     }
 
     /** Used by {@link MessageObjectCacheResponse#HANDLER} to read an object in.
@@ -258,7 +399,12 @@ public abstract class NetworkedObjectCache<T> {
      * @param buffer
      * @throws IOException */
     void readObjectClient(int id, PacketBufferBC buffer) throws IOException {
-        Link link = clientRetrieve(id);
+        Link link = clientObjects.get(id);
+        if (link == null) {
+            // Forgotten before the response arrived, but we might as well keep it now
+            link = new Link(id);
+            clientObjects.put(id, link);
+        }
         link.actual = readObject(buffer);
         if (DEBUG_CPLX) {
             T read = link.actual;
@@ -273,25 +419,106 @@ public abstract class NetworkedObjectCache<T> {
         }
     }
 
+    /** Used by {@link MessageObjectCacheResponse#HANDLER} when the server no longer has the object for an ID. The
+     * link keeps the default object: whatever used the ID will be sent a new one the next time it changes. */
+    void onObjectMissingClient(int id) {
+        if (DEBUG_CPLX) {
+            BCLog.logger.info("[lib.net.cache] The cache " + getNameAndId() + " was told that #" + id + " has been evicted");
+        }
+    }
+
     final String getNameAndId() {
         return "(" + BuildCraftObjectCaches.CACHES.indexOf(this) + " = " + getCacheName() + ")";
     }
 
-    void onClientWorldTick() {
-        int[] ids = new int[clientUnknowns.size()];
-        for (int i = 0; i < ids.length; i++) {
-            ids[i] = clientUnknowns.remove().id;
+    /** Called by {@link BuildCraftObjectCaches#onServerTick()} at the end of every server tick. */
+    public void onServerTick() {
+        serverTick++;
+        if (serverTick % EVICTION_INTERVAL == 0) {
+            serverEvict();
         }
-        if (ids.length > 0) {
+    }
+
+    void onClientWorldTick() {
+        clientTick++;
+        while (!clientUnknowns.isEmpty()) {
+            int[] ids = new int[Math.min(clientUnknowns.size(), MAX_REQUEST_SIZE)];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = clientUnknowns.remove().id;
+            }
             if (DEBUG_CPLX) {
                 BCLog.logger.info("[lib.net.cache] The cache " + getNameAndId() + " requests ID's " + Arrays.toString(ids));
             }
+            clientRequestMessages++;
             MessageManager.sendToServer(new MessageObjectCacheRequest(this, ids));
         }
+        if (clientTick % EVICTION_INTERVAL == 0) {
+            ObjectIterator<Link> iter = clientObjects.values().iterator();
+            while (iter.hasNext()) {
+                Link link = iter.next();
+                if (clientTick - link.lastUsed > CLIENT_EXPIRY_TICKS) {
+                    iter.remove();
+                    clientEvictions++;
+                }
+            }
+        }
     }
 
     void onClientJoinServer() {
         clientObjects.clear();
         clientUnknowns.clear();
     }
+
+    /** Adds the statistics of both sides of this cache to the given list. */
+    public void getDebugInfo(List<String> info) {
+        info.add(getCacheName() + " cache:");
+        info.add("  Server: " + serverObjectToEntry.size() + " objects in " + serverNextSlot + " slots");
+        info.add("    stores = " + serverStoreHits + " hit / " + serverStoreMisses + " miss, evicted = " + serverEvictions);
+        info.add("    requested = " + serverRequested + " (" + serverRequestedMissing + " evicted)");
+        info.add("  Client: " + clientObjects.size() + " objects, " + clientUnknowns.size() + " waiting");
+        info.add("    retrieves = " + clientRetrieveHits + " hit / " + clientRetrieveMisses + " miss, forgotten = "
+            + clientEvictions);
+        info.add("    request messages = " + clientRequestMessages);
+    }
+
+    public int getServerEntryCount() {
+        return serverObjectToEntry.size();
+    }
+
+    public int getClientEntryCount() {
+        return clientObjects.size();
+    }
+
+    /** @return The fraction of {@link ServerView#store(Object)} calls that found an existing object. */
+    public double getServerHitRate() {
+        long total = serverStoreHits + serverStoreMisses;
+        return total == 0 ? 0 : serverStoreHits / (double) total;
+    }
+
+    /** @return The fraction of {@link ClientView#retrieve(int)} calls that found an existing link. */
+    public double getClientHitRate() {
+        long total = clientRetrieveHits + clientRetrieveMisses;
+        return total == 0 ? 0 : clientRetrieveHits / (double) total;
+    }
+
+    public long getServerRequestCount() {
+        return serverRequested;
+    }
+
+    public long getClientRequestMessageCount() {
+        return clientRequestMessages;
+    }
+
+    private static final class ServerEntry<T> {
+        final T value;
+        final int id;
+        /** The last server tick that this was stored or requested on. */
+        int lastUsed;
+
+        ServerEntry(T value, int id, int lastUsed) {
+            this.value = value;
+            this.id = id;
+            this.lastUsed = lastUsed;
+        }
+    }
 }
@@ -7,34 +7,233 @@
 package buildcraft.lib.recipe;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ForwardingMap;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
+import net.minecraft.item.crafting.Ingredient;
 import net.minecraft.util.NonNullList;
 import net.minecraft.util.ResourceLocation;
 
+import net.minecraftforge.common.crafting.IngredientNBT;
+import net.minecraftforge.oredict.OreIngredient;
+
 import buildcraft.api.recipes.AssemblyRecipe;
+import buildcraft.api.recipes.AssemblyRecipeBasic;
+import buildcraft.api.recipes.IngredientStack;
 
 public class AssemblyRecipeRegistry  {
-    public static final Map<ResourceLocation, AssemblyRecipe> REGISTRY = new HashMap<>();
+    /** Every assembly recipe. Changing this (in any way other than through its views, which are read only) invalidates
+     * the index used by {@link #getPossibleRecipes(NonNullList)}. */
+    public static final Map<ResourceLocation, AssemblyRecipe> REGISTRY = new RecipeMap();
+
+    private static volatile Index index;
 
     public static void register(AssemblyRecipe recipe) {
         REGISTRY.put(recipe.getRegistryName(), recipe);
     }
 
+    /** Forgets about the index used by {@link #getPossibleRecipes(NonNullList)}. This is called whenever the
+     * registry changes, and by BCLibEventDist when item ids are remapped. */
+    public static void invalidateIndex() {
+        index = null;
+    }
+
+    private static Index getIndex() {
+        Index current = index;
+        if (current == null) {
+            current = new Index(new ArrayList<>(REGISTRY.values()));
+            index = current;
+        }
+        return current;
+    }
+
+    /** @return Every recipe that might have an output for the given inputs. This leaves out (most of) the recipes that
+     *         need an item that isn't in the inputs, but the outputs still need to be checked with
+     *         {@link AssemblyRecipe#getOutputs(NonNullList)}. */
+    @Nonnull
+    public static List<AssemblyRecipe> getPossibleRecipes(@Nonnull NonNullList<ItemStack> possibleIn) {
+        return getIndex().getCandidates(possibleIn);
+    }
 
     @Nonnull
     public static List<AssemblyRecipe> getRecipesFor(@Nonnull NonNullList<ItemStack> possibleIn) {
         List<AssemblyRecipe> all = new ArrayList<>();
-        for (AssemblyRecipe ar : REGISTRY.values()) {
+        for (AssemblyRecipe ar : getPossibleRecipes(possibleIn)) {
             if (!ar.getOutputs(possibleIn).isEmpty()) {
                 all.add(ar);
             }
         }
         return all;
     }
+
+    /** The recipes stored by the items that they need. Only {@link AssemblyRecipeBasic} recipes (which have no outputs
+     * unless every one of their inputs is present) with known ingredients are indexed: each is stored under every item
+     * of its most specific ingredient. Every other recipe is always a candidate. */
+    private static final class Index {
+        private final List<AssemblyRecipe> unindexed = new ArrayList<>();
+        private final TIntObjectHashMap<List<AssemblyRecipe>> recipesByItem = new TIntObjectHashMap<>();
+        /** The candidates for the most recently used sets of items. */
+        private final Cache<ItemSet, List<AssemblyRecipe>> candidateCache = CacheBuilder.newBuilder()
+            .maximumSize(256)
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .build();
+
+        Index(List<AssemblyRecipe> recipes) {
+            for (AssemblyRecipe recipe : recipes) {
+                int[] items = getIndexItems(recipe);
+                if (items == null) {
+                    unindexed.add(recipe);
+                    continue;
+                }
+                for (int id : items) {
+                    List<AssemblyRecipe> list = recipesByItem.get(id);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        recipesByItem.put(id, list);
+                    }
+                    list.add(recipe);
+                }
+            }
+        }
+
+        /** @return The ids of every item that could be used for the most specific ingredient of the given recipe, or
+         *         null if the recipe can't be indexed. */
+        @Nullable
+        private static int[] getIndexItems(AssemblyRecipe recipe) {
+            if (recipe.getClass() != AssemblyRecipeBasic.class) {
+                return null;
+            }
+            int[] best = null;
+            for (ItemStack output : recipe.getOutputPreviews()) {
+                for (IngredientStack input : recipe.getInputsFor(output)) {
+                    Ingredient ingredient = input.ingredient;
+                    if (!(ingredient.getClass() == Ingredient.class || ingredient instanceof OreIngredient
+                        || ingredient instanceof IngredientNBT)) {
+                        return null;
+                    }
+                    int[] items = Arrays.stream(ingredient.getMatchingStacks())
+                        .filter(stack -> !stack.isEmpty())
+                        .mapToInt(stack -> Item.getIdFromItem(stack.getItem()))
+                        .distinct()
+                        .toArray();
+                    if (items.length == 0) {
+                        return null;
+                    }
+                    if (best == null || items.length < best.length) {
+                        best = items;
+                    }
+                }
+            }
+            return best;
+        }
+
+        List<AssemblyRecipe> getCandidates(NonNullList<ItemStack> inputs) {
+            ItemSet key = new ItemSet(inputs.stream()
+                .filter(stack -> !stack.isEmpty())
+                .mapToInt(stack -> Item.getIdFromItem(stack.getItem()))
+                .sorted()
+                .distinct()
+                .toArray());
+            List<AssemblyRecipe> candidates = candidateCache.getIfPresent(key);
+            if (candidates == null) {
+                // An ingredient may accept more than one of the items, so the same recipe can be found twice
+                Set<AssemblyRecipe> found = new LinkedHashSet<>(unindexed);
+                for (int id : key.ids) {
+                    List<AssemblyRecipe> stored = recipesByItem.get(id);
+                    if (stored != null) {
+                        found.addAll(stored);
+                    }
+                }
+                candidates = Collections.unmodifiableList(new ArrayList<>(found));
+                candidateCache.put(key, candidates);
+            }
+            return candidates;
+        }
+    }
+
+    /** A map that invalidates the index whenever it's changed. */
+    private static final class RecipeMap extends ForwardingMap<ResourceLocation, AssemblyRecipe> {
+        private final Map<ResourceLocation, AssemblyRecipe> delegate = new HashMap<>();
+
+        @Override
+        protected Map<ResourceLocation, AssemblyRecipe> delegate() {
+            return delegate;
+        }
+
+        @Override
+        public AssemblyRecipe put(ResourceLocation key, AssemblyRecipe value) {
+            invalidateIndex();
+            return super.put(key, value);
+        }
+
+        @Override
+        public void putAll(Map<? extends ResourceLocation, ? extends AssemblyRecipe> map) {
+            standardPutAll(map);
+        }
+
+        @Override
+        public AssemblyRecipe remove(Object key) {
+            invalidateIndex();
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            invalidateIndex();
+            super.clear();
+        }
+
+        @Override
+        public Set<ResourceLocation> keySet() {
+            return Collections.unmodifiableSet(super.keySet());
+        }
+
+        @Override
+        public Collection<AssemblyRecipe> values() {
+            return Collections.unmodifiableCollection(super.values());
+        }
+
+        @Override
+        public Set<Entry<ResourceLocation, AssemblyRecipe>> entrySet() {
+            return Collections.unmodifiableSet(super.entrySet());
+        }
+    }
+
+    private static final class ItemSet {
+        final int[] ids;
+        final int hash;
+
+        ItemSet(int[] ids) {
+            this.ids = ids;
+            this.hash = Arrays.hashCode(ids);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof ItemSet && Arrays.equals(ids, ((ItemSet) obj).ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.lib.recipe;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import net.minecraft.inventory.InventoryCrafting;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.crafting.IRecipe;
+import net.minecraft.item.crafting.Ingredient;
+import net.minecraft.item.crafting.ShapedRecipes;
+import net.minecraft.item.crafting.ShapelessRecipes;
+import net.minecraft.world.World;
+
+import net.minecraftforge.common.crafting.IngredientNBT;
+import net.minecraftforge.oredict.OreIngredient;
+import net.minecraftforge.oredict.ShapedOreRecipe;
+import net.minecraftforge.oredict.ShapelessOreRecipe;
+
+/** An index of crafting recipes by the items that they need, so that finding the recipe for a crafting grid only has to
+ * call {@link IRecipe#matches(InventoryCrafting, World)} on recipes that could possibly match the set of items in the
+ * grid, rather than every recipe.
+ * <p>
+ * Only recipes and ingredients whose behaviour is known are indexed (the vanilla and forge shaped and shapeless
+ * recipes, with plain, ore dictionary or NBT ingredients). Every one of their ingredients has to be matched by some
+ * item in the grid, so each of these recipes is stored under every item of its most specific ingredient. Everything
+ * else (like dynamic recipes) is always tested. Either way the first matching recipe (in the order given to
+ * {@link #create(List)}) is returned, exactly like a linear search. */
+public final class CraftingRecipeIndex {
+    private static final int[] NO_RECIPES = new int[0];
+
+    private final IRecipe[] recipes;
+    /** For every indexed recipe: the sorted item ids that each ingredient accepts. Null for unindexed recipes. */
+    private final int[][][] requiredItems;
+    /** Item id to the (ascending) indices of every recipe stored under it. */
+    private final TIntObjectHashMap<int[]> recipesByItem;
+    private final int[] unindexed;
+
+    private CraftingRecipeIndex(IRecipe[] recipes, int[][][] requiredItems, TIntObjectHashMap<int[]> recipesByItem,
+        int[] unindexed) {
+        this.recipes = recipes;
+        this.requiredItems = requiredItems;
+        this.recipesByItem = recipesByItem;
+        this.unindexed = unindexed;
+    }
+
+    public static CraftingRecipeIndex create(List<IRecipe> recipeList) {
+        IRecipe[] recipes = recipeList.toArray(new IRecipe[0]);
+        int[][][] requiredItems = new int[recipes.length][][];
+        TIntObjectHashMap<TIntArrayList> byItem = new TIntObjectHashMap<>();
+        TIntArrayList unindexed = new TIntArrayList();
+        for (int i = 0; i < recipes.length; i++) {
+            int[][] required = getRequiredItems(recipes[i]);
+            if (required == null) {
+                unindexed.add(i);
+                continue;
+            }
+            requiredItems[i] = required;
+            int[] mostSpecific = required[0];
+            for (int[] items : required) {
+                if (items.length < mostSpecific.length) {
+                    mostSpecific = items;
+                }
+            }
+            for (int id : mostSpecific) {
+                TIntArrayList list = byItem.get(id);
+                if (list == null) {
+                    list = new TIntArrayList();
+                    byItem.put(id, list);
+                }
+                list.add(i);
+            }
+        }
+        TIntObjectHashMap<int[]> recipesByItem = new TIntObjectHashMap<>(byItem.size());
+        byItem.forEachEntry((id, list) -> {
+            recipesByItem.put(id, list.toArray());
+            return true;
+        });
+        return new CraftingRecipeIndex(recipes, requiredItems, recipesByItem, unindexed.toArray());
+    }
+
+    /** @return The item ids accepted by each (non-empty) ingredient of the given recipe, or null if the recipe can't
+     *         be indexed. */
+    @Nullable
+    private static int[][] getRequiredItems(IRecipe recipe) {
+        if (!(recipe instanceof ShapedRecipes || recipe instanceof ShapelessRecipes
+            || recipe instanceof ShapedOreRecipe || recipe instanceof ShapelessOreRecipe)) {
+            return null;
+        }
+        if (recipe.isDynamic()) {
+            return null;
+        }
+        TIntArrayList required = new TIntArrayList();
+        int[][] ingredients = new int[recipe.getIngredients().size()][];
+        int count = 0;
+        for (Ingredient ingredient : recipe.getIngredients()) {
+            if (ingredient == Ingredient.EMPTY) {
+                continue;
+            }
+            if (!(ingredient.getClass() == Ingredient.class || ingredient instanceof OreIngredient
+                || ingredient instanceof IngredientNBT)) {
+                return null;
+            }
+            required.resetQuick();
+            for (ItemStack stack : ingredient.getMatchingStacks()) {
+                if (!stack.isEmpty()) {
+                    required.add(Item.getIdFromItem(stack.getItem()));
+                }
+            }
+            if (required.isEmpty()) {
+                return null;
+            }
+            ingredients[count++] = sortedDistinct(required);
+        }
+        return count == 0 ? null : Arrays.copyOf(ingredients, count);
+    }
+
+    private static int[] sortedDistinct(TIntArrayList list) {
+        list.sort();
+        int length = 0;
+        for (int i = 0; i < list.size(); i++) {
+            if (length == 0 || list.get(length - 1) != list.get(i)) {
+                list.set(length++, list.get(i));
+            }
+        }
+        return list.toArray(0, length);
+    }
+
+    public int size() {
+        return recipes.length;
+    }
+
+    public int getUnindexedCount() {
+        return unindexed.length;
+    }
+
+    /** @return The first recipe that matches the given grid, or null if none of them do. */
+    @Nullable
+    public IRecipe findMatchingRecipe(InventoryCrafting inventory, World world) {
+        TIntArrayList items = new TIntArrayList(inventory.getSizeInventory());
+        for (int i = 0; i < inventory.getSizeInventory(); i++) {
+            ItemStack stack = inventory.getStackInSlot(i);
+            if (!stack.isEmpty()) {
+                items.add(Item.getIdFromItem(stack.getItem()));
+            }
+        }
+        int[] itemSet = sortedDistinct(items);
+
+        TIntArrayList candidates = new TIntArrayList();
+        candidates.add(unindexed);
+        for (int id : itemSet) {
+            int[] stored = recipesByItem.get(id);
+            candidates.add(stored == null ? NO_RECIPES : stored);
+        }
+        candidates.sort();
+        int last = -1;
+        for (int i = 0; i < candidates.size(); i++) {
+            int index = candidates.get(i);
+            if (index == last) {
+                continue;
+            }
+            last = index;
+            int[][] required = requiredItems[index];
+            if (required != null && !hasEveryIngredient(itemSet, required)) {
+                continue;
+            }
+            IRecipe recipe = recipes[index];
+            if (recipe.matches(inventory, world)) {
+                return recipe;
+            }
+        }
+        return null;
+    }
+
+    /** @return True if the item set contains at least one item of every ingredient. */
+    private static boolean hasEveryIngredient(int[] itemSet, int[][] required) {
+        outer: for (int[] ingredient : required) {
+            for (int id : ingredient) {
+                if (Arrays.binarySearch(itemSet, id) >= 0) {
+                    continue outer;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+}
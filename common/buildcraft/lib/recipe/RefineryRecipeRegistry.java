@@ -8,15 +8,20 @@ package buildcraft.lib.recipe;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.Objects;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
+import net.minecraft.nbt.NBTTagCompound;
+
+import net.minecraftforge.fluids.Fluid;
 import net.minecraftforge.fluids.FluidStack;
 
 import buildcraft.api.recipes.IRefineryRecipeManager;
@@ -58,8 +63,11 @@ public enum RefineryRecipeRegistry implements IRefineryRecipeManager {
         return distillationRegistry;
     }
 
+    /** Every recipe, in the order that it was added, and indexed by the fluid (and NBT) that it takes in. */
     private static class SingleRegistry<R extends IRefineryRecipe> implements IRefineryRegistry<R> {
-        private final List<R> allRecipes = new LinkedList<>();
+        private final List<R> allRecipes = new ArrayList<>();
+        private final Collection<R> allRecipesView = Collections.unmodifiableList(allRecipes);
+        private final Map<FluidKey, R> recipesByInput = new HashMap<>();
 
         @Override
         public Stream<R> getRecipes(Predicate<R> filter) {
@@ -68,7 +76,7 @@ public enum RefineryRecipeRegistry implements IRefineryRecipeManager {
 
         @Override
         public Collection<R> getAllRecipes() {
-            return allRecipes;
+            return allRecipesView;
         }
 
         @Override
@@ -77,12 +85,7 @@ public enum RefineryRecipeRegistry implements IRefineryRecipeManager {
             if (fluid == null) {
                 return null;
             }
-            for (R recipe : allRecipes) {
-                if (recipe.in().isFluidEqual(fluid)) {
-                    return recipe;
-                }
-            }
-            return null;
+            return recipesByInput.get(new FluidKey(fluid.getFluid(), fluid.tag));
         }
 
         @Override
@@ -93,6 +96,8 @@ public enum RefineryRecipeRegistry implements IRefineryRecipeManager {
                 R recipe = iter.next();
                 if (toRemove.test(recipe)) {
                     iter.remove();
+                    // Not by key, in case the tag of the input was changed after it was added
+                    recipesByInput.values().remove(recipe);
                     removed.add(recipe);
                 }
             }
@@ -102,19 +107,48 @@ public enum RefineryRecipeRegistry implements IRefineryRecipeManager {
         @Override
         public R addRecipe(R recipe) {
             if (recipe == null) throw new NullPointerException("recipe");
-            ListIterator<R> iter = allRecipes.listIterator();
-            while (iter.hasNext()) {
-                R existing = iter.next();
-                if (existing.in().isFluidEqual(recipe.in())) {
-                    iter.set(recipe);
-                    return recipe;
-                }
+            R existing = recipesByInput.put(FluidKey.of(recipe.in()), recipe);
+            if (existing != null) {
+                allRecipes.set(allRecipes.indexOf(existing), recipe);
+            } else {
+                allRecipes.add(recipe);
             }
-            allRecipes.add(recipe);
             return recipe;
         }
     }
 
+    /** A key that is equal to another exactly when {@link FluidStack#isFluidEqual(FluidStack)} would be. */
+    private static final class FluidKey {
+        private final Fluid fluid;
+        @Nullable
+        private final NBTTagCompound tag;
+        private final int hash;
+
+        FluidKey(Fluid fluid, @Nullable NBTTagCompound tag) {
+            this.fluid = fluid;
+            this.tag = tag;
+            this.hash = fluid.hashCode() * 31 + (tag == null ? 0 : tag.hashCode());
+        }
+
+        static FluidKey of(FluidStack stack) {
+            // Copy the tag, as a stored key must never change
+            return new FluidKey(stack.getFluid(), stack.tag == null ? null : stack.tag.copy());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) return true;
+            if (obj == null || obj.getClass() != getClass()) return false;
+            FluidKey other = (FluidKey) obj;
+            return hash == other.hash && fluid == other.fluid && Objects.equals(tag, other.tag);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
     public static abstract class RefineryRecipe implements IRefineryRecipe {
         private final FluidStack in;
 
@@ -52,6 +52,7 @@ import buildcraft.api.core.BCDebugging;
 import buildcraft.api.core.BCLog;
 import buildcraft.api.core.IPlayerOwned;
 
+import buildcraft.lib.BCLibConfig;
 import buildcraft.lib.cap.CapabilityHelper;
 import buildcraft.lib.client.render.DetachedRenderer.IDetachedRenderer;
 import buildcraft.lib.debug.BCAdvDebugging;
@@ -73,6 +74,7 @@ import buildcraft.lib.net.IPayloadWriter;
 import buildcraft.lib.net.MessageManager;
 import buildcraft.lib.net.MessageUpdateTile;
 import buildcraft.lib.net.PacketBufferBC;
+import buildcraft.lib.net.TileUpdateBatcher;
 import buildcraft.lib.tile.item.ItemHandlerManager;
 
 public abstract class TileBC_Neptune extends TileEntity implements IPayloadReceiver, IAdvDebugTarget, IPlayerOwned {
@@ -350,12 +352,23 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
         }
     }
 
-    /** Sends a network update update of the specified ID. */
+    /** Sends a network update update of the specified ID. If the server sends the same ID more than once in a tick
+     * then only the last one will be sent (if {@link BCLibConfig#batchTileUpdates} is true). */
     public final void sendNetworkUpdate(int id) {
         if (hasWorld()) {
-            MessageUpdateTile message = createNetworkUpdate(id);
+            sendNetworkUpdate(id, createNetworkUpdate(id));
+        }
+    }
+
+    /** Sends a message that was created by {@link #createNetworkUpdate(int)} (for example so that its size could be
+     * measured first) in the same way as {@link #sendNetworkUpdate(int)}. */
+    public final void sendNetworkUpdate(int id, MessageUpdateTile message) {
+        if (hasWorld()) {
             if (world.isRemote) {
                 MessageManager.sendToServer(message);
+            } else if (BCLibConfig.batchTileUpdates) {
+                MessageUtil.forAllWatching(world, pos,
+                    player -> TileUpdateBatcher.queueReplacing(player, this, id, message));
             } else {
                 MessageUtil.sendToAllWatching(world, pos, message);
             }
@@ -368,7 +381,11 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
             if (message.getPayloadSize() <= Short.BYTES) {
                 return;
             }
-            MessageManager.sendTo(message, (EntityPlayerMP) player);
+            if (BCLibConfig.batchTileUpdates) {
+                TileUpdateBatcher.queueReplacing((EntityPlayerMP) player, this, NET_GUI_TICK, message);
+            } else {
+                MessageManager.sendTo(message, (EntityPlayerMP) player);
+            }
         }
     }
 
@@ -383,7 +400,11 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
     public final void sendNetworkUpdate(int id, EntityPlayer target) {
         if (hasWorld() && target instanceof EntityPlayerMP) {
             MessageUpdateTile message = createNetworkUpdate(id);
-            MessageManager.sendTo(message, (EntityPlayerMP) target);
+            if (BCLibConfig.batchTileUpdates) {
+                TileUpdateBatcher.queueReplacing((EntityPlayerMP) target, this, id, message);
+            } else {
+                MessageManager.sendTo(message, (EntityPlayerMP) target);
+            }
         }
     }
 
@@ -399,9 +420,11 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
 
     public final void createAndSendMessage(int id, IPayloadWriter writer) {
         if (hasWorld()) {
-            IMessage message = createMessage(id, writer);
+            MessageUpdateTile message = createMessage(id, writer);
             if (world.isRemote) {
                 MessageManager.sendToServer(message);
+            } else if (BCLibConfig.batchTileUpdates) {
+                MessageUtil.forAllWatching(world, pos, player -> TileUpdateBatcher.queue(player, message));
             } else {
                 MessageUtil.sendToAllWatching(world, pos, message);
             }
@@ -410,9 +433,15 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
 
     public final void createAndSendGuiMessage(int id, IPayloadWriter writer) {
         if (hasWorld()) {
-            IMessage message = createMessage(id, writer);
+            MessageUpdateTile message = createMessage(id, writer);
             if (world.isRemote) {
                 MessageManager.sendToServer(message);
+            } else if (BCLibConfig.batchTileUpdates) {
+                for (EntityPlayer player : usingPlayers) {
+                    if (player instanceof EntityPlayerMP) {
+                        TileUpdateBatcher.queue((EntityPlayerMP) player, message);
+                    }
+                }
             } else {
                 MessageUtil.sendToPlayers(usingPlayers, message);
             }
@@ -421,8 +450,12 @@ public abstract class TileBC_Neptune extends TileEntity implements IPayloadRecei
 
     public final void createAndSendMessage(int id, EntityPlayerMP player, IPayloadWriter writer) {
         if (hasWorld()) {
-            IMessage message = createMessage(id, writer);
-            MessageManager.sendTo(message, player);
+            MessageUpdateTile message = createMessage(id, writer);
+            if (BCLibConfig.batchTileUpdates) {
+                TileUpdateBatcher.queue(player, message);
+            } else {
+                MessageManager.sendTo(message, player);
+            }
         }
     }
 
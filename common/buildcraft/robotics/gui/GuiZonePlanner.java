@@ -368,11 +368,22 @@ public class GuiZonePlanner extends GuiBC8<ContainerZonePlanner> {
             if (getPaintbrushBrush() != null && getPaintbrushBrush().colour.getMetadata() == i && bufferLayer != null) {
                 layer = bufferLayer;
             }
-            if (!layer.getChunkPoses().isEmpty()) {
+            if (!layer.isEmpty()) {
                 Tessellator.getInstance().getBuffer().begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR);
                 for (int chunkX = chunkBaseX - radius; chunkX < chunkBaseX + radius; chunkX++) {
                     for (int chunkZ = chunkBaseZ - radius; chunkZ < chunkBaseZ + radius; chunkZ++) {
                         ChunkPos chunkPos = new ChunkPos(chunkX, chunkZ);
+                        ZonePlannerMapChunk zonePlannerMapChunk = ZonePlannerMapDataClient.INSTANCE.getChunk(
+                            mc.world,
+                            new ZonePlannerMapChunkKey(
+                                chunkPos,
+                                dimension,
+                                container.tile.getLevel()
+                            )
+                        );
+                        if (zonePlannerMapChunk == null) {
+                            continue;
+                        }
                         for (int blockX = chunkPos.getXStart(); blockX <= chunkPos.getXEnd(); blockX++) {
                             for (int blockZ = chunkPos.getZStart(); blockZ <= chunkPos.getZEnd(); blockZ++) {
                                 if (!layer.get(
@@ -381,23 +392,8 @@ public class GuiZonePlanner extends GuiBC8<ContainerZonePlanner> {
                                 )) {
                                     continue;
                                 }
-                                int height;
-                                ZonePlannerMapChunk zonePlannerMapChunk = ZonePlannerMapDataClient.INSTANCE.getChunk(
-                                    mc.world,
-                                    new ZonePlannerMapChunkKey(
-                                        chunkPos,
-                                        dimension,
-                                        container.tile.getLevel()
-                                    )
-                                );
-                                if (zonePlannerMapChunk != null) {
-                                    MapColourData data = zonePlannerMapChunk.getData(blockX, blockZ);
-                                    if (data != null) {
-                                        height = data.posY;
-                                    } else {
-                                        continue;
-                                    }
-                                } else {
+                                int height = zonePlannerMapChunk.getHeight(blockX, blockZ);
+                                if (height == 0) {
                                     continue;
                                 }
                                 int color = EnumDyeColor.byMetadata(i).getColorValue();
@@ -11,8 +11,6 @@ import io.netty.buffer.ByteBuf;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessageHandler;
 
-import buildcraft.lib.misc.MessageUtil;
-
 public class MessageZoneMapRequest implements IMessage {
     private ZonePlannerMapChunkKey key;
 
@@ -35,16 +33,7 @@ public class MessageZoneMapRequest implements IMessage {
     }
 
     public static final IMessageHandler<MessageZoneMapRequest, IMessage> HANDLER = (message, ctx) -> {
-        MessageUtil.sendReturnMessage(
-                ctx,
-                new MessageZoneMapResponse(
-                        message.key,
-                        ZonePlannerMapDataServer.INSTANCE.getChunk(
-                                ctx.getServerHandler().player.world,
-                                message.key
-                        )
-                )
-        );
+        ZonePlannerMapDataServer.INSTANCE.requestChunk(ctx.getServerHandler().player, message.key);
         return null;
     };
 }
@@ -18,123 +18,188 @@ import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.util.math.BlockPos;
 
+/** The blocks of a single chunk that are in a {@link ZonePlan}, as a 256 bit mask (indexed by x + z * 16). */
 public class ZoneChunk {
-    public BitSet property;
-    private boolean fullSet = false;
+    public static final int AREA = 16 * 16;
+
+    private final long[] bits = new long[AREA / 64];
+
+    /** The number of bits set in {@link #bits}. */
+    private int count;
 
     public ZoneChunk() {}
 
     public ZoneChunk(ZoneChunk old) {
-        if (old.property != null) {
-            property = BitSet.valueOf(old.property.toLongArray());
-        }
+        System.arraycopy(old.bits, 0, bits, 0, bits.length);
+        count = old.count;
     }
 
     public boolean get(int xChunk, int zChunk) {
-        return fullSet || property != null && property.get(xChunk + zChunk * 16);
+        int index = xChunk + zChunk * 16;
+        return (bits[index >> 6] & (1L << index)) != 0;
     }
 
-    public void set(int xChunk, int zChunk, boolean value) {
-        if (value) {
-            if (fullSet) {
-                return;
-            }
+    /** @return The difference in the number of blocks in this chunk: 1 if the block was added, -1 if it was removed, or
+     *         0 if it was already set to the given value. */
+    public int set(int xChunk, int zChunk, boolean value) {
+        int index = xChunk + zChunk * 16;
+        long word = bits[index >> 6];
+        long mask = 1L << index;
+        if (((word & mask) != 0) == value) {
+            return 0;
+        }
+        bits[index >> 6] = word ^ mask;
+        int diff = value ? 1 : -1;
+        count += diff;
+        return diff;
+    }
 
-            if (property == null) {
-                property = new BitSet(16 * 16);
-            }
+    /** @return The number of blocks in this chunk. */
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
 
-            property.set(xChunk + zChunk * 16, true);
+    public boolean isFull() {
+        return count == AREA;
+    }
 
-            if (property.cardinality() >= 16 * 16) {
-                property = null;
-                fullSet = true;
+    /** Sets this to the union of this and the given chunk.
+     *
+     * @return The difference in the number of blocks in this chunk. */
+    public int or(ZoneChunk other) {
+        int old = count;
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other.bits[i];
+        }
+        return recount() - old;
+    }
+
+    /** Sets this to the intersection of this and the given chunk.
+     *
+     * @return The difference in the number of blocks in this chunk. */
+    public int and(ZoneChunk other) {
+        int old = count;
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] &= other.bits[i];
+        }
+        return recount() - old;
+    }
+
+    /** Removes every block in the given chunk from this one.
+     *
+     * @return The difference in the number of blocks in this chunk. */
+    public int andNot(ZoneChunk other) {
+        int old = count;
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] &= ~other.bits[i];
+        }
+        return recount() - old;
+    }
+
+    private int recount() {
+        int c = 0;
+        for (long word : bits) {
+            c += Long.bitCount(word);
+        }
+        count = c;
+        return c;
+    }
+
+    /** @param n A number between 0 (inclusive) and {@link #getCount()} (exclusive).
+     * @return The index (x + z * 16) of the n'th block in this chunk. */
+    public int getIndexOf(int n) {
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            int wordCount = Long.bitCount(word);
+            if (n >= wordCount) {
+                n -= wordCount;
+                continue;
             }
-        } else {
-            if (fullSet) {
-                property = new BitSet(16 * 16);
-                property.flip(0, 16 * 16 - 1);
-                fullSet = false;
-            } else if (property == null) {
-                // Note - ZonePlan should usually destroy such chunks
-                property = new BitSet(16 * 16);
+            for (; n > 0; n--) {
+                // Clear the lowest set bit
+                word &= word - 1;
             }
-
-            property.set(xChunk + zChunk * 16, false);
+            return i * 64 + Long.numberOfTrailingZeros(word);
         }
+        throw new IndexOutOfBoundsException("Only " + count + " blocks in this chunk!");
     }
 
     public List<Point2i> getAll() {
         ImmutableList.Builder<Point2i> builder = ImmutableList.builder();
-        for (int zChunk = 0; zChunk < 16; zChunk++) {
-            for (int xChunk = 0; xChunk < 16; xChunk++) {
-                if (get(xChunk, zChunk)) {
-                    builder.add(new Point2i(xChunk, zChunk));
-                }
+        for (int i = 0; i < bits.length; i++) {
+            long word = bits[i];
+            while (word != 0) {
+                int index = i * 64 + Long.numberOfTrailingZeros(word);
+                builder.add(new Point2i(index & 15, index >> 4));
+                word &= word - 1;
             }
         }
         return builder.build();
     }
 
     public void writeToNBT(NBTTagCompound nbt) {
-        nbt.setBoolean("fullSet", fullSet);
+        nbt.setBoolean("fullSet", isFull());
 
-        if (property != null) {
-            nbt.setByteArray("bits", property.toByteArray());
+        if (!isFull()) {
+            nbt.setByteArray("bits", BitSet.valueOf(bits).toByteArray());
         }
     }
 
     public void readFromNBT(NBTTagCompound nbt) {
-        fullSet = nbt.getBoolean("fullSet");
-
-        if (nbt.hasKey("bits")) {
-            property = BitSet.valueOf(nbt.getByteArray("bits"));
+        if (nbt.getBoolean("fullSet")) {
+            setFull();
+        } else {
+            setBits(nbt.getByteArray("bits"));
         }
     }
 
     public BlockPos getRandomBlockPos(Random rand) {
-        int x, z;
-
-        if (fullSet) {
-            x = rand.nextInt(16);
-            z = rand.nextInt(16);
-        } else {
-            int bitId = rand.nextInt(property.cardinality());
-            int bitPosition = property.nextSetBit(0);
-
-            while (bitId > 0) {
-                bitId--;
-
-                bitPosition = property.nextSetBit(bitPosition + 1);
-            }
-
-            z = bitPosition / 16;
-            x = bitPosition - 16 * z;
-        }
+        int index = getIndexOf(rand.nextInt(count));
         int y = rand.nextInt(255);
-
-        return new BlockPos(x, y, z);
-    }
-
-    public boolean isEmpty() {
-        return !fullSet && property.isEmpty();
+        return new BlockPos(index & 15, y, index >> 4);
     }
 
     public ZoneChunk readFromByteBuf(PacketBuffer buf) {
         int flags = buf.readUnsignedByte();
-        if ((flags & 1) != 0) {
-            property = BitSet.valueOf(buf.readByteArray());
+        if ((flags & 2) != 0) {
+            setFull();
+            if ((flags & 1) != 0) {
+                buf.readByteArray();
+            }
+        } else if ((flags & 1) != 0) {
+            setBits(buf.readByteArray());
+        } else {
+            setBits(new byte[0]);
         }
-        fullSet = (flags & 2) != 0;
-
         return this;
     }
 
     public void writeToByteBuf(PacketBuffer buf) {
-        int flags = (fullSet ? 2 : 0) | (property != null ? 1 : 0);
-        buf.writeByte(flags);
-        if (property != null) {
-            buf.writeByteArray(property.toByteArray());
+        if (isFull()) {
+            buf.writeByte(2);
+        } else {
+            buf.writeByte(1);
+            buf.writeByteArray(BitSet.valueOf(bits).toByteArray());
+        }
+    }
+
+    private void setFull() {
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = -1;
+        }
+        count = AREA;
+    }
+
+    /** @param bytes The bits in the format of {@link BitSet#toByteArray()} */
+    private void setBits(byte[] bytes) {
+        long[] words = BitSet.valueOf(bytes).toLongArray();
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = i < words.length ? words[i] : 0;
         }
+        recount();
     }
 }
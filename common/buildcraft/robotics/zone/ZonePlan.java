@@ -6,15 +6,17 @@
 
 package buildcraft.robotics.zone;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
-import java.util.Set;
+
 import javax.vecmath.Point2i;
 
 import com.google.common.collect.ImmutableList;
 
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.PacketBuffer;
 import net.minecraft.util.math.BlockPos;
@@ -25,100 +27,170 @@ import buildcraft.api.core.IZone;
 
 import buildcraft.lib.misc.NBTUtilBC;
 
+/** A set of block columns, stored as a {@link ZoneChunk} bit mask for every chunk that contains at least one block.
+ * Chunks are keyed by {@link ChunkPos#asLong(int, int)} so looking up a block doesn't allocate anything. */
 public class ZonePlan implements IZone {
-    private final HashMap<ChunkPos, ZoneChunk> chunkMapping = new HashMap<>();
+    private final TLongObjectHashMap<ZoneChunk> chunks = new TLongObjectHashMap<>();
+
+    /** The total number of blocks in every chunk. */
+    private long area;
+
+    /** Used by {@link #getRandomBlockPos(Random)} to find a chunk in O(log n): the keys of every chunk, and the total
+     * number of blocks in that chunk and every chunk before it. Null if this needs to be rebuilt. */
+    private long[] sampleKeys, sampleTotals;
 
     public ZonePlan() {}
 
     public ZonePlan(ZonePlan old) {
-        for (ChunkPos chunkPos : old.chunkMapping.keySet()) {
-            chunkMapping.put(chunkPos, new ZoneChunk(old.chunkMapping.get(chunkPos)));
+        TLongObjectIterator<ZoneChunk> iter = old.chunks.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            chunks.put(iter.key(), new ZoneChunk(iter.value()));
         }
+        area = old.area;
     }
 
     public boolean get(int x, int z) {
-        int xChunk = x >> 4;
-        int zChunk = z >> 4;
-        ChunkPos chunkId = new ChunkPos(xChunk, zChunk);
-        ZoneChunk property;
+        ZoneChunk chunk = chunks.get(ChunkPos.asLong(x >> 4, z >> 4));
+        return chunk != null && chunk.get(x & 0xF, z & 0xF);
+    }
 
-        if (!chunkMapping.containsKey(chunkId)) {
-            return false;
-        } else {
-            property = chunkMapping.get(chunkId);
-            return property.get(x & 0xF, z & 0xF);
+    public void set(int x, int z, boolean val) {
+        long key = ChunkPos.asLong(x >> 4, z >> 4);
+        ZoneChunk chunk = chunks.get(key);
+
+        if (chunk == null) {
+            if (!val) {
+                return;
+            }
+            chunk = new ZoneChunk();
+            chunks.put(key, chunk);
+        }
+
+        int diff = chunk.set(x & 0xF, z & 0xF, val);
+        if (diff != 0) {
+            area += diff;
+            sampleKeys = null;
+        }
+
+        if (chunk.isEmpty()) {
+            chunks.remove(key);
         }
     }
 
-    public void set(int x, int z, boolean val) {
-        int xChunk = x >> 4;
-        int zChunk = z >> 4;
-        ChunkPos chunkId = new ChunkPos(xChunk, zChunk);
-        ZoneChunk property;
-
-        if (!chunkMapping.containsKey(chunkId)) {
-            if (val) {
-                property = new ZoneChunk();
-                chunkMapping.put(chunkId, property);
+    /** @return The number of block columns in this zone. */
+    public long getArea() {
+        return area;
+    }
+
+    public boolean isEmpty() {
+        return area == 0;
+    }
+
+    public boolean hasChunk(int chunkX, int chunkZ) {
+        return chunks.containsKey(ChunkPos.asLong(chunkX, chunkZ));
+    }
+
+    public boolean hasChunk(ChunkPos chunkPos) {
+        return hasChunk(chunkPos.x, chunkPos.z);
+    }
+
+    /** Adds every block in the given plan to this one. */
+    public void union(ZonePlan other) {
+        TLongObjectIterator<ZoneChunk> iter = other.chunks.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            ZoneChunk chunk = chunks.get(iter.key());
+            if (chunk == null) {
+                chunk = new ZoneChunk(iter.value());
+                chunks.put(iter.key(), chunk);
+                area += chunk.getCount();
             } else {
-                return;
+                area += chunk.or(iter.value());
             }
-        } else {
-            property = chunkMapping.get(chunkId);
         }
+        sampleKeys = null;
+    }
 
-        property.set(x & 0xF, z & 0xF, val);
+    /** Removes every block from this plan that isn't in the given plan. */
+    public void intersect(ZonePlan other) {
+        TLongObjectIterator<ZoneChunk> iter = chunks.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            ZoneChunk chunk = iter.value();
+            ZoneChunk otherChunk = other.chunks.get(iter.key());
+            if (otherChunk == null) {
+                area -= chunk.getCount();
+                iter.remove();
+            } else {
+                area += chunk.and(otherChunk);
+                if (chunk.isEmpty()) {
+                    iter.remove();
+                }
+            }
+        }
+        sampleKeys = null;
+    }
 
-        if (property.isEmpty()) {
-            chunkMapping.remove(chunkId);
+    /** Removes every block in the given plan from this one. */
+    public void subtract(ZonePlan other) {
+        TLongObjectIterator<ZoneChunk> iter = chunks.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            ZoneChunk otherChunk = other.chunks.get(iter.key());
+            if (otherChunk != null) {
+                ZoneChunk chunk = iter.value();
+                area += chunk.andNot(otherChunk);
+                if (chunk.isEmpty()) {
+                    iter.remove();
+                }
+            }
         }
+        sampleKeys = null;
     }
 
     public List<Point2i> getAll() {
         ImmutableList.Builder<Point2i> builder = ImmutableList.builder();
-        for (int zChunk = 0; zChunk < 16; zChunk++) {
-            for (int xChunk = 0; xChunk < 16; xChunk++) {
-                if (get(xChunk, zChunk)) {
-                    builder.add(new Point2i(xChunk, zChunk));
-                }
+        TLongObjectIterator<ZoneChunk> iter = chunks.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            int baseX = getChunkX(iter.key()) << 4;
+            int baseZ = getChunkZ(iter.key()) << 4;
+            for (Point2i p : iter.value().getAll()) {
+                builder.add(new Point2i(baseX + p.x, baseZ + p.y));
             }
         }
-        chunkMapping.forEach((chunkPos, zoneChunk) -> {
-            List<Point2i> zoneChunkAll = zoneChunk.getAll();
-            zoneChunkAll.forEach(p -> p.add(new Point2i(chunkPos.getXStart(), chunkPos.getZStart())));
-            builder.addAll(zoneChunkAll);
-        });
         return builder.build();
     }
 
     public ZonePlan getWithOffset(int offsetX, int offsetY) {
         ZonePlan zonePlan = new ZonePlan();
-        getAll().forEach(p -> zonePlan.set(p.x + offsetX, p.y + offsetY, true));
+        if ((offsetX & 0xF) == 0 && (offsetY & 0xF) == 0) {
+            // Whole chunks can just be moved
+            TLongObjectIterator<ZoneChunk> iter = chunks.iterator();
+            while (iter.hasNext()) {
+                iter.advance();
+                long key = ChunkPos.asLong(getChunkX(iter.key()) + (offsetX >> 4), getChunkZ(iter.key()) + (offsetY >> 4));
+                zonePlan.chunks.put(key, new ZoneChunk(iter.value()));
+            }
+            zonePlan.area = area;
+        } else {
+            getAll().forEach(p -> zonePlan.set(p.x + offsetX, p.y + offsetY, true));
+        }
         return zonePlan;
     }
 
-    public boolean hasChunk(ChunkPos chunkPos) {
-        return chunkMapping.containsKey(chunkPos);
-    }
-
-    public Set<ChunkPos> getChunkPoses() {
-        return chunkMapping.keySet();
-    }
-
-    public HashMap<ChunkPos, ZoneChunk> getChunkMapping() {
-        return chunkMapping;
-    }
-
     public void writeToNBT(NBTTagCompound nbt) {
+        long[] keys = chunks.keys();
         nbt.setTag(
                 "chunkMapping",
                 NBTUtilBC.writeCompoundList(
-                        chunkMapping.entrySet().stream()
-                                .map(entry -> {
+                        Arrays.stream(keys)
+                                .mapToObj(key -> {
                                     NBTTagCompound zoneChunkTag = new NBTTagCompound();
-                                    entry.getValue().writeToNBT(zoneChunkTag);
-                                    zoneChunkTag.setInteger("chunkX", entry.getKey().x);
-                                    zoneChunkTag.setInteger("chunkZ", entry.getKey().z);
+                                    chunks.get(key).writeToNBT(zoneChunkTag);
+                                    zoneChunkTag.setInteger("chunkX", getChunkX(key));
+                                    zoneChunkTag.setInteger("chunkZ", getChunkZ(key));
                                     return zoneChunkTag;
                                 })
                 )
@@ -126,17 +198,12 @@ public class ZonePlan implements IZone {
     }
 
     public void readFromNBT(NBTTagCompound nbt) {
+        clear();
         NBTUtilBC.readCompoundList(nbt.getTag("chunkMapping"))
                 .forEach(zoneChunkTag -> {
                     ZoneChunk chunk = new ZoneChunk();
                     chunk.readFromNBT(zoneChunkTag);
-                    chunkMapping.put(
-                            new ChunkPos(
-                                    zoneChunkTag.getInteger("chunkX"),
-                                    zoneChunkTag.getInteger("chunkZ")
-                            ),
-                            chunk
-                    );
+                    putChunk(zoneChunkTag.getInteger("chunkX"), zoneChunkTag.getInteger("chunkZ"), chunk);
                 });
     }
 
@@ -149,9 +216,9 @@ public class ZonePlan implements IZone {
     public double distanceToSquared(BlockPos index) {
         double maxSqrDistance = Double.MAX_VALUE;
 
-        for (Map.Entry<ChunkPos, ZoneChunk> e : chunkMapping.entrySet()) {
-            double dx = (e.getKey().x << 4 + 8) - index.getX();
-            double dz = (e.getKey().z << 4 + 8) - index.getZ();
+        for (long key : chunks.keys()) {
+            double dx = (getChunkX(key) << 4) + 8 - index.getX();
+            double dz = (getChunkZ(key) << 4) + 8 - index.getZ();
 
             double sqrDistance = dx * dx + dz * dz;
 
@@ -173,45 +240,78 @@ public class ZonePlan implements IZone {
 
     @Override
     public BlockPos getRandomBlockPos(Random rand) {
-        if (chunkMapping.size() == 0) {
+        if (area == 0) {
             return null;
         }
-
-        int chunkId = rand.nextInt(chunkMapping.size());
-
-        for (Map.Entry<ChunkPos, ZoneChunk> e : chunkMapping.entrySet()) {
-            if (chunkId == 0) {
-                BlockPos i = e.getValue().getRandomBlockPos(rand);
-                int x = (e.getKey().x << 4) + i.getX();
-                int z = (e.getKey().z << 4) + i.getZ();
-
-                return new BlockPos(x, i.getY(), z);
+        if (sampleKeys == null) {
+            sampleKeys = chunks.keys();
+            sampleTotals = new long[sampleKeys.length];
+            long total = 0;
+            for (int i = 0; i < sampleKeys.length; i++) {
+                total += chunks.get(sampleKeys[i]).getCount();
+                sampleTotals[i] = total;
             }
-
-            chunkId--;
         }
 
-        return null;
+        // Pick a block, rather than a chunk, so that every block is equally likely
+        long n = (long) (rand.nextDouble() * area);
+        int found = Arrays.binarySearch(sampleTotals, n + 1);
+        int i = found >= 0 ? found : -found - 1;
+        long key = sampleKeys[i];
+        ZoneChunk chunk = chunks.get(key);
+        int index = chunk.getIndexOf((int) (n - (sampleTotals[i] - chunk.getCount())));
+        int x = (getChunkX(key) << 4) + (index & 0xF);
+        int z = (getChunkZ(key) << 4) + (index >> 4);
+        return new BlockPos(x, rand.nextInt(255), z);
     }
 
     public ZonePlan readFromByteBuf(PacketBuffer buf) {
-        chunkMapping.clear();
+        clear();
         int size = buf.readInt();
         for (int i = 0; i < size; i++) {
-            ChunkPos key = new ChunkPos(buf.readInt(), buf.readInt());
+            int chunkX = buf.readInt();
+            int chunkZ = buf.readInt();
             ZoneChunk value = new ZoneChunk();
             value.readFromByteBuf(buf);
-            chunkMapping.put(key, value);
+            putChunk(chunkX, chunkZ, value);
         }
         return this;
     }
 
     public void writeToByteBuf(PacketBuffer buf) {
-        buf.writeInt(chunkMapping.size());
-        for (Map.Entry<ChunkPos, ZoneChunk> e : chunkMapping.entrySet()) {
-            buf.writeInt(e.getKey().x);
-            buf.writeInt(e.getKey().z);
-            e.getValue().writeToByteBuf(buf);
+        buf.writeInt(chunks.size());
+        TLongObjectIterator<ZoneChunk> iter = chunks.iterator();
+        while (iter.hasNext()) {
+            iter.advance();
+            buf.writeInt(getChunkX(iter.key()));
+            buf.writeInt(getChunkZ(iter.key()));
+            iter.value().writeToByteBuf(buf);
+        }
+    }
+
+    private void clear() {
+        chunks.clear();
+        area = 0;
+        sampleKeys = null;
+    }
+
+    private void putChunk(int chunkX, int chunkZ, ZoneChunk chunk) {
+        if (chunk.isEmpty()) {
+            return;
         }
+        ZoneChunk old = chunks.put(ChunkPos.asLong(chunkX, chunkZ), chunk);
+        if (old != null) {
+            area -= old.getCount();
+        }
+        area += chunk.getCount();
+        sampleKeys = null;
+    }
+
+    private static int getChunkX(long key) {
+        return (int) key;
+    }
+
+    private static int getChunkZ(long key) {
+        return (int) (key >>> 32);
     }
 }
@@ -6,66 +6,109 @@
 
 package buildcraft.robotics.zone;
 
+import java.util.Arrays;
+
 import javax.annotation.Nullable;
 
+import net.minecraft.block.material.MapColor;
+import net.minecraft.block.state.IBlockState;
 import net.minecraft.network.PacketBuffer;
-import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockPos.MutableBlockPos;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 
 public class ZonePlannerMapChunk {
-    private final MapColourData[][] data = new MapColourData[16][16];
+    private static final int COLUMNS = 16 * 16;
+
+    /** The y co-ord of the top block of every column (indexed by x * 16 + z), as an unsigned byte. 0 means that the
+     * column didn't have any visible blocks. */
+    private final byte[] heights = new byte[COLUMNS];
+
+    /** The {@link MapColor#colorIndex} of the top block of every column. */
+    private final byte[] colours = new byte[COLUMNS];
 
     public ZonePlannerMapChunk(World world, ZonePlannerMapChunkKey key) {
         Chunk chunk = world.getChunkFromChunkCoords(key.chunkPos.x, key.chunkPos.z);
+        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+        MutableBlockPos pos = new MutableBlockPos();
+        int baseX = key.chunkPos.getXStart();
+        int baseZ = key.chunkPos.getZStart();
+        int top = Math.min(key.level * ZonePlannerMapChunkKey.LEVEL_HEIGHT, 255);
         for (int x = 0; x < 16; x++) {
             for (int z = 0; z < 16; z++) {
                 // Scan down from the max height value of a chunk until we find a block
-                for (int y = key.level * ZonePlannerMapChunkKey.LEVEL_HEIGHT; y > 0; y--) {
-                    int colour = chunk.getBlockState(x, y, z).getMapColor(world, new BlockPos(x, y, z)).colorValue;
-                    if (colour != 0) {
-                        data[x][z] = new MapColourData(y, colour);
+                int y = top;
+                while (y > 0) {
+                    ExtendedBlockStorage storage = storages[y >> 4];
+                    if (storage == Chunk.NULL_BLOCK_STORAGE || storage.isEmpty()) {
+                        // Empty sections are all air, so skip to the top of the one below
+                        y = (y & ~15) - 1;
+                        continue;
+                    }
+                    IBlockState state = storage.get(x, y & 15, z);
+                    MapColor colour = state.getMapColor(world, pos.setPos(baseX + x, y, baseZ + z));
+                    if (colour.colorValue != 0) {
+                        heights[x * 16 + z] = (byte) y;
+                        colours[x * 16 + z] = (byte) colour.colorIndex;
                         break;
                     }
+                    y--;
                 }
             }
         }
     }
 
     public ZonePlannerMapChunk(PacketBuffer buffer) {
-        for (int x = 0; x < 16; x++) {
-            for (int z = 0; z < 16; z++) {
-                int posY = buffer.readInt();
-                if (posY > 0) {
-                    int colour = buffer.readInt();
-                    data[x][z] = new MapColourData(posY, colour);
-                }
-            }
+        int index = 0;
+        while (index < COLUMNS) {
+            int run = Math.min(buffer.readUnsignedByte() + 1, COLUMNS - index);
+            byte height = buffer.readByte();
+            byte colour = buffer.readByte();
+            Arrays.fill(heights, index, index + run, height);
+            Arrays.fill(colours, index, index + run, colour);
+            index += run;
         }
     }
 
+    /** Writes this out as runs of columns with the same height and colour, as neighbouring columns are very often the
+     * same (for example in oceans and flat areas). */
     public void write(PacketBuffer buffer) {
-        for (int x = 0; x < 16; x++) {
-            for (int z = 0; z < 16; z++) {
-                MapColourData colour = data[x][z];
-                if (colour == null) {
-                    buffer.writeInt(-1);
-                } else {
-                    buffer.writeInt(colour.posY);
-                    buffer.writeInt(colour.colour);
-                }
+        int index = 0;
+        while (index < COLUMNS) {
+            byte height = heights[index];
+            byte colour = colours[index];
+            int run = 1;
+            while (index + run < COLUMNS && heights[index + run] == height && colours[index + run] == colour) {
+                run++;
             }
+            buffer.writeByte(run - 1);
+            buffer.writeByte(height);
+            buffer.writeByte(colour);
+            index += run;
         }
     }
 
+    /** @return The y co-ord of the top block in the given column, or 0 if there wasn't one. */
+    public int getHeight(int x, int z) {
+        return heights[(x & 15) * 16 + (z & 15)] & 0xFF;
+    }
+
     public int getColour(int x, int z) {
-        MapColourData col = getData(x, z);
-        return col == null ? -1 : col.colour;
+        int index = (x & 15) * 16 + (z & 15);
+        if (heights[index] == 0) {
+            return -1;
+        }
+        MapColor colour = MapColor.COLORS[colours[index] & 63];
+        return colour == null ? -1 : colour.colorValue;
     }
 
+    /** Note that this allocates a new {@link MapColourData} every time, so {@link #getHeight(int, int)} and
+     * {@link #getColour(int, int)} should be used instead in hot loops. */
     @Nullable
     public MapColourData getData(int x, int z) {
-        return data[x & 15][z & 15];
+        int height = getHeight(x, z);
+        return height == 0 ? null : new MapColourData(height, getColour(x, z));
     }
 
     public static final class MapColourData {
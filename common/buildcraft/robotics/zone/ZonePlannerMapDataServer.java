@@ -6,13 +6,306 @@
 
 package buildcraft.robotics.zone;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.set.hash.TLongHashSet;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.World;
 
+import buildcraft.api.core.BCLog;
+
+import buildcraft.lib.net.MessageManager;
+import buildcraft.lib.world.WorldEventListenerAdapter;
+
+/** Generates map tiles for clients, and keeps them both in memory and on disk (in
+ * "[save]/buildcraft/zone_planner_map/dim[id]/") so that reopening the zone planner doesn't have to scan every chunk
+ * again. The tiles of a chunk are deleted whenever a block in that chunk changes, which is tracked from the moment that
+ * the world is loaded (in {@link #onWorldLoad(World)}) so that changes made before anyone opens a zone planner aren't
+ * missed.
+ * <p>
+ * Tiles are read from and written to disk on a separate thread, but are still generated on the main thread as they
+ * need the world. To stop large requests from lagging the server only {@link #MAX_GENERATED_PER_TICK} tiles are
+ * generated every tick. Unloading a world waits for all of its queued writes and deletes to finish, as otherwise an
+ * outdated tile could still be on disk (and be used) the next time the world is loaded. */
 public class ZonePlannerMapDataServer extends ZonePlannerMapData {
     public static final ZonePlannerMapDataServer INSTANCE = new ZonePlannerMapDataServer();
 
+    private static final int MAX_GENERATED_PER_TICK = 16;
+    private static final int MAX_LEVEL = 255 / ZonePlannerMapChunkKey.LEVEL_HEIGHT;
+
+    /** Changed whenever the format of tiles on disk changes, so that old tiles are ignored. */
+    private static final int FILE_VERSION = 1;
+
+    /** A single thread, so that reads, writes and deletes of the same file always happen in the order that they were
+     * submitted. */
+    private static final ExecutorService DISK_EXECUTOR = Executors.newSingleThreadExecutor(//
+        new BasicThreadFactory.Builder().daemon(true).namingPattern("BuildCraft Zone Planner Map IO %d").build()//
+    );
+
+    /** Every loaded server world, keyed by dimension id. This doesn't hold on to the worlds themselves, as they are
+     * removed again in {@link #onWorldUnload(World)}. */
+    private final Map<Integer, WorldMapData> worlds = new HashMap<>();
+
     @Override
     public ZonePlannerMapChunk loadChunk(World world, ZonePlannerMapChunkKey key) {
         return new ZonePlannerMapChunk(world, key);
     }
+
+    /** Sends the given tile to the player, either now (if it's in memory) or in a later tick once it has been read
+     * from disk or generated. */
+    public void requestChunk(EntityPlayerMP player, ZonePlannerMapChunkKey key) {
+        World world = player.world;
+        if (world.provider.getDimension() != key.dimensionalId || key.level < 0 || key.level > MAX_LEVEL) {
+            return;
+        }
+        ZonePlannerMapChunk chunk = data.getIfPresent(key);
+        if (chunk != null) {
+            MessageManager.sendTo(new MessageZoneMapResponse(key, chunk), player);
+            return;
+        }
+        WorldMapData worldData = worlds.get(key.dimensionalId);
+        if (worldData != null) {
+            worldData.request(player, key);
+        }
+    }
+
+    public void tick(World world) {
+        WorldMapData worldData = worlds.get(world.provider.getDimension());
+        if (worldData != null) {
+            worldData.tick(world);
+        }
+    }
+
+    /** Starts listening for block changes in the given (server) world. */
+    public void onWorldLoad(World world) {
+        int dimension = world.provider.getDimension();
+        // Tiles from a different save with the same dimension might still be in memory
+        clearDimension(dimension);
+        WorldMapData worldData = new WorldMapData(world);
+        world.addEventListener(worldData.listener);
+        worlds.put(dimension, worldData);
+    }
+
+    /** Stops listening to the given world, and forgets every tile in it. This blocks until every tile of the world
+     * that has changed has been deleted from disk. */
+    public void onWorldUnload(World world) {
+        int dimension = world.provider.getDimension();
+        WorldMapData worldData = worlds.remove(dimension);
+        if (worldData != null) {
+            world.removeEventListener(worldData.listener);
+            clearDimension(dimension);
+            if (!worldData.changedChunks.isEmpty()) {
+                worldData.invalidateChangedChunks();
+            }
+            waitForDisk();
+        }
+    }
+
+    /** Waits for everything that has been submitted to {@link #DISK_EXECUTOR} so far to finish. */
+    private static void waitForDisk() {
+        try {
+            DISK_EXECUTOR.submit(() -> {}).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            BCLog.logger.warn("[robotics.zone] Interrupted while waiting for map tiles to be saved!");
+        } catch (ExecutionException e) {
+            BCLog.logger.warn("[robotics.zone] Failed to wait for map tiles to be saved!", e);
+        }
+    }
+
+    private void clearDimension(int dimension) {
+        data.asMap().keySet().removeIf(key -> key.dimensionalId == dimension);
+    }
+
+    private class WorldMapData {
+        private final int dimension;
+        private final File directory;
+
+        /** Every chunk that has changed since the last tick, as {@link ChunkPos#asLong(int, int)}. */
+        private final TLongHashSet changedChunks = new TLongHashSet();
+        private final Map<ZonePlannerMapChunkKey, PendingTile> pending = new LinkedHashMap<>();
+
+        final WorldEventListenerAdapter listener = new WorldEventListenerAdapter() {
+            @Override
+            public void notifyBlockUpdate(@Nonnull World w, @Nonnull BlockPos pos, @Nonnull IBlockState oldState,
+                @Nonnull IBlockState newState, int flags) {
+                changedChunks.add(ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4));
+            }
+        };
+
+        WorldMapData(World world) {
+            dimension = world.provider.getDimension();
+            File root = world.getSaveHandler().getWorldDirectory();
+            directory = new File(root, "buildcraft/zone_planner_map/dim" + dimension);
+        }
+
+        void request(EntityPlayerMP player, ZonePlannerMapChunkKey key) {
+            PendingTile tile = pending.get(key);
+            if (tile == null) {
+                tile = new PendingTile();
+                File file = getFile(key);
+                tile.read = DISK_EXECUTOR.submit(() -> readTile(file));
+                pending.put(key, tile);
+            }
+            tile.players.add(player);
+        }
+
+        void tick(World world) {
+            if (!changedChunks.isEmpty()) {
+                invalidateChangedChunks();
+            }
+            int generated = 0;
+            Iterator<Map.Entry<ZonePlannerMapChunkKey, PendingTile>> iter = pending.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<ZonePlannerMapChunkKey, PendingTile> entry = iter.next();
+                ZonePlannerMapChunkKey key = entry.getKey();
+                PendingTile tile = entry.getValue();
+                if (tile.read != null) {
+                    if (!tile.read.isDone()) {
+                        continue;
+                    }
+                    ZonePlannerMapChunk chunk = getReadTile(tile.read);
+                    tile.read = null;
+                    if (chunk != null && !tile.stale) {
+                        data.put(key, chunk);
+                        tile.send(key, chunk);
+                        iter.remove();
+                        continue;
+                    }
+                }
+                if (generated >= MAX_GENERATED_PER_TICK) {
+                    continue;
+                }
+                generated++;
+                ZonePlannerMapChunk chunk = loadChunk(world, key);
+                data.put(key, chunk);
+                tile.send(key, chunk);
+                iter.remove();
+                // Unpopulated chunks will change without any block updates, so there's no point in saving them
+                if (world.getChunkFromChunkCoords(key.chunkPos.x, key.chunkPos.z).isPopulated()) {
+                    File file = getFile(key);
+                    DISK_EXECUTOR.execute(() -> writeTile(file, chunk));
+                }
+            }
+        }
+
+        private void invalidateChangedChunks() {
+            TLongIterator iter = changedChunks.iterator();
+            File[] toDelete = new File[changedChunks.size() * (MAX_LEVEL + 1)];
+            int index = 0;
+            while (iter.hasNext()) {
+                long value = iter.next();
+                ChunkPos chunkPos = new ChunkPos((int) value, (int) (value >> 32));
+                for (int level = 0; level <= MAX_LEVEL; level++) {
+                    ZonePlannerMapChunkKey key = new ZonePlannerMapChunkKey(chunkPos, dimension, level);
+                    data.invalidate(key);
+                    PendingTile tile = pending.get(key);
+                    if (tile != null) {
+                        tile.stale = true;
+                    }
+                    toDelete[index++] = getFile(key);
+                }
+            }
+            changedChunks.clear();
+            DISK_EXECUTOR.execute(() -> {
+                for (File file : toDelete) {
+                    if (file.exists() && !file.delete()) {
+                        BCLog.logger.warn("[robotics.zone] Failed to delete the outdated map tile " + file);
+                    }
+                }
+            });
+        }
+
+        private File getFile(ZonePlannerMapChunkKey key) {
+            return new File(directory, key.chunkPos.x + "." + key.chunkPos.z + "." + key.level + ".bin");
+        }
+    }
+
+    private static class PendingTile {
+        final Set<EntityPlayerMP> players = new LinkedHashSet<>();
+        /** The tile being read from disk, or null if it needs to be generated. */
+        Future<ZonePlannerMapChunk> read;
+        /** True if the chunk changed after the tile started being read from disk. */
+        boolean stale;
+
+        void send(ZonePlannerMapChunkKey key, ZonePlannerMapChunk chunk) {
+            MessageZoneMapResponse message = new MessageZoneMapResponse(key, chunk);
+            for (EntityPlayerMP player : players) {
+                if (!player.hasDisconnected()) {
+                    MessageManager.sendTo(message, player);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static ZonePlannerMapChunk getReadTile(Future<ZonePlannerMapChunk> read) {
+        try {
+            return read.get();
+        } catch (InterruptedException | ExecutionException e) {
+            BCLog.logger.warn("[robotics.zone] Failed to read a map tile!", e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static ZonePlannerMapChunk readTile(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            PacketBuffer buffer = new PacketBuffer(Unpooled.wrappedBuffer(Files.readAllBytes(file.toPath())));
+            if (buffer.readableBytes() < 4 || buffer.readInt() != FILE_VERSION) {
+                return null;
+            }
+            return new ZonePlannerMapChunk(buffer);
+        } catch (IOException | IndexOutOfBoundsException e) {
+            BCLog.logger.warn("[robotics.zone] Ignoring the invalid map tile " + file + " (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    /** Writes to a temporary file first, so that a tile that was only half written (because the game crashed) is never
+     * read back. */
+    private static void writeTile(File file, ZonePlannerMapChunk chunk) {
+        PacketBuffer buffer = new PacketBuffer(Unpooled.buffer());
+        buffer.writeInt(FILE_VERSION);
+        chunk.write(buffer);
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            byte[] bytes = new byte[buffer.readableBytes()];
+            buffer.readBytes(bytes);
+            File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+            Files.write(temp.toPath(), bytes);
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            BCLog.logger.warn("[robotics.zone] Failed to save the map tile " + file, e);
+        }
+    }
 }
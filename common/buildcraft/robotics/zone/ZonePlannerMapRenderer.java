@@ -25,8 +25,6 @@ import net.minecraftforge.fml.relauncher.SideOnly;
 
 import buildcraft.lib.client.model.MutableVertex;
 
-import buildcraft.robotics.zone.ZonePlannerMapChunk.MapColourData;
-
 @SideOnly(Side.CLIENT)
 public enum ZonePlannerMapRenderer {
     INSTANCE;
@@ -125,15 +123,15 @@ public enum ZonePlannerMapRenderer {
         builder.begin(GL11.GL_QUADS, DefaultVertexFormats.POSITION_COLOR); // TODO: normals
         for (int x = 0; x < 16; x++) {
             for (int z = 0; z < 16; z++) {
-                MapColourData data = zonePlannerMapChunk.getData(x, z);
-                if (data != null) {
-                    setColor(data.colour);
+                int height = zonePlannerMapChunk.getHeight(x, z);
+                if (height != 0) {
+                    setColor(zonePlannerMapChunk.getColour(x, z));
                     drawBlockCuboid(
                             builder,
                             key.chunkPos.getXStart() + x,
-                            data.posY,
+                            height,
                             key.chunkPos.getZStart() + z,
-                            data.posY
+                            height
                     );
                 }
             }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.silicon.tile;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+/** Keeps track of which laser tables need power, and which lasers can see (and are powering) them. Every
+ * {@link TileLaserTableBase} has a {@link Table}, and every {@link TileLaser} has a {@link Laser}. Tables tell the lasers
+ * that can see them whenever they start or stop needing power, so lasers never have to poll them.
+ * <p>
+ * None of this needs a world, so it can be tested (and benchmarked) without any tiles. */
+public final class LaserDemand {
+    private LaserDemand() {}
+
+    /** @param <T> The type of the object that owns the table. */
+    public static final class Table<T> {
+        public final T owner;
+        /** Every laser that can see this table. */
+        final Set<Laser<T>> lasers = new HashSet<>();
+        /** The number of lasers currently powering this table. */
+        int targetingLasers;
+        boolean needsPower;
+
+        public Table(T owner) {
+            this.owner = owner;
+        }
+
+        /** Tells every laser that can see this table if it has started or stopped needing power. Does nothing if the
+         * demand hasn't changed, so this can be called as often as needed. */
+        public void setPowerNeeded(boolean needs) {
+            if (needs != needsPower) {
+                needsPower = needs;
+                for (Laser<T> laser : lasers) {
+                    laser.onDemandChanged(this, needs);
+                }
+            }
+        }
+
+        /** @return True if this table needed power the last time that it told the lasers that can see it. */
+        public boolean isPowerNeeded() {
+            return needsPower;
+        }
+
+        public int getTargetingLasers() {
+            return targetingLasers;
+        }
+
+        public int getVisibleLasers() {
+            return lasers.size();
+        }
+
+        /** Removes this table from every laser that can see it, as the table has been removed or unloaded. */
+        public void remove() {
+            for (Laser<T> laser : new ArrayList<>(lasers)) {
+                laser.onTableRemoved(this);
+            }
+            lasers.clear();
+        }
+    }
+
+    /** @param <T> The type of the object that owns the tables that this laser can see. */
+    public static final class Laser<T> {
+        /** Every table that this laser can see. */
+        private final List<Table<T>> visible = new ArrayList<>();
+        /** The tables in {@link #visible} that need power, kept up to date by the tables themselves. */
+        private final List<Table<T>> needingPower = new ArrayList<>();
+        @Nullable
+        private Table<T> target;
+
+        /** Adds a table that this laser can see. */
+        public void addVisible(Table<T> table) {
+            if (table.lasers.add(this)) {
+                visible.add(table);
+                if (table.needsPower) {
+                    needingPower.add(table);
+                }
+            }
+        }
+
+        /** Forgets every table that this laser can see, but keeps the current target (so that it can be checked once
+         * the visible tables have been added back). */
+        public void clearVisible() {
+            for (Table<T> table : visible) {
+                table.lasers.remove(this);
+            }
+            visible.clear();
+            needingPower.clear();
+        }
+
+        public boolean canSee(Table<T> table) {
+            return table.lasers.contains(this);
+        }
+
+        public int getVisibleCount() {
+            return visible.size();
+        }
+
+        public int getNeedingPowerCount() {
+            return needingPower.size();
+        }
+
+        /** Adds the tables that need power and have the fewest lasers powering them (not counting this laser) to the
+         * given list.
+         *
+         * @return The number of lasers powering each of the tables that were added, or {@link Integer#MAX_VALUE} if no
+         *         tables need power. */
+        public int getLeastTargeted(List<? super Table<T>> candidates) {
+            int leastLasers = Integer.MAX_VALUE;
+            int start = candidates.size();
+            for (Table<T> table : needingPower) {
+                int lasers = table.targetingLasers - (table == target ? 1 : 0);
+                if (lasers < leastLasers) {
+                    leastLasers = lasers;
+                    candidates.subList(start, candidates.size()).clear();
+                }
+                if (lasers == leastLasers) {
+                    candidates.add(table);
+                }
+            }
+            return leastLasers;
+        }
+
+        /** Chooses a random table out of the ones that need power and have the fewest other lasers powering them, so
+         * that lasers spread themselves out over the tables that they can see. */
+        @Nullable
+        public Table<T> chooseTarget(Random rand) {
+            List<Table<T>> candidates = new ArrayList<>();
+            getLeastTargeted(candidates);
+            setTarget(candidates.isEmpty() ? null : candidates.get(rand.nextInt(candidates.size())));
+            return target;
+        }
+
+        public void setTarget(@Nullable Table<T> table) {
+            if (target != null) {
+                target.targetingLasers--;
+            }
+            if (table != null) {
+                table.targetingLasers++;
+            }
+            target = table;
+        }
+
+        @Nullable
+        public Table<T> getTarget() {
+            return target;
+        }
+
+        /** @return True if this laser is powering a table that still needs power. */
+        public boolean hasUsefulTarget() {
+            return target != null && target.needsPower;
+        }
+
+        void onDemandChanged(Table<T> table, boolean needsPower) {
+            if (needsPower) {
+                needingPower.add(table);
+            } else {
+                needingPower.remove(table);
+            }
+        }
+
+        void onTableRemoved(Table<T> table) {
+            visible.remove(table);
+            needingPower.remove(table);
+            if (target == table) {
+                setTarget(null);
+            }
+        }
+    }
+}
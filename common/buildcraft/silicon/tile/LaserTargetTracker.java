@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.silicon.tile;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/** Keeps track of every laser table and laser in a (server) world. Lasers find the tables that they can see through
+ * this rather than by looking up tile entities, and tables tell the lasers that can see them whenever they start or
+ * stop needing power (see {@link LaserDemand}), so lasers never have to poll tables. */
+final class LaserTargetTracker {
+    private static final Map<World, LaserTargetTracker> INSTANCES = new WeakHashMap<>();
+
+    private final Map<BlockPos, TileLaserTableBase> tables = new HashMap<>();
+    private final Set<TileLaser> lasers = new HashSet<>();
+
+    private LaserTargetTracker() {}
+
+    static LaserTargetTracker instance(World world) {
+        return INSTANCES.computeIfAbsent(world, w -> new LaserTargetTracker());
+    }
+
+    TileLaserTableBase getTable(BlockPos pos) {
+        return tables.get(pos);
+    }
+
+    void addTable(TileLaserTableBase table) {
+        tables.put(table.getPos(), table);
+        // Tables can be added without a block update (when their chunk loads)
+        for (TileLaser laser : lasers) {
+            if (laser.canReach(table.getPos())) {
+                laser.markTargetsDirty();
+            }
+        }
+    }
+
+    void removeTable(TileLaserTableBase table) {
+        tables.remove(table.getPos(), table);
+        table.demand.remove();
+    }
+
+    void addLaser(TileLaser laser) {
+        lasers.add(laser);
+    }
+
+    void removeLaser(TileLaser laser) {
+        lasers.remove(laser);
+    }
+}
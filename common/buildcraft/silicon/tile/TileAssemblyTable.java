@@ -64,9 +64,8 @@ public class TileAssemblyTable extends TileLaserTableBase {
     }
 
     private void updateRecipes() {
-        //TODO: rework this to not iterate over every recipe every tick
         int count = recipesStates.size();
-        for (AssemblyRecipe recipe: AssemblyRecipeRegistry.REGISTRY.values()) {
+        for (AssemblyRecipe recipe: AssemblyRecipeRegistry.getPossibleRecipes(inv.stacks)) {
             Set<ItemStack> outputs = recipe.getOutputs(inv.stacks);
             for (ItemStack out: outputs) {
                 boolean found = false;
@@ -11,6 +11,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+import javax.annotation.Nullable;
+
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.tileentity.TileEntity;
@@ -56,7 +58,12 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
     private final SafeTimeTracker clientLaserMoveInterval = new SafeTimeTracker(5, 10);
     private final SafeTimeTracker serverTargetMoveInterval = new SafeTimeTracker(10, 20);
 
-    private final List<BlockPos> targetPositions = new ArrayList<>();
+    /** The laser tables that we can see, and the one that we are powering (if any). */
+    private final LaserDemand.Laser<TileLaserTableBase> demand = new LaserDemand.Laser<>();
+    /** Any other laser targets that we can see, which have to be checked whenever we choose a target. */
+    private final List<BlockPos> otherTargetPositions = new ArrayList<>();
+    /** The target that we are powering, if it isn't one of our laser tables. */
+    private ILaserTarget otherTarget;
     private BlockPos targetPos;
     public Vec3d laserPos;
     private boolean worldHasUpdated = true;
@@ -83,16 +90,39 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
 
     @Override
     public void setWorldUpdated(World world, BlockPos eventPos, IBlockState oldState, IBlockState newState, int flags) {
-        this.worldHasUpdated = true;
+        // Updates that don't change the state (like tiles being redrawn) can't change what we can see
+        if (oldState != newState) {
+            this.worldHasUpdated = true;
+        }
+    }
+
+    /** Makes this laser look for targets again on its next tick. */
+    void markTargetsDirty() {
+        worldHasUpdated = true;
+    }
+
+    /** @return True if the given position is close enough for this laser to target it (if it can see it). */
+    boolean canReach(BlockPos position) {
+        return Math.abs(position.getX() - pos.getX()) <= TARGETING_RANGE
+            && Math.abs(position.getY() - pos.getY()) <= TARGETING_RANGE
+            && Math.abs(position.getZ() - pos.getZ()) <= TARGETING_RANGE;
+    }
+
+    @Nullable
+    private ILaserTarget getTarget() {
+        LaserDemand.Table<TileLaserTableBase> table = demand.getTarget();
+        return table != null ? table.owner : otherTarget;
     }
 
     private void findPossibleTargets() {
-        targetPositions.clear();
+        clearPossibleTargets();
         IBlockState state = world.getBlockState(pos);
         if (state.getBlock() != BCSiliconBlocks.laser) {
+            setTarget(null);
             return;
         }
         EnumFacing face = state.getValue(BuildCraftProperties.BLOCK_FACING_6);
+        LaserTargetTracker tracker = LaserTargetTracker.instance(world);
 
         VolumeUtil.iterateCone(world, pos, face, TARGETING_RANGE, true, (w, s, p, visible) -> {
             if (!visible) {
@@ -100,47 +130,73 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
             }
             IBlockState stateAt = world.getBlockState(p);
             if (stateAt.getBlock() instanceof ILaserTargetBlock) {
-                TileEntity tileAt = world.getTileEntity(p);
-                if (tileAt instanceof ILaserTarget) {
-                    targetPositions.add(p);
-
+                TileLaserTableBase table = tracker.getTable(p);
+                if (table != null) {
+                    demand.addVisible(table.demand);
+                } else {
+                    // Not one of our tables, so it can't tell us when it needs power
+                    TileEntity tileAt = world.getTileEntity(p);
+                    if (tileAt instanceof ILaserTarget) {
+                        otherTargetPositions.add(p);
+                    }
                 }
             }
         });
-    }
 
-    private void randomlyChooseTargetPos() {
-        List<BlockPos> targetsNeedingPower = new ArrayList<>();
-        for(BlockPos position: targetPositions) {
-            if (isPowerNeededAt(position)) {
-                targetsNeedingPower.add(position);
-            }
+        LaserDemand.Table<TileLaserTableBase> table = demand.getTarget();
+        boolean canSeeTarget;
+        if (table != null) {
+            canSeeTarget = demand.canSee(table);
+        } else {
+            canSeeTarget = otherTarget == null || otherTargetPositions.contains(targetPos);
         }
-        if (targetsNeedingPower.isEmpty()) {
-            targetPos = null;
-            return;
+        if (!canSeeTarget) {
+            setTarget(null);
         }
-        targetPos = targetsNeedingPower.get(world.rand.nextInt(targetsNeedingPower.size()));
     }
 
-    private boolean isPowerNeededAt(BlockPos position) {
-        if (position != null) {
+    private void clearPossibleTargets() {
+        demand.clearVisible();
+        otherTargetPositions.clear();
+    }
+
+    /** Chooses a random target out of the ones that need power and have the fewest other lasers powering them, so
+     * that lasers spread themselves out over the tables that they can see. Targets from other mods don't count the
+     * lasers powering them, so they are always treated as having none. */
+    private void randomlyChooseTargetPos() {
+        List<Object> candidates = new ArrayList<>();
+        int leastLasers = demand.getLeastTargeted(candidates);
+        for (BlockPos position : otherTargetPositions) {
             TileEntity tile = world.getTileEntity(position);
-            if (tile instanceof ILaserTarget) {
-                ILaserTarget target = (ILaserTarget) tile;
-                return target.getRequiredLaserPower() > 0;
+            if (tile instanceof ILaserTarget && ((ILaserTarget) tile).getRequiredLaserPower() > 0) {
+                if (leastLasers > 0) {
+                    leastLasers = 0;
+                    candidates.clear();
+                }
+                candidates.add(tile);
             }
         }
-        return false;
+        setTarget(candidates.isEmpty() ? null : candidates.get(world.rand.nextInt(candidates.size())));
     }
 
-    private ILaserTarget getTarget() {
-        if (targetPos != null) {
-            if (world.getTileEntity(targetPos) instanceof ILaserTarget) {
-                return (ILaserTarget) world.getTileEntity(targetPos);
-            }
+    /** @param newTarget Either a {@link LaserDemand.Table}, an {@link ILaserTarget} {@link TileEntity}, or null. */
+    @SuppressWarnings("unchecked")
+    private void setTarget(@Nullable Object newTarget) {
+        if (newTarget instanceof LaserDemand.Table) {
+            LaserDemand.Table<TileLaserTableBase> table = (LaserDemand.Table<TileLaserTableBase>) newTarget;
+            demand.setTarget(table);
+            otherTarget = null;
+            targetPos = table.owner.getPos();
+        } else {
+            demand.setTarget(null);
+            otherTarget = (ILaserTarget) newTarget;
+            targetPos = newTarget == null ? null : ((TileEntity) newTarget).getPos();
         }
-        return null;
+    }
+
+    private boolean isPowerNeeded() {
+        ILaserTarget target = getTarget();
+        return target != null && !target.isInvalidTarget() && target.getRequiredLaserPower() > 0;
     }
 
     private void updateLaser() {
@@ -183,11 +239,7 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
             worldHasUpdated = false;
         }
 
-        if (!isPowerNeededAt(targetPos)) {
-            targetPos = null;
-        }
-
-        if (serverTargetMoveInterval.markTimeIfDelay(world) || !isPowerNeededAt(targetPos)) {
+        if (serverTargetMoveInterval.markTimeIfDelay(world) || !isPowerNeeded()) {
             randomlyChooseTargetPos();
         }
 
@@ -274,8 +326,16 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
     public void getDebugInfo(List<String> left, List<String> right, EnumFacing side) {
         left.add("battery = " + battery.getDebugString());
         left.add("target = " + targetPos);
+        if (!world.isRemote) {
+            left.add("visible tables = " + demand.getVisibleCount() + " (" + demand.getNeedingPowerCount()
+                + " need power)");
+            left.add("other targets = " + otherTargetPositions.size());
+        }
         left.add("laser = " + laserPos);
         left.add("average = " + LocaleUtil.localizeMjFlow(averageClient == 0 ? (long) avgPower.getAverage() : averageClient));
+        if (!world.isRemote) {
+            LocalBlockUpdateNotifier.instance(world).getDebugInfo(left);
+        }
     }
 
     @Override
@@ -283,6 +343,8 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
         super.validate();
         if (!world.isRemote) {
             LocalBlockUpdateNotifier.instance(world).registerSubscriberForUpdateNotifications(this);
+            LaserTargetTracker.instance(world).addLaser(this);
+            worldHasUpdated = true;
         }
     }
 
@@ -290,10 +352,25 @@ public class TileLaser extends TileBC_Neptune implements ITickable, IDebuggable,
     public void invalidate() {
         super.invalidate();
         if (!world.isRemote) {
-            LocalBlockUpdateNotifier.instance(world).removeSubscriberFromUpdateNotifications(this);
+            removeFromWorld();
+        }
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        if (!world.isRemote) {
+            removeFromWorld();
         }
     }
 
+    private void removeFromWorld() {
+        LocalBlockUpdateNotifier.instance(world).removeSubscriberFromUpdateNotifications(this);
+        LaserTargetTracker.instance(world).removeLaser(this);
+        setTarget(null);
+        clearPossibleTargets();
+    }
+
     @Override
     public AxisAlignedBB getRenderBoundingBox() {
         return new Box(this).extendToEncompass(targetPos).getBoundingBox();
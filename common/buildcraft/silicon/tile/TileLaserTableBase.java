@@ -38,6 +38,9 @@ public abstract class TileLaserTableBase extends TileBC_Neptune implements ILase
     public long avgPowerClient;
     public long power;
 
+    /** The lasers that can see this table, and how many of them are powering it. */
+    final LaserDemand.Table<TileLaserTableBase> demand = new LaserDemand.Table<>(this);
+
     protected TileLaserTableBase() {
         caps.addCapabilityInstance(TilesAPI.CAP_HAS_WORK, () -> getTarget() > 0, EnumPipePart.VALUES);
     }
@@ -54,9 +57,17 @@ public abstract class TileLaserTableBase extends TileBC_Neptune implements ILase
         long received = Math.min(microJoules, getRequiredLaserPower());
         power += received;
         avgPower.push(received);
+        publishDemand();
         return microJoules - received;
     }
 
+    /** Tells every laser that can see this table if it has started or stopped needing power. This is called every tick
+     * (and whenever power is received) rather than every time that {@link #power} or {@link #getTarget()} changes, so
+     * lasers might only find out a tick later. */
+    protected void publishDemand() {
+        demand.setPowerNeeded(!isInvalid() && getRequiredLaserPower() > 0);
+    }
+
     @Override
     public boolean isInvalidTarget() {
         return isInvalid();
@@ -73,6 +84,31 @@ public abstract class TileLaserTableBase extends TileBC_Neptune implements ILase
             power = 0;
             avgPower.clear();
         }
+        publishDemand();
+    }
+
+    @Override
+    public void validate() {
+        super.validate();
+        if (!world.isRemote) {
+            LaserTargetTracker.instance(world).addTable(this);
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        super.invalidate();
+        if (!world.isRemote) {
+            LaserTargetTracker.instance(world).removeTable(this);
+        }
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        if (!world.isRemote) {
+            LaserTargetTracker.instance(world).removeTable(this);
+        }
     }
 
 
@@ -116,6 +152,7 @@ public abstract class TileLaserTableBase extends TileBC_Neptune implements ILase
     public void getDebugInfo(List<String> left, List<String> right, EnumFacing side) {
         left.add("power - " + LocaleUtil.localizeMj(power));
         left.add("target - " + LocaleUtil.localizeMj(getTarget()));
+        left.add("lasers - " + demand.getTargetingLasers() + " of " + demand.getVisibleLasers());
     }
 
     protected boolean extract(ItemHandlerSimple inv, Collection<IngredientStack> items, boolean simulate, boolean precise) {
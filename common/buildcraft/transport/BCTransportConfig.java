@@ -43,11 +43,15 @@ public class BCTransportConfig {
     public static long mjPerItem = MjAPI.MJ;
     public static int baseFlowRate = 10;
     public static PowerLossMode lossMode = PowerLossMode.DEFAULT;
+    public static boolean pipeDormancy = true;
+    public static boolean powerNetworks = false;
 
     private static Property propMjPerMillibucket;
     private static Property propMjPerItem;
     private static Property propBaseFlowRate;
     private static Property propLossMode;
+    private static Property propPipeDormancy;
+    private static Property propPowerNetworks;
 
     public static void preInit() {
         Configuration config = BCCoreConfig.config;
@@ -64,6 +68,15 @@ public class BCTransportConfig {
         ConfigUtil.setEnumProperty(propLossMode, PowerLossMode.VALUES);
         EnumRestartRequirement.WORLD.setTo(propLossMode);
 
+        propPipeDormancy = config.get("general", "pipes.dormancy", pipeDormancy);
+        propPipeDormancy.setComment("If true then pipes with nothing to do will stop ticking until something wakes them up.");
+        EnumRestartRequirement.WORLD.setTo(propPipeDormancy);
+
+        propPowerNetworks = config.get("general", "pipes.power.networks", powerNetworks);
+        propPowerNetworks.setComment("If true then kinesis pipes will move power through the whole network at once, "
+            + "rather than one pipe per tick.");
+        EnumRestartRequirement.WORLD.setTo(propPowerNetworks);
+
         MinecraftForge.EVENT_BUS.register(BCTransportConfig.class);
     }
 
@@ -83,6 +96,8 @@ public class BCTransportConfig {
             int basePowerRate = 4;
 
             lossMode = ConfigUtil.parseEnumForConfig(propLossMode.getString(), PowerLossMode.VALUES, PowerLossMode.DEFAULT);
+            pipeDormancy = propPipeDormancy.getBoolean();
+            powerNetworks = propPowerNetworks.getBoolean();
 
             fluidTransfer(BCTransportPipes.cobbleFluid, baseFlowRate, 10);
             fluidTransfer(BCTransportPipes.woodFluid, baseFlowRate, 10);
@@ -8,12 +8,16 @@ package buildcraft.transport;
 
 import net.minecraftforge.client.event.TextureStitchEvent;
 import net.minecraftforge.event.world.ChunkWatchEvent;
+import net.minecraftforge.event.world.WorldEvent;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
 import net.minecraftforge.fml.relauncher.Side;
 import net.minecraftforge.fml.relauncher.SideOnly;
 
 import buildcraft.transport.client.render.PipeWireRenderer;
+import buildcraft.transport.pipe.flow.FluidSectionStore;
+import buildcraft.transport.pipe.flow.PowerNetwork;
+import buildcraft.transport.tile.PipeDormancyManager;
 import buildcraft.transport.wire.WorldSavedDataWireSystems;
 
 public enum BCTransportEventDist {
@@ -23,6 +27,19 @@ public enum BCTransportEventDist {
     public void onWorldTick(TickEvent.WorldTickEvent event) {
         if (!event.world.isRemote && event.world.getMinecraftServer() != null) {
             WorldSavedDataWireSystems.get(event.world).tick();
+            if (event.phase == TickEvent.Phase.END) {
+                PowerNetwork.tickAll(event.world);
+                FluidSectionStore.tickAll(event.world);
+                PipeDormancyManager.get(event.world).tick(event.world);
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public void onWorldUnload(WorldEvent.Unload event) {
+        if (!event.getWorld().isRemote) {
+            PowerNetwork.onWorldUnload(event.getWorld());
+            PipeDormancyManager.onWorldUnload(event.getWorld());
         }
     }
 
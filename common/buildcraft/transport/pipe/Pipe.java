@@ -45,6 +45,9 @@ import buildcraft.lib.misc.NBTUtilBC;
 import buildcraft.lib.net.PacketBufferBC;
 
 import buildcraft.transport.client.model.key.PipeModelKey;
+import buildcraft.transport.pipe.flow.PipeFlowFluids;
+import buildcraft.transport.pipe.flow.PipeFlowPower;
+import buildcraft.transport.tile.PipeDormancyManager;
 
 public final class Pipe implements IPipe, IDebuggable {
     public final IPipeHolder holder;
@@ -213,6 +216,15 @@ public final class Pipe implements IPipe, IDebuggable {
         updateConnections();
     }
 
+    /** Called when the holder is invalidated, or its chunk is unloaded. Server side only. */
+    public void onRemove() {
+        if (flow instanceof PipeFlowPower) {
+            ((PipeFlowPower) flow).invalidateNetwork();
+        } else if (flow instanceof PipeFlowFluids) {
+            ((PipeFlowFluids) flow).detachFromStore();
+        }
+    }
+
     public void onTick() {
         behaviour.onTick();
         flow.onTick();
@@ -276,6 +288,9 @@ public final class Pipe implements IPipe, IDebuggable {
             }
         }
         if (!old.equals(connected)) {
+            if (flow instanceof PipeFlowPower) {
+                ((PipeFlowPower) flow).invalidateNetwork();
+            }
             for (EnumFacing face : EnumFacing.VALUES) {
                 boolean o = old.containsKey(face);
                 boolean n = connected.containsKey(face);
@@ -320,6 +335,11 @@ public final class Pipe implements IPipe, IDebuggable {
     @Override
     public void markForUpdate() {
         updateMarked = true;
+        PipeDormancyManager.wake(holder);
+    }
+
+    public boolean isMarkedForUpdate() {
+        return updateMarked;
     }
 
     @SideOnly(Side.CLIENT)
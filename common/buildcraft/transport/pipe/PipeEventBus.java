@@ -6,8 +6,11 @@
 
 package buildcraft.transport.pipe;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
@@ -28,8 +31,15 @@ public class PipeEventBus {
 
     private static final Map<Class<?>, List<Handler>> allHandlers = new HashMap<>();
 
+    private static final LocalHandler[] NO_HANDLERS = new LocalHandler[0];
+
     private final List<LocalHandler> currentHandlers = new ArrayList<>();
 
+    /** Cache of the handlers (in priority order) that can receive each concrete event class. This is only ever cleared
+     * when a handler is registered or unregistered, so firing an event is just a map lookup followed by an array
+     * iteration. */
+    private final Map<Class<?>, LocalHandler[]> dispatchTable = new HashMap<>();
+
     private static List<LocalHandler> getAndBindHandlers(Object obj) {
         Class<?> cls = obj instanceof Class ? (Class<?>) obj : obj.getClass();
 
@@ -90,6 +100,7 @@ public class PipeEventBus {
         }
         currentHandlers.addAll(getAndBindHandlers(obj));
         Collections.sort(currentHandlers);
+        dispatchTable.clear();
     }
 
     public void unregisterHandler(Object obj) {
@@ -97,7 +108,25 @@ public class PipeEventBus {
             return;
         }
 
-        currentHandlers.removeIf(next -> next.target == obj);
+        if (currentHandlers.removeIf(next -> next.target == obj)) {
+            dispatchTable.clear();
+        }
+    }
+
+    private LocalHandler[] getHandlersFor(Class<?> eventClass) {
+        LocalHandler[] handlers = dispatchTable.get(eventClass);
+        if (handlers == null) {
+            List<LocalHandler> list = new ArrayList<>();
+            // currentHandlers is already sorted by priority, so this is too
+            for (LocalHandler handler : currentHandlers) {
+                if (handler.classHandled.isAssignableFrom(eventClass)) {
+                    list.add(handler);
+                }
+            }
+            handlers = list.isEmpty() ? NO_HANDLERS : list.toArray(new LocalHandler[list.size()]);
+            dispatchTable.put(eventClass, handlers);
+        }
+        return handlers;
     }
 
     /** Sends this event to all of the registered handlers.
@@ -112,7 +141,7 @@ public class PipeEventBus {
                     + "(error = " + error + ")");
             }
         }
-        for (LocalHandler handler : currentHandlers) {
+        for (LocalHandler handler : getHandlersFor(event.getClass())) {
             handled |= handler.handleEvent(event);
             if (DEBUG) {
                 String error = event.checkStateForErrors();
@@ -125,13 +154,27 @@ public class PipeEventBus {
         return handled;
     }
 
+    /** A (possibly bound) handler method. Instances are generated with {@link LambdaMetafactory} wherever possible so
+     * that calling a handler is a plain interface call rather than a {@link MethodHandle#invoke}. */
+    @FunctionalInterface
+    public interface IEventInvoker {
+        void invoke(PipeEvent event);
+    }
+
     public static class Handler {
+        private static final MethodType INVOKE_TYPE = MethodType.methodType(void.class, PipeEvent.class);
+
         final PipeEventPriority priority;
         final boolean receiveCanceled, isStatic;
         final String methodName;
         final MethodHandle handle;
         final Class<?> eventClassHandled;
 
+        /** Creates an {@link IEventInvoker} from the target object (or nothing, if {@link #isStatic}). Null if the
+         * lambda metafactory couldn't generate an invoker for this method, in which case we fall back to binding the
+         * method handle directly. */
+        private final MethodHandle invokerFactory;
+
         public Handler(PipeEventPriority priority, boolean receiveCanceled, boolean isStatic, String methodName, MethodHandle handle, Class<?> eventClassHandled) {
             this.priority = priority;
             this.receiveCanceled = receiveCanceled;
@@ -139,6 +182,28 @@ public class PipeEventBus {
             this.methodName = methodName;
             this.handle = handle;
             this.eventClassHandled = eventClassHandled;
+            this.invokerFactory = createInvokerFactory(handle, isStatic, methodName);
+        }
+
+        private static MethodHandle createInvokerFactory(MethodHandle handle, boolean isStatic, String methodName) {
+            MethodType handleType = handle.type();
+            MethodType factoryType;
+            if (isStatic) {
+                factoryType = MethodType.methodType(IEventInvoker.class);
+            } else {
+                factoryType = MethodType.methodType(IEventInvoker.class, handleType.parameterType(0));
+            }
+            try {
+                CallSite site = LambdaMetafactory.metafactory(MethodHandles.lookup(), "invoke", factoryType, INVOKE_TYPE,
+                    handle, MethodType.methodType(void.class, handleType.parameterType(handleType.parameterCount() - 1)));
+                return site.getTarget();
+            } catch (Throwable t) {
+                if (DEBUG) {
+                    new IllegalStateException("Failed to generate a direct invoker for " + methodName
+                        + ", falling back to method handles", t).printStackTrace();
+                }
+                return null;
+            }
         }
 
         public LocalHandler bindTo(Object obj) {
@@ -146,8 +211,29 @@ public class PipeEventBus {
             if (!isStatic && obj instanceof Class<?>) {
                 return null;
             }
+            return new LocalHandler(priority, receiveCanceled, obj, methodName, eventClassHandled, createInvoker(obj));
+        }
+
+        private IEventInvoker createInvoker(Object obj) {
+            if (invokerFactory != null) {
+                try {
+                    if (isStatic) {
+                        return (IEventInvoker) invokerFactory.invoke();
+                    } else {
+                        return (IEventInvoker) invokerFactory.invoke(obj);
+                    }
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Failed to bind " + methodName + " to " + obj, t);
+                }
+            }
             MethodHandle bound = isStatic ? handle : handle.bindTo(obj);
-            return new LocalHandler(priority, receiveCanceled, obj, methodName, eventClassHandled, bound);
+            return event -> {
+                try {
+                    bound.invoke(event);
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+            };
         }
     }
 
@@ -157,31 +243,25 @@ public class PipeEventBus {
         final Object target;
         final String methodName;
         final Class<?> classHandled;
-        final MethodHandle handle;
+        final IEventInvoker invoker;
 
-        public LocalHandler(PipeEventPriority priority, boolean receiveCanceled, Object target, String methodName, Class<?> classHandled, MethodHandle handle) {
+        public LocalHandler(PipeEventPriority priority, boolean receiveCanceled, Object target, String methodName, Class<?> classHandled, IEventInvoker invoker) {
             this.priority = priority;
             this.receiveCanceled = receiveCanceled;
             this.target = target;
             this.methodName = methodName;
             this.classHandled = classHandled;
-            this.handle = handle;
+            this.invoker = invoker;
         }
 
+        /** Note that this doesn't check to see if the event is of the correct type: the caller must only pass events
+         * that are instances of {@link #classHandled}. */
         public boolean handleEvent(PipeEvent event) {
             if (!receiveCanceled && event.isCanceled()) {
                 return false;
             }
-
-            if (classHandled.isAssignableFrom(event.getClass())) {
-                try {
-                    handle.invoke(event);
-                    return true;
-                } catch (Throwable e) {
-                    throw new IllegalStateException(e);
-                }
-            }
-            return false;
+            invoker.invoke(event);
+            return true;
         }
 
         @Override
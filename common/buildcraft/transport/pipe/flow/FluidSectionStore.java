@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+
+/** Stores the state of the sections of many fluid pipes in primitive arrays, rather than in an object per section. Every
+ * loaded {@link PipeFlowFluids} on the server keeps its sections in the store for the chunk that it's in (see
+ * {@link #get(World, BlockPos)}), and its {@link PipeFlowFluids.Section}'s are just views over that.
+ * <p>
+ * Each pipe is given a "slot" by {@link #allocate(int, int, int)}, and each of the 7 sections of that pipe is
+ * {@code slot * SECTIONS + part index}. Apart from the registry of per-chunk stores this doesn't know anything about the
+ * world, so it can be tested (and benchmarked) without pipes.
+ * <p>
+ * Freed slots are always reused lowest first, so the pipes in a chunk stay packed at the start of the arrays and
+ * {@link #tickCooldowns()} can tick the sections of neighbouring slots in a single loop. */
+public class FluidSectionStore {
+    /** The number of sections in a single pipe: one for each face, and the centre. */
+    public static final int SECTIONS = 7;
+
+    private static final Map<World, TLongObjectHashMap<FluidSectionStore>> worldStores = new WeakHashMap<>();
+
+    // Per-pipe data, indexed by slot
+    private boolean[] used;
+    /** True if the pipe currently holds a fluid. Only these pipes have their cooldowns ticked. */
+    private boolean[] active;
+    private int[] delay, currentTime, capacity, transferPerTick;
+    /** The index into {@link #incoming} of the first section's ring of incoming amounts. */
+    private int[] incomingStart;
+
+    // Per-section data, indexed by section
+    private int[] amount, lastSentAmount;
+    /** If 0 then fluids can move from the section in either direction. If less than 0 then fluids can only move into
+     * the section from other tiles, and outputs to other sections. If greater than 0 then fluids can only move out of
+     * the section into other tiles. */
+    private int[] ticksInDirection;
+    /** The ordinal of the direction that was last sent to clients, or -1 if nothing has been sent yet. */
+    private byte[] lastSentDirection;
+
+    /** Every section's ring of [time] -> [amount inserted], each {@link #delay} long. Used to implement the delayed
+     * fluid travelling. */
+    private int[] incoming = new int[0];
+    private int incomingUsed = 0;
+    /** Freed blocks of {@link #incoming}, by the delay that they were allocated for. */
+    private final TIntObjectHashMap<TIntArrayList> freeIncoming = new TIntObjectHashMap<>();
+
+    /** Every slot below {@link #nextSlot} that isn't in use. */
+    private final BitSet freeSlots = new BitSet();
+    private int nextSlot = 0;
+    private int size = 0;
+    private int activeCount = 0;
+
+    public FluidSectionStore() {
+        this(4);
+    }
+
+    public FluidSectionStore(int initialPipes) {
+        initialPipes = Math.max(1, initialPipes);
+        used = new boolean[initialPipes];
+        active = new boolean[initialPipes];
+        delay = new int[initialPipes];
+        currentTime = new int[initialPipes];
+        capacity = new int[initialPipes];
+        transferPerTick = new int[initialPipes];
+        incomingStart = new int[initialPipes];
+        amount = new int[initialPipes * SECTIONS];
+        lastSentAmount = new int[initialPipes * SECTIONS];
+        ticksInDirection = new int[initialPipes * SECTIONS];
+        lastSentDirection = new byte[initialPipes * SECTIONS];
+    }
+
+    /** @return The store for the chunk that contains the given position. */
+    public static FluidSectionStore get(World world, BlockPos pos) {
+        TLongObjectHashMap<FluidSectionStore> stores = worldStores.computeIfAbsent(world, w -> new TLongObjectHashMap<>());
+        long key = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+        FluidSectionStore store = stores.get(key);
+        if (store == null) {
+            store = new FluidSectionStore(64);
+            stores.put(key, store);
+        }
+        return store;
+    }
+
+    /** Called at the end of every world tick: ticks the direction cooldowns of every pipe that holds a fluid, in every
+     * chunk. Also throws away any stores that are empty.
+     * <p>
+     * Pipes used to tick their own cooldowns at the end of {@link PipeFlowFluids#onTick()}, so a cooldown that another
+     * pipe (or tile) set after this pipe had ticked wasn't counted down until the next tick, but one that was set before
+     * it was. Now every cooldown that is set during a tick is counted down exactly once at the end of that tick, no
+     * matter which order the tiles ticked in. Cooldowns that a pipe sets on itself are counted down on the same tick
+     * either way. */
+    public static void tickAll(World world) {
+        TLongObjectHashMap<FluidSectionStore> stores = worldStores.get(world);
+        if (stores == null) {
+            return;
+        }
+        stores.retainEntries((key, store) -> {
+            store.tickCooldowns();
+            return store.size > 0;
+        });
+    }
+
+    // Slots
+
+    /** @param pipeDelay The number of ticks that fluid takes to move through each section.
+     * @param pipeCapacity The maximum amount of fluid in each section.
+     * @param pipeTransferPerTick The maximum amount of fluid that can move in or out of each section per tick.
+     * @return The slot for a new pipe, with empty sections. */
+    public int allocate(int pipeDelay, int pipeCapacity, int pipeTransferPerTick) {
+        pipeDelay = Math.max(1, pipeDelay);
+        int slot = freeSlots.nextSetBit(0);
+        if (slot == -1) {
+            slot = nextSlot++;
+            if (slot == used.length) {
+                grow(slot * 2);
+            }
+        } else {
+            freeSlots.clear(slot);
+        }
+        used[slot] = true;
+        active[slot] = false;
+        delay[slot] = pipeDelay;
+        currentTime[slot] = 0;
+        capacity[slot] = pipeCapacity;
+        transferPerTick[slot] = pipeTransferPerTick;
+        incomingStart[slot] = allocateIncoming(pipeDelay);
+        int first = slot * SECTIONS;
+        for (int s = first; s < first + SECTIONS; s++) {
+            amount[s] = 0;
+            lastSentAmount[s] = 0;
+            ticksInDirection[s] = 0;
+            lastSentDirection[s] = -1;
+        }
+        size++;
+        return slot;
+    }
+
+    public void release(int slot) {
+        if (!used[slot]) {
+            throw new IllegalArgumentException("Slot " + slot + " isn't in use!");
+        }
+        used[slot] = false;
+        setActive(slot, false);
+        TIntArrayList free = freeIncoming.get(delay[slot]);
+        if (free == null) {
+            free = new TIntArrayList();
+            freeIncoming.put(delay[slot], free);
+        }
+        free.add(incomingStart[slot]);
+        freeSlots.set(slot);
+        // Don't tick any free slots at the end of the arrays
+        while (nextSlot > 0 && !used[nextSlot - 1]) {
+            nextSlot--;
+            freeSlots.clear(nextSlot);
+        }
+        size--;
+    }
+
+    /** Moves a pipe from this store into another one.
+     *
+     * @return The pipe's slot in the other store. */
+    public int moveTo(int slot, FluidSectionStore to) {
+        int newSlot = to.allocate(delay[slot], capacity[slot], transferPerTick[slot]);
+        to.setActive(newSlot, active[slot]);
+        to.currentTime[newSlot] = currentTime[slot];
+        System.arraycopy(amount, slot * SECTIONS, to.amount, newSlot * SECTIONS, SECTIONS);
+        System.arraycopy(lastSentAmount, slot * SECTIONS, to.lastSentAmount, newSlot * SECTIONS, SECTIONS);
+        System.arraycopy(ticksInDirection, slot * SECTIONS, to.ticksInDirection, newSlot * SECTIONS, SECTIONS);
+        System.arraycopy(lastSentDirection, slot * SECTIONS, to.lastSentDirection, newSlot * SECTIONS, SECTIONS);
+        System.arraycopy(incoming, incomingStart[slot], to.incoming, to.incomingStart[newSlot], delay[slot] * SECTIONS);
+        release(slot);
+        return newSlot;
+    }
+
+    /** @return The number of pipes in this store. */
+    public int size() {
+        return size;
+    }
+
+    private void grow(int pipes) {
+        used = Arrays.copyOf(used, pipes);
+        active = Arrays.copyOf(active, pipes);
+        delay = Arrays.copyOf(delay, pipes);
+        currentTime = Arrays.copyOf(currentTime, pipes);
+        capacity = Arrays.copyOf(capacity, pipes);
+        transferPerTick = Arrays.copyOf(transferPerTick, pipes);
+        incomingStart = Arrays.copyOf(incomingStart, pipes);
+        amount = Arrays.copyOf(amount, pipes * SECTIONS);
+        lastSentAmount = Arrays.copyOf(lastSentAmount, pipes * SECTIONS);
+        ticksInDirection = Arrays.copyOf(ticksInDirection, pipes * SECTIONS);
+        lastSentDirection = Arrays.copyOf(lastSentDirection, pipes * SECTIONS);
+    }
+
+    private int allocateIncoming(int pipeDelay) {
+        int length = pipeDelay * SECTIONS;
+        TIntArrayList free = freeIncoming.get(pipeDelay);
+        int start;
+        if (free != null && !free.isEmpty()) {
+            start = free.removeAt(free.size() - 1);
+        } else {
+            start = incomingUsed;
+            incomingUsed += length;
+            if (incomingUsed > incoming.length) {
+                incoming = Arrays.copyOf(incoming, Math.max(incomingUsed, incoming.length * 2));
+            }
+        }
+        Arrays.fill(incoming, start, start + length, 0);
+        return start;
+    }
+
+    // Per-pipe logic
+
+    /** Sets if the given pipe holds a fluid, and resets all of its timing information (as every time the fluid
+     * changes). */
+    public void setFluid(int slot, boolean hasFluid) {
+        setActive(slot, hasFluid);
+        currentTime[slot] = 0;
+        Arrays.fill(incoming, incomingStart[slot], incomingStart[slot] + delay[slot] * SECTIONS, 0);
+        Arrays.fill(ticksInDirection, slot * SECTIONS, slot * SECTIONS + SECTIONS, 0);
+    }
+
+    private void setActive(int slot, boolean isActive) {
+        if (active[slot] != isActive) {
+            active[slot] = isActive;
+            activeCount += isActive ? 1 : -1;
+        }
+    }
+
+    /** Moves the given pipe on to the next time slot, forgetting about the fluid that was inserted {@link #delay}
+     * ticks ago.
+     *
+     * @return The total amount of fluid in every section of the pipe. */
+    public int advance(int slot) {
+        int d = delay[slot];
+        int time = (currentTime[slot] + 1) % d;
+        currentTime[slot] = time;
+        int ring = incomingStart[slot] + time;
+        int first = slot * SECTIONS;
+        int total = 0;
+        for (int i = 0; i < SECTIONS; i++) {
+            incoming[ring + i * d] = 0;
+            total += amount[first + i];
+        }
+        return total;
+    }
+
+    /** @return True if any section of the given pipe can output fluid. */
+    public boolean canAnyOutput(int slot) {
+        int first = slot * SECTIONS;
+        for (int s = first; s < first + SECTIONS; s++) {
+            if (ticksInDirection[s] >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return True if the amount or direction of any section in the given pipe is different to what was last sent to
+     *         clients. */
+    public boolean hasUnsentChanges(int slot) {
+        int first = slot * SECTIONS;
+        for (int s = first; s < first + SECTIONS; s++) {
+            if (amount[s] != lastSentAmount[s] || lastSentDirection[s] != getDirection(s)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Moves the direction cooldown of every section in every pipe that holds a fluid one tick closer to 0. */
+    public void tickCooldowns() {
+        if (activeCount == 0) {
+            return;
+        }
+        int[] ticks = ticksInDirection;
+        int slot = 0;
+        while (slot < nextSlot) {
+            if (!active[slot]) {
+                slot++;
+                continue;
+            }
+            int end = slot + 1;
+            while (end < nextSlot && active[end]) {
+                end++;
+            }
+            // The sections of neighbouring active pipes are next to each other, so they can all be ticked together
+            for (int s = slot * SECTIONS, last = end * SECTIONS; s < last; s++) {
+                int t = ticks[s];
+                ticks[s] = t - Integer.signum(t);
+            }
+            slot = end;
+        }
+    }
+
+    // Per-section logic
+
+    public int getAmount(int section) {
+        return amount[section];
+    }
+
+    public void setAmount(int section, int value) {
+        amount[section] = value;
+    }
+
+    public int getLastSentAmount(int section) {
+        return lastSentAmount[section];
+    }
+
+    public void setLastSentAmount(int section, int value) {
+        lastSentAmount[section] = value;
+    }
+
+    public int getTicksInDirection(int section) {
+        return ticksInDirection[section];
+    }
+
+    public void setTicksInDirection(int section, int value) {
+        ticksInDirection[section] = value;
+    }
+
+    /** @return 0 if fluid is moving in, 1 if it isn't moving, or 2 if it is moving out. (The ordinal of
+     *         {@link PipeFlowFluids.Dir}). */
+    public byte getDirection(int section) {
+        int t = ticksInDirection[section];
+        return (byte) (t == 0 ? 1 : t < 0 ? 0 : 2);
+    }
+
+    public byte getLastSentDirection(int section) {
+        return lastSentDirection[section];
+    }
+
+    public void setLastSentDirection(int section, byte direction) {
+        lastSentDirection[section] = direction;
+    }
+
+    public int getDelay(int slot) {
+        return delay[slot];
+    }
+
+    public int getIncoming(int section, int time) {
+        int slot = section / SECTIONS;
+        return incoming[incomingStart[slot] + (section - slot * SECTIONS) * delay[slot] + time];
+    }
+
+    public void setIncoming(int section, int time, int value) {
+        int slot = section / SECTIONS;
+        incoming[incomingStart[slot] + (section - slot * SECTIONS) * delay[slot] + time] = value;
+    }
+
+    /** @return The maximum amount of fluid that can be inserted into the section on this tick. */
+    public int getMaxFilled(int section) {
+        int slot = section / SECTIONS;
+        int availableTotal = capacity[slot] - amount[section];
+        int availableThisTick = transferPerTick[slot] - incoming[currentIncoming(slot, section)];
+        return Math.min(availableTotal, availableThisTick);
+    }
+
+    /** @return The maximum amount of fluid that can be extracted out of the section this tick. */
+    public int getMaxDrained(int section) {
+        int slot = section / SECTIONS;
+        int d = delay[slot];
+        int start = incomingStart[slot] + (section - slot * SECTIONS) * d;
+        int max = amount[section];
+        for (int i = start; i < start + d; i++) {
+            max -= incoming[i];
+        }
+        return Math.min(max, transferPerTick[slot]);
+    }
+
+    /** @return The fluid filled */
+    public int fill(int section, int maxFill, boolean doFill) {
+        int amountToFill = Math.min(getMaxFilled(section), maxFill);
+        if (amountToFill <= 0) {
+            return 0;
+        }
+        if (doFill) {
+            incoming[currentIncoming(section / SECTIONS, section)] += amountToFill;
+            amount[section] += amountToFill;
+        }
+        return amountToFill;
+    }
+
+    /** Like {@link #fill(int, int, boolean)}, but ignores the transfer limit. */
+    public int fillInternal(int section, int maxFill, boolean doFill) {
+        int slot = section / SECTIONS;
+        int amountToFill = Math.min(capacity[slot] - amount[section], maxFill);
+        if (amountToFill <= 0) {
+            return 0;
+        }
+        if (doFill) {
+            incoming[currentIncoming(slot, section)] += amountToFill;
+            amount[section] += amountToFill;
+        }
+        return amountToFill;
+    }
+
+    /** @return The amount drained */
+    public int drainInternal(int section, int maxDrain, boolean doDrain) {
+        maxDrain = Math.min(maxDrain, getMaxDrained(section));
+        if (maxDrain <= 0) {
+            return 0;
+        }
+        if (doDrain) {
+            amount[section] -= maxDrain;
+        }
+        return maxDrain;
+    }
+
+    private int currentIncoming(int slot, int section) {
+        return incomingStart[slot] + (section - slot * SECTIONS) * delay[slot] + currentTime[slot];
+    }
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import buildcraft.api.transport.pipe.PipeFlow;
+
+/** Implemented by {@link PipeFlow}'s that know when {@link PipeFlow#onTick()} has nothing to do, so that the pipe holding
+ * them can stop ticking until something wakes it up again. Flows that implement this are responsible for waking up
+ * their holder (with {@link buildcraft.transport.tile.PipeDormancyManager#wake}) whenever something is added to them
+ * from outside of their own tick. */
+public interface IDormantFlow {
+    /** Returned by {@link #getNextTickNeeded(long)} if this flow doesn't need to tick again until it is woken up. */
+    long NEVER = Long.MAX_VALUE;
+
+    /** @param now The current total world time.
+     * @return The (total world time) tick that this flow next needs to be ticked on. Any value on or before now means
+     *         that this flow needs to keep ticking. Server side only. */
+    long getNextTickNeeded(long now);
+}
@@ -65,7 +65,9 @@ import buildcraft.lib.net.cache.NetworkedObjectCache;
 import buildcraft.core.BCCoreConfig;
 import buildcraft.core.BCCoreItems;
 
-public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable {
+import buildcraft.transport.tile.PipeDormancyManager;
+
+public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable, IDormantFlow {
 
     private static final int DIRECTION_COOLDOWN = 60;
     private static final int COOLDOWN_INPUT = -DIRECTION_COOLDOWN;
@@ -89,7 +91,14 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
 
     private final Map<EnumPipePart, Section> sections = new EnumMap<>(EnumPipePart.class);
     private FluidStack currentFluid;
-    private int currentDelay;
+
+    /** Where the state of every {@link Section} is actually stored. This starts off as a store for just this pipe, and
+     * then moves into the store for its chunk the first time that it ticks on the server. The delay of every section
+     * comes from the pipe definition, and doesn't depend on the fluid. */
+    private FluidSectionStore store = new FluidSectionStore(1);
+    private int slot = store.allocate((int) fluidTransferInfo.transferDelayMultiplier, capacity,
+        fluidTransferInfo.transferPerTick);
+    private boolean inChunkStore = false;
     private final SafeTimeTracker tracker = new SafeTimeTracker(BCCoreConfig.networkUpdateRate, 4);
 
     // Client fields for interpolating amounts
@@ -177,7 +186,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         if (currentFluid != null && BCCoreItems.fragileFluidShard != null) {
             int totalAmount = 0;
             for (EnumPipePart part : EnumPipePart.VALUES) {
-                totalAmount += sections.get(part).amount;
+                totalAmount += sections.get(part).getAmount();
             }
             if (totalAmount > 0) {
                 BCCoreItems.fragileFluidShard.addFluidDrops(toDrop, new FluidStack(currentFluid, totalAmount));
@@ -232,7 +241,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         }
         Section section = sections.get(EnumPipePart.fromFacing(from));
         Section middle = sections.get(EnumPipePart.CENTER);
-        millibuckets = Math.min(millibuckets, capacity * 2 - section.amount - middle.amount);
+        millibuckets = Math.min(millibuckets, capacity * 2 - section.getAmount() - middle.getAmount());
         if (millibuckets <= 0) {
             return FAILED_EXTRACT;
         }
@@ -248,7 +257,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         int leftOver = millibuckets - reallyFilled;
         reallyFilled += middle.fillInternal(leftOver, !simulate);
         if (!simulate) {
-            section.ticksInDirection = COOLDOWN_INPUT;
+            section.setTicksInDirection(COOLDOWN_INPUT);
         }
         if (reallyFilled != millibuckets) {
             BCLog.logger.warn("[tryExtractFluidAdv] Filled " + reallyFilled + " != extracted " + millibuckets //
@@ -287,7 +296,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
             return filled;
         }
         if (from != null) {
-            sections.get(EnumPipePart.fromFacing(from)).ticksInDirection = COOLDOWN_INPUT;
+            sections.get(EnumPipePart.fromFacing(from)).setTicksInDirection(COOLDOWN_INPUT);
         }
         return filled;
     }
@@ -302,18 +311,18 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
             return null;
         }
         Section s = sections.get(EnumPipePart.fromFacing(section));
-        if (s.amount < min) {
+        if (s.getAmount() < min) {
             return null;
         }
-        int amount = MathUtil.clamp(s.amount, min, max);
+        int amount = MathUtil.clamp(s.getAmount(), min, max);
         FluidStack fluid = new FluidStack(currentFluid, amount);
         if (!simulate) {
-            s.amount -= amount;
+            s.setAmount(s.getAmount() - amount);
             s.drainInternal(amount, false);
-            if (s.amount == 0) {
+            if (s.getAmount() == 0) {
                 boolean isEmpty = true;
                 for (Section s2 : sections.values()) {
-                    isEmpty &= s2.amount == 0;
+                    isEmpty &= s2.getAmount() == 0;
                 }
                 if (isEmpty) {
                     setFluid(null);
@@ -338,17 +347,18 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
                 continue;
             }
             StringBuilder line = new StringBuilder(" - " + LocaleUtil.localizeFacing(part.face) + " = ");
-            int amount = isRemote ? section.target : section.amount;
+            int amount = isRemote ? section.target : section.getAmount();
             line.append(amount > 0 ? TextFormatting.GREEN : "");
             line.append(amount).append("").append(TextFormatting.RESET).append("mB");
-            line.append(" ").append(section.getCurrentDirection()).append(" (").append(section.ticksInDirection)
+            line.append(" ").append(section.getCurrentDirection()).append(" (").append(section.getTicksInDirection())
                 .append(")");
 
             line.append(" [");
             int last = -1;
             int skipped = 0;
 
-            for (int i : section.incoming) {
+            for (int t = 0; t < store.getDelay(slot); t++) {
+                int i = section.getIncoming(t);
                 if (i != last) {
                     if (skipped > 0) {
                         line.append("...").append(skipped).append("... ");
@@ -404,15 +414,27 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
     private void setFluid(FluidStack fluid) {
         currentFluid = fluid;
         if (fluid != null) {
-            currentDelay = (int) PipeApi.getFluidTransferInfo(pipe.getDefinition()).transferDelayMultiplier;
-            // (int) (fluidTransferInfo.transferDelayMultiplier * fluid.getFluid().getViscosity(fluid) / 100);
-        } else {
-            currentDelay = (int) PipeApi.getFluidTransferInfo(pipe.getDefinition()).transferDelayMultiplier;
+            PipeDormancyManager.wake(pipe.getHolder());
         }
-        for (Section section : sections.values()) {
-            section.incoming = new int[currentDelay];
-            section.currentTime = 0;
-            section.ticksInDirection = 0;
+        store.setFluid(slot, fluid != null);
+    }
+
+    /** Moves the sections of this pipe into the store for the chunk that it's in. */
+    private void moveToChunkStore(World world) {
+        FluidSectionStore chunkStore = FluidSectionStore.get(world, pipe.getHolder().getPipePos());
+        slot = store.moveTo(slot, chunkStore);
+        store = chunkStore;
+        inChunkStore = true;
+    }
+
+    /** Moves the sections of this pipe out of the store for its chunk, as it has been removed or unloaded. Called by
+     * the pipe when its holder is invalidated, or its chunk is unloaded. */
+    public void detachFromStore() {
+        if (inChunkStore) {
+            FluidSectionStore own = new FluidSectionStore(1);
+            slot = store.moveTo(slot, own);
+            store = own;
+            inChunkStore = false;
         }
     }
 
@@ -426,20 +448,12 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
             return;
         }
 
-        if (currentFluid != null) {
-            // int timeSlot = (int) (world.getTotalWorldTime() % currentDelay);
-            int totalFluid = 0;
-            boolean canOutput = false;
+        if (!inChunkStore) {
+            moveToChunkStore(world);
+        }
 
-            for (EnumPipePart part : EnumPipePart.VALUES) {
-                Section section = sections.get(part);
-                section.currentTime = (section.currentTime + 1) % currentDelay;
-                section.advanceForMovement();
-                totalFluid += section.amount;
-                if (section.getCurrentDirection().canOutput()) {
-                    canOutput = true;
-                }
-            }
+        if (currentFluid != null) {
+            int totalFluid = store.advance(slot);
             if (totalFluid == 0) {
                 setFluid(null);
             } else {
@@ -448,44 +462,34 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
                 // - move from center (to sides)
                 // - move into center (from sides)
 
-                if (canOutput) {
+                if (store.canAnyOutput(slot)) {
                     moveFromPipe();
                 }
                 moveFromCenter();
                 moveToCenter();
             }
+            // The direction cooldowns of every pipe in the chunk are ticked together at the end of the world tick, by
+            // FluidSectionStore.tickAll (which explains how that changes the ordering)
+        }
 
-            // tick cooldowns
-            for (EnumPipePart part : EnumPipePart.VALUES) {
-                Section section = sections.get(part);
-                if (section.ticksInDirection > 0) {
-                    section.ticksInDirection--;
-                } else if (section.ticksInDirection < 0) {
-                    section.ticksInDirection++;
-                }
-            }
+        if (hasUnsentChanges() && tracker.markTimeIfDelay(world)) {
+            // send a net update
+            sendPayload(NET_FLUID_AMOUNTS);
         }
+    }
 
-        boolean send = false;
+    private boolean hasUnsentChanges() {
+        return store.hasUnsentChanges(slot);
+    }
 
-        for (EnumPipePart part : EnumPipePart.VALUES) {
-            Section section = sections.get(part);
-            if (section.amount != section.lastSentAmount) {
-                send = true;
-                break;
-            } else {
-                Dir should = Dir.get(section.ticksInDirection);
-                if (section.lastSentDirection != should) {
-                    send = true;
-                    break;
-                }
-            }
-        }
+    // IDormantFlow
 
-        if (send && tracker.markTimeIfDelay(world)) {
-            // send a net update
-            sendPayload(NET_FLUID_AMOUNTS);
+    @Override
+    public long getNextTickNeeded(long now) {
+        if (currentFluid == null && !hasUnsentChanges()) {
+            return NEVER;
         }
+        return now;
     }
 
     private void moveFromPipe() {
@@ -506,7 +510,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
                         int filled = fluidHandler.fill(fluidToPush, true);
                         if (filled > 0) {
                             section.drainInternal(filled, true);
-                            section.ticksInDirection = COOLDOWN_OUTPUT;
+                            section.setTicksInDirection(COOLDOWN_OUTPUT);
                         }
                     }
                 }
@@ -563,7 +567,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
                     int filled = section.fill(amountToPush, true);
                     if (filled > 0) {
                         center.drainInternal(filled, true);
-                        section.ticksInDirection = COOLDOWN_OUTPUT;
+                        section.setTicksInDirection(COOLDOWN_OUTPUT);
                     }
                     // FIXME: This is the animated flow variable
                     // flow[direction.ordinal()] = 1;
@@ -575,7 +579,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
     private void moveToCenter() {
         int transferInCount = 0;
         Section center = sections.get(EnumPipePart.CENTER);
-        int spaceAvailable = capacity - center.amount;
+        int spaceAvailable = capacity - center.getAmount();
         int flowRate = fluidTransferInfo.transferPerTick;
 
         List<EnumPipePart> faces = new ArrayList<>();
@@ -641,7 +645,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
                         "Couldn't drain " + leaving + " from " + part + ", only drained " + actuallyDrained);
                 }
                 if (actuallyDrained > 0) {
-                    section.ticksInDirection = COOLDOWN_INPUT;
+                    section.setTicksInDirection(COOLDOWN_INPUT);
                 }
                 int entering = fluidEnteringCentre[i];
                 if (entering > 0) {
@@ -669,18 +673,19 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
                 }
                 for (EnumPipePart part : EnumPipePart.VALUES) {
                     Section section = sections.get(part);
+                    int amount = section.getAmount();
                     if (full) {
-                        buffer.writeShort(section.amount);
-                    } else if (section.amount == section.lastSentAmount) {
+                        buffer.writeShort(amount);
+                    } else if (amount == section.getLastSentAmount()) {
                         buffer.writeBoolean(false);
                     } else {
                         buffer.writeBoolean(true);
-                        buffer.writeShort(section.amount);
-                        section.lastSentAmount = section.amount;
+                        buffer.writeShort(amount);
+                        section.setLastSentAmount(amount);
                     }
-                    Dir should = Dir.get(section.ticksInDirection);
+                    Dir should = section.getCurrentDirection();
                     buffer.writeEnumValue(should); // This writes out 2 bits so don't bother with a boolean flag
-                    section.lastSentDirection = should;
+                    section.setLastSentDirection(should);
                 }
             }
         }
@@ -706,7 +711,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
                     }
 
                     Dir dir = buffer.readEnumValue(Dir.class);
-                    section.ticksInDirection = dir == Dir.NONE ? 0 : dir == Dir.IN ? COOLDOWN_INPUT : COOLDOWN_OUTPUT;
+                    section.setTicksInDirection(dir == Dir.NONE ? 0 : dir == Dir.IN ? COOLDOWN_INPUT : COOLDOWN_OUTPUT);
                 }
                 lastMessageMinus1 = lastMessage;
                 lastMessage = pipe.getHolder().getPipeWorld().getTotalWorldTime();
@@ -714,26 +719,11 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
         }
     }
 
-    /** Holds data about a single section of this pipe. */
+    /** A view of a single section of this pipe. The server side state is kept in the {@link FluidSectionStore}, this
+     * only holds the client side rendering state. */
     class Section implements IFluidHandler {
         final EnumPipePart part;
 
-        int amount;
-
-        int lastSentAmount;
-
-        Dir lastSentDirection;
-
-        int currentTime;
-
-        /** Map of [time] -> [amount inserted]. Used to implement the delayed fluid travelling. */
-        int[] incoming = new int[1];
-
-        /** If 0 then fluids can move from this in either direction. If less than 0 then fluids can only move into this
-         * section from other tiles, and outputs to other sections. If greater than 0 then fluids can only move out of
-         * this section into other tiles. */
-        int ticksInDirection = 0;
-
         // Client side fields
 
         /** Used to interpolate between {@link #clientAmountThis} and {@link #clientAmountLast} for rendering. */
@@ -748,89 +738,88 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
             this.part = part;
         }
 
+        /** @return The index of this section in the {@link FluidSectionStore}. */
+        private int index() {
+            return slot * FluidSectionStore.SECTIONS + part.getIndex();
+        }
+
+        int getAmount() {
+            return store.getAmount(index());
+        }
+
+        void setAmount(int amount) {
+            store.setAmount(index(), amount);
+        }
+
+        int getLastSentAmount() {
+            return store.getLastSentAmount(index());
+        }
+
+        void setLastSentAmount(int amount) {
+            store.setLastSentAmount(index(), amount);
+        }
+
+        void setLastSentDirection(Dir dir) {
+            store.setLastSentDirection(index(), (byte) dir.ordinal());
+        }
+
+        /** @see FluidSectionStore#getTicksInDirection(int) */
+        int getTicksInDirection() {
+            return store.getTicksInDirection(index());
+        }
+
+        void setTicksInDirection(int ticks) {
+            store.setTicksInDirection(index(), ticks);
+        }
+
+        int getIncoming(int time) {
+            return store.getIncoming(index(), time);
+        }
+
         void writeToNbt(NBTTagCompound nbt) {
-            nbt.setShort("capacity", (short) amount);
+            nbt.setShort("capacity", (short) getAmount());
 
-            for (int i = 0; i < incoming.length; ++i) {
-                nbt.setShort("in[" + i + "]", (short) incoming[i]);
+            for (int i = 0; i < store.getDelay(slot); ++i) {
+                nbt.setShort("in[" + i + "]", (short) getIncoming(i));
             }
         }
 
         void readFromNbt(NBTTagCompound nbt) {
-            this.amount = nbt.getShort("capacity");
+            setAmount(nbt.getShort("capacity"));
 
-            for (int i = 0; i < incoming.length; ++i) {
-                incoming[i] = nbt.getShort("in[" + i + "]");
+            for (int i = 0; i < store.getDelay(slot); ++i) {
+                store.setIncoming(index(), i, nbt.getShort("in[" + i + "]"));
             }
         }
 
         /** @return The maximum amount of fluid that can be inserted into this pipe on this tick. */
         int getMaxFilled() {
-            int availableTotal = capacity - amount;
-            int availableThisTick = fluidTransferInfo.transferPerTick - incoming[currentTime];
-            return Math.min(availableTotal, availableThisTick);
+            return store.getMaxFilled(index());
         }
 
         /** @return The maximum amount of fluid that can be extracted out of this pipe this tick. */
         int getMaxDrained() {
-            int max = amount;
-            for (int i : incoming) {
-                max -= i;
-            }
-            return Math.min(max, fluidTransferInfo.transferPerTick);
+            return store.getMaxDrained(index());
         }
 
         /** @return The fluid filled */
         int fill(int maxFill, boolean doFill) {
-            int amountToFill = Math.min(getMaxFilled(), maxFill);
-            if (amountToFill <= 0) {
-                return 0;
-            }
-            if (doFill) {
-                incoming[currentTime] += amountToFill;
-                amount += amountToFill;
-            }
-            return amountToFill;
+            return store.fill(index(), maxFill, doFill);
         }
 
         public int fillInternal(int maxFill, boolean doFill) {
-            int amountToFill = Math.min(capacity - amount, maxFill);
-            if (amountToFill <= 0) {
-                return 0;
-            }
-            if (doFill) {
-                incoming[currentTime] += amountToFill;
-                amount += amountToFill;
-            }
-            return amountToFill;
+            return store.fillInternal(index(), maxFill, doFill);
         }
 
         /** @param maxDrain
          * @param doDrain
          * @return The amount drained */
         int drainInternal(int maxDrain, boolean doDrain) {
-            maxDrain = Math.min(maxDrain, getMaxDrained());
-            if (maxDrain <= 0) {
-                return 0;
-            } else {
-                if (doDrain) {
-                    amount -= maxDrain;
-                }
-                return maxDrain;
-            }
-        }
-
-        void advanceForMovement() {
-            incoming[currentTime] = 0;
-        }
-
-        void setTime(int current) {
-            currentTime = current;
+            return store.drainInternal(index(), maxDrain, doDrain);
         }
 
         Dir getCurrentDirection() {
-            Dir dir = ticksInDirection == 0 ? Dir.NONE : ticksInDirection < 0 ? Dir.IN : Dir.OUT;
-            return dir;
+            return Dir.get(getTicksInDirection());
         }
 
         /** @return True if this still contains fluid, false if not. */
@@ -858,21 +847,21 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
                 // Firstly find all the outgoing faces
                 for (EnumPipePart p : EnumPipePart.FACES) {
                     Section s = sections.get(p);
-                    if (s.ticksInDirection > 0) {
+                    if (s.getTicksInDirection() > 0) {
                         dir = dir.add(new Vec3d(p.face.getDirectionVec()));
                     }
                 }
                 // If that failed then find all of the incoming faces
                 for (EnumPipePart p : EnumPipePart.FACES) {
                     Section s = sections.get(p);
-                    if (s.ticksInDirection < 0) {
+                    if (s.getTicksInDirection() < 0) {
                         dir = dir.add(new Vec3d(p.face.getDirectionVec()).scale(-1));
                     }
                 }
                 dir = new Vec3d(Math.signum(dir.x), Math.signum(dir.y), Math.signum(dir.z));
                 offsetThis = offsetThis.add(dir.scale(-FLOW_MULTIPLIER));
             } else {
-                double mult = Math.signum(ticksInDirection);
+                double mult = Math.signum(getTicksInDirection());
                 offsetThis = VecUtil.offset(offsetLast, part.face, -FLOW_MULTIPLIER * (mult));
             }
 
@@ -926,7 +915,7 @@ public class PipeFlowFluids extends PipeFlow implements IFlowFluid, IDebuggable
                 }
                 int filled = fill(resource.amount, doFill);
                 if (filled > 0 && doFill) {
-                    ticksInDirection = COOLDOWN_INPUT;
+                    setTicksInDirection(COOLDOWN_INPUT);
                 }
                 return filled;
             }
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
@@ -50,15 +51,21 @@ import buildcraft.lib.inventory.NoSpaceTransactor;
 import buildcraft.lib.misc.CapUtil;
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.StackUtil;
-import buildcraft.lib.misc.data.DelayedList;
+import buildcraft.lib.misc.data.TimingWheel;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.net.cache.BuildCraftObjectCaches;
 
-public final class PipeFlowItems extends PipeFlow implements IFlowItems {
+import buildcraft.transport.tile.PipeDormancyManager;
+
+public final class PipeFlowItems extends PipeFlow implements IFlowItems, IDormantFlow {
     private static final double EXTRACT_SPEED = 0.08;
     public static final int NET_CREATE_ITEM = 2;
 
-    private final DelayedList<TravellingItem> items = new DelayedList<>();
+    private static final Consumer<TravellingItem> IGNORE_ITEM = item -> {};
+
+    /** All of the items in this pipe, keyed by the total world time that they reach their destination. */
+    private final TimingWheel<TravellingItem> items = new TimingWheel<>();
+    private final Consumer<TravellingItem> itemReachDest = this::onItemReachDest;
 
     public PipeFlowItems(IPipe pipe) {
         super(pipe);
@@ -71,7 +78,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         for (int i = 0; i < list.tagCount(); i++) {
             TravellingItem item = new TravellingItem(list.getCompoundTagAt(i), tickNow);
             if (!item.stack.isEmpty()) {
-                items.add(item.getCurrentDelay(tickNow), item);
+                addItem(item.getCurrentDelay(tickNow), item);
             }
         }
     }
@@ -79,15 +86,10 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
     @Override
     public NBTTagCompound writeToNbt() {
         NBTTagCompound nbt = super.writeToNbt();
-        List<List<TravellingItem>> allItems = items.getAllElements();
         NBTTagList list = new NBTTagList();
 
         long tickNow = pipe.getHolder().getPipeWorld().getTotalWorldTime();
-        for (List<TravellingItem> l : allItems) {
-            for (TravellingItem item : l) {
-                list.appendTag(item.writeToNbt(tickNow));
-            }
-        }
+        items.forEach(item -> list.appendTag(item.writeToNbt(tickNow)));
         nbt.setTag("items", list);
         return nbt;
     }
@@ -109,7 +111,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
                 item.timeToDest = buffer.readUnsignedShort();
                 item.tickStarted = pipe.getHolder().getPipeWorld().getTotalWorldTime() + 1;
                 item.tickFinished = item.tickStarted + item.timeToDest;
-                items.add(item.timeToDest + 1, item);
+                addItem(item.timeToDest + 1, item);
             }
         }
     }
@@ -130,13 +132,11 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
     @Override
     public void addDrops(NonNullList<ItemStack> toDrop, int fortune) {
         super.addDrops(toDrop, fortune);
-        for (List<TravellingItem> list : items.getAllElements()) {
-            for (TravellingItem item : list) {
-                if (!item.isPhantom) {
-                    toDrop.add(item.stack);
-                }
+        items.forEach(item -> {
+            if (!item.isPhantom) {
+                toDrop.add(item.stack);
             }
-        }
+        });
     }
 
     // IFlowItems
@@ -206,7 +206,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         firstItem.side = face0 == null ? face1 : face0;
         firstItem.speed = EXTRACT_SPEED;
         firstItem.genTimings(now, getPipeLength(firstItem.side));
-        items.add(firstItem.timeToDest, firstItem);
+        addItem(firstItem.timeToDest, firstItem);
         sendItemDataToClient(firstItem);
 
         if (twoItems) {
@@ -217,7 +217,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
             secondItem.side = face2;
             secondItem.speed = EXTRACT_SPEED;
             secondItem.genTimings(firstItem.tickFinished, getPipeLength(secondItem.side));
-            items.add(secondItem.timeToDest, secondItem);
+            addItem(secondItem.timeToDest, secondItem);
             sendItemDataToClient(secondItem);
         }
     }
@@ -249,21 +249,47 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
     public void onTick() {
         World world = pipe.getHolder().getPipeWorld();
 
-        List<TravellingItem> toTick = items.advance();
         if (world.isRemote) {
             // TODO: Client item advancing/intelligent stuffs
+            items.advanceTo(world.getTotalWorldTime(), IGNORE_ITEM);
             return;
         }
 
-        for (TravellingItem item : toTick) {
-            if (item.isPhantom) {
-                continue;
-            }
-            if (item.toCenter) {
-                onItemReachCenter(item);
-            } else {
-                onItemReachEnd(item);
-            }
+        items.advanceTo(world.getTotalWorldTime(), itemReachDest);
+    }
+
+    // IDormantFlow
+
+    @Override
+    public long getNextTickNeeded(long now) {
+        return items.isEmpty() ? NEVER : items.getEarliestTick();
+    }
+
+    /** Adds an item that will reach its destination after the given delay (in ticks from now). */
+    private void addItem(int delay, TravellingItem item) {
+        World world = pipe.getHolder().getPipeWorld();
+        long now = world.getTotalWorldTime();
+        // Sleeping pipes don't advance their items, so catch up before adding anything relative to the current tick.
+        // (Nothing can actually be due before now, otherwise we would have been woken up for it)
+        items.advanceTo(now - 1, world.isRemote ? IGNORE_ITEM : itemReachDest);
+        boolean wasAsleep = PipeDormancyManager.wake(pipe.getHolder());
+        if (delay <= 0 && !world.isRemote && (wasAsleep || items.getCurrentTick() >= now)) {
+            // This pipe won't tick again this tick (either because it already has, or because woken pipes only start
+            // ticking next tick) so adding it would make it a tick late
+            onItemReachDest(item);
+            return;
+        }
+        items.add(delay, item);
+    }
+
+    private void onItemReachDest(TravellingItem item) {
+        if (item.isPhantom) {
+            return;
+        }
+        if (item.toCenter) {
+            onItemReachCenter(item);
+        } else {
+            onItemReachEnd(item);
         }
     }
 
@@ -347,7 +373,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
                 newItem.side = destinations.get(0);
                 newItem.speed = nSpeed;
                 newItem.genTimings(now, getPipeLength(newItem.side));
-                items.add(newItem.timeToDest, newItem);
+                addItem(newItem.timeToDest, newItem);
                 sendItemDataToClient(newItem);
             }
         }
@@ -407,7 +433,7 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
         item.toCenter = true;
         item.stack = excess;
         item.genTimings(holder.getPipeWorld().getTotalWorldTime(), getPipeLength(item.side));
-        items.add(item.timeToDest, item);
+        addItem(item.timeToDest, item);
         sendItemDataToClient(item);
     }
 
@@ -529,14 +555,12 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
     }
 
     private void addItemTryMerge(TravellingItem item) {
-        for (List<TravellingItem> list : items.getAllElements()) {
-            for (TravellingItem item2 : list) {
-                if (item2.mergeWith(item)) {
-                    return;
-                }
+        for (int h = items.nextHandle(0); h >= 0; h = items.nextHandle(h + 1)) {
+            if (items.get(h).mergeWith(item)) {
+                return;
             }
         }
-        items.add(item.timeToDest, item);
+        addItem(item.timeToDest, item);
         sendItemDataToClient(item);
     }
 
@@ -564,10 +588,8 @@ public final class PipeFlowItems extends PipeFlow implements IFlowItems {
 
     @SideOnly(Side.CLIENT)
     public List<TravellingItem> getAllItemsForRender() {
-        List<TravellingItem> all = new ArrayList<>();
-        for (List<TravellingItem> innerList : items.getAllElements()) {
-            all.addAll(innerList);
-        }
+        List<TravellingItem> all = new ArrayList<>(items.size());
+        items.forEach(all::add);
         return all;
     }
 }
@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.function.ToLongFunction;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.nbt.NBTTagCompound;
@@ -45,7 +46,10 @@ import buildcraft.lib.misc.data.AverageInt;
 
 import buildcraft.core.BCCoreConfig;
 
-public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
+import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.tile.PipeDormancyManager;
+
+public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable, IDormantFlow {
     private static final long DEFAULT_MAX_POWER = MjAPI.MJ * 10;
     public static final int NET_POWER_AMOUNTS = 2;
 
@@ -61,6 +65,12 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
     private final SafeTimeTracker tracker = new SafeTimeTracker(BCCoreConfig.networkUpdateRate);
     private long[] transferQuery;
 
+    /** The network that this is a part of, if {@link BCTransportConfig#powerNetworks} is enabled. Managed by
+     * {@link PowerNetwork}. */
+    PowerNetwork network;
+    /** The power that has been received by this pipe, but not yet sent by the {@link PowerNetwork}. */
+    long networkPower;
+
     public PipeFlowPower(IPipe pipe) {
         super(pipe);
         sections = new EnumMap<>(EnumFacing.class);
@@ -152,6 +162,39 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         } else if (powerResistance < 0) {
             powerResistance = powerLoss * MjAPI.MJ / maxPower;
         }
+        invalidateNetwork();
+    }
+
+    long getMaxPower() {
+        return maxPower;
+    }
+
+    boolean isReceiver() {
+        return isReceiver;
+    }
+
+    /** Throws away the {@link PowerNetwork} that this pipe is in (if any) so that it gets rebuilt. Should be called
+     * whenever the connections of this pipe change, or the pipe is removed. */
+    public void invalidateNetwork() {
+        if (network != null) {
+            network.invalidate();
+        }
+    }
+
+    /** Called by the {@link PowerNetwork} to update the power shown on every connected side. */
+    void setNetworkDisplay(int display) {
+        boolean changed = false;
+        for (EnumFacing face : EnumFacing.VALUES) {
+            Section s = sections.get(face);
+            int value = pipe.isConnected(face) ? display : 0;
+            if (s.displayPower != value) {
+                s.displayPower = value;
+                changed = true;
+            }
+        }
+        if (changed) {
+            sendPayload(NET_POWER_AMOUNTS);
+        }
     }
 
     @Override
@@ -183,7 +226,7 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         if (facing == null) {
             return null;
         } else if (capability == MjAPI.CAP_RECEIVER) {
-            return isReceiver ? MjAPI.CAP_RECEIVER.cast(sections.get(facing)) : null;
+            return MjAPI.CAP_RECEIVER.cast(getReceiver(facing));
         } else if (capability == MjAPI.CAP_CONNECTOR) {
             return MjAPI.CAP_CONNECTOR.cast(sections.get(facing));
         } else {
@@ -191,6 +234,13 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         }
     }
 
+    /** @return The receiver that engines on the given side should push power into, or null if this pipe doesn't
+     *         accept power from engines. */
+    @Nullable
+    public IMjReceiver getReceiver(EnumFacing side) {
+        return isReceiver ? sections.get(side) : null;
+    }
+
     @Override
     public void getDebugInfo(List<String> left, List<String> right, EnumFacing side) {
         left.add("maxPower = " + LocaleUtil.localizeMj(maxPower));
@@ -201,6 +251,10 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         left.add(
             "- power: IN " + arrayToString(s -> s.debugPowerInput) + ", OUT " + arrayToString(s -> s.debugPowerOutput));
         left.add("- power: OFFERED " + arrayToString(s -> s.debugPowerOffered));
+        if (network != null) {
+            left.add("networkPower = " + LocaleUtil.localizeMj(networkPower));
+            network.getDebugInfo(left);
+        }
     }
 
     private String arrayToString(ToLongFunction<Section> getter) {
@@ -220,6 +274,14 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
             reconfigure();
         }
 
+        if (BCTransportConfig.powerNetworks) {
+            // The network does everything else
+            if (network == null) {
+                PowerNetwork.build(this);
+            }
+            return;
+        }
+
         step();
 
         init();
@@ -328,6 +390,39 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
 //        }
     }
 
+    // IDormantFlow
+
+    @Override
+    public long getNextTickNeeded(long now) {
+        if (maxPower == -1) {
+            return now;
+        }
+        if (BCTransportConfig.powerNetworks) {
+            return network == null ? now : NEVER;
+        }
+        for (EnumFacing face : EnumFacing.VALUES) {
+            // Tiles don't tell us when they want power, so we have to keep asking them
+            if (pipe.getConnectedType(face) == ConnectedType.TILE) {
+                return now;
+            }
+            Section s = sections.get(face);
+            if (s.internalPower != 0 || s.internalNextPower != 0 || s.powerQuery != 0 || s.nextPowerQuery != 0) {
+                return now;
+            }
+            if (s.displayPower != 0 || s.powerAverage.getAverage() != 0) {
+                return now;
+            }
+        }
+        if (transferQuery != null) {
+            for (long query : transferQuery) {
+                if (query != 0) {
+                    return now;
+                }
+            }
+        }
+        return NEVER;
+    }
+
     private void step() {
         long now = pipe.getHolder().getPipeWorld().getTotalWorldTime();
         if (currentWorldTime != now) {
@@ -344,6 +439,7 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
         step();
 
         Section s = sections.get(from);
+        PipeDormancyManager.wake(pipe.getHolder());
         if (pipe.getBehaviour() instanceof IPipeTransportPowerHook) {
             s.nextPowerQuery += ((IPipeTransportPowerHook) pipe.getBehaviour()).requestPower(from, amount);
         } else {
@@ -400,6 +496,9 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
 
         @Override
         public long getPowerRequested() {
+            if (BCTransportConfig.powerNetworks) {
+                return network == null ? 0 : Math.max(0, network.getLastDemand() - networkPower);
+            }
             long req = 0;
             for (EnumFacing face : EnumFacing.VALUES) {
                 if (face != this.side) {
@@ -411,6 +510,7 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
 
         long receivePowerInternal(long sent) {
             if (sent > 0) {
+                PipeDormancyManager.wake(pipe.getHolder());
                 debugPowerOffered += sent;
                 internalNextPower += sent;
                 return 0;
@@ -420,6 +520,9 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
 
         @Override
         public long receivePower(long microJoules, boolean simulate) {
+            if (isReceiver && BCTransportConfig.powerNetworks) {
+                return receiveNetworkPower(microJoules, simulate);
+            }
             if (isReceiver) {
                 PipeFlowPower.this.step();
                 if (!simulate) {
@@ -430,6 +533,20 @@ public class PipeFlowPower extends PipeFlow implements IFlowPower, IDebuggable {
             return microJoules;
         }
 
+        private long receiveNetworkPower(long microJoules, boolean simulate) {
+            if (maxPower == -1 || network == null) {
+                // Wait until the network has been built before accepting anything
+                PipeDormancyManager.wake(pipe.getHolder());
+                return microJoules;
+            }
+            long accepted = Math.max(0, Math.min(microJoules, maxPower - networkPower));
+            if (!simulate) {
+                networkPower += accepted;
+                debugPowerOffered += accepted;
+            }
+            return microJoules - accepted;
+        }
+
         @Override
         public boolean canReceive() {
             return isReceiver;
@@ -13,7 +13,7 @@ import net.minecraft.util.EnumFacing;
 import buildcraft.api.transport.pipe.IPipe;
 import buildcraft.api.transport.pipe.PipeFlow;
 
-public class PipeFlowStructure extends PipeFlow {
+public class PipeFlowStructure extends PipeFlow implements IDormantFlow {
     public PipeFlowStructure(IPipe pipe) {
         super(pipe);
     }
@@ -31,4 +31,9 @@ public class PipeFlowStructure extends PipeFlow {
     public boolean canConnect(EnumFacing face, TileEntity oTile) {
         return false;
     }
+
+    @Override
+    public long getNextTickNeeded(long now) {
+        return NEVER;
+    }
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import net.minecraft.util.EnumFacing;
+import net.minecraft.world.World;
+
+import buildcraft.api.mj.IMjReceiver;
+import buildcraft.api.mj.MjAPI;
+import buildcraft.api.transport.pipe.IPipe;
+import buildcraft.api.transport.pipe.IPipe.ConnectedType;
+
+import buildcraft.lib.misc.LocaleUtil;
+import buildcraft.lib.misc.data.AverageInt;
+
+import buildcraft.core.BCCoreConfig;
+
+import buildcraft.transport.tile.PipeDormancyManager;
+
+/** A connected graph of {@link PipeFlowPower}'s that moves power from every receiving pipe to every machine in a single
+ * step per tick (with a {@link PowerNetworkSolver}), rather than one pipe per tick. Only used if
+ * {@link buildcraft.transport.BCTransportConfig#powerNetworks} is enabled.
+ * <p>
+ * The topology is cached until any pipe in the network changes its connections, or is removed. Then the whole network
+ * is thrown away, and rebuilt by the next pipe that ticks. */
+public class PowerNetwork {
+    private static final Map<World, Set<PowerNetwork>> worldNetworks = new WeakHashMap<>();
+
+    private final World world;
+    private final PipeFlowPower[] members;
+    private final int[] sourceNodes;
+    private final int[] sinkNodes;
+    private final EnumFacing[] sinkFaces;
+    private final PowerNetworkSolver solver;
+
+    private final long[] sourcePower, sinkDemand, sinkDelivered;
+    private final IMjReceiver[] sinkReceivers;
+    private final long[] nodeFlow;
+    private final AverageInt deliveredAverage = new AverageInt(10);
+
+    private boolean valid = true;
+    private long lastDemand;
+    private int ticksSinceDisplay;
+
+    private PowerNetwork(World world, List<PipeFlowPower> flows) {
+        this.world = world;
+        this.members = flows.toArray(new PipeFlowPower[0]);
+
+        Map<PipeFlowPower, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < members.length; i++) {
+            indices.put(members[i], i);
+        }
+
+        int[][] neighbours = new int[members.length][];
+        long[] maxPower = new long[members.length];
+        // PipeFlowPower works out powerLoss and powerResistance, but never takes either of them away from the power
+        // that it moves, so neither does the network: turning networks on mustn't change how much power arrives
+        long[] resistance = new long[members.length];
+        List<Integer> sources = new ArrayList<>();
+        List<Integer> sinks = new ArrayList<>();
+        List<EnumFacing> faces = new ArrayList<>();
+
+        for (int i = 0; i < members.length; i++) {
+            PipeFlowPower flow = members[i];
+            maxPower[i] = flow.getMaxPower();
+            if (flow.isReceiver()) {
+                sources.add(i);
+            }
+            List<Integer> connected = new ArrayList<>();
+            for (EnumFacing face : EnumFacing.VALUES) {
+                ConnectedType type = flow.pipe.getConnectedType(face);
+                if (type == ConnectedType.PIPE) {
+                    PipeFlowPower other = getConnectedFlow(flow, face);
+                    if (other != null) {
+                        connected.add(indices.get(other));
+                    }
+                } else if (type == ConnectedType.TILE) {
+                    sinks.add(i);
+                    faces.add(face);
+                }
+            }
+            neighbours[i] = connected.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        sourceNodes = sources.stream().mapToInt(Integer::intValue).toArray();
+        sinkNodes = sinks.stream().mapToInt(Integer::intValue).toArray();
+        sinkFaces = faces.toArray(new EnumFacing[0]);
+        solver = new PowerNetworkSolver(neighbours, maxPower, resistance, sourceNodes, sinkNodes);
+
+        sourcePower = new long[sourceNodes.length];
+        sinkDemand = new long[sinkNodes.length];
+        sinkDelivered = new long[sinkNodes.length];
+        sinkReceivers = new IMjReceiver[sinkNodes.length];
+        nodeFlow = new long[members.length];
+    }
+
+    /** Finds every pipe connected to the given one, and creates a new network out of them. */
+    static PowerNetwork build(PipeFlowPower start) {
+        List<PipeFlowPower> flows = new ArrayList<>();
+        Set<PipeFlowPower> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        visited.add(start);
+        flows.add(start);
+        for (int i = 0; i < flows.size(); i++) {
+            PipeFlowPower flow = flows.get(i);
+            if (flow.getMaxPower() == -1) {
+                flow.reconfigure();
+            }
+            for (EnumFacing face : EnumFacing.VALUES) {
+                PipeFlowPower other = getConnectedFlow(flow, face);
+                if (other != null && visited.add(other)) {
+                    flows.add(other);
+                }
+            }
+        }
+
+        World world = start.pipe.getHolder().getPipeWorld();
+        PowerNetwork network = new PowerNetwork(world, flows);
+        for (PipeFlowPower flow : flows) {
+            if (flow.network != null) {
+                flow.network.invalidate();
+            }
+        }
+        for (PipeFlowPower flow : flows) {
+            flow.network = network;
+        }
+        worldNetworks.computeIfAbsent(world, w -> Collections.newSetFromMap(new IdentityHashMap<>())).add(network);
+        return network;
+    }
+
+    private static PipeFlowPower getConnectedFlow(PipeFlowPower flow, EnumFacing face) {
+        IPipe oPipe = flow.pipe.getConnectedPipe(face);
+        if (oPipe == null || !(oPipe.getFlow() instanceof PipeFlowPower)) {
+            return null;
+        }
+        if (!oPipe.isConnected(face.getOpposite())) {
+            return null;
+        }
+        return (PipeFlowPower) oPipe.getFlow();
+    }
+
+    /** Ticks every network in the given world. Called at the end of every world tick. */
+    public static void tickAll(World world) {
+        Set<PowerNetwork> networks = worldNetworks.get(world);
+        if (networks == null || networks.isEmpty()) {
+            return;
+        }
+        for (PowerNetwork network : networks.toArray(new PowerNetwork[0])) {
+            network.tick();
+        }
+    }
+
+    /** Forgets about every network in the given world. Networks hold on to their world (and their pipes), so this has
+     * to be called when the world is unloaded for it to be released. */
+    public static void onWorldUnload(World world) {
+        worldNetworks.remove(world);
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /** Throws away this network, and wakes every pipe in it so that one of them rebuilds it. */
+    void invalidate() {
+        if (!valid) {
+            return;
+        }
+        valid = false;
+        Set<PowerNetwork> networks = worldNetworks.get(world);
+        if (networks != null) {
+            networks.remove(this);
+        }
+        for (PipeFlowPower flow : members) {
+            if (flow.network == this) {
+                flow.network = null;
+                PipeDormancyManager.wake(flow.pipe.getHolder());
+            }
+        }
+    }
+
+    /** @return The total power requested by every machine in this network last tick. */
+    long getLastDemand() {
+        return lastDemand;
+    }
+
+    private void tick() {
+        for (int s = 0; s < sourceNodes.length; s++) {
+            sourcePower[s] = members[sourceNodes[s]].networkPower;
+        }
+
+        long demand = 0;
+        for (int k = 0; k < sinkNodes.length; k++) {
+            PipeFlowPower flow = members[sinkNodes[k]];
+            IMjReceiver receiver = flow.pipe.getHolder().getCapabilityFromPipe(sinkFaces[k], MjAPI.CAP_RECEIVER);
+            if (receiver != null && receiver.canReceive()) {
+                sinkReceivers[k] = receiver;
+                sinkDemand[k] = Math.max(0, receiver.getPowerRequested());
+                demand += sinkDemand[k];
+            } else {
+                sinkReceivers[k] = null;
+                sinkDemand[k] = 0;
+            }
+        }
+        lastDemand = demand;
+
+        long delivered = 0;
+        if (demand > 0) {
+            solver.solve(sourcePower, sinkDemand, sinkDelivered);
+            for (int k = 0; k < sinkNodes.length; k++) {
+                long power = sinkDelivered[k];
+                if (power > 0) {
+                    // The solver never sends more than was requested, so any excess is lost
+                    sinkReceivers[k].receivePower(power, false);
+                    delivered += power;
+                }
+            }
+            for (int s = 0; s < sourceNodes.length; s++) {
+                members[sourceNodes[s]].networkPower = sourcePower[s];
+            }
+        }
+        deliveredAverage.push((int) Math.min(Integer.MAX_VALUE, delivered));
+        deliveredAverage.tick();
+
+        if (++ticksSinceDisplay >= BCCoreConfig.networkUpdateRate) {
+            updateDisplay();
+        }
+        // Don't hold on to tiles that might have been removed
+        for (int k = 0; k < sinkReceivers.length; k++) {
+            sinkReceivers[k] = null;
+        }
+    }
+
+    private void updateDisplay() {
+        int ticks = ticksSinceDisplay;
+        ticksSinceDisplay = 0;
+        solver.drainNodeFlow(nodeFlow);
+        for (int i = 0; i < members.length; i++) {
+            PipeFlowPower flow = members[i];
+            long perTick = nodeFlow[i] / ticks;
+            nodeFlow[i] = 0;
+            long display = Math.min(perTick * MjAPI.MJ / flow.getMaxPower(), MjAPI.MJ);
+            flow.setNetworkDisplay((int) display);
+        }
+    }
+
+    public void getDebugInfo(List<String> left) {
+        left.add("network = " + members.length + " pipes, " + sourceNodes.length + " sources, " + sinkNodes.length
+            + " sinks, " + solver.getRouteCount() + " routes");
+        left.add("- demand = " + LocaleUtil.localizeMj(lastDemand) + ", delivered = "
+            + LocaleUtil.localizeMj((long) deliveredAverage.getAverage()));
+    }
+}
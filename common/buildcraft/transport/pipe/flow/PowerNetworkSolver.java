@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.pipe.flow;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import buildcraft.api.mj.MjAPI;
+
+/** Distributes power across a whole graph of kinesis pipes in a single step. This doesn't know anything about the world:
+ * nodes are just indices, and everything is passed in as primitive arrays so that it can be tested (and benchmarked)
+ * without pipes.
+ * <p>
+ * When constructed this finds the shortest route from every source to every sink (with a breadth first search from each
+ * source) and caches the efficiency and bottleneck of each route. Every node that a route passes through (including
+ * both ends) loses {@code resistance / MJ} of the power that passes through it. ({@link PowerNetwork} passes zero for
+ * every pipe, as {@link PipeFlowPower} doesn't lose any power either.) A route can never carry more than the smallest
+ * {@code maxPower} along it.
+ * <p>
+ * Routes that share a node are also limited together: after every source has picked how much to send down each of its
+ * routes, every node that could be overloaded scales down all of the routes through it (in proportion) until the total
+ * fits in its {@code maxPower}. Only nodes where the capacities of the routes through them add up to more than their
+ * {@code maxPower} need checking, and nodes with exactly the same routes are merged into one limit, so a long shared
+ * line only costs as much as a single node. */
+public class PowerNetworkSolver {
+    private final int nodeCount;
+    private final int sourceCount, sinkCount;
+
+    /** The first route for each source, indexed by source. Routes are sorted by source. */
+    private final int[] sourceRouteStart;
+    private final int[] routeSink;
+    private final long[] routeEfficiency;
+    private final long[] routeCapacity;
+    private final int[][] routeNodes;
+    private final long[] routeSent;
+
+    /** The routes through every node that could be overloaded, and the most power that can pass through that node. */
+    private final int[][] limitRoutes;
+    private final long[] limitCapacity;
+
+    /** Temporary arrays, reused every {@link #solve(long[], long[], long[])} */
+    private final long[] remainingDemand, routePlanned, limitLoad;
+    /** The limit that scales down each route the most (or -1), and how much it scales it by. */
+    private final int[] routeLimit;
+    private final double[] routeScale;
+
+    /** @param neighbours The neighbouring nodes of every node.
+     * @param maxPower The maximum power that can pass through each node per tick.
+     * @param resistance The power lost by each node, in (micro) MJ lost per MJ passed through.
+     * @param sourceNodes The nodes that power is inserted into.
+     * @param sinkNodes The nodes that power is extracted from. The same node can be used for multiple sinks. */
+    public PowerNetworkSolver(int[][] neighbours, long[] maxPower, long[] resistance, int[] sourceNodes,
+        int[] sinkNodes) {
+        this.nodeCount = neighbours.length;
+        this.sourceCount = sourceNodes.length;
+        this.sinkCount = sinkNodes.length;
+
+        int[][] sinksOnNode = new int[nodeCount][];
+        for (int k = 0; k < sinkCount; k++) {
+            int node = sinkNodes[k];
+            int[] prev = sinksOnNode[node];
+            if (prev == null) {
+                sinksOnNode[node] = new int[] { k };
+            } else {
+                int[] next = Arrays.copyOf(prev, prev.length + 1);
+                next[prev.length] = k;
+                sinksOnNode[node] = next;
+            }
+        }
+
+        List<int[]> nodes = new ArrayList<>();
+        List<long[]> routeData = new ArrayList<>();
+        List<Integer> sinks = new ArrayList<>();
+        sourceRouteStart = new int[sourceCount + 1];
+
+        int[] parent = new int[nodeCount];
+        int[] queue = new int[nodeCount];
+        for (int s = 0; s < sourceCount; s++) {
+            sourceRouteStart[s] = sinks.size();
+            Arrays.fill(parent, -2);
+            int start = sourceNodes[s];
+            parent[start] = -1;
+            queue[0] = start;
+            int head = 0, tail = 1;
+            while (head < tail) {
+                int node = queue[head++];
+                if (sinksOnNode[node] != null) {
+                    int[] path = pathTo(parent, node);
+                    long efficiency = MjAPI.MJ;
+                    long capacity = Long.MAX_VALUE;
+                    for (int n : path) {
+                        efficiency = efficiency * (MjAPI.MJ - resistance[n]) / MjAPI.MJ;
+                        capacity = Math.min(capacity, maxPower[n]);
+                    }
+                    for (int k : sinksOnNode[node]) {
+                        nodes.add(path);
+                        routeData.add(new long[] { efficiency, capacity });
+                        sinks.add(k);
+                    }
+                }
+                for (int next : neighbours[node]) {
+                    if (parent[next] == -2) {
+                        parent[next] = node;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+        sourceRouteStart[sourceCount] = sinks.size();
+
+        int routeCount = sinks.size();
+        routeSink = new int[routeCount];
+        routeEfficiency = new long[routeCount];
+        routeCapacity = new long[routeCount];
+        routeNodes = nodes.toArray(new int[routeCount][]);
+        routeSent = new long[routeCount];
+        for (int r = 0; r < routeCount; r++) {
+            routeSink[r] = sinks.get(r);
+            routeEfficiency[r] = routeData.get(r)[0];
+            routeCapacity[r] = routeData.get(r)[1];
+        }
+        remainingDemand = new long[sinkCount];
+        routePlanned = new long[routeCount];
+        routeLimit = new int[routeCount];
+        Arrays.fill(routeLimit, -1);
+        routeScale = new double[routeCount];
+        Arrays.fill(routeScale, 1);
+
+        List<List<Integer>> nodeRoutes = new ArrayList<>(nodeCount);
+        for (int n = 0; n < nodeCount; n++) {
+            nodeRoutes.add(new ArrayList<>());
+        }
+        for (int r = 0; r < routeCount; r++) {
+            for (int node : routeNodes[r]) {
+                nodeRoutes.get(node).add(r);
+            }
+        }
+        Map<List<Integer>, Long> limits = new HashMap<>();
+        for (int n = 0; n < nodeCount; n++) {
+            List<Integer> through = nodeRoutes.get(n);
+            if (through.size() < 2) {
+                continue;
+            }
+            long total = 0;
+            for (int r : through) {
+                total = Math.min(Long.MAX_VALUE - routeCapacity[r], total) + routeCapacity[r];
+            }
+            if (total > maxPower[n]) {
+                limits.merge(through, maxPower[n], Math::min);
+            }
+        }
+        limitRoutes = new int[limits.size()][];
+        limitCapacity = new long[limits.size()];
+        int l = 0;
+        for (Map.Entry<List<Integer>, Long> entry : limits.entrySet()) {
+            limitRoutes[l] = entry.getKey().stream().mapToInt(Integer::intValue).toArray();
+            limitCapacity[l] = entry.getValue();
+            l++;
+        }
+        limitLoad = new long[limitRoutes.length];
+    }
+
+    private static int[] pathTo(int[] parent, int node) {
+        int length = 0;
+        for (int n = node; n != -1; n = parent[n]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int n = node; n != -1; n = parent[n]) {
+            path[--length] = n;
+        }
+        return path;
+    }
+
+    public int getRouteCount() {
+        return routeSink.length;
+    }
+
+    /** Moves as much power as possible from the sources to the sinks.
+     *
+     * @param sourcePower The power available in each source. This is reduced by the power that was sent.
+     * @param sinkDemand The power requested by each sink. This isn't modified.
+     * @param sinkDelivered Set to the power that arrived at each sink, after losses. This is never more than the
+     *            demand.
+     * @return The total power that arrived at every sink. */
+    public long solve(long[] sourcePower, long[] sinkDemand, long[] sinkDelivered) {
+        System.arraycopy(sinkDemand, 0, remainingDemand, 0, sinkCount);
+        Arrays.fill(routePlanned, 0);
+
+        // Split the power of each source between its routes, in proportion to what each route wants
+        for (int s = 0; s < sourceCount; s++) {
+            long available = sourcePower[s];
+            if (available <= 0) {
+                continue;
+            }
+            int start = sourceRouteStart[s];
+            int end = sourceRouteStart[s + 1];
+
+            long totalWanted = 0;
+            for (int r = start; r < end; r++) {
+                long wanted = getWanted(r);
+                routePlanned[r] = wanted;
+                totalWanted = Math.min(Long.MAX_VALUE - wanted, totalWanted) + wanted;
+            }
+            if (totalWanted <= 0) {
+                continue;
+            }
+
+            for (int r = start; r < end; r++) {
+                long wanted = routePlanned[r];
+                if (wanted <= 0) {
+                    continue;
+                }
+                long sent = totalWanted <= available ? wanted : mulDiv(wanted, available, totalWanted);
+                routePlanned[r] = sent;
+                // Stop later sources from trying to fill the same demand
+                remainingDemand[routeSink[r]] -= Math.min(getDelivered(r, sent), remainingDemand[routeSink[r]]);
+            }
+        }
+
+        // Scale down every route through an overloaded node. Routes through more than one use the smallest scale, so
+        // that the order of the limits doesn't matter
+        boolean overloaded = false;
+        for (int l = 0; l < limitRoutes.length; l++) {
+            long load = 0;
+            for (int r : limitRoutes[l]) {
+                load += routePlanned[r];
+            }
+            limitLoad[l] = load;
+            if (load > limitCapacity[l]) {
+                overloaded = true;
+                double scale = limitCapacity[l] / (double) load;
+                for (int r : limitRoutes[l]) {
+                    if (scale < routeScale[r]) {
+                        routeScale[r] = scale;
+                        routeLimit[r] = l;
+                    }
+                }
+            }
+        }
+        if (overloaded) {
+            for (int r = 0; r < routeLimit.length; r++) {
+                int l = routeLimit[r];
+                if (l != -1) {
+                    routeLimit[r] = -1;
+                    routeScale[r] = 1;
+                    routePlanned[r] = mulDiv(routePlanned[r], limitCapacity[l], limitLoad[l]);
+                }
+            }
+        }
+
+        System.arraycopy(sinkDemand, 0, remainingDemand, 0, sinkCount);
+        Arrays.fill(sinkDelivered, 0, sinkCount, 0);
+        long totalDelivered = 0;
+        for (int s = 0; s < sourceCount; s++) {
+            long totalSent = 0;
+            for (int r = sourceRouteStart[s]; r < sourceRouteStart[s + 1]; r++) {
+                long sent = routePlanned[r];
+                if (sent <= 0) {
+                    continue;
+                }
+                long delivered = Math.min(getDelivered(r, sent), remainingDemand[routeSink[r]]);
+                totalSent += sent;
+                routeSent[r] += sent;
+                remainingDemand[routeSink[r]] -= delivered;
+                sinkDelivered[routeSink[r]] += delivered;
+                totalDelivered += delivered;
+            }
+            sourcePower[s] -= totalSent;
+        }
+        return totalDelivered;
+    }
+
+    /** @return The power that needs to be sent along the given route to fill up its sink. */
+    private long getWanted(int route) {
+        long demand = remainingDemand[routeSink[route]];
+        long efficiency = routeEfficiency[route];
+        if (demand <= 0 || efficiency <= 0) {
+            return 0;
+        }
+        if (demand >= routeCapacity[route]) {
+            return routeCapacity[route];
+        }
+        long wanted = mulDiv(demand, MjAPI.MJ, efficiency);
+        if (getDelivered(route, wanted) < demand) {
+            // Round up, so that the sink gets everything that it asked for
+            wanted++;
+        }
+        return Math.min(wanted, routeCapacity[route]);
+    }
+
+    /** @return The power that arrives at the end of the given route when sending the given amount down it. */
+    private long getDelivered(int route, long sent) {
+        return mulDiv(sent, routeEfficiency[route], MjAPI.MJ);
+    }
+
+    /** @return a * b / c (rounded down) for non-negative a and b and positive c, without overflowing when a * b is
+     *         too big for a long (as long as the result isn't). */
+    static long mulDiv(long a, long b, long c) {
+        if (a == 0 || b == 0) {
+            return 0;
+        }
+        long product = a * b;
+        if (((a | b) >>> 31) == 0 || product / b == a) {
+            return product / c;
+        }
+        // Only needed for huge amounts of power, so the allocation doesn't matter
+        return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divide(BigInteger.valueOf(c)).longValue();
+    }
+
+    /** Adds the power that has been sent through each node (since the last call to this) to the given array, and then
+     * resets it. This is O(total route length), so it shouldn't be called every tick. */
+    public void drainNodeFlow(long[] nodeFlow) {
+        for (int r = 0; r < routeSent.length; r++) {
+            long sent = routeSent[r];
+            if (sent == 0) {
+                continue;
+            }
+            routeSent[r] = 0;
+            for (int node : routeNodes[r]) {
+                nodeFlow[node] += sent;
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.transport.tile;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import net.minecraft.world.World;
+
+import buildcraft.api.transport.pipe.IPipeHolder;
+
+import buildcraft.lib.misc.data.TimingWheel;
+
+import buildcraft.transport.pipe.flow.IDormantFlow;
+
+/** Keeps track of every {@link TilePipeHolder} in a world that has nothing to do, and removes them from the world's
+ * ticking list until something wakes them up again. Pipes can be woken up by anything that calls
+ * {@link #wake(IPipeHolder)} (which includes scheduling a network or render update, a neighbour change, or something
+ * being inserted into the flow), or by reaching the tick that their flow asked to be woken on.
+ * <p>
+ * Tiles can't be added to or removed from {@link World#tickableTileEntities} while the world is ticking tiles, so
+ * every change is queued up and applied in {@link #tick(World)}, at the end of the world tick.
+ * <p>
+ * Managers don't hold on to their world, as they are the values of a {@link WeakHashMap} keyed by it. They still hold
+ * sleeping tiles (which do), so {@link #onWorldUnload(World)} has to be called to release them. */
+public class PipeDormancyManager {
+    private static final Map<World, PipeDormancyManager> instanceMap = new WeakHashMap<>();
+    private static final Map<Class<?>, Boolean> tickingClasses = new HashMap<>();
+
+    enum State {
+        AWAKE,
+        /** Asked to go to sleep this tick, but still in the ticking list. */
+        FALLING_ASLEEP,
+        SLEEPING,
+        /** Woken up this tick, but not yet back in the ticking list. */
+        WAKING
+    }
+
+    private final Set<TilePipeHolder> toSleep = new LinkedHashSet<>();
+    private final Set<TilePipeHolder> toWake = new LinkedHashSet<>();
+    private final TimingWheel<TilePipeHolder> scheduledWakes;
+    private int sleepingCount = 0;
+    private int tickedThisTick = 0, tickedLastTick = 0;
+
+    private PipeDormancyManager(long worldTime) {
+        this.scheduledWakes = new TimingWheel<>(worldTime);
+    }
+
+    public static PipeDormancyManager get(World world) {
+        if (world.isRemote) {
+            throw new IllegalArgumentException("Pipes only sleep on the server!");
+        }
+        PipeDormancyManager manager = instanceMap.get(world);
+        if (manager == null) {
+            manager = new PipeDormancyManager(world.getTotalWorldTime());
+            instanceMap.put(world, manager);
+        }
+        return manager;
+    }
+
+    /** Forgets about every pipe in the given world. Called when the world is unloaded, as otherwise the sleeping tiles
+     * would keep it (and so this manager) in memory forever. */
+    public static void onWorldUnload(World world) {
+        instanceMap.remove(world);
+    }
+
+    /** Wakes up the given pipe holder, if it was sleeping. This is cheap to call on a pipe that is already awake.
+     *
+     * @return True if the holder was sleeping (or falling asleep), and so won't be ticked again until next tick. */
+    public static boolean wake(IPipeHolder holder) {
+        if (holder instanceof TilePipeHolder) {
+            return ((TilePipeHolder) holder).wakeUp();
+        }
+        return false;
+    }
+
+    /** @return True if the given object overrides "onTick()" from the given base class. */
+    static boolean overridesOnTick(Object obj, Class<?> base) {
+        Class<?> cls = obj.getClass();
+        Boolean ticks = tickingClasses.get(cls);
+        if (ticks == null) {
+            try {
+                Method method = cls.getMethod("onTick");
+                ticks = method.getDeclaringClass() != base;
+            } catch (NoSuchMethodException e) {
+                ticks = true;
+            }
+            tickingClasses.put(cls, ticks);
+        }
+        return ticks;
+    }
+
+    /** @return The number of pipes that were ticked last tick. */
+    public int getAwakeCount() {
+        return tickedLastTick;
+    }
+
+    public int getSleepingCount() {
+        return sleepingCount;
+    }
+
+    void onTicked() {
+        tickedThisTick++;
+    }
+
+    /** Called by a tile at the end of its tick if it has nothing left to do.
+     *
+     * @param wakeTick The tick that the tile needs to be ticked on, or {@link IDormantFlow#NEVER}. */
+    void fallAsleep(TilePipeHolder tile, long wakeTick) {
+        if (tile.dormancyState != State.AWAKE) {
+            return;
+        }
+        tile.dormancyState = State.FALLING_ASLEEP;
+        toSleep.add(tile);
+        if (wakeTick != IDormantFlow.NEVER) {
+            tile.dormancyWakeHandle = scheduledWakes.schedule(wakeTick, tile);
+        }
+    }
+
+    /** @return True if the tile won't be ticked again this tick. */
+    boolean wakeUp(TilePipeHolder tile) {
+        switch (tile.dormancyState) {
+            case FALLING_ASLEEP: {
+                toSleep.remove(tile);
+                cancelScheduledWake(tile);
+                tile.dormancyState = State.AWAKE;
+                return true;
+            }
+            case SLEEPING: {
+                cancelScheduledWake(tile);
+                tile.dormancyState = State.WAKING;
+                toWake.add(tile);
+                return true;
+            }
+            case WAKING: {
+                return true;
+            }
+            default: {
+                return false;
+            }
+        }
+    }
+
+    /** Removes the given tile from the manager of the given world completely, without adding it back into the world's
+     * ticking list. This doesn't create a manager, so tiles that are removed after their world has been unloaded don't
+     * bring it back. */
+    static void remove(World world, TilePipeHolder tile) {
+        PipeDormancyManager manager = instanceMap.get(world);
+        if (manager != null) {
+            manager.remove(tile);
+        } else {
+            tile.dormancyState = State.AWAKE;
+            tile.dormancyWakeHandle = -1;
+        }
+    }
+
+    private void remove(TilePipeHolder tile) {
+        if (tile.dormancyState == State.SLEEPING || tile.dormancyState == State.WAKING) {
+            sleepingCount--;
+        }
+        toSleep.remove(tile);
+        toWake.remove(tile);
+        cancelScheduledWake(tile);
+        tile.dormancyState = State.AWAKE;
+    }
+
+    private void cancelScheduledWake(TilePipeHolder tile) {
+        if (tile.dormancyWakeHandle != -1) {
+            scheduledWakes.remove(tile.dormancyWakeHandle);
+            tile.dormancyWakeHandle = -1;
+        }
+    }
+
+    /** Called at the end of every world tick.
+     *
+     * @param world The world that this manager was {@link #get(World) got} for. */
+    public void tick(World world) {
+        tickedLastTick = tickedThisTick;
+        tickedThisTick = 0;
+
+        // Everything scheduled for next tick needs to be back in the ticking list by the end of this one
+        scheduledWakes.advanceTo(world.getTotalWorldTime() + 1, tile -> {
+            tile.dormancyWakeHandle = -1;
+            if (tile.dormancyState == State.SLEEPING) {
+                tile.dormancyState = State.WAKING;
+                toWake.add(tile);
+            } else if (tile.dormancyState == State.FALLING_ASLEEP) {
+                toSleep.remove(tile);
+                tile.dormancyState = State.AWAKE;
+            }
+        });
+
+        if (!toSleep.isEmpty()) {
+            world.tickableTileEntities.removeAll(toSleep);
+            for (TilePipeHolder tile : toSleep) {
+                tile.dormancyState = State.SLEEPING;
+            }
+            sleepingCount += toSleep.size();
+            toSleep.clear();
+        }
+
+        if (!toWake.isEmpty()) {
+            for (TilePipeHolder tile : toWake) {
+                tile.dormancyState = State.AWAKE;
+                sleepingCount--;
+                if (!tile.isInvalid() && world.isBlockLoaded(tile.getPos()) && world.getTileEntity(tile.getPos()) == tile) {
+                    world.tickableTileEntities.add(tile);
+                }
+            }
+            toWake.clear();
+        }
+    }
+}
@@ -42,6 +42,7 @@ import buildcraft.api.transport.pipe.IItemPipe;
 import buildcraft.api.transport.pipe.IPipe;
 import buildcraft.api.transport.pipe.IPipeHolder;
 import buildcraft.api.transport.pipe.PipeApi;
+import buildcraft.api.transport.pipe.PipeBehaviour;
 import buildcraft.api.transport.pipe.PipeDefinition;
 import buildcraft.api.transport.pipe.PipeEvent;
 import buildcraft.api.transport.pipe.PipeFlow;
@@ -51,9 +52,11 @@ import buildcraft.lib.misc.data.IdAllocator;
 import buildcraft.lib.net.PacketBufferBC;
 import buildcraft.lib.tile.TileBC_Neptune;
 
+import buildcraft.transport.BCTransportConfig;
 import buildcraft.transport.pipe.Pipe;
 import buildcraft.transport.pipe.PipeEventBus;
 import buildcraft.transport.pipe.PluggableHolder;
+import buildcraft.transport.pipe.flow.IDormantFlow;
 import buildcraft.transport.plug.FilterEventHandler;
 import buildcraft.transport.wire.WireManager;
 
@@ -106,6 +109,11 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
     private final Map<EnumFacing, WeakReference<TileEntity>> neighbourTiles = new EnumMap<>(EnumFacing.class);
     private NBTTagCompound unknownData;
 
+    /** Managed by {@link PipeDormancyManager} */
+    PipeDormancyManager.State dormancyState = PipeDormancyManager.State.AWAKE;
+    /** Managed by {@link PipeDormancyManager} */
+    int dormancyWakeHandle = -1;
+
     public TilePipeHolder() {
         for (EnumFacing side : EnumFacing.VALUES) {
             pluggables.put(side, new PluggableHolder(this, side));
@@ -213,6 +221,23 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
     public void invalidate() {
         super.invalidate();
         wireManager.removeParts(new ArrayList<>(wireManager.parts.keySet()));
+        if (!world.isRemote) {
+            PipeDormancyManager.remove(world, this);
+            if (pipe != null) {
+                pipe.onRemove();
+            }
+        }
+    }
+
+    @Override
+    public void onChunkUnload() {
+        super.onChunkUnload();
+        if (!world.isRemote) {
+            PipeDormancyManager.remove(world, this);
+            if (pipe != null) {
+                pipe.onRemove();
+            }
+        }
     }
 
     @Override
@@ -227,6 +252,9 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
 
     @Override
     public void update() {
+        if (!world.isRemote) {
+            PipeDormancyManager.get(world).onTicked();
+        }
         redstoneValues = new int[6];
         // Tick objects
         if (pipe != null) {
@@ -271,6 +299,48 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
             world.notifyNeighborsOfStateChange(pos, world.getBlockState(pos).getBlock(), true);
             oldRedstoneValues = redstoneValues;
         }
+
+        if (!world.isRemote && BCTransportConfig.pipeDormancy) {
+            long now = world.getTotalWorldTime();
+            long next = getNextTickNeeded(now);
+            if (next > now) {
+                PipeDormancyManager.get(world).fallAsleep(this, next);
+            }
+        }
+    }
+
+    /** @return The tick that this needs to be ticked on next. Anything less than or equal to the current tick means that
+     *         this needs to keep ticking. */
+    private long getNextTickNeeded(long now) {
+        if (scheduleRenderUpdate || !networkUpdates.isEmpty() || !networkGuiUpdates.isEmpty() || !wireManager.inited) {
+            return now;
+        }
+        for (EnumFacing face : EnumFacing.VALUES) {
+            PipePluggable plug = pluggables.get(face).pluggable;
+            if (plug != null && PipeDormancyManager.overridesOnTick(plug, PipePluggable.class)) {
+                return now;
+            }
+        }
+        if (pipe == null) {
+            return IDormantFlow.NEVER;
+        }
+        if (pipe.isMarkedForUpdate() || PipeDormancyManager.overridesOnTick(pipe.behaviour, PipeBehaviour.class)) {
+            return now;
+        }
+        if (pipe.flow instanceof IDormantFlow) {
+            return ((IDormantFlow) pipe.flow).getNextTickNeeded(now);
+        }
+        return now;
+    }
+
+    /** Puts this pipe back into the world's ticking list, if it was sleeping.
+     *
+     * @return True if this pipe was sleeping (or falling asleep), and so won't be ticked again until next tick. */
+    public boolean wakeUp() {
+        if (dormancyState != PipeDormancyManager.State.AWAKE && world != null && !world.isRemote) {
+            return PipeDormancyManager.get(world).wakeUp(this);
+        }
+        return false;
     }
 
     // Network
@@ -454,16 +524,19 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
     @Override
     public void scheduleRenderUpdate() {
         scheduleRenderUpdate = true;
+        wakeUp();
     }
 
     @Override
     public void scheduleNetworkUpdate(PipeMessageReceiver... parts) {
         Collections.addAll(networkUpdates, parts);
+        wakeUp();
     }
 
     @Override
     public void scheduleNetworkGuiUpdate(PipeMessageReceiver... parts) {
         Collections.addAll(networkGuiUpdates, parts);
+        wakeUp();
     }
 
     @Override
@@ -547,6 +620,11 @@ public class TilePipeHolder extends TileBC_Neptune implements IPipeHolder, ITick
             .forEach((part, color) -> left.add(" - " + part + " = " + color + " = " + wireManager.isPowered(part)));
         left.add("All wire systems in world count = "
             + (world.isRemote ? 0 : wireManager.getWireSystems().wireSystems.size()));
+        if (!world.isRemote) {
+            PipeDormancyManager dormancy = PipeDormancyManager.get(world);
+            left.add("Pipes in world: " + dormancy.getAwakeCount() + " awake, " + dormancy.getSleepingCount()
+                + " sleeping");
+        }
         if (unknownData != null) {
             left.add(unknownData.toString());
         }
@@ -12,7 +12,6 @@ import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Objects;
 import java.util.Set;
 
 import net.minecraft.item.EnumDyeColor;
@@ -57,7 +56,7 @@ public class WireManager implements IWireManager {
         if (getColorOfPart(part) == null) {
             parts.put(part, colour);
             if (!holder.getPipeWorld().isRemote) {
-                getWireSystems().buildAndAddWireSystem(new WireSystem.WireElement(holder.getPipePos(), part));
+                getWireSystems().addPart(new WireSystem.WireElement(holder.getPipePos(), part));
                 holder.getPipeTile().markDirty();
             }
             updateBetweens(false);
@@ -75,9 +74,7 @@ public class WireManager implements IWireManager {
         } else {
             parts.remove(part);
             if (!holder.getPipeWorld().isRemote) {
-                WireSystem.WireElement element = new WireSystem.WireElement(holder.getPipePos(), part);
-                WireSystem.getConnectedElementsOfElement(holder, element).forEach(getWireSystems()::buildAndAddWireSystem);
-                getWireSystems().getWireSystemsWithElement(element).forEach(getWireSystems()::removeWireSystem);
+                getWireSystems().removePart(new WireSystem.WireElement(holder.getPipePos(), part));
                 holder.getPipeTile().markDirty();
             }
             updateBetweens(false);
@@ -88,15 +85,10 @@ public class WireManager implements IWireManager {
     public void removeParts(Collection<EnumWirePart> toRemove) {
         toRemove.forEach(this.parts::remove);
         if (!holder.getPipeWorld().isRemote) {
-            toRemove.stream()
-                    .map(part -> new WireSystem.WireElement(holder.getPipePos(), part))
-                    .flatMap(element -> WireSystem.getConnectedElementsOfElement(holder, element).stream())
-                    .distinct()
-                    .forEach(getWireSystems()::buildAndAddWireSystem);
-            toRemove.stream()
-                    .map(part -> new WireSystem.WireElement(holder.getPipePos(), part))
-                    .flatMap(element -> getWireSystems().getWireSystemsWithElement(element).stream()).
-                    forEach(getWireSystems()::removeWireSystem);
+            WorldSavedDataWireSystems wireSystems = getWireSystems();
+            for (EnumWirePart part : toRemove) {
+                wireSystems.removePart(new WireSystem.WireElement(holder.getPipePos(), part));
+            }
             holder.getPipeTile().markDirty();
         }
         updateBetweens(false);
@@ -149,8 +141,9 @@ public class WireManager implements IWireManager {
         if (holder.getPipeWorld().isRemote) {
             return poweredClient.contains(part);
         } else {
-            return getWireSystems().getWireSystemsWithElement(new WireSystem.WireElement(holder.getPipePos(), part)).stream().map(wireSystem -> getWireSystems().wireSystems.get(wireSystem)).filter(Objects::nonNull).reduce(Boolean::logicalOr).orElse(
-                    false);
+            WorldSavedDataWireSystems wireSystems = getWireSystems();
+            WireSystem wireSystem = wireSystems.getWireSystemOfPart(new WireSystem.WireElement(holder.getPipePos(), part));
+            return wireSystem != null && Boolean.TRUE.equals(wireSystems.wireSystems.get(wireSystem));
         }
     }
 
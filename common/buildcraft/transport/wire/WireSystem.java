@@ -6,18 +6,13 @@
 
 package buildcraft.transport.wire;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.Queue;
 import java.util.Set;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -46,16 +41,35 @@ import buildcraft.api.transport.pipe.PipeApi;
 import buildcraft.lib.misc.MessageUtil;
 import buildcraft.lib.misc.NBTUtilBC;
 
-import buildcraft.transport.plug.PluggableGate;
-
+/** A connected set of wires of the same colour, and every gate that can emit into them. Server side these are kept up to
+ * date incrementally by {@link WorldSavedDataWireSystems} as wires are added and removed. */
 public class WireSystem {
-    public final List<WireElement> elements = new ArrayList<>();
+    public final Set<WireElement> elements = new LinkedHashSet<>();
+    /** Every {@link WireElement.Type#EMITTER_SIDE} element in {@link #elements}. */
+    final Set<WireElement> emitters = new HashSet<>();
     public EnumDyeColor color = null;
 
     public boolean hasElement(WireElement element) {
         return elements.contains(element);
     }
 
+    void addElement(WireElement element) {
+        if (elements.add(element) && element.type == WireElement.Type.EMITTER_SIDE) {
+            emitters.add(element);
+        }
+    }
+
+    void removeElement(WireElement element) {
+        if (elements.remove(element) && element.type == WireElement.Type.EMITTER_SIDE) {
+            emitters.remove(element);
+        }
+    }
+
+    /** @return The number of {@link WireElement.Type#WIRE_PART} elements in this system. */
+    public int getWireCount() {
+        return elements.size() - emitters.size();
+    }
+
     /** Checks to see if the given holder could connect a wire across the specified side even if a matching wire wasn't
      * there. */
     public static boolean canWireConnect(IPipeHolder holder, EnumFacing side) {
@@ -107,63 +121,21 @@ public class WireSystem {
         return Collections.emptyList();
     }
 
-    public WireSystem build(WorldSavedDataWireSystems wireSystems, WireElement startElement) {
-        long time = System.currentTimeMillis();
-        Map<BlockPos, IPipeHolder> holdersCache = new HashMap<>();
-        Set<WireElement> walked = new HashSet<>();
-        Queue<WireElement> queue = new ArrayDeque<>();
-        Consumer<WireElement> build = element -> {
-            if (!walked.contains(element)) {
-                if (!holdersCache.containsKey(element.blockPos)) {
-                    TileEntity tile = wireSystems.world.getTileEntity(element.blockPos);
-                    IPipeHolder holder = null;
-                    if (tile instanceof IPipeHolder) {
-                        holder = (IPipeHolder) tile;
-                    }
-                    holdersCache.put(element.blockPos, holder);
-                }
-                IPipeHolder holder = holdersCache.get(element.blockPos);
-                if (holder != null) {
-                    if (element.type == WireElement.Type.WIRE_PART) {
-                        EnumDyeColor colorOfPart = holder.getWireManager().getColorOfPart(element.wirePart);
-                        if (color == null) {
-                            if (colorOfPart != null) {
-                                color = colorOfPart;
-                            }
-                        }
-                        if (color != null && colorOfPart == color) {
-                            wireSystems.getWireSystemsWithElement(element).stream().filter(wireSystem -> wireSystem != this && wireSystem.color == this.color).forEach(wireSystems::removeWireSystem);
-                            elements.add(element);
-                            queue.addAll(getConnectedElementsOfElement(wireSystems.world, element));
-                            Arrays.stream(EnumFacing.VALUES).forEach(side -> queue.add(new WireElement(element.blockPos, side)));
-                        }
-                    } else if (element.type == WireElement.Type.EMITTER_SIDE) {
-                        if (holder.getPluggable(element.emitterSide) instanceof PluggableGate) {
-                            elements.add(new WireElement(element.blockPos, element.emitterSide));
-                        }
-                    }
-                }
-                walked.add(element);
-            }
-        };
-        queue.add(startElement);
-        while (!queue.isEmpty()) {
-            build.accept(queue.remove());
-        }
-        return this;
-    }
-
     public boolean isEmpty() {
-        return elements.stream().filter(element -> element.type == WireElement.Type.WIRE_PART).count() == 0;
+        return getWireCount() == 0;
     }
 
     public boolean update(WorldSavedDataWireSystems wireSystems) {
-        return elements.stream().filter(element -> element.type == WireElement.Type.EMITTER_SIDE).map(element -> wireSystems.isEmitterEmitting(element, color)).reduce(Boolean::logicalOr).orElse(
-            false);
+        for (WireElement emitter : emitters) {
+            if (wireSystems.isEmitterEmitting(emitter, color)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public List<ChunkPos> getChunkPoses() {
-        return elements.stream().map(element -> element.blockPos).map(ChunkPos::new).collect(Collectors.toList());
+        return elements.stream().map(element -> element.blockPos).map(ChunkPos::new).distinct().collect(Collectors.toList());
     }
 
     public boolean isPlayerWatching(EntityPlayerMP player) {
@@ -191,7 +163,8 @@ public class WireSystem {
     public WireSystem readFromNBT(NBTTagCompound nbt) {
         elements.clear();
         NBTTagList elementsList = nbt.getTagList("elements", Constants.NBT.TAG_COMPOUND);
-        IntStream.range(0, elementsList.tagCount()).mapToObj(elementsList::getCompoundTagAt).map(WireElement::new).forEach(elements::add);
+        emitters.clear();
+        IntStream.range(0, elementsList.tagCount()).mapToObj(elementsList::getCompoundTagAt).map(WireElement::new).forEach(this::addElement);
         color = EnumDyeColor.byMetadata(nbt.getInteger("color"));
         return this;
     }
@@ -6,11 +6,15 @@
 
 package buildcraft.transport.wire;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -23,6 +27,8 @@ import net.minecraft.item.EnumDyeColor;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 import net.minecraft.world.storage.MapStorage;
 import net.minecraft.world.storage.WorldSavedData;
@@ -32,6 +38,7 @@ import net.minecraftforge.common.util.Constants;
 import buildcraft.api.core.BCLog;
 import buildcraft.api.transport.EnumWirePart;
 import buildcraft.api.transport.pipe.IPipeHolder;
+import buildcraft.api.transport.pluggable.PipePluggable;
 
 import buildcraft.lib.net.MessageManager;
 
@@ -40,12 +47,18 @@ import buildcraft.transport.plug.PluggableGate;
 public class WorldSavedDataWireSystems extends WorldSavedData {
     public static final String DATA_NAME = "buildcraft_wire_systems";
     public World world;
-    public final Map<WireSystem, Boolean> wireSystems = new HashMap<>();
+    /** Every wire system, and whether it is powered. Wire systems change as wires are added and removed, so this is an
+     * identity map. */
+    public final Map<WireSystem, Boolean> wireSystems = new IdentityHashMap<>();
     public boolean gatesChanged = true;
     public boolean structureChanged = true;
     public final List<WireSystem> changedSystems = new ArrayList<>();
     public final List<EntityPlayerMP> changedPlayers = new ArrayList<>();
     public final Map<WireSystem.WireElement, IWireEmitter> emittersCache = new HashMap<>();
+    /** The wire system of every wire part. */
+    private final Map<WireSystem.WireElement, WireSystem> partSystems = new HashMap<>();
+    /** The wire systems of every emitter. (Emitters can be in more than one, if different colour wires go past it) */
+    private final Map<WireSystem.WireElement, List<WireSystem>> emitterSystems = new HashMap<>();
 
     public WorldSavedDataWireSystems() {
         super(DATA_NAME);
@@ -58,63 +71,371 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
     public void markStructureChanged() {
         structureChanged = true;
         gatesChanged = true;
-        emittersCache.clear();
     }
 
     public List<WireSystem> getWireSystemsWithElement(WireSystem.WireElement element) {
-        return wireSystems.keySet().stream().filter(wireSystem -> wireSystem.hasElement(element)).collect(Collectors.toList());
+        if (element.type == WireSystem.WireElement.Type.WIRE_PART) {
+            WireSystem wireSystem = partSystems.get(element);
+            return wireSystem == null ? Collections.emptyList() : Collections.singletonList(wireSystem);
+        }
+        List<WireSystem> systems = emitterSystems.get(element);
+        return systems == null ? Collections.emptyList() : new ArrayList<>(systems);
+    }
+
+    /** @return The wire system that contains the given {@link WireSystem.WireElement.Type#WIRE_PART} element, or null
+     *         if it isn't in any. */
+    public WireSystem getWireSystemOfPart(WireSystem.WireElement element) {
+        return partSystems.get(element);
     }
 
     public void removeWireSystem(WireSystem wireSystem) {
-        wireSystems.remove(wireSystem);
+        if (wireSystems.remove(wireSystem) == null) {
+            return;
+        }
+        for (WireSystem.WireElement element : wireSystem.elements) {
+            if (element.type == WireSystem.WireElement.Type.WIRE_PART) {
+                partSystems.remove(element, wireSystem);
+            } else {
+                removeEmitterSystem(element, wireSystem);
+            }
+        }
         markStructureChanged();
     }
 
-    public void buildAndAddWireSystem(WireSystem.WireElement element) {
-        WireSystem wireSystem = new WireSystem().build(this, element);
-        if(!wireSystem.isEmpty()) {
-            wireSystems.put(wireSystem, false);
-            wireSystems.put(wireSystem, wireSystem.update(this));
+    private void addWireSystem(WireSystem wireSystem) {
+        wireSystems.put(wireSystem, false);
+        changedSystems.add(wireSystem);
+        markStructureChanged();
+    }
+
+    // Incremental updates
+
+    /** Adds a wire part (that has already been added to the world) to the wire system of every matching wire next to
+     * it, merging them together if it connects more than one. */
+    public void addPart(WireSystem.WireElement element) {
+        EnumDyeColor color = getColorOfPart(element);
+        if (color == null || partSystems.containsKey(element)) {
+            return;
+        }
+        List<WireSystem> connected = new ArrayList<>();
+        for (WireSystem.WireElement other : getConnectedParts(element)) {
+            WireSystem wireSystem = partSystems.get(other);
+            if (wireSystem != null && wireSystem.color == color && !containsIdentity(connected, wireSystem)) {
+                connected.add(wireSystem);
+            }
+        }
+
+        WireSystem target;
+        if (connected.isEmpty()) {
+            target = new WireSystem();
+            target.color = color;
+            addWireSystem(target);
+        } else {
+            // Merge the smaller systems into the largest one, so that each element is only moved O(log n) times
+            target = connected.get(0);
+            for (WireSystem wireSystem : connected) {
+                if (wireSystem.elements.size() > target.elements.size()) {
+                    target = wireSystem;
+                }
+            }
+            for (WireSystem wireSystem : connected) {
+                if (wireSystem != target) {
+                    mergeInto(wireSystem, target);
+                }
+            }
         }
+        target.addElement(element);
+        partSystems.put(element, target);
+        refreshEmittersAt(element.blockPos);
         markStructureChanged();
     }
 
-    public void rebuildWireSystemsAround(IPipeHolder holder) {
-        Arrays.stream(EnumWirePart.values())
-                .flatMap(part -> WireSystem.getConnectedElementsOfElement(world, new WireSystem.WireElement(holder.getPipePos(), part)).stream())
-                .distinct()
-                .forEach(this::buildAndAddWireSystem);
+    /** Removes a wire part (that has already been removed from the world) from its wire system, splitting the system
+     * up if that disconnected it. Only the parts that got disconnected from the largest remaining piece are visited. */
+    public void removePart(WireSystem.WireElement element) {
+        WireSystem wireSystem = partSystems.remove(element);
+        if (wireSystem == null) {
+            return;
+        }
+        wireSystem.removeElement(element);
+        markStructureChanged();
+
+        List<WireSystem.WireElement> starts = new ArrayList<>();
+        for (WireSystem.WireElement other : getConnectedParts(element)) {
+            if (partSystems.get(other) == wireSystem && !starts.contains(other)) {
+                starts.add(other);
+            }
+        }
+        if (starts.isEmpty()) {
+            if (wireSystem.isEmpty()) {
+                removeWireSystem(wireSystem);
+                refreshEmittersAt(element.blockPos);
+                return;
+            }
+        } else if (starts.size() > 1) {
+            for (Set<WireSystem.WireElement> split : findDisconnected(wireSystem, starts)) {
+                WireSystem created = new WireSystem();
+                created.color = wireSystem.color;
+                addWireSystem(created);
+                Set<BlockPos> positions = new HashSet<>();
+                for (WireSystem.WireElement part : split) {
+                    wireSystem.removeElement(part);
+                    created.addElement(part);
+                    partSystems.put(part, created);
+                    positions.add(part.blockPos);
+                }
+                positions.forEach(this::refreshEmittersAt);
+            }
+        }
+        refreshEmittersAt(element.blockPos);
+        changedSystems.add(wireSystem);
     }
 
-    public IWireEmitter getEmitter(WireSystem.WireElement element) {
-        if(element.type == WireSystem.WireElement.Type.EMITTER_SIDE) {
-            if(!emittersCache.containsKey(element)) {
-                TileEntity tile = world.getTileEntity(element.blockPos);
-                if(tile instanceof IPipeHolder) {
-                    IPipeHolder holder = (IPipeHolder) tile;
-                    if(holder.getPluggable(element.emitterSide) instanceof PluggableGate) {
-                        PluggableGate gate = (PluggableGate) holder.getPluggable(element.emitterSide);
-                        emittersCache.put(element, gate.logic);
+    /** Searches outwards from every start element at the same time (one element from each search in turn), merging
+     * searches that meet each other. Every search that runs out of elements before the others have finished must be
+     * disconnected from them.
+     *
+     * @return The groups of elements that are no longer connected to the largest part of the given wire system. */
+    private List<Set<WireSystem.WireElement>> findDisconnected(WireSystem wireSystem,
+        List<WireSystem.WireElement> starts) {
+        int count = starts.size();
+        int[] groups = new int[count];
+        List<ArrayDeque<WireSystem.WireElement>> queues = new ArrayList<>();
+        List<Set<WireSystem.WireElement>> found = new ArrayList<>();
+        Map<WireSystem.WireElement, Integer> visited = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            groups[i] = i;
+            ArrayDeque<WireSystem.WireElement> queue = new ArrayDeque<>();
+            queue.add(starts.get(i));
+            queues.add(queue);
+            Set<WireSystem.WireElement> set = new HashSet<>();
+            set.add(starts.get(i));
+            found.add(set);
+            visited.put(starts.get(i), i);
+        }
+        // Also merges any start elements that are next to each other
+        boolean[] finished = new boolean[count];
+        int running = count;
+        while (running > 1) {
+            for (int i = 0; i < count && running > 1; i++) {
+                if (finished[i] || groups[i] != i) {
+                    continue;
+                }
+                ArrayDeque<WireSystem.WireElement> queue = queues.get(i);
+                WireSystem.WireElement next = queue.poll();
+                if (next == null) {
+                    finished[i] = true;
+                    running--;
+                    continue;
+                }
+                for (WireSystem.WireElement other : getConnectedParts(next)) {
+                    if (partSystems.get(other) != wireSystem) {
+                        continue;
+                    }
+                    Integer seen = visited.get(other);
+                    if (seen == null) {
+                        visited.put(other, i);
+                        found.get(i).add(other);
+                        queue.add(other);
+                        continue;
+                    }
+                    int otherGroup = findGroup(groups, seen);
+                    if (otherGroup != i) {
+                        // Both searches are in the same piece: merge the other one into this one
+                        groups[otherGroup] = i;
+                        found.get(i).addAll(found.get(otherGroup));
+                        found.set(otherGroup, null);
+                        queue.addAll(queues.get(otherGroup));
+                        queues.get(otherGroup).clear();
+                        if (finished[otherGroup]) {
+                            // This can't happen (a finished search has no unvisited neighbours) but be safe
+                            finished[otherGroup] = false;
+                        } else {
+                            running--;
+                        }
                     }
                 }
-                if(!emittersCache.containsKey(element)) {
+            }
+        }
+
+        // Everything that finished was disconnected. If everything finished then the largest stays as it is.
+        List<Set<WireSystem.WireElement>> disconnected = new ArrayList<>();
+        int largest = -1;
+        for (int i = 0; i < count; i++) {
+            if (groups[i] != i) {
+                continue;
+            }
+            if (!finished[i]) {
+                largest = i;
+            }
+        }
+        if (largest == -1) {
+            for (int i = 0; i < count; i++) {
+                if (groups[i] == i && (largest == -1 || found.get(i).size() > found.get(largest).size())) {
+                    largest = i;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (groups[i] == i && i != largest) {
+                disconnected.add(found.get(i));
+            }
+        }
+        return disconnected;
+    }
+
+    private static int findGroup(int[] groups, int index) {
+        while (groups[index] != index) {
+            groups[index] = groups[groups[index]];
+            index = groups[index];
+        }
+        return index;
+    }
+
+    private void mergeInto(WireSystem from, WireSystem to) {
+        for (WireSystem.WireElement element : from.elements) {
+            to.addElement(element);
+            if (element.type == WireSystem.WireElement.Type.WIRE_PART) {
+                partSystems.put(element, to);
+            } else {
+                removeEmitterSystem(element, from);
+                addEmitterSystem(element, to);
+            }
+        }
+        from.elements.clear();
+        from.emitters.clear();
+        wireSystems.remove(from);
+        changedSystems.add(to);
+    }
+
+    /** Makes sure that every gate at the given position is an emitter in every wire system that has a wire at that
+     * position (and isn't in any other wire systems). */
+    private void refreshEmittersAt(BlockPos pos) {
+        List<WireSystem> systemsHere = new ArrayList<>();
+        for (EnumWirePart part : EnumWirePart.VALUES) {
+            WireSystem wireSystem = partSystems.get(new WireSystem.WireElement(pos, part));
+            if (wireSystem != null && !containsIdentity(systemsHere, wireSystem)) {
+                systemsHere.add(wireSystem);
+            }
+        }
+        for (EnumFacing side : EnumFacing.VALUES) {
+            WireSystem.WireElement element = new WireSystem.WireElement(pos, side);
+            // The gate might have changed, so look it up again when it's next needed
+            emittersCache.remove(element);
+            boolean hasEmitter = !systemsHere.isEmpty() && findEmitter(pos, side) != null;
+            List<WireSystem> current = emitterSystems.get(element);
+            if (current != null) {
+                for (WireSystem wireSystem : current.toArray(new WireSystem[0])) {
+                    if (!hasEmitter || !containsIdentity(systemsHere, wireSystem)) {
+                        wireSystem.removeElement(element);
+                        removeEmitterSystem(element, wireSystem);
+                    }
+                }
+            }
+            if (hasEmitter) {
+                for (WireSystem wireSystem : systemsHere) {
+                    if (!wireSystem.emitters.contains(element)) {
+                        wireSystem.addElement(element);
+                        addEmitterSystem(element, wireSystem);
+                    }
+                }
+            }
+        }
+    }
+
+    private void addEmitterSystem(WireSystem.WireElement element, WireSystem wireSystem) {
+        List<WireSystem> list = emitterSystems.computeIfAbsent(element, e -> new ArrayList<>(1));
+        if (!containsIdentity(list, wireSystem)) {
+            list.add(wireSystem);
+        }
+    }
+
+    private void removeEmitterSystem(WireSystem.WireElement element, WireSystem wireSystem) {
+        List<WireSystem> list = emitterSystems.get(element);
+        if (list != null) {
+            list.removeIf(s -> s == wireSystem);
+            if (list.isEmpty()) {
+                emitterSystems.remove(element);
+                emittersCache.remove(element);
+            }
+        }
+    }
+
+    private static boolean containsIdentity(List<WireSystem> list, WireSystem wireSystem) {
+        for (WireSystem s : list) {
+            if (s == wireSystem) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Called when something other than a wire changes in the given holder (for example a gate or a blocking
+     * pluggable being added or removed). */
+    public void rebuildWireSystemsAround(IPipeHolder holder) {
+        BlockPos pos = holder.getPipePos();
+        // Connections to neighbours might have changed, so take every wire out and put it back again
+        for (EnumWirePart part : EnumWirePart.VALUES) {
+            WireSystem.WireElement element = new WireSystem.WireElement(pos, part);
+            removePart(element);
+            addPart(element);
+        }
+        refreshEmittersAt(pos);
+    }
+
+    // World access (overridden in tests)
+
+    /** @return The colour of the given wire part in the world, or null if there isn't a wire there. */
+    protected EnumDyeColor getColorOfPart(WireSystem.WireElement element) {
+        TileEntity tile = world.getTileEntity(element.blockPos);
+        if (tile instanceof IPipeHolder) {
+            return ((IPipeHolder) tile).getWireManager().getColorOfPart(element.wirePart);
+        }
+        return null;
+    }
+
+    /** @return Every wire part that the given one could connect to, regardless of whether there is a wire there. */
+    protected List<WireSystem.WireElement> getConnectedParts(WireSystem.WireElement element) {
+        return WireSystem.getConnectedElementsOfElement(world, element);
+    }
+
+    /** @return The emitter on the given side of the given position, or null if there isn't one. */
+    protected IWireEmitter findEmitter(BlockPos pos, EnumFacing side) {
+        TileEntity tile = world.getTileEntity(pos);
+        if (tile instanceof IPipeHolder) {
+            PipePluggable pluggable = ((IPipeHolder) tile).getPluggable(side);
+            if (pluggable instanceof PluggableGate) {
+                return ((PluggableGate) pluggable).logic;
+            }
+        }
+        return null;
+    }
+
+    public IWireEmitter getEmitter(WireSystem.WireElement element) {
+        if (element.type == WireSystem.WireElement.Type.EMITTER_SIDE) {
+            IWireEmitter emitter = emittersCache.get(element);
+            if (emitter == null) {
+                emitter = findEmitter(element.blockPos, element.emitterSide);
+                if (emitter == null) {
                     throw new IllegalStateException("Tried to get a wire element when none existed! THIS IS A BUG " + element);
                 }
+                emittersCache.put(element, emitter);
             }
-            return emittersCache.get(element);
+            return emitter;
         }
         return null;
     }
 
     public boolean isEmitterEmitting(WireSystem.WireElement element, EnumDyeColor color) {
-        TileEntity tile = world.getTileEntity(element.blockPos);
-        if(tile instanceof IPipeHolder) {
-            IPipeHolder holder = (IPipeHolder) tile;
-            if(holder.getPluggable(element.emitterSide) instanceof PluggableGate) {
-                return getEmitter(element).isEmitting(color);
+        IWireEmitter emitter = emittersCache.get(element);
+        if (emitter == null) {
+            emitter = findEmitter(element.blockPos, element.emitterSide);
+            if (emitter == null) {
+                return false;
             }
+            emittersCache.put(element, emitter);
         }
-        return false;
+        return emitter.isEmitting(color);
     }
 
     public void tick() {
@@ -128,15 +449,15 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
         }
         world.getPlayers(EntityPlayerMP.class, Predicates.alwaysTrue()).forEach(player -> {
             Map<Integer, WireSystem> changedWires = this.wireSystems.keySet().stream()
-                    .filter(wireSystem -> wireSystem.isPlayerWatching(player) && (structureChanged || changedPlayers.contains(player)))
+                    .filter(wireSystem -> (structureChanged || changedPlayers.contains(player)) && wireSystem.isPlayerWatching(player))
                     .collect(Collectors.toMap(WireSystem::getWiresHashCode, Function.identity()));
             if(!changedWires.isEmpty()) {
                 MessageManager.sendTo(new MessageWireSystems(changedWires), player);
             }
             Map<Integer, Boolean> hashesPowered = this.wireSystems.entrySet().stream()
                     .filter(systemPower ->
-                            systemPower.getKey().isPlayerWatching(player) &&
-                                    (structureChanged || changedSystems.contains(systemPower.getKey()) || changedPlayers.contains(player))
+                            (structureChanged || changedSystems.contains(systemPower.getKey()) || changedPlayers.contains(player)) &&
+                                    systemPower.getKey().isPlayerWatching(player)
                     )
                     .map(systemPowered -> Pair.of(systemPowered.getKey().getWiresHashCode(), systemPowered.getValue()))
                     .collect(Collectors.toMap(Pair::getLeft, Pair::getRight));
@@ -168,10 +489,21 @@ public class WorldSavedDataWireSystems extends WorldSavedData {
     @Override
     public void readFromNBT(NBTTagCompound nbt) {
         wireSystems.clear();
+        partSystems.clear();
+        emitterSystems.clear();
+        emittersCache.clear();
         NBTTagList entriesList = nbt.getTagList("entries", Constants.NBT.TAG_COMPOUND);
         for(int i = 0; i < entriesList.tagCount(); i++) {
             NBTTagCompound entry = entriesList.getCompoundTagAt(i);
-            wireSystems.put(new WireSystem().readFromNBT(entry.getCompoundTag("wireSystem")), entry.getBoolean("powered"));
+            WireSystem wireSystem = new WireSystem().readFromNBT(entry.getCompoundTag("wireSystem"));
+            wireSystems.put(wireSystem, entry.getBoolean("powered"));
+            for (WireSystem.WireElement element : wireSystem.elements) {
+                if (element.type == WireSystem.WireElement.Type.WIRE_PART) {
+                    partSystems.put(element, wireSystem);
+                } else {
+                    addEmitterSystem(element, wireSystem);
+                }
+            }
         }
     }
 
@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -48,7 +49,7 @@ public class NodeFuncBooleanToLong extends NodeFuncBase implements INodeFuncLong
         return new Func(a);
     }
 
-    private class Func implements INodeLong {
+    private class Func implements INodeLong, IFunctionNode {
         private final INodeBoolean argA;
 
         public Func(INodeBoolean argA) {
@@ -76,6 +77,21 @@ public class NodeFuncBooleanToLong extends NodeFuncBase implements INodeFuncLong
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncBooleanToLong.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString());
@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -55,7 +56,7 @@ public class NodeFuncBooleanToObject<R> extends NodeFuncBase implements INodeFun
         return new Func(a);
     }
 
-    private class Func implements INodeObject<R> {
+    private class Func implements INodeObject<R>, IFunctionNode {
         private final INodeBoolean argA;
 
         public Func(INodeBoolean argA) {
@@ -88,6 +89,21 @@ public class NodeFuncBooleanToObject<R> extends NodeFuncBase implements INodeFun
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncBooleanToObject.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString());
@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -58,7 +59,7 @@ public class NodeFuncDoubleDoubleDoubleDoubleToObject<R> extends NodeFuncBase im
         return new Func(a, b, c, d);
     }
 
-    private class Func implements INodeObject<R> {
+    private class Func implements INodeObject<R>, IFunctionNode {
         private final INodeDouble argA;
         private final INodeDouble argB;
         private final INodeDouble argC;
@@ -97,6 +98,21 @@ public class NodeFuncDoubleDoubleDoubleDoubleToObject<R> extends NodeFuncBase im
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncDoubleDoubleDoubleDoubleToObject.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA, argB, argC, argD };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString(), argB.toString(), argC.toString(), argD.toString());
@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -57,7 +58,7 @@ public class NodeFuncDoubleDoubleDoubleToObject<R> extends NodeFuncBase implemen
         return new Func(a, b, c);
     }
 
-    private class Func implements INodeObject<R> {
+    private class Func implements INodeObject<R>, IFunctionNode {
         private final INodeDouble argA;
         private final INodeDouble argB;
         private final INodeDouble argC;
@@ -94,6 +95,21 @@ public class NodeFuncDoubleDoubleDoubleToObject<R> extends NodeFuncBase implemen
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncDoubleDoubleDoubleToObject.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA, argB, argC };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString(), argB.toString(), argC.toString());
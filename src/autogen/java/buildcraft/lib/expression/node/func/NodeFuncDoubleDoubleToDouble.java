@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -49,7 +50,7 @@ public class NodeFuncDoubleDoubleToDouble extends NodeFuncBase implements INodeF
         return new Func(a, b);
     }
 
-    private class Func implements INodeDouble {
+    private class Func implements INodeDouble, IFunctionNode {
         private final INodeDouble argA;
         private final INodeDouble argB;
 
@@ -79,6 +80,21 @@ public class NodeFuncDoubleDoubleToDouble extends NodeFuncBase implements INodeF
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncDoubleDoubleToDouble.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA, argB };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString(), argB.toString());
@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -56,7 +57,7 @@ public class NodeFuncDoubleDoubleToObject<R> extends NodeFuncBase implements INo
         return new Func(a, b);
     }
 
-    private class Func implements INodeObject<R> {
+    private class Func implements INodeObject<R>, IFunctionNode {
         private final INodeDouble argA;
         private final INodeDouble argB;
 
@@ -91,6 +92,21 @@ public class NodeFuncDoubleDoubleToObject<R> extends NodeFuncBase implements INo
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncDoubleDoubleToObject.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA, argB };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString(), argB.toString());
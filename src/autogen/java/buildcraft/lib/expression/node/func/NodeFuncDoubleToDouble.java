@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -48,7 +49,7 @@ public class NodeFuncDoubleToDouble extends NodeFuncBase implements INodeFuncDou
         return new Func(a);
     }
 
-    private class Func implements INodeDouble {
+    private class Func implements INodeDouble, IFunctionNode {
         private final INodeDouble argA;
 
         public Func(INodeDouble argA) {
@@ -76,6 +77,21 @@ public class NodeFuncDoubleToDouble extends NodeFuncBase implements INodeFuncDou
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncDoubleToDouble.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString());
@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -55,7 +56,7 @@ public class NodeFuncDoubleToObject<R> extends NodeFuncBase implements INodeFunc
         return new Func(a);
     }
 
-    private class Func implements INodeObject<R> {
+    private class Func implements INodeObject<R>, IFunctionNode {
         private final INodeDouble argA;
 
         public Func(INodeDouble argA) {
@@ -88,6 +89,21 @@ public class NodeFuncDoubleToObject<R> extends NodeFuncBase implements INodeFunc
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncDoubleToObject.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString());
@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -58,7 +59,7 @@ public class NodeFuncLongLongLongLongToObject<R> extends NodeFuncBase implements
         return new Func(a, b, c, d);
     }
 
-    private class Func implements INodeObject<R> {
+    private class Func implements INodeObject<R>, IFunctionNode {
         private final INodeLong argA;
         private final INodeLong argB;
         private final INodeLong argC;
@@ -97,6 +98,21 @@ public class NodeFuncLongLongLongLongToObject<R> extends NodeFuncBase implements
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncLongLongLongLongToObject.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA, argB, argC, argD };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString(), argB.toString(), argC.toString(), argD.toString());
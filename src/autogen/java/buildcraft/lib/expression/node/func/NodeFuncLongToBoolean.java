@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -48,7 +49,7 @@ public class NodeFuncLongToBoolean extends NodeFuncBase implements INodeFuncBool
         return new Func(a);
     }
 
-    private class Func implements INodeBoolean {
+    private class Func implements INodeBoolean, IFunctionNode {
         private final INodeLong argA;
 
         public Func(INodeLong argA) {
@@ -76,6 +77,21 @@ public class NodeFuncLongToBoolean extends NodeFuncBase implements INodeFuncBool
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncLongToBoolean.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString());
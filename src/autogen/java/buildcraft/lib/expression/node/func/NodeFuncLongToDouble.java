@@ -7,6 +7,7 @@
 package buildcraft.lib.expression.node.func;
 
 import buildcraft.lib.expression.NodeInliningHelper;
+import buildcraft.lib.expression.api.IExpressionNode;
 import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
 import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
 import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
@@ -48,7 +49,7 @@ public class NodeFuncLongToDouble extends NodeFuncBase implements INodeFuncDoubl
         return new Func(a);
     }
 
-    private class Func implements INodeDouble {
+    private class Func implements INodeDouble, IFunctionNode {
         private final INodeLong argA;
 
         public Func(INodeLong argA) {
@@ -76,6 +77,21 @@ public class NodeFuncLongToDouble extends NodeFuncBase implements INodeFuncDoubl
             );
         }
 
+        @Override
+        public Object getFunction() {
+            return function;
+        }
+
+        @Override
+        public Class<?> getFunctionType() {
+            return IFuncLongToDouble.class;
+        }
+
+        @Override
+        public IExpressionNode[] getArguments() {
+            return new IExpressionNode[] { argA };
+        }
+
         @Override
         public String toString() {
             return stringFunction.apply(argA.toString());
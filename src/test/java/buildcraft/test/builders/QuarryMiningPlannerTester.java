@@ -0,0 +1,279 @@
+package buildcraft.test.builders;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.GameType;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.storage.WorldInfo;
+
+import buildcraft.lib.misc.data.AxisOrder;
+import buildcraft.lib.misc.data.BoxIterator;
+import buildcraft.lib.misc.data.EnumAxisOrder;
+
+import buildcraft.builders.tile.QuarryMiningPlanner;
+import buildcraft.test.VanillaSetupBaseTester;
+
+/** Mines boxes of blocks in the same way as TileQuarry, both with and without a {@link QuarryMiningPlanner}, and
+ * checks that the planner makes the quarry mine exactly the same blocks in exactly the same order. */
+public class QuarryMiningPlannerTester extends VanillaSetupBaseTester {
+    // These can't be static, as the blocks can't be touched until the game has been bootstrapped
+    private final IBlockState air = Blocks.AIR.getDefaultState();
+    private final IBlockState stone = Blocks.STONE.getDefaultState();
+    private final IBlockState bedrock = Blocks.BEDROCK.getDefaultState();
+
+    /** Unbreakable below y = 8, and mineable above it. */
+    private final IBlockState halfBedrock = new Block(Material.ROCK) {
+        @Override
+        public float getBlockHardness(IBlockState state, World world, BlockPos pos) {
+            return pos.getY() < 8 ? -1 : 1.5f;
+        }
+    }.getDefaultState();
+
+    /** Air when x is even, and glass when it's odd. */
+    private final IBlockState patchyAir = new Block(Material.GLASS) {
+        @Override
+        public boolean isAir(IBlockState state, IBlockAccess world, BlockPos pos) {
+            return (pos.getX() & 1) == 0;
+        }
+    }.getDefaultState();
+
+    @Test
+    public void testSimpleBox() {
+        PlannerTestWorld world = new PlannerTestWorld();
+        BlockPos min = new BlockPos(2, 0, 3), max = new BlockPos(9, 20, 12);
+        Random rand = new Random(0x9_0A_22);
+        fill(world, min, max, () -> {
+            int r = rand.nextInt(10);
+            return r < 4 ? air : r < 9 ? stone : bedrock;
+        });
+        compare(world, min, max);
+    }
+
+    @Test
+    public void testPositionDependentHardness() {
+        PlannerTestWorld world = new PlannerTestWorld();
+        BlockPos min = new BlockPos(0, 0, 0), max = new BlockPos(3, 15, 3);
+        // Sections are captured from the bottom up, so the first one that the planner sees is unbreakable
+        fill(world, min, max, () -> halfBedrock);
+        List<BlockPos> mined = compare(world, min, max);
+        Assert.assertEquals(4 * 4 * 8, mined.size());
+        Assert.assertEquals(15, mined.get(0).getY());
+        for (BlockPos pos : mined) {
+            Assert.assertTrue(pos.getY() >= 8);
+        }
+    }
+
+    @Test
+    public void testPositionDependentAir() {
+        PlannerTestWorld world = new PlannerTestWorld();
+        BlockPos min = new BlockPos(0, 0, 0), max = new BlockPos(7, 7, 7);
+        Random rand = new Random(0xA1_12);
+        fill(world, min, max, () -> rand.nextInt(3) == 0 ? patchyAir : stone);
+        List<BlockPos> mined = compare(world, min, max);
+        // Both the air and the solid parts have been seen, so neither was cached for the other
+        Assert.assertTrue(mined.stream().anyMatch(pos -> world.getBlockState(pos) == patchyAir));
+    }
+
+    @Test
+    public void testChangesWhileMining() {
+        PlannerTestWorld world = new PlannerTestWorld();
+        BlockPos min = new BlockPos(-5, 10, -5), max = new BlockPos(5, 40, 5);
+        fill(world, min, max, () -> stone);
+        // Every 7th block that is mined drops another block onto the column next to it
+        List<BlockPos> withPlanner = mine(world.copy(), min, max, true, 7);
+        List<BlockPos> without = mine(world.copy(), min, max, false, 7);
+        Assert.assertEquals(without, withPlanner);
+    }
+
+    private void fill(PlannerTestWorld world, BlockPos min, BlockPos max, StateSupplier states) {
+        for (BlockPos pos : BlockPos.getAllInBoxMutable(min, max)) {
+            world.setState(pos.toImmutable(), states.get());
+        }
+    }
+
+    interface StateSupplier {
+        IBlockState get();
+    }
+
+    /** @return The blocks that were mined. */
+    private List<BlockPos> compare(PlannerTestWorld world, BlockPos min, BlockPos max) {
+        List<BlockPos> withPlanner = mine(world.copy(), min, max, true, 0);
+        List<BlockPos> without = mine(world.copy(), min, max, false, 0);
+        Assert.assertFalse(without.isEmpty());
+        Assert.assertEquals(without, withPlanner);
+        return withPlanner;
+    }
+
+    /** Like TileQuarry.update, but breaks blocks instantly.
+     *
+     * @param dropEvery If more than 0, then every time that this many blocks have been mined a stone block is placed
+     *            at the top of the box, next to the last block mined.
+     * @return Every block that was mined, in order. */
+    private List<BlockPos> mine(PlannerTestWorld world, BlockPos min, BlockPos max, boolean usePlanner,
+        int dropEvery) {
+        QuarryMiningPlanner planner = usePlanner ? new QuarryMiningPlanner(world, min, max) : null;
+        world.planner = planner;
+        BoxIterator iterator = new BoxIterator(min, max, AxisOrder.getFor(EnumAxisOrder.XZY,
+            AxisOrder.Inversion.NNN), true);
+        List<BlockPos> mined = new ArrayList<>();
+        while (iterator.hasNext()) {
+            if (planner != null && !isMiningTarget(world, max, iterator.getCurrent())) {
+                iterator = waitForTarget(planner, iterator);
+            }
+            while (iterator.hasNext() && !isMiningTarget(world, max, iterator.getCurrent())) {
+                iterator.advance();
+            }
+            if (!iterator.hasNext()) {
+                break;
+            }
+            BlockPos pos = iterator.getCurrent();
+            mined.add(pos);
+            world.setState(pos, air);
+            if (dropEvery > 0 && mined.size() % dropEvery == 0) {
+                BlockPos drop = new BlockPos(pos.getX() == max.getX() ? min.getX() : pos.getX() + 1, max.getY(),
+                    pos.getZ());
+                if (world.isAirBlock(drop)) {
+                    world.setState(drop, stone);
+                    if (planner != null) {
+                        // TileQuarry clears the planner whenever a block appears behind its iterator
+                        planner.clear();
+                    }
+                    iterator = new BoxIterator(min, max, AxisOrder.getFor(EnumAxisOrder.XZY,
+                        AxisOrder.Inversion.NNN), true);
+                }
+            }
+            if (mined.size() > 100_000) {
+                Assert.fail("Mined too many blocks!");
+            }
+        }
+        return mined;
+    }
+
+    private static BoxIterator waitForTarget(QuarryMiningPlanner planner, BoxIterator from) {
+        for (int tick = 0; tick < 10_000; tick++) {
+            BoxIterator target = planner.nextTarget(from);
+            if (target != null) {
+                return target;
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new AssertionError("The planner never finished!");
+    }
+
+    /** The same as TileQuarry.isMiningTarget, without fluids. */
+    private static boolean isMiningTarget(World world, BlockPos max, BlockPos pos) {
+        if (world.isAirBlock(pos) || world.getBlockState(pos).getBlockHardness(world, pos) < 0) {
+            return false;
+        }
+        for (int y = max.getY(); y > pos.getY(); y--) {
+            if (!world.isAirBlock(new BlockPos(pos.getX(), y, pos.getZ()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** A world that only stores blocks, and tells the planner about every change like TileQuarry does. */
+    static class PlannerTestWorld extends World {
+        final Map<Long, Chunk> chunks = new HashMap<>();
+        final Map<BlockPos, IBlockState> states = new HashMap<>();
+        QuarryMiningPlanner planner;
+
+        private final IChunkProvider provider = new IChunkProvider() {
+            @Override
+            public Chunk getLoadedChunk(int x, int z) {
+                return chunks.get(ChunkPos.asLong(x, z));
+            }
+
+            @Override
+            public Chunk provideChunk(int x, int z) {
+                return chunks.computeIfAbsent(ChunkPos.asLong(x, z), k -> new Chunk(PlannerTestWorld.this, x, z));
+            }
+
+            @Override
+            public boolean tick() {
+                return false;
+            }
+
+            @Override
+            public String makeString() {
+                return "PlannerTestWorld";
+            }
+
+            @Override
+            public boolean isChunkGeneratedAt(int x, int z) {
+                return true;
+            }
+        };
+
+        PlannerTestWorld() {
+            super(null, new WorldInfo(new WorldSettings(0, GameType.CREATIVE, false, false, WorldType.FLAT), "test"),
+                new WorldProviderSurface(), new Profiler(), false);
+        }
+
+        PlannerTestWorld copy() {
+            PlannerTestWorld copy = new PlannerTestWorld();
+            states.forEach(copy::setState);
+            return copy;
+        }
+
+        void setState(BlockPos pos, IBlockState state) {
+            states.put(pos, state);
+            Chunk chunk = provider.provideChunk(pos.getX() >> 4, pos.getZ() >> 4);
+            ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+            int sy = pos.getY() >> 4;
+            if (storages[sy] == Chunk.NULL_BLOCK_STORAGE) {
+                storages[sy] = new ExtendedBlockStorage(sy << 4, true);
+            }
+            storages[sy].set(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15, state);
+            if (planner != null) {
+                planner.onBlockChanged(pos, state);
+            }
+        }
+
+        @Override
+        public IChunkProvider getChunkProvider() {
+            return provider;
+        }
+
+        @Override
+        protected IChunkProvider createChunkProvider() {
+            return provider;
+        }
+
+        @Override
+        protected boolean isChunkLoaded(int x, int z, boolean allowEmpty) {
+            return chunks.containsKey(ChunkPos.asLong(x, z));
+        }
+
+        @Override
+        public IBlockState getBlockState(BlockPos pos) {
+            return states.getOrDefault(pos, Blocks.AIR.getDefaultState());
+        }
+    }
+}
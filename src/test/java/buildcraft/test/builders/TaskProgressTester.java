@@ -0,0 +1,155 @@
+package buildcraft.test.builders;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.util.math.Vec3d;
+
+import buildcraft.builders.tile.TaskProgress;
+
+public class TaskProgressTester {
+    /** The default of BCBuildersConfig.quarryMaxSyncInterval */
+    private static final int MAX_SYNC_INTERVAL = 40;
+    private static final long TARGET = 64_000;
+
+    /** Does what TileQuarry does on the server: adds power to a task, and works out when clients need to be sent its
+     * progress. */
+    static final class ServerTask {
+        long power, rate;
+        long syncTick, syncPower, syncRate;
+        int sent;
+
+        /** @param rate The rate that clients were told about when the task was first sent to them. */
+        ServerTask(long rate) {
+            this.rate = rate;
+            this.syncRate = rate;
+        }
+
+        /** @return True if the progress should be sent to clients this tick. */
+        boolean tick(long tick, long added) {
+            power = Math.min(power + added, TARGET);
+            rate = added;
+            long ticks = tick - syncTick;
+            long predicted = TaskProgress.predict(syncPower, syncRate, TARGET, ticks);
+            if (ticks >= MAX_SYNC_INTERVAL || TaskProgress.isOutOfSync(power, predicted, TARGET)) {
+                syncTick = tick;
+                syncPower = power;
+                syncRate = rate;
+                sent++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /** @return A client that has been sent a new task at tick 0. */
+    private static TaskProgress createClient(long rate) {
+        TaskProgress client = new TaskProgress();
+        client.receive(0, rate, TARGET);
+        client.tick();
+        return client;
+    }
+
+    @Test
+    public void testSteadyPower() {
+        ServerTask server = new ServerTask(100);
+        TaskProgress client = createClient(100);
+        for (long tick = 1; server.power < TARGET; tick++) {
+            if (server.tick(tick, 100)) {
+                client.receive(server.power, server.rate, TARGET);
+            }
+            client.tick();
+            Assert.assertEquals(server.power, client.clientPower);
+        }
+        // Only the regular syncs are needed
+        Assert.assertEquals(TARGET / 100 / MAX_SYNC_INTERVAL, server.sent);
+    }
+
+    @Test
+    public void testChangingPower() {
+        ServerTask server = new ServerTask(0);
+        TaskProgress client = createClient(0);
+        long tick = 1;
+        for (; server.power < TARGET; tick++) {
+            // Ramps up, stops for a while, and then comes back at a different rate
+            long added = tick < 100 ? tick : tick < 200 ? 0 : tick < 300 ? 50 : 7;
+            if (server.tick(tick, added)) {
+                client.receive(server.power, server.rate, TARGET);
+            }
+            client.tick();
+            Assert.assertFalse("Tick " + tick, TaskProgress.isOutOfSync(server.power, client.clientPower, TARGET));
+            Assert.assertTrue(client.clientPower <= TARGET);
+        }
+        // Far less than one message per tick
+        Assert.assertTrue(server.sent * 10 < tick);
+    }
+
+    @Test
+    public void testDrillAfterMissedUpdate() {
+        Vec3d from = new Vec3d(0, 5, 0);
+        Vec3d to = new Vec3d(10, 5, 0);
+        ServerTask server = new ServerTask(2000);
+        TaskProgress client = createClient(2000);
+        boolean missed = false;
+        long tick = 1;
+        for (;; tick++) {
+            Assert.assertTrue(tick < 100);
+            // The power stops when the drill is a quarter of the way there
+            long added = server.power < TARGET / 4 ? 2000 : 0;
+            if (server.tick(tick, added)) {
+                if (missed) {
+                    client.receive(server.power, server.rate, TARGET);
+                    break;
+                }
+                // This client doesn't hear that the power stopped (for example because it wasn't watching)
+                Assert.assertEquals(0, server.rate);
+                missed = true;
+            }
+            client.tick();
+            Vec3d pos = client.getClientPos(from, to);
+            // The drill never goes past where it's moving to
+            Assert.assertTrue(pos.x >= 0 && pos.x <= 10);
+            Assert.assertEquals(5, pos.y, 0);
+        }
+        // Until the next regular sync the client thinks that the drill got there
+        Assert.assertEquals(to, client.getClientPos(from, to));
+        Assert.assertEquals(9 + MAX_SYNC_INTERVAL, tick);
+
+        // And then it goes back to the real position, and stays there
+        client.tick();
+        Assert.assertEquals(2.5, client.getClientPos(from, to).x, 1e-9);
+        client.tick();
+        Assert.assertEquals(server.power, client.clientPower);
+        Assert.assertEquals(2.5, client.getClientPos(from, to).x, 1e-9);
+    }
+
+    @Test
+    public void testReceiveKeepsInterpolation() {
+        TaskProgress client = new TaskProgress();
+        client.receive(0, 10, TARGET);
+        client.tick();
+        client.tick();
+        Assert.assertEquals(0, client.prevClientPower);
+        Assert.assertEquals(10, client.clientPower);
+
+        // Like TileQuarry when it is sent the same task again
+        TaskProgress sent = new TaskProgress();
+        sent.receive(100, 20, TARGET);
+        client.receive(sent);
+        Assert.assertEquals(10, client.clientPower);
+        client.tick();
+        Assert.assertEquals(10, client.prevClientPower);
+        Assert.assertEquals(100, client.clientPower);
+        Assert.assertEquals(120, client.getPower());
+    }
+
+    @Test
+    public void testPredict() {
+        Assert.assertEquals(500, TaskProgress.predict(0, 50, 1000, 10));
+        Assert.assertEquals(1000, TaskProgress.predict(0, 50, 1000, 100));
+        // Tasks that are already over their target stay there
+        Assert.assertEquals(1200, TaskProgress.predict(1200, 50, 1000, 3));
+        Assert.assertFalse(TaskProgress.isOutOfSync(1000, 1000 + 1000 / 64, 1000));
+        Assert.assertTrue(TaskProgress.isOutOfSync(1000, 1000 + 1000 / 64 + 1, 1000));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.test.builders.snapshot;
+
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.lib.misc.BlockUtil;
+import buildcraft.lib.misc.data.Box;
+
+import buildcraft.builders.snapshot.BuildOrders;
+import buildcraft.builders.snapshot.Snapshot;
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class BuildOrdersTester extends VanillaSetupBaseTester {
+    @Test
+    public void testMatchesComparators() {
+        compare(new BlockPos(10, 60, -20), new BlockPos(13, 9, 17), new BlockPos(4, 64, -22));
+        // Builder above the box
+        compare(new BlockPos(-5, 0, -5), new BlockPos(8, 8, 8), new BlockPos(0, 20, 0));
+    }
+
+    public static void main(String[] args) {
+        init();
+        for (int i = 0; i < 3; i++) {
+            benchmark(new BlockPos(64, 64, 64));
+            benchmark(new BlockPos(256, 128, 256));
+        }
+    }
+
+    private static void compare(BlockPos min, BlockPos size, BlockPos builderPos) {
+        Box box = new Box(min, min.add(size).add(-1, -1, -1));
+        int[][] expected = computeWithComparators(box, builderPos);
+        BuildOrders orders = createOrders(box, builderPos).call();
+        Assert.assertArrayEquals(expected[0], orders.breakOrder);
+        Assert.assertArrayEquals(expected[1], orders.placeOrder);
+        Assert.assertArrayEquals(expected[2], orders.checkOrder);
+    }
+
+    private static void benchmark(BlockPos size) {
+        BlockPos min = new BlockPos(0, 4, 0);
+        Box box = new Box(min, min.add(size).add(-1, -1, -1));
+        BlockPos builderPos = min.add(-1, 0, size.getZ() / 2);
+
+        Stopwatch watch = Stopwatch.createStarted();
+        computeWithComparators(box, builderPos);
+        watch.stop();
+        long comparatorTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+        watch.reset().start();
+        createOrders(box, builderPos).call();
+        watch.stop();
+        long ordersTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+        System.out.println(size.getX() + "x" + size.getY() + "x" + size.getZ() + ":");
+        System.out.println("  Comparators took " + comparatorTime + "ųs");
+        System.out.println("  BuildOrders took " + ordersTime + "ųs");
+    }
+
+    private static BuildOrders createOrders(Box box, BlockPos builderPos) {
+        BlockPos size = box.size();
+        return new BuildOrders(box.min(), size, box.center(), builderPos, 0, 1, size.getX(),
+            size.getX() * size.getY());
+    }
+
+    /** The way that SnapshotBuilder used to compute its orders. */
+    private static int[][] computeWithComparators(Box box, BlockPos builderPos) {
+        BlockPos center = box.center();
+        int[] breakOrder = box.getBlocksInArea().stream()
+            .sorted(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(blockPos ->
+                Math.pow(blockPos.getX() - center.getX(), 2) +
+                    Math.pow(blockPos.getZ() - center.getZ(), 2) +
+                    100_000 - Math.abs(blockPos.getY() - builderPos.getY()) * 100_000
+            )))
+            .mapToInt(pos -> Snapshot.posToIndex(box.size(), pos.subtract(box.min())))
+            .toArray();
+        int[] placeOrder = box.getBlocksInArea().stream()
+            .sorted(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(blockPos ->
+                100_000 - (Math.pow(blockPos.getX() - builderPos.getX(), 2) +
+                    Math.pow(blockPos.getZ() - builderPos.getZ(), 2)) +
+                    Math.abs(blockPos.getY() - builderPos.getY()) * 100_000
+            )))
+            .mapToInt(pos -> Snapshot.posToIndex(box.size(), pos.subtract(box.min())))
+            .toArray();
+        int[] checkOrder = box.getBlocksInArea().stream()
+            .sorted(BlockUtil.uniqueBlockPosComparator(Comparator.comparingDouble(blockPos ->
+                Math.pow(blockPos.getX() - center.getX(), 2) +
+                    Math.pow(blockPos.getY() - center.getY(), 2) +
+                    Math.pow(blockPos.getZ() - center.getZ(), 2)
+            )))
+            .mapToInt(pos -> Snapshot.posToIndex(box.size(), pos.subtract(box.min())))
+            .toArray();
+        return new int[][] { breakOrder, placeOrder, checkOrder };
+    }
+}
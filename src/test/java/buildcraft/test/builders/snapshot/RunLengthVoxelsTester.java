@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.test.builders.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.api.core.InvalidInputDataException;
+
+import buildcraft.builders.snapshot.RunLengthVoxels;
+import buildcraft.builders.snapshot.Snapshot;
+
+public class RunLengthVoxelsTester {
+    private static final int AIR = 0, STONE = 1, DIRT = 2, GRASS = 3, PLANKS = 4, GLASS = 5, LOG = 6, LEAVES = 7;
+
+    @Test
+    public void testMatchesArray() throws InvalidInputDataException {
+        BlockPos size = new BlockPos(17, 5, 6);
+        int[] expected = new int[Snapshot.getDataSize(size)];
+        RunLengthVoxels voxels = new RunLengthVoxels(size, 0);
+        Random rand = new Random(0x2_1E);
+        for (int i = 0; i < 2_000; i++) {
+            int value = rand.nextInt(rand.nextBoolean() ? 2 : 300);
+            int from = rand.nextInt(expected.length);
+            int to = rand.nextInt(4) == 0 ? from + rand.nextInt(expected.length - from) + 1 : from + 1;
+            Arrays.fill(expected, from, to, value);
+            voxels.setRange(from, to, value);
+            int index = rand.nextInt(expected.length);
+            Assert.assertEquals(expected[index], voxels.get(index));
+        }
+        Assert.assertArrayEquals(expected, voxels.toArray());
+        Assert.assertArrayEquals(expected, RunLengthVoxels.readRuns(size, voxels.writeRuns()).toArray());
+        Assert.assertArrayEquals(expected, RunLengthVoxels.fromArray(size, expected).toArray());
+
+        voxels.replaceAll(value -> value ^ 1);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i] ^ 1, voxels.get(i));
+        }
+    }
+
+    @Test
+    public void testCopiesAreIndependent() {
+        BlockPos size = new BlockPos(9, 4, 4);
+        int[] expected = new int[Snapshot.getDataSize(size)];
+        // Every row is the same, so they all share one array
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = i % 9 < 3 ? STONE : DIRT;
+        }
+        RunLengthVoxels voxels = RunLengthVoxels.fromArray(size, expected);
+        Random rand = new Random(0xC0_9E);
+        for (int i = 0; i < 200; i++) {
+            // Single block changes, which mostly keep the number of runs the same
+            int index = rand.nextInt(expected.length);
+            int value = rand.nextInt(3);
+            expected[index] = value;
+            voxels.set(index, value);
+            int[] copyExpected = expected.clone();
+            RunLengthVoxels copy = new RunLengthVoxels(voxels);
+
+            int other = rand.nextInt(expected.length);
+            expected[other] = (expected[other] + 1) % 3;
+            voxels.set(other, expected[other]);
+            copyExpected[other] = (copyExpected[other] + 2) % 3;
+            copy.set(other, copyExpected[other]);
+
+            Assert.assertArrayEquals(expected, voxels.toArray());
+            Assert.assertArrayEquals(copyExpected, copy.toArray());
+        }
+        voxels.replaceAll(value -> value == STONE ? DIRT : value);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i] == STONE ? DIRT : expected[i], voxels.get(i));
+        }
+    }
+
+    @Test
+    public void testTypicalBuildIsSmaller() {
+        BlockPos size = new BlockPos(64, 48, 64);
+        int[] dense = typicalBuild(size);
+        RunLengthVoxels voxels = RunLengthVoxels.fromArray(size, dense);
+        Assert.assertTrue(voxels.getHeapSize() * 10 < dense.length * 4L);
+        Assert.assertTrue(voxels.writeRuns().length * 10 < dense.length);
+    }
+
+    public static void main(String[] args) throws IOException {
+        for (int i = 0; i < 3; i++) {
+            benchmark(new BlockPos(64, 48, 64));
+            benchmark(new BlockPos(256, 128, 256));
+        }
+    }
+
+    /** A flat landscape of stone, dirt and grass, with a glass windowed house in the middle and some trees around
+     * it. */
+    private static int[] typicalBuild(BlockPos size) {
+        int[] data = new int[Snapshot.getDataSize(size)];
+        int ground = size.getY() / 6;
+        int minHouse = size.getX() / 4;
+        int maxHouse = size.getX() * 3 / 4;
+        int roof = ground + size.getY() / 3;
+        for (int z = 0; z < size.getZ(); z++) {
+            for (int y = 0; y < size.getY(); y++) {
+                for (int x = 0; x < size.getX(); x++) {
+                    int block = AIR;
+                    if (y < ground - 2) {
+                        block = STONE;
+                    } else if (y < ground) {
+                        block = DIRT;
+                    } else if (y == ground) {
+                        block = GRASS;
+                    } else if (y <= roof && x >= minHouse && x <= maxHouse && z >= minHouse && z <= maxHouse) {
+                        boolean wallX = x == minHouse || x == maxHouse;
+                        boolean wallZ = z == minHouse || z == maxHouse;
+                        if (y == roof || y == ground + 1) {
+                            block = PLANKS;
+                        } else if (wallX || wallZ) {
+                            boolean window = y % 4 == 0 && (wallX ? z : x) % 4 != 0;
+                            block = window ? GLASS : PLANKS;
+                        }
+                    }
+                    data[Snapshot.posToIndex(size, x, y, z)] = block;
+                }
+            }
+        }
+        Random rand = new Random(0x7_AEE);
+        for (int i = 0; i < size.getX() * size.getZ() / 200; i++) {
+            int x = 2 + rand.nextInt(size.getX() - 4);
+            int z = 2 + rand.nextInt(size.getZ() - 4);
+            if (x >= minHouse - 2 && x <= maxHouse + 2 && z >= minHouse - 2 && z <= maxHouse + 2) {
+                continue;
+            }
+            int top = Math.min(size.getY() - 2, ground + 4 + rand.nextInt(3));
+            for (int y = ground + 1; y <= top; y++) {
+                data[Snapshot.posToIndex(size, x, y, z)] = LOG;
+            }
+            for (int dx = -2; dx <= 2; dx++) {
+                for (int dz = -2; dz <= 2; dz++) {
+                    for (int y = top - 1; y <= top + 1; y++) {
+                        int index = Snapshot.posToIndex(size, x + dx, y, z + dz);
+                        if (data[index] == AIR) {
+                            data[index] = LEAVES;
+                        }
+                    }
+                }
+            }
+        }
+        return data;
+    }
+
+    private static void benchmark(BlockPos size) throws IOException {
+        int[] dense = typicalBuild(size);
+        RunLengthVoxels voxels = RunLengthVoxels.fromArray(size, dense);
+
+        // Serialization, in the same way that Blueprint used to write its data
+        Stopwatch watch = Stopwatch.createStarted();
+        NBTTagCompound oldNbt = new NBTTagCompound();
+        NBTTagList list = new NBTTagList();
+        for (int value : dense) {
+            list.appendTag(new NBTTagInt(value));
+        }
+        oldNbt.setTag("data", list);
+        int oldBytes = sizeOf(oldNbt);
+        watch.stop();
+        long oldWriteTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+        watch.reset().start();
+        NBTTagCompound newNbt = new NBTTagCompound();
+        newNbt.setIntArray("runs", voxels.writeRuns());
+        int newBytes = sizeOf(newNbt);
+        watch.stop();
+        long newWriteTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+        // Random access
+        int reads = 1_000_000;
+        int[] indices = new Random(0x3AD).ints(reads, 0, dense.length).toArray();
+        long sum = 0;
+        watch.reset().start();
+        for (int index : indices) {
+            sum += dense[index];
+        }
+        watch.stop();
+        long arrayReadTime = watch.elapsed(TimeUnit.MICROSECONDS);
+        watch.reset().start();
+        for (int index : indices) {
+            sum -= voxels.get(index);
+        }
+        watch.stop();
+        long runsReadTime = watch.elapsed(TimeUnit.MICROSECONDS);
+        Assert.assertEquals(0, sum);
+
+        System.out.println(size.getX() + "x" + size.getY() + "x" + size.getZ() + " (" + voxels.getRunCount()
+            + " runs):");
+        System.out.println("  Heap: int[] = " + (16 + dense.length * 4L) / 1024 + "KiB, BitSet = "
+            + (dense.length / 8 + 16) / 1024 + "KiB, runs = " + voxels.getHeapSize() / 1024 + "KiB");
+        System.out.println("  NBT: list = " + oldBytes / 1024 + "KiB in " + oldWriteTime + "ųs, runs = "
+            + newBytes / 1024 + "KiB in " + newWriteTime + "ųs");
+        System.out.println("  " + reads + " random reads: int[] = " + arrayReadTime + "ųs, runs = " + runsReadTime
+            + "ųs");
+    }
+
+    private static int sizeOf(NBTTagCompound nbt) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        CompressedStreamTools.write(nbt, new DataOutputStream(baos));
+        return baos.size();
+    }
+}
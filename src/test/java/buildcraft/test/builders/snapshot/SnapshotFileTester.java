@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2017 SpaceToad and the BuildCraft team
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. If a copy of the MPL was not
+ * distributed with this file, You can obtain one at https://mozilla.org/MPL/2.0/
+ */
+
+package buildcraft.test.builders.snapshot;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagInt;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.api.core.InvalidInputDataException;
+
+import buildcraft.lib.misc.HashUtil;
+
+import buildcraft.builders.snapshot.Blueprint;
+import buildcraft.builders.snapshot.Snapshot;
+import buildcraft.builders.snapshot.SnapshotFile;
+import buildcraft.builders.snapshot.Template;
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class SnapshotFileTester extends VanillaSetupBaseTester {
+    private static void setup(Snapshot snapshot, BlockPos size) {
+        snapshot.size = size;
+        snapshot.facing = EnumFacing.NORTH;
+        snapshot.offset = new BlockPos(1, 2, 3);
+    }
+
+    @Test
+    public void testTemplate() throws IOException, InvalidInputDataException {
+        Template template = new Template();
+        setup(template, new BlockPos(13, 7, 9));
+        Random rand = new Random(0x5_AB);
+        BitSet bits = new BitSet(template.getDataSize());
+        for (int i = 0; i < template.getDataSize(); i++) {
+            bits.set(i, rand.nextBoolean());
+        }
+        template.setData(bits);
+
+        File file = File.createTempFile("template", SnapshotFile.EXTENSION);
+        try {
+            SnapshotFile.write(template, file);
+            Assert.assertEquals(template.key, SnapshotFile.readKey(file));
+            Template read = (Template) SnapshotFile.read(file);
+            Assert.assertEquals(template.size, read.size);
+            Assert.assertEquals(template.facing, read.facing);
+            Assert.assertEquals(template.offset, read.offset);
+            Assert.assertEquals(bits, read.toBitSet());
+        } finally {
+            Assert.assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void testTemplateKeyMatchesOldFormat() {
+        Template template = new Template();
+        setup(template, new BlockPos(13, 7, 9));
+        BitSet bits = new BitSet(template.getDataSize());
+        bits.set(20, 400);
+        bits.set(550);
+        template.setData(bits);
+        template.computeKey();
+
+        // How templates were written before they were run length encoded
+        NBTTagCompound nbt = Snapshot.writeToNBT(template);
+        nbt.removeTag("key");
+        nbt.removeTag("runs");
+        nbt.setByteArray("data", bits.toByteArray());
+        Assert.assertArrayEquals(HashUtil.computeHash(nbt), template.key.hash);
+    }
+
+    @Test
+    public void testBlueprintKeyMatchesOldFormat() {
+        Blueprint blueprint = new Blueprint();
+        setup(blueprint, new BlockPos(5, 4, 3));
+        int[] data = new int[blueprint.getDataSize()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i / 7 % 3;
+        }
+        blueprint.setData(data);
+        blueprint.computeKey();
+
+        // How blueprints were written before they were run length encoded
+        NBTTagCompound nbt = Snapshot.writeToNBT(blueprint);
+        nbt.removeTag("key");
+        nbt.removeTag("runs");
+        NBTTagList list = new NBTTagList();
+        for (int value : data) {
+            list.appendTag(new NBTTagInt(value));
+        }
+        nbt.setTag("data", list);
+        Assert.assertArrayEquals(HashUtil.computeHash(nbt), blueprint.key.hash);
+
+        // Changing the data changes the key
+        data[17] = 2;
+        blueprint.setData(data);
+        byte[] oldHash = blueprint.key.hash;
+        blueprint.computeKey();
+        Assert.assertFalse(Arrays.equals(oldHash, blueprint.key.hash));
+    }
+
+    @Test
+    public void testBlueprintPages() throws IOException, InvalidInputDataException {
+        Blueprint blueprint = new Blueprint();
+        // Just over 1 page of single byte indices
+        setup(blueprint, new BlockPos(130, 64, 128));
+        int[] data = new int[blueprint.getDataSize()];
+        Random rand = new Random(0xB_1E);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = rand.nextInt(256);
+        }
+        blueprint.setData(data);
+
+        File file = File.createTempFile("blueprint", SnapshotFile.EXTENSION);
+        try {
+            SnapshotFile.write(blueprint, file);
+            Blueprint read = (Blueprint) SnapshotFile.read(file);
+            Assert.assertEquals(blueprint.size, read.size);
+            for (int i = 0; i < data.length; i++) {
+                Assert.assertEquals(data[i], read.getData(i));
+            }
+            Assert.assertArrayEquals(data, read.copyData());
+
+            // Both the copy and the key read the pages directly
+            blueprint.computeKey();
+            read.computeKey();
+            Assert.assertArrayEquals(blueprint.key.hash, read.key.hash);
+            Blueprint copy = read.copy();
+            Assert.assertArrayEquals(blueprint.key.hash, copy.key.hash);
+            Assert.assertArrayEquals(data, copy.copyData());
+        } finally {
+            // Pages are read into the heap rather than mapped, so this works even while the blueprint is in use
+            Assert.assertTrue(file.delete());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package buildcraft.test.core.marker.volume;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.profiler.Profiler;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.GameType;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.WorldInfo;
+
+import buildcraft.lib.misc.data.Box;
+
+import buildcraft.core.marker.volume.VolumeBox;
+import buildcraft.core.marker.volume.VolumeBoxSync;
+import buildcraft.core.marker.volume.WorldSavedDataVolumeBoxes;
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class VolumeBoxSyncTester extends VanillaSetupBaseTester {
+    private static final int VIEW_DISTANCE = 2;
+
+    /** Everything that {@link VolumeBoxSync} has sent, with the boxes turned back into their ids. */
+    static final class Sent {
+        final String player;
+        final boolean clear;
+        final Set<UUID> removed;
+        final Set<UUID> boxes = new HashSet<>();
+
+        Sent(String player, boolean clear, List<UUID> removed, List<byte[]> volumeBoxes) {
+            this.player = player;
+            this.clear = clear;
+            this.removed = new HashSet<>(removed);
+            for (byte[] data : volumeBoxes) {
+                // VolumeBox.toBytes writes the id first
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                boxes.add(new UUID(buffer.getLong(), buffer.getLong()));
+            }
+        }
+    }
+
+    /** A world with a box near the origin, a box 100 chunks away, and a player next to each of them. */
+    final class Scene {
+        final World world = new TestWorld();
+        final VolumeBox near = new VolumeBox(world, new BlockPos(3, 64, 3));
+        final VolumeBox far = new VolumeBox(world, new BlockPos(1600, 64, 3));
+        final List<VolumeBox> volumeBoxes = new ArrayList<>(Arrays.asList(near, far));
+        final Map<String, ChunkPos> players = new HashMap<>();
+        final Set<String> recheck = new HashSet<>();
+        final VolumeBoxSync<String> sync = new VolumeBoxSync<>();
+
+        Scene() {
+            players.put("a", new ChunkPos(0, 0));
+            players.put("b", new ChunkPos(101, 1));
+        }
+
+        Map<String, Sent> sync() {
+            Map<String, Sent> sent = new HashMap<>();
+            sync.sendChanges(volumeBoxes, new ArrayList<>(players.keySet()), recheck, players::get, VIEW_DISTANCE,
+                (player, clear, removed, boxes) -> {
+                    Sent previous = sent.put(player, new Sent(player, clear, removed, boxes));
+                    Assert.assertNull("Sent twice to " + player, previous);
+                });
+            recheck.clear();
+            return sent;
+        }
+
+        void move(String player, ChunkPos to) {
+            players.put(player, to);
+            recheck.add(player);
+        }
+    }
+
+    @Test
+    public void testFirstSync() {
+        Scene scene = new Scene();
+        Map<String, Sent> sent = scene.sync();
+        Assert.assertEquals(2, sent.size());
+        Assert.assertTrue(sent.get("a").clear);
+        Assert.assertEquals(Collections.singleton(scene.near.id), sent.get("a").boxes);
+        Assert.assertTrue(sent.get("b").clear);
+        Assert.assertEquals(Collections.singleton(scene.far.id), sent.get("b").boxes);
+
+        // Nothing has changed
+        Assert.assertTrue(scene.sync().isEmpty());
+        scene.sync.markAllChanged();
+        Assert.assertTrue(scene.sync().isEmpty());
+    }
+
+    @Test
+    public void testPlayerWithNothingInRange() {
+        Scene scene = new Scene();
+        scene.players.put("c", new ChunkPos(50, 50));
+        Map<String, Sent> sent = scene.sync();
+        // The first message is always sent, so that the client forgets the boxes from other worlds
+        Assert.assertTrue(sent.get("c").clear);
+        Assert.assertTrue(sent.get("c").boxes.isEmpty());
+        Assert.assertFalse(scene.sync().containsKey("c"));
+    }
+
+    @Test
+    public void testChangedBoxOnlySentNearby() {
+        Scene scene = new Scene();
+        scene.sync();
+
+        // Marking a box that hasn't really changed doesn't send anything
+        scene.sync.markChanged(scene.near);
+        Assert.assertTrue(scene.sync().isEmpty());
+
+        scene.near.box = new Box(new BlockPos(0, 60, 0), new BlockPos(10, 70, 10));
+        scene.sync.markChanged(scene.near);
+        Map<String, Sent> sent = scene.sync();
+        Assert.assertEquals(Collections.singleton("a"), sent.keySet());
+        Assert.assertFalse(sent.get("a").clear);
+        Assert.assertEquals(Collections.singleton(scene.near.id), sent.get("a").boxes);
+        Assert.assertTrue(sent.get("a").removed.isEmpty());
+
+        // Growing a box into range of another player sends it to them as well
+        scene.near.box = new Box(new BlockPos(0, 60, 0), new BlockPos(1600, 70, 10));
+        scene.sync.markChanged(scene.near);
+        sent = scene.sync();
+        Assert.assertEquals(new HashSet<>(Arrays.asList("a", "b")), sent.keySet());
+        Assert.assertEquals(Collections.singleton(scene.near.id), sent.get("b").boxes);
+
+        // And shrinking it again removes it from them
+        scene.near.box = new Box(new BlockPos(0, 60, 0), new BlockPos(10, 70, 10));
+        scene.sync.markChanged(scene.near);
+        sent = scene.sync();
+        Assert.assertEquals(Collections.singleton(scene.near.id), sent.get("b").removed);
+        Assert.assertTrue(sent.get("b").boxes.isEmpty());
+    }
+
+    @Test
+    public void testMovingPlayer() {
+        Scene scene = new Scene();
+        scene.sync();
+
+        // Moving within range of the same boxes doesn't send anything
+        scene.move("a", new ChunkPos(VIEW_DISTANCE, -VIEW_DISTANCE));
+        Assert.assertTrue(scene.sync().isEmpty());
+
+        scene.move("a", new ChunkPos(100, 0));
+        Map<String, Sent> sent = scene.sync();
+        Assert.assertEquals(Collections.singleton("a"), sent.keySet());
+        Assert.assertEquals(Collections.singleton(scene.far.id), sent.get("a").boxes);
+        Assert.assertEquals(Collections.singleton(scene.near.id), sent.get("a").removed);
+
+        // A box that changes while the player is out of range isn't sent, until they come back
+        scene.near.box = new Box(new BlockPos(0, 60, 0), new BlockPos(10, 70, 10));
+        scene.sync.markChanged(scene.near);
+        Assert.assertTrue(scene.sync().isEmpty());
+        scene.move("a", new ChunkPos(0, 0));
+        sent = scene.sync();
+        Assert.assertEquals(Collections.singleton(scene.near.id), sent.get("a").boxes);
+        Assert.assertEquals(Collections.singleton(scene.far.id), sent.get("a").removed);
+    }
+
+    @Test
+    public void testAddedAndRemovedBoxes() {
+        Scene scene = new Scene();
+        scene.sync();
+
+        VolumeBox added = new VolumeBox(scene.world, new BlockPos(1620, 64, 20));
+        scene.volumeBoxes.add(added);
+        scene.volumeBoxes.remove(scene.far);
+        scene.sync.markAllChanged();
+        Map<String, Sent> sent = scene.sync();
+        Assert.assertEquals(Collections.singleton("b"), sent.keySet());
+        Assert.assertFalse(sent.get("b").clear);
+        Assert.assertEquals(Collections.singleton(added.id), sent.get("b").boxes);
+        Assert.assertEquals(Collections.singleton(scene.far.id), sent.get("b").removed);
+    }
+
+    @Test
+    public void testPlayerRejoining() {
+        Scene scene = new Scene();
+        scene.sync();
+
+        ChunkPos pos = scene.players.remove("a");
+        Assert.assertTrue(scene.sync().isEmpty());
+        scene.players.put("a", pos);
+        Map<String, Sent> sent = scene.sync();
+        Assert.assertTrue(sent.get("a").clear);
+        Assert.assertEquals(Collections.singleton(scene.near.id), sent.get("a").boxes);
+    }
+
+    @Test
+    public void testChunkIndex() {
+        World world = new TestWorld();
+        WorldSavedDataVolumeBoxes data = new WorldSavedDataVolumeBoxes();
+        data.world = world;
+        VolumeBox small = new VolumeBox(world, new BlockPos(14, 64, 14));
+        small.box = new Box(new BlockPos(14, 64, 14), new BlockPos(17, 66, 17));
+        // Covers more chunks than are indexed, so is checked separately
+        VolumeBox large = new VolumeBox(world, new BlockPos(-1000, 0, -1000));
+        large.box = new Box(new BlockPos(-1000, 0, -1000), new BlockPos(-10, 10, -10));
+        data.volumeBoxes.add(small);
+        data.volumeBoxes.add(large);
+        data.markDirty();
+
+        Assert.assertSame(small, data.getVolumeBoxAt(new BlockPos(14, 64, 14)));
+        Assert.assertSame(small, data.getVolumeBoxAt(new BlockPos(17, 66, 16)));
+        Assert.assertNull(data.getVolumeBoxAt(new BlockPos(17, 67, 16)));
+        Assert.assertSame(large, data.getVolumeBoxAt(new BlockPos(-500, 5, -20)));
+        Assert.assertNull(data.getVolumeBoxAt(new BlockPos(0, 5, 0)));
+        Assert.assertSame(large, data.getVolumeBoxFromId(large.id));
+
+        // Moving a box is only seen once it has been marked dirty
+        small.box = new Box(new BlockPos(100, 64, 100), new BlockPos(101, 64, 101));
+        data.markDirty(small);
+        Assert.assertNull(data.getVolumeBoxAt(new BlockPos(14, 64, 14)));
+        Assert.assertSame(small, data.getVolumeBoxAt(new BlockPos(101, 64, 100)));
+    }
+
+    /** VolumeBox needs a world, but none of the tests here look at it. */
+    static class TestWorld extends World {
+        TestWorld() {
+            super(null, new WorldInfo(new WorldSettings(0, GameType.CREATIVE, false, false, WorldType.FLAT), "test"),
+                new WorldProviderSurface(), new Profiler(), false);
+        }
+
+        @Override
+        protected IChunkProvider createChunkProvider() {
+            return null;
+        }
+
+        @Override
+        protected boolean isChunkLoaded(int x, int z, boolean allowEmpty) {
+            return true;
+        }
+    }
+}
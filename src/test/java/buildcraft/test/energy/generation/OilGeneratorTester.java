@@ -0,0 +1,154 @@
+package buildcraft.test.energy.generation;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.minecraft.init.Biomes;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.biome.Biome;
+
+import buildcraft.lib.misc.data.Box;
+
+import buildcraft.energy.BCEnergyConfig;
+import buildcraft.energy.generation.OilGenStructure;
+import buildcraft.energy.generation.OilGenerator;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class OilGeneratorTester extends VanillaSetupBaseTester {
+    private static final long SEED = 0x5EED_0F_0111L;
+    private static final int RADIUS = 5;
+
+    /** Large blocks of desert and plains, so that there are some oil lakes. */
+    private static final Function<BlockPos, Biome> BIOMES = pos -> {
+        int hash = (pos.getX() >> 8) * 31 + (pos.getZ() >> 8);
+        return (hash & 3) == 0 ? Biomes.DESERT : Biomes.PLAINS;
+    };
+
+    @BeforeClass
+    public static void addOilBiomes() {
+        BCEnergyConfig.surfaceDepositBiomes.add(Biomes.DESERT.getRegistryName());
+    }
+
+    @Test
+    public void testCacheMatches() {
+        int found = 0;
+        for (int cx = -40; cx < 40; cx++) {
+            for (int cz = -40; cz < 40; cz++) {
+                List<OilGenStructure> expected = OilGenerator.createStructures(SEED, cx, cz, BIOMES);
+                List<OilGenStructure> cached = OilGenerator.getStructures(0, SEED, cx, cz, BIOMES);
+                Assert.assertEquals(expected.size(), cached.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    Assert.assertEquals(expected.get(i).getClass(), cached.get(i).getClass());
+                    Assert.assertEquals(expected.get(i).box, cached.get(i).box);
+                }
+                Assert.assertSame(cached, OilGenerator.getStructures(0, SEED, cx, cz, BIOMES));
+                found += expected.size();
+            }
+        }
+        Assert.assertTrue(found > 0);
+        // Different dimensions and seeds don't share structures
+        List<OilGenStructure> other = OilGenerator.getStructures(1, SEED, 0, 0, BIOMES);
+        Assert.assertNotSame(other, OilGenerator.getStructures(0, SEED, 0, 0, BIOMES));
+    }
+
+    @Test
+    public void testSpoutsCopiedForGeneration() {
+        int spouts = 0;
+        for (int cx = -40; cx < 40; cx++) {
+            for (int cz = -40; cz < 40; cz++) {
+                for (OilGenStructure struct : OilGenerator.getStructures(0, SEED, cx, cz, BIOMES)) {
+                    OilGenStructure copy = struct.copyForGeneration();
+                    if (struct instanceof OilGenStructure.Spout) {
+                        // Spouts count their blocks while generating, so each thread needs its own
+                        Assert.assertNotSame(struct, copy);
+                        OilGenStructure.Spout spout = (OilGenStructure.Spout) struct;
+                        OilGenStructure.Spout spoutCopy = (OilGenStructure.Spout) copy;
+                        Assert.assertEquals(spout.start, spoutCopy.start);
+                        Assert.assertEquals(spout.radius, spoutCopy.radius);
+                        Assert.assertEquals(spout.height, spoutCopy.height);
+                        Assert.assertEquals(spout.box, spoutCopy.box);
+                        spouts++;
+                    } else {
+                        Assert.assertSame(struct, copy);
+                    }
+                }
+            }
+        }
+        Assert.assertTrue(spouts > 0);
+    }
+
+    /** Does the same as {@link OilGenerator#generate}, apart from actually setting the blocks. */
+    private static int scan(int chunkX, int chunkZ, boolean cached) {
+        int x = chunkX * 16 + 8;
+        int z = chunkZ * 16 + 8;
+        BlockPos min = new BlockPos(x, 0, z);
+        Box box = new Box(min, min.add(15, 256, 15));
+        int intersecting = 0;
+        for (int cdx = -RADIUS; cdx <= RADIUS; cdx++) {
+            for (int cdz = -RADIUS; cdz <= RADIUS; cdz++) {
+                int cx = chunkX + cdx;
+                int cz = chunkZ + cdz;
+                List<OilGenStructure> structures = cached//
+                    ? OilGenerator.getStructures(0, SEED, cx, cz, BIOMES)//
+                    : OilGenerator.createStructures(SEED, cx, cz, BIOMES);
+                for (OilGenStructure struct : structures) {
+                    if (struct.box.getIntersect(box) != null) {
+                        intersecting++;
+                    }
+                }
+            }
+        }
+        return intersecting;
+    }
+
+    public static void main(String[] args) {
+        init();
+        addOilBiomes();
+        // A pregenerator working through the chunks row by row
+        int size = 200;
+        for (int run = 0; run < 5; run++) {
+            OilGenerator.invalidateStructureCache();
+            int offset = run * size;
+            System.out.println("Generating " + size + " x " + size + " chunks:");
+
+            Stopwatch watch = Stopwatch.createStarted();
+            int uncachedFound = 0;
+            for (int cz = 0; cz < size; cz++) {
+                for (int cx = 0; cx < size; cx++) {
+                    uncachedFound += scan(cx + offset, cz, false);
+                }
+            }
+            watch.stop();
+            System.out.println("  Without the cache took " + watch.elapsed(TimeUnit.MICROSECONDS) + "ųs");
+
+            watch.reset().start();
+            int cachedFound = 0;
+            for (int cz = 0; cz < size; cz++) {
+                for (int cx = 0; cx < size; cx++) {
+                    cachedFound += scan(cx + offset, cz, true);
+                }
+            }
+            watch.stop();
+            System.out.println("  With the cache took " + watch.elapsed(TimeUnit.MICROSECONDS) + "ųs");
+            Assert.assertEquals(uncachedFound, cachedFound);
+
+            watch.reset().start();
+            for (int cz = 0; cz < size; cz++) {
+                for (int cx = 0; cx < size; cx++) {
+                    OilGenerator.createStructures(SEED, cx + offset, cz, BIOMES);
+                }
+            }
+            watch.stop();
+            System.out.println("  Creating the structures of every chunk once took " + watch.elapsed(
+                TimeUnit.MICROSECONDS) + "ųs (" + cachedFound + " intersections)");
+        }
+    }
+}
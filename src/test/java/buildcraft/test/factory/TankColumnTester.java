@@ -0,0 +1,245 @@
+package buildcraft.test.factory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraftforge.fluids.FluidRegistry;
+import net.minecraftforge.fluids.FluidStack;
+import net.minecraftforge.fluids.capability.IFluidTankProperties;
+
+import buildcraft.lib.fluid.Tank;
+
+import buildcraft.factory.tile.TankColumn;
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class TankColumnTester extends VanillaSetupBaseTester {
+    private static final int CAPACITY = 1000;
+
+    @Test
+    public void testStacking() {
+        TestStack stack = new TestStack();
+        TestTank bottom = stack.place(0);
+        Assert.assertEquals(CAPACITY, TankColumn.get(bottom).fill(water(1500), true, false));
+        Assert.assertEquals(CAPACITY, TankColumn.get(bottom).getCapacity());
+
+        TestTank top = stack.place(1);
+        TankColumn column = TankColumn.get(top);
+        Assert.assertSame(column, TankColumn.get(bottom));
+        Assert.assertEquals(2 * CAPACITY, column.getCapacity());
+        Assert.assertEquals(CAPACITY, column.getContents().amount);
+
+        Assert.assertEquals(600, column.fill(water(600), true, false));
+        Assert.assertEquals(600, top.tank.getFluidAmount());
+        Assert.assertEquals(1600, TankColumn.get(bottom).getContents().amount);
+        // Nothing was placed or removed, so the column is still the same
+        Assert.assertSame(column, TankColumn.get(bottom));
+    }
+
+    @Test
+    public void testSplitting() {
+        TestStack stack = new TestStack();
+        TestTank bottom = stack.place(0);
+        TestTank middle = stack.place(1);
+        TestTank top = stack.place(2);
+        Assert.assertEquals(2500, TankColumn.get(middle).fill(water(2500), true, false));
+
+        stack.remove(1);
+        TankColumn lower = TankColumn.get(bottom);
+        TankColumn upper = TankColumn.get(top);
+        Assert.assertNotSame(lower, upper);
+        Assert.assertEquals(CAPACITY, lower.getCapacity());
+        Assert.assertEquals(CAPACITY, lower.getContents().amount);
+        Assert.assertEquals(CAPACITY, upper.getCapacity());
+        Assert.assertEquals(500, upper.getContents().amount);
+
+        // The removed tank is on its own, and doesn't change the columns that are still in the world
+        TankColumn removed = TankColumn.get(middle);
+        Assert.assertEquals(CAPACITY, removed.getCapacity());
+        Assert.assertSame(lower, TankColumn.get(bottom));
+        Assert.assertSame(upper, TankColumn.get(top));
+
+        Assert.assertEquals(500, upper.fill(water(CAPACITY), true, false));
+        Assert.assertEquals(0, lower.fill(water(CAPACITY), true, false));
+    }
+
+    @Test
+    public void testMerging() {
+        TestStack stack = new TestStack();
+        TestTank bottom = stack.place(0);
+        TestTank top = stack.place(2);
+        TankColumn.get(bottom).fill(water(300), true, false);
+        TankColumn.get(top).fill(water(200), true, false);
+
+        TestTank middle = stack.place(1);
+        TankColumn column = TankColumn.get(middle);
+        Assert.assertSame(column, TankColumn.get(bottom));
+        Assert.assertSame(column, TankColumn.get(top));
+        Assert.assertEquals(3 * CAPACITY, column.getCapacity());
+        Assert.assertEquals(500, column.getContents().amount);
+
+        // Fluids fill up from the first tank that isn't full
+        Assert.assertEquals(CAPACITY, column.fill(water(CAPACITY), true, false));
+        Assert.assertEquals(CAPACITY, bottom.tank.getFluidAmount());
+        Assert.assertEquals(300, middle.tank.getFluidAmount());
+        Assert.assertEquals(200, top.tank.getFluidAmount());
+    }
+
+    @Test
+    public void testMergingDifferentFluids() {
+        TestStack stack = new TestStack();
+        TestTank bottom = stack.place(0);
+        TestTank top = stack.place(2);
+        TankColumn.get(bottom).fill(water(300), true, false);
+        TankColumn.get(top).fill(new FluidStack(FluidRegistry.LAVA, 200), true, false);
+
+        TankColumn column = TankColumn.get(stack.place(1));
+        Assert.assertEquals(0, column.fill(water(100), true, false));
+        Assert.assertEquals(0, column.fill(new FluidStack(FluidRegistry.LAVA, 100), true, false));
+
+        // Draining takes from the top first, until there is only one fluid left
+        FluidStack drained = column.drain(f -> true, CAPACITY, true, false);
+        Assert.assertTrue(new FluidStack(FluidRegistry.LAVA, 200).isFluidStackIdentical(drained));
+        Assert.assertTrue(water(300).isFluidStackIdentical(column.getContents()));
+        Assert.assertEquals(100, column.fill(water(100), true, false));
+    }
+
+    @Test
+    public void testFillAndDrainAcrossTanks() {
+        TestStack stack = new TestStack();
+        TestTank[] tanks = { stack.place(0), stack.place(1), stack.place(2) };
+        TankColumn column = TankColumn.get(tanks[0]);
+
+        // Simulating doesn't change anything
+        Assert.assertEquals(2500, column.fill(water(2500), false, true));
+        Assert.assertNull(column.getContents());
+        Assert.assertEquals(0, stack.updates);
+
+        Assert.assertEquals(2500, column.fill(water(2500), true, true));
+        assertAmounts(tanks, CAPACITY, CAPACITY, 500);
+        Assert.assertEquals(3, stack.updates);
+
+        FluidStack drained = column.drain(f -> true, 1200, false, true);
+        Assert.assertTrue(water(1200).isFluidStackIdentical(drained));
+        assertAmounts(tanks, CAPACITY, CAPACITY, 500);
+
+        drained = column.drain(f -> true, 1200, true, true);
+        Assert.assertTrue(water(1200).isFluidStackIdentical(drained));
+        assertAmounts(tanks, CAPACITY, 300, 0);
+        Assert.assertEquals(1300, column.getContents().amount);
+        Assert.assertEquals(5, stack.updates);
+
+        // Changes made to a tank directly are seen by the column
+        tanks[2].tank.fill(water(CAPACITY), true);
+        Assert.assertEquals(2300, column.getContents().amount);
+        Assert.assertEquals(700, column.fill(water(CAPACITY), true, false));
+        assertAmounts(tanks, CAPACITY, CAPACITY, CAPACITY);
+
+        Assert.assertNull(column.drain(f -> false, CAPACITY, true, false));
+        Assert.assertTrue(water(3 * CAPACITY).isFluidStackIdentical(column.drain(f -> true, 5000, true, false)));
+        Assert.assertNull(column.getContents());
+        Assert.assertNull(column.drain(f -> true, CAPACITY, true, false));
+    }
+
+    @Test
+    public void testTankPropertiesAreCopies() {
+        TestStack stack = new TestStack();
+        stack.place(0);
+        TankColumn column = TankColumn.get(stack.place(1));
+        column.fill(water(500), true, false);
+
+        IFluidTankProperties[] properties = column.getTankProperties();
+        Assert.assertEquals(1, properties.length);
+        Assert.assertEquals(500, properties[0].getContents().amount);
+        Assert.assertEquals(2 * CAPACITY, properties[0].getCapacity());
+
+        column.fill(water(500), true, false);
+        Assert.assertEquals(500, properties[0].getContents().amount);
+        Assert.assertNotSame(properties, column.getTankProperties());
+        Assert.assertEquals(CAPACITY, column.getTankProperties()[0].getContents().amount);
+
+        properties[0].getContents().amount = 5;
+        Assert.assertEquals(CAPACITY, column.getContents().amount);
+    }
+
+    private static FluidStack water(int amount) {
+        return new FluidStack(FluidRegistry.WATER, amount);
+    }
+
+    private static void assertAmounts(TestTank[] tanks, int... amounts) {
+        for (int i = 0; i < tanks.length; i++) {
+            Assert.assertEquals("Tank " + i, amounts[i], tanks[i].tank.getFluidAmount());
+        }
+    }
+
+    /** A single column of positions, that tanks can be placed in and removed from like TileTank does in a world. */
+    static final class TestStack {
+        final Map<Integer, TestTank> tanks = new HashMap<>();
+        int updates = 0;
+
+        TestTank place(int y) {
+            TestTank tank = new TestTank(this, y);
+            tanks.put(y, tank);
+            TankColumn.onMemberAdded(tank);
+            return tank;
+        }
+
+        void remove(int y) {
+            TestTank tank = tanks.remove(y);
+            tank.removed = true;
+            TankColumn.onMemberRemoved(tank);
+        }
+
+        TestTank get(int y) {
+            return tanks.get(y);
+        }
+    }
+
+    static final class TestTank implements TankColumn.Member {
+        final TestStack stack;
+        final int y;
+        final Tank tank = new Tank("tank", CAPACITY, null) {
+            @Override
+            protected void onContentsChanged() {
+                super.onContentsChanged();
+                if (column != null) {
+                    column.onTankChanged();
+                }
+            }
+        };
+        TankColumn column;
+        boolean removed;
+
+        TestTank(TestStack stack, int y) {
+            this.stack = stack;
+            this.y = y;
+        }
+
+        @Override
+        public Tank getColumnTank() {
+            return tank;
+        }
+
+        @Override
+        public TankColumn.Member getColumnNeighbour(boolean up) {
+            return removed ? null : stack.get(up ? y + 1 : y - 1);
+        }
+
+        @Override
+        public TankColumn getCachedColumn() {
+            return column;
+        }
+
+        @Override
+        public void setCachedColumn(TankColumn column) {
+            this.column = column;
+        }
+
+        @Override
+        public void sendColumnUpdate() {
+            stack.updates++;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package buildcraft.test.lib.block;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import buildcraft.lib.block.ILocalBlockUpdateSubscriber;
+import buildcraft.lib.block.LocalBlockUpdateIndex;
+import buildcraft.lib.block.LocalBlockUpdateIndex.Entry;
+
+public class LocalBlockUpdateIndexTester {
+    @Test
+    public void testMatchesLinearSearch() {
+        Random rand = new Random(0x10CA1);
+        List<Subscriber> all = createSubscribers(rand, 300, 256);
+        LocalBlockUpdateIndex index = new LocalBlockUpdateIndex();
+        all.forEach(index::add);
+        for (int i = 0; i < 100; i++) {
+            // Move a few of them around, like tiles being broken and placed again
+            Subscriber removed = all.remove(rand.nextInt(all.size()));
+            index.remove(removed);
+            Assert.assertFalse(index.contains(removed));
+            Subscriber added = createSubscribers(rand, 1, 256).get(0);
+            all.add(added);
+            index.add(added);
+        }
+        Assert.assertEquals(all.size(), index.size());
+
+        for (int i = 0; i < 10_000; i++) {
+            BlockPos pos = randomPos(rand, 300);
+            Set<ILocalBlockUpdateSubscriber> expected = new HashSet<>();
+            for (Subscriber subscriber : all) {
+                if (subscriber.isInRange(pos)) {
+                    expected.add(subscriber);
+                }
+            }
+            Set<ILocalBlockUpdateSubscriber> found = new HashSet<>();
+            for (Entry entry : index.getEntriesNear(pos)) {
+                if (entry.isInRange(pos)) {
+                    Assert.assertTrue(found.add(entry.subscriber));
+                }
+            }
+            Assert.assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void testNegativeCoords() {
+        LocalBlockUpdateIndex index = new LocalBlockUpdateIndex();
+        Subscriber subscriber = new Subscriber(new BlockPos(-1, 64, -17), 2);
+        index.add(subscriber);
+        Assert.assertEquals(1, index.getEntriesNear(new BlockPos(1, 64, -15)).length);
+        Assert.assertEquals(1, index.getEntriesNear(new BlockPos(-3, 64, -19)).length);
+        Assert.assertEquals(0, index.getEntriesNear(new BlockPos(-3, 64, -40)).length);
+        index.remove(subscriber);
+        Assert.assertEquals(0, index.getEntriesNear(new BlockPos(-1, 64, -17)).length);
+    }
+
+    public static void main(String[] args) {
+        Random rand = new Random(0x1000);
+        // Lasers, spread over an area about 40 chunks across
+        List<Subscriber> all = createSubscribers(rand, 1_000, 320);
+        List<BlockPos> updates = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            updates.add(randomPos(rand, 320));
+        }
+        Set<Subscriber> set = new HashSet<>(all);
+        LocalBlockUpdateIndex index = new LocalBlockUpdateIndex();
+        all.forEach(index::add);
+
+        for (int run = 0; run < 5; run++) {
+            Stopwatch watch = Stopwatch.createStarted();
+            int linearNotified = 0;
+            for (BlockPos pos : updates) {
+                // The way that LocalBlockUpdateNotifier used to find subscribers
+                for (Subscriber subscriber : set) {
+                    BlockPos keyPos = subscriber.getSubscriberPos();
+                    int range = subscriber.getUpdateRange();
+                    if (Math.abs(keyPos.getX() - pos.getX()) <= range && Math.abs(keyPos.getY() - pos.getY()) <= range
+                        && Math.abs(keyPos.getZ() - pos.getZ()) <= range) {
+                        linearNotified++;
+                    }
+                }
+            }
+            watch.stop();
+            long linearTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+            watch.reset().start();
+            int indexNotified = 0;
+            for (BlockPos pos : updates) {
+                for (Entry entry : index.getEntriesNear(pos)) {
+                    if (entry.isInRange(pos)) {
+                        indexNotified++;
+                    }
+                }
+            }
+            watch.stop();
+            long indexTime = watch.elapsed(TimeUnit.MICROSECONDS);
+            Assert.assertEquals(linearNotified, indexNotified);
+
+            System.out.println(all.size() + " subscribers, " + updates.size() + " updates (" + indexNotified
+                + " notified):");
+            System.out.println("  Linear search took " + linearTime + "ųs");
+            System.out.println("  Index took " + indexTime + "ųs");
+        }
+    }
+
+    private static BlockPos randomPos(Random rand, int spread) {
+        return new BlockPos(rand.nextInt(spread * 2) - spread, rand.nextInt(256), rand.nextInt(spread * 2) - spread);
+    }
+
+    private static List<Subscriber> createSubscribers(Random rand, int count, int spread) {
+        List<Subscriber> list = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            list.add(new Subscriber(randomPos(rand, spread), 6 + rand.nextInt(60)));
+        }
+        return list;
+    }
+
+    private static class Subscriber implements ILocalBlockUpdateSubscriber {
+        private final BlockPos pos;
+        private final int range;
+
+        Subscriber(BlockPos pos, int range) {
+            this.pos = pos;
+            this.range = range;
+        }
+
+        boolean isInRange(BlockPos other) {
+            return Math.abs(pos.getX() - other.getX()) <= range && Math.abs(pos.getY() - other.getY()) <= range
+                && Math.abs(pos.getZ() - other.getZ()) <= range;
+        }
+
+        @Override
+        public BlockPos getSubscriberPos() {
+            return pos;
+        }
+
+        @Override
+        public int getUpdateRange() {
+            return range;
+        }
+
+        @Override
+        public void setWorldUpdated(World world, BlockPos eventPos, IBlockState oldState, IBlockState newState,
+            int flags) {}
+    }
+}
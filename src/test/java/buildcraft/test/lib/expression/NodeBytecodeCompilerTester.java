@@ -0,0 +1,183 @@
+package buildcraft.test.lib.expression;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.lib.expression.DefaultContexts;
+import buildcraft.lib.expression.FunctionContext;
+import buildcraft.lib.expression.GenericExpressionCompiler;
+import buildcraft.lib.expression.NodeBytecodeCompiler;
+import buildcraft.lib.expression.api.IExpressionNode.INodeBoolean;
+import buildcraft.lib.expression.api.IExpressionNode.INodeDouble;
+import buildcraft.lib.expression.api.IExpressionNode.INodeLong;
+import buildcraft.lib.expression.api.IExpressionNode.INodeObject;
+import buildcraft.lib.expression.api.InvalidExpressionException;
+import buildcraft.lib.expression.node.value.NodeConstantDouble;
+import buildcraft.lib.expression.node.value.NodeVariableBoolean;
+import buildcraft.lib.expression.node.value.NodeVariableDouble;
+import buildcraft.lib.expression.node.value.NodeVariableLong;
+import buildcraft.lib.expression.node.value.NodeVariableObject;
+
+public class NodeBytecodeCompilerTester {
+    /** Expressions taken from (or similar to) the ones used by the engine and machine models, and json guis. */
+    private static final String[] DOUBLE_EXPRESSIONS = {
+        "(progress > 0.5 ? ((1 - progress) * (8 * 2 - 0.01)) : (progress * (8 * 2 - 0.01)))",//
+        "1 - abs( (state <= 0.5 ? 0 : (state - 0.5) % 1) - 0.5) * 2",//
+        "2 * (stage > 0.5 ? 1 - stage : stage)",//
+        "active ? power_average * 0.06 / power_max : 0.01",//
+        "(active) ? (state + change_speed) : ( state > change_speed ? state - change_speed : 0 )",//
+        "sin(progress * 3.14159) * 0.5 + cos(stage) * count",//
+        "(true ? progress : stage) + (false ? 1 : count)",//
+        "count / 16 + max(progress, stage) - min(4, state)",//
+    };
+
+    private static final String[] LONG_EXPRESSIONS = {
+        "manual ? 0xFF_99_FF_99 : 0xFF_22_22_22",//
+        "(count & 0xF) << 2 | count >> 4",//
+        "count * 3 + 4 - count % 7",//
+    };
+
+    private static final String[] BOOLEAN_EXPRESSIONS = {
+        "active && (progress > 0.5 || manual)",//
+        "count > 10 && !manual",//
+        "name == 'engine' ? active : manual",//
+    };
+
+    private static final String[] STRING_EXPRESSIONS = {
+        "power_average <= 0 ? '#off' : '#power_' + (power_average * 6 / power_max)",//
+        "'#trunk_' + name + count",//
+    };
+
+    private final FunctionContext ctx = DefaultContexts.createWithAll();
+    private final NodeVariableDouble progress = ctx.putVariableDouble("progress");
+    private final NodeVariableDouble stage = ctx.putVariableDouble("stage");
+    private final NodeVariableDouble state = ctx.putVariableDouble("state");
+    private final NodeVariableDouble changeSpeed = ctx.putVariableDouble("change_speed");
+    private final NodeVariableDouble powerAverage = ctx.putVariableDouble("power_average");
+    private final NodeVariableDouble powerMax = ctx.putVariableDouble("power_max");
+    private final NodeVariableLong count = ctx.putVariableLong("count");
+    private final NodeVariableBoolean active = ctx.putVariableBoolean("active");
+    private final NodeVariableBoolean manual = ctx.putVariableBoolean("manual");
+    private final NodeVariableObject<String> name = ctx.putVariableString("name");
+
+    private void randomise(Random rand) {
+        progress.value = rand.nextDouble();
+        stage.value = rand.nextDouble();
+        state.value = rand.nextDouble() * 2;
+        changeSpeed.value = rand.nextDouble() / 10;
+        powerAverage.value = rand.nextInt(4) == 0 ? 0 : rand.nextDouble() * 100;
+        powerMax.value = 100;
+        count.value = rand.nextInt(200) - 50;
+        active.value = rand.nextBoolean();
+        manual.value = rand.nextBoolean();
+        name.value = rand.nextBoolean() ? "engine" : "pump";
+    }
+
+    @Test
+    public void testMatchesInterpreter() throws InvalidExpressionException {
+        Random rand = new Random(0xB17E_C0DE);
+        for (String expr : DOUBLE_EXPRESSIONS) {
+            INodeDouble node = GenericExpressionCompiler.compileExpressionDouble(expr, ctx);
+            INodeDouble compiled = NodeBytecodeCompiler.compile(node);
+            Assert.assertNotSame(expr, node.inline(), compiled);
+            for (int i = 0; i < 1000; i++) {
+                randomise(rand);
+                Assert.assertEquals(expr, node.evaluate(), compiled.evaluate(), 0);
+            }
+        }
+        for (String expr : LONG_EXPRESSIONS) {
+            INodeLong node = GenericExpressionCompiler.compileExpressionLong(expr, ctx);
+            INodeLong compiled = NodeBytecodeCompiler.compile(node);
+            for (int i = 0; i < 1000; i++) {
+                randomise(rand);
+                Assert.assertEquals(expr, node.evaluate(), compiled.evaluate());
+            }
+        }
+        for (String expr : BOOLEAN_EXPRESSIONS) {
+            INodeBoolean node = GenericExpressionCompiler.compileExpressionBoolean(expr, ctx);
+            INodeBoolean compiled = NodeBytecodeCompiler.compile(node);
+            for (int i = 0; i < 1000; i++) {
+                randomise(rand);
+                Assert.assertEquals(expr, node.evaluate(), compiled.evaluate());
+            }
+        }
+        for (String expr : STRING_EXPRESSIONS) {
+            INodeObject<String> node = GenericExpressionCompiler.compileExpressionString(expr, ctx);
+            INodeObject<String> compiled = NodeBytecodeCompiler.compile(node);
+            Assert.assertEquals(String.class, compiled.getType());
+            for (int i = 0; i < 1000; i++) {
+                randomise(rand);
+                Assert.assertEquals(expr, node.evaluate(), compiled.evaluate());
+            }
+        }
+    }
+
+    @Test
+    public void testConstantsKept() throws InvalidExpressionException {
+        // Code that uses these nodes checks for constants, so they mustn't be hidden behind a compiled class
+        INodeDouble node = GenericExpressionCompiler.compileExpressionDouble("4 * 2 + 1", ctx);
+        INodeDouble compiled = NodeBytecodeCompiler.compile(node);
+        Assert.assertTrue(compiled instanceof NodeConstantDouble);
+        Assert.assertEquals(9, compiled.evaluate(), 0);
+        Assert.assertSame(progress, NodeBytecodeCompiler.compile(progress));
+    }
+
+    public static void main(String[] args) throws InvalidExpressionException {
+        NodeBytecodeCompilerTester tester = new NodeBytecodeCompilerTester();
+        Random rand = new Random();
+        INodeDouble[] interpreted = new INodeDouble[DOUBLE_EXPRESSIONS.length];
+        INodeDouble[] compiled = new INodeDouble[DOUBLE_EXPRESSIONS.length];
+        Stopwatch watch = Stopwatch.createStarted();
+        for (int i = 0; i < interpreted.length; i++) {
+            interpreted[i] = GenericExpressionCompiler.compileExpressionDouble(DOUBLE_EXPRESSIONS[i], tester.ctx);
+        }
+        watch.stop();
+        long parseTime = watch.elapsed(TimeUnit.MICROSECONDS);
+        watch.reset().start();
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = NodeBytecodeCompiler.compile(interpreted[i]);
+        }
+        watch.stop();
+        System.out.println("Parsing " + interpreted.length + " expressions took " + parseTime + "ųs");
+        System.out.println("Compiling them took " + watch.elapsed(TimeUnit.MICROSECONDS) + "ųs");
+
+        // Roughly the number of expressions evaluated by a screen full of engines, over a few seconds
+        int frames = 200_000;
+        for (int run = 0; run < 5; run++) {
+            // Both loops see the same values
+            rand.setSeed(run);
+            double interpretedSum = 0;
+            watch.reset().start();
+            for (int frame = 0; frame < frames; frame++) {
+                tester.randomise(rand);
+                for (INodeDouble node : interpreted) {
+                    interpretedSum += node.evaluate();
+                }
+            }
+            watch.stop();
+            long interpretedTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+            rand.setSeed(run);
+            double compiledSum = 0;
+            watch.reset().start();
+            for (int frame = 0; frame < frames; frame++) {
+                tester.randomise(rand);
+                for (INodeDouble node : compiled) {
+                    compiledSum += node.evaluate();
+                }
+            }
+            watch.stop();
+            long compiledTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+            System.out.println(frames + " frames of " + interpreted.length + " expressions (" + interpretedSum + ", "
+                + compiledSum + "):");
+            System.out.println("  Interpreted took " + interpretedTime + "ųs");
+            System.out.println("  Compiled took " + compiledTime + "ųs");
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package buildcraft.test.lib.misc.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.lib.misc.data.FloodFillTree;
+
+public class FloodFillTreeTester {
+    private static final EnumFacing[] SEARCH_DIRECTIONS = { //
+        EnumFacing.DOWN, EnumFacing.NORTH, EnumFacing.SOUTH, //
+        EnumFacing.WEST, EnumFacing.EAST //
+    };
+
+    @Test
+    public void testMatchesPaths() {
+        int radius = 12;
+        Map<BlockPos, List<BlockPos>> paths = fillWithPaths(radius);
+        FloodFillTree tree = fillWithTree(radius, Integer.MAX_VALUE);
+        Assert.assertEquals(paths.size(), tree.size());
+        for (int i = 0; i < tree.size(); i++) {
+            BlockPos pos = tree.getPos(i);
+            Assert.assertEquals(i, tree.indexOf(pos));
+            List<BlockPos> path = paths.get(pos);
+            Assert.assertNotNull(path);
+            // Both are breadth first, so they must find paths of the same length
+            Assert.assertEquals(path.size() - 1, tree.getDepth(i));
+            List<BlockPos> walked = new ArrayList<>();
+            tree.testPath(i, walked::add);
+            Assert.assertEquals(pos, walked.get(0));
+            Assert.assertEquals(path.get(0), walked.get(walked.size() - 1));
+            for (int j = 1; j < walked.size(); j++) {
+                Assert.assertEquals(1, walked.get(j).distanceSq(walked.get(j - 1)), 0);
+            }
+        }
+        BlockPos blocked = tree.getPos(tree.getParent(tree.size() - 1));
+        Assert.assertFalse(tree.testPath(tree.size() - 1, pos -> !pos.equals(blocked)));
+    }
+
+    @Test
+    public void testSlicedSearch() {
+        FloodFillTree whole = fillWithTree(10, Integer.MAX_VALUE);
+        FloodFillTree sliced = new FloodFillTree();
+        sliced.add(BlockPos.ORIGIN, FloodFillTree.NO_PARENT);
+        int slices = 0;
+        while (sliced.isSearching()) {
+            search(sliced, 10, 37);
+            slices++;
+        }
+        Assert.assertTrue(slices > 1);
+        Assert.assertEquals(whole.size(), sliced.size());
+        for (int i = 0; i < whole.size(); i++) {
+            Assert.assertEquals(whole.getPos(i), sliced.getPos(i));
+            Assert.assertEquals(whole.getParent(i), sliced.getParent(i));
+        }
+    }
+
+    public static void main(String[] args) {
+        for (int i = 0; i < 3; i++) {
+            benchmark(16);
+            benchmark(32);
+            benchmark(64);
+        }
+    }
+
+    /** A bowl shaped lake, with its surface at y = 0. */
+    private static boolean isLake(BlockPos pos, int radius) {
+        int depth = -pos.getY();
+        if (depth < 0 || depth >= radius / 4) {
+            return false;
+        }
+        int r = radius - depth;
+        return pos.getX() * pos.getX() + pos.getZ() * pos.getZ() <= r * r;
+    }
+
+    /** The way that the pump and flood gate used to search. */
+    private static Map<BlockPos, List<BlockPos>> fillWithPaths(int radius) {
+        Map<BlockPos, List<BlockPos>> paths = new HashMap<>();
+        Set<BlockPos> checked = new HashSet<>();
+        List<BlockPos> nextPosesToCheck = new ArrayList<>();
+        nextPosesToCheck.add(BlockPos.ORIGIN);
+        paths.put(BlockPos.ORIGIN, ImmutableList.of(BlockPos.ORIGIN));
+        checked.add(BlockPos.ORIGIN);
+        while (!nextPosesToCheck.isEmpty()) {
+            List<BlockPos> nextPosesToCheckCopy = new ArrayList<>(nextPosesToCheck);
+            nextPosesToCheck.clear();
+            for (BlockPos toCheck : nextPosesToCheckCopy) {
+                for (EnumFacing side : SEARCH_DIRECTIONS) {
+                    BlockPos next = toCheck.offset(side);
+                    if (checked.add(next) && isLake(next, radius)) {
+                        ImmutableList.Builder<BlockPos> pathBuilder = ImmutableList.builder();
+                        pathBuilder.addAll(paths.get(toCheck));
+                        pathBuilder.add(next);
+                        paths.put(next, pathBuilder.build());
+                        nextPosesToCheck.add(next);
+                    }
+                }
+            }
+        }
+        return paths;
+    }
+
+    private static FloodFillTree fillWithTree(int radius, int maxSearched) {
+        FloodFillTree tree = new FloodFillTree();
+        tree.add(BlockPos.ORIGIN, FloodFillTree.NO_PARENT);
+        search(tree, radius, maxSearched);
+        return tree;
+    }
+
+    private static void search(FloodFillTree tree, int radius, int maxSearched) {
+        for (int searched = 0; searched < maxSearched && tree.isSearching(); searched++) {
+            int index = tree.nextToSearch();
+            BlockPos toCheck = tree.getPos(index);
+            for (EnumFacing side : SEARCH_DIRECTIONS) {
+                BlockPos next = toCheck.offset(side);
+                if (isLake(next, radius)) {
+                    tree.add(next, index);
+                }
+            }
+        }
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void benchmark(int radius) {
+        long before = usedMemory();
+        Stopwatch watch = Stopwatch.createStarted();
+        Map<BlockPos, List<BlockPos>> paths = fillWithPaths(radius);
+        watch.stop();
+        long pathsTime = watch.elapsed(TimeUnit.MICROSECONDS);
+        long pathsMemory = usedMemory() - before;
+        int count = paths.size();
+        paths = null;
+
+        before = usedMemory();
+        watch.reset().start();
+        FloodFillTree tree = fillWithTree(radius, Integer.MAX_VALUE);
+        watch.stop();
+        long treeTime = watch.elapsed(TimeUnit.MICROSECONDS);
+        long treeMemory = usedMemory() - before;
+        Assert.assertEquals(count, tree.size());
+
+        System.out.println("Radius " + radius + " (" + count + " blocks):");
+        System.out.println("  Paths took " + pathsTime + "ųs, and used " + pathsMemory / 1024 + "KiB");
+        System.out.println("  Tree took " + treeTime + "ųs, and used " + treeMemory / 1024 + "KiB");
+    }
+}
@@ -0,0 +1,180 @@
+package buildcraft.test.lib.misc.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.item.ItemStack;
+
+import buildcraft.lib.misc.data.DelayedList;
+import buildcraft.lib.misc.data.TimingWheel;
+
+import buildcraft.test.VanillaSetupBaseTester;
+import buildcraft.transport.pipe.flow.TravellingItem;
+
+public class TimingWheelTester extends VanillaSetupBaseTester {
+    private static final int ITEM_COUNT = 16_384;
+    private static final int TICKS = 2_000;
+
+    @Test
+    public void testMatchesDelayedList() {
+        Random rand = new Random(0x7_1E_E1);
+        DelayedList<Integer> list = new DelayedList<>();
+        TimingWheel<Integer> wheel = new TimingWheel<>();
+        for (int i = 0; i < 1000; i++) {
+            int delay = rand.nextInt(20) == 0 ? rand.nextInt(100_000) : rand.nextInt(40);
+            list.add(delay, i);
+            wheel.add(delay, i);
+        }
+        Assert.assertEquals(1000, wheel.size());
+
+        while (list.getMaxDelay() > 0) {
+            List<Integer> expected = new ArrayList<>(list.advance());
+            List<Integer> actual = new ArrayList<>();
+            wheel.advance(actual::add);
+            expected.sort(null);
+            actual.sort(null);
+            Assert.assertEquals(expected, actual);
+        }
+        Assert.assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        TimingWheel<String> wheel = new TimingWheel<>(500);
+        int a = wheel.schedule(510, "a");
+        wheel.schedule(510, "b");
+        wheel.schedule(100_000, "c");
+        Assert.assertEquals("a", wheel.remove(a));
+
+        List<String> found = new ArrayList<>();
+        wheel.advanceTo(510, found::add);
+        Assert.assertEquals(1, found.size());
+        Assert.assertEquals("b", found.get(0));
+        Assert.assertEquals(1, wheel.size());
+    }
+
+    @Test
+    public void testHandleIteration() {
+        TimingWheel<String> wheel = new TimingWheel<>();
+        Assert.assertEquals(-1, wheel.nextHandle(0));
+        int a = wheel.add(3, "a");
+        wheel.add(70, "b");
+        wheel.add(5_000, "c");
+        wheel.remove(a);
+
+        List<String> expected = new ArrayList<>();
+        wheel.forEach(expected::add);
+        List<String> actual = new ArrayList<>();
+        for (int h = wheel.nextHandle(0); h >= 0; h = wheel.nextHandle(h + 1)) {
+            actual.add(wheel.get(h));
+        }
+        Assert.assertEquals(expected, actual);
+        Assert.assertEquals(2, actual.size());
+        Assert.assertNull(wheel.get(a));
+    }
+
+    @Test
+    public void testEarliestTick() {
+        Random rand = new Random(0xEA_21);
+        TimingWheel<Long> wheel = new TimingWheel<>(1000);
+        List<Integer> handles = new ArrayList<>();
+        List<Long> deadlines = new ArrayList<>();
+        Assert.assertEquals(Long.MAX_VALUE, wheel.getEarliestTick());
+        for (int t = 0; t < 20_000; t++) {
+            for (int i = rand.nextInt(3); i > 0; i--) {
+                int bound = rand.nextInt(4) == 0 ? 100_000 : 100;
+                long deadline = wheel.getCurrentTick() + 1 + rand.nextInt(bound);
+                handles.add(wheel.schedule(deadline, deadline));
+                deadlines.add(deadline);
+            }
+            if (!handles.isEmpty() && rand.nextInt(4) == 0) {
+                int index = rand.nextInt(handles.size());
+                Assert.assertEquals(deadlines.remove(index), wheel.remove(handles.remove(index)));
+            }
+            long expected = Long.MAX_VALUE;
+            for (long deadline : deadlines) {
+                expected = Math.min(expected, deadline);
+            }
+            Assert.assertEquals(expected, wheel.getEarliestTick());
+
+            wheel.advance(deadline -> Assert.assertEquals(wheel.getCurrentTick(), (long) deadline));
+            // Handles are only valid until their element is returned, so forget about everything that was due
+            for (int i = deadlines.size() - 1; i >= 0; i--) {
+                if (deadlines.get(i) <= wheel.getCurrentTick()) {
+                    deadlines.remove(i);
+                    handles.remove(i);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testThroughput() {
+        runThroughput(false);
+    }
+
+    public static void main(String[] args) {
+        init();
+        for (int i = 0; i < 10; i++) {
+            runThroughput(true);
+        }
+    }
+
+    /** Simulates {@link #ITEM_COUNT} travelling items that each get re-added with a new (pipe-length-ish) delay when
+     * they reach their destination, comparing the old {@link DelayedList} to {@link TimingWheel}. */
+    private static void runThroughput(boolean print) {
+        Random rand = new Random(0x5EED);
+        int[] delays = new int[4096];
+        for (int i = 0; i < delays.length; i++) {
+            delays[i] = 4 + rand.nextInt(20);
+        }
+
+        DelayedList<TravellingItem> list = new DelayedList<>();
+        TimingWheel<TravellingItem> wheel = new TimingWheel<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            TravellingItem item = new TravellingItem(ItemStack.EMPTY);
+            list.add(delays[i & 4095], item);
+            wheel.add(delays[i & 4095], item);
+        }
+
+        int[] index = { 0 };
+        long listHops = 0;
+        Stopwatch watch = Stopwatch.createStarted();
+        for (int t = 0; t < TICKS; t++) {
+            for (TravellingItem item : list.advance()) {
+                list.add(delays[index[0]++ & 4095], item);
+                listHops++;
+            }
+        }
+        watch.stop();
+        long listTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+        index[0] = 0;
+        long[] wheelHops = { 0 };
+        watch.reset().start();
+        for (int t = 0; t < TICKS; t++) {
+            wheel.advance(item -> {
+                wheel.add(delays[index[0]++ & 4095], item);
+                wheelHops[0]++;
+            });
+        }
+        watch.stop();
+        long wheelTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+        Assert.assertEquals(listHops, wheelHops[0]);
+        Assert.assertEquals(ITEM_COUNT, wheel.size());
+
+        if (print) {
+            System.out.println(ITEM_COUNT + " items, " + listHops / TICKS + " items/tick:");
+            System.out.println("  DelayedList took " + listTime + "ųs (" + listTime * 1000 / TICKS + "ns/tick)");
+            System.out.println("  TimingWheel took " + wheelTime + "ųs (" + wheelTime * 1000 / TICKS + "ns/tick)");
+        }
+    }
+}
@@ -14,15 +14,23 @@ import com.google.common.base.Stopwatch;
 import org.junit.Assert;
 import org.junit.Test;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagFloat;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.profiler.Profiler;
 
+import net.minecraftforge.common.util.Constants;
+
 import buildcraft.api.data.NbtSquishConstants;
 
 import buildcraft.lib.misc.HashUtil;
+import buildcraft.lib.nbt.NbtSquishView;
+import buildcraft.lib.nbt.NbtSquishView.CompoundView;
+import buildcraft.lib.nbt.NbtSquishView.ListView;
 import buildcraft.lib.nbt.NbtSquisher;
 
 public class NbtSquisherTester {
@@ -71,6 +79,89 @@ public class NbtSquisherTester {
         test(true, nbt);
     }
 
+    @Test
+    public void testSignedZeroAndNaN() throws IOException {
+        float[] floats = { 0, -0f, Float.NaN };
+        double[] doubles = { 0, -0.0, Double.NaN };
+        NBTTagCompound values = new NBTTagCompound();
+        for (int i = 0; i < floats.length; i++) {
+            values.setFloat("float|" + i, floats[i]);
+            values.setDouble("double|" + i, doubles[i]);
+        }
+        NBTTagCompound read = NbtSquisher.expand(NbtSquisher.squish(values, NbtSquishConstants.BUILDCRAFT_V1));
+        // Not checkEquality, as the tags compare these with ==
+        for (int i = 0; i < floats.length; i++) {
+            float f = read.getFloat("float|" + i);
+            double d = read.getDouble("double|" + i);
+            Assert.assertEquals(Float.floatToIntBits(floats[i]), Float.floatToIntBits(f));
+            Assert.assertEquals(Double.doubleToLongBits(doubles[i]), Double.doubleToLongBits(d));
+        }
+    }
+
+    @Test
+    public void testView() throws IOException {
+        checkView(NbtSquisher.view(NbtSquisher.squish(nbt, NbtSquishConstants.BUILDCRAFT_V1)));
+        checkView(NbtSquisher.view(NbtSquisher.squish(nbt, NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED)));
+    }
+
+    private static void checkView(NbtSquishView view) {
+        CompoundView root = view.getRoot();
+        Assert.assertEquals(nbt.getKeySet().size(), root.size());
+        Assert.assertEquals(1, root.getByte("primitive|byte"));
+        Assert.assertEquals(2, root.getShort("primitive|short"));
+        Assert.assertEquals(4, root.getInteger("primitive|int"));
+        Assert.assertEquals(6, root.getLong("primitive|long"));
+        Assert.assertEquals(10.01f, root.getFloat("primitive|float"), 0);
+        Assert.assertEquals(11.11010101010101001010, root.getDouble("primitive|double"), 0);
+        Assert.assertEquals("OMG A VALUE", root.getString("string"));
+        Assert.assertEquals(Constants.NBT.TAG_INT_ARRAY, root.getTagType("array|int"));
+        Assert.assertEquals(nbt.getTag("array|int"), root.getTag("array|int"));
+        Assert.assertFalse(root.hasKey("missing"));
+        Assert.assertNull(root.getCompound("missing"));
+
+        CompoundView compound = root.getCompound("complex|compound");
+        Assert.assertFalse(compound.getBoolean("a"));
+        Assert.assertEquals(20.02, compound.getDouble("b"), 0);
+
+        // The blueprint is big enough to be written as a packed list
+        NBTTagList bptFrom = nbt.getTagList("bpt", Constants.NBT.TAG_COMPOUND);
+        ListView bpt = root.getList("bpt");
+        Assert.assertEquals(bptFrom.tagCount(), bpt.size());
+        for (int i = bpt.size() - 1; i >= 0; i -= 97) {
+            NBTTagCompound block = view.getCompound(bpt.getValueIndex(i)).toNbt();
+            checkEquality(bptFrom.getCompoundTagAt(i), block);
+        }
+
+        checkEquality(nbt, root.toNbt());
+    }
+
+    @Test
+    public void testReusedDictionaries() throws IOException {
+        byte[] large = NbtSquisher.squish(nbt, NbtSquishConstants.BUILDCRAFT_V1);
+        byte[] small = NbtSquisher.squish(nbtSmall, NbtSquishConstants.BUILDCRAFT_V1);
+        // Anything left over from the previous call would either change the bytes or the expanded tags
+        Assert.assertArrayEquals(large, NbtSquisher.squish(nbt, NbtSquishConstants.BUILDCRAFT_V1));
+        Assert.assertArrayEquals(small, NbtSquisher.squish(nbtSmall, NbtSquishConstants.BUILDCRAFT_V1));
+        checkEquality(nbt, NbtSquisher.expand(large));
+        checkEquality(nbtSmall, NbtSquisher.expand(small));
+        checkEquality(nbt, NbtSquisher.expand(large));
+    }
+
+    @Test
+    public void testSquishIntoBuffer() throws IOException {
+        int[] types = { NbtSquishConstants.VANILLA, NbtSquishConstants.VANILLA_COMPRESSED,
+            NbtSquishConstants.BUILDCRAFT_V1, NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED };
+        for (int type : types) {
+            ByteBuf buf = Unpooled.buffer();
+            buf.writeByte(42);
+            buf.skipBytes(1);
+            NbtSquisher.squish(nbtSmall, type, buf);
+            Assert.assertArrayEquals(NbtSquisher.squish(nbtSmall, type), Arrays.copyOfRange(buf.array(),
+                buf.arrayOffset() + 1, buf.arrayOffset() + buf.writerIndex()));
+            checkEquality(nbtSmall, NbtSquisher.expand(buf));
+        }
+    }
+
     private static NBTTagCompound genNbt(int bptSize) {
         Random rand = new Random(0x517123);
 
@@ -416,11 +507,57 @@ public class NbtSquisherTester {
 
         NbtSquisher.profiler.endSection();
         writeProfilerResults(0, "root.write", NbtSquisher.profiler);
+
+        printThroughput(tester.nbt, 20);
         watchWhole.stop();
         System.out.println("Whole test took " + watchWhole.elapsed(TimeUnit.MINUTES) + "m, "
             + watchWhole.elapsed(TimeUnit.SECONDS) % 60 + "s");
     }
 
+    /** Prints how many MB of nbt (as measured by the vanilla format) can be written and read per second. */
+    private static void printThroughput(NBTTagCompound nbt, int runs) throws IOException {
+        int vanillaSize = NbtSquisher.squish(nbt, NbtSquishConstants.VANILLA).length;
+        int[] types = { NbtSquishConstants.VANILLA, NbtSquishConstants.VANILLA_COMPRESSED,
+            NbtSquishConstants.BUILDCRAFT_V1, NbtSquishConstants.BUILDCRAFT_V1_COMPRESSED };
+        String[] names = { "vanilla   [un]", "vanilla   [cp]", "buildcraft[un]", "buildcraft[cp]" };
+        for (int t = 0; t < types.length; t++) {
+            byte[] bytes = null;
+            Stopwatch watch = Stopwatch.createStarted();
+            for (int i = 0; i < runs; i++) {
+                bytes = NbtSquisher.squish(nbt, types[t]);
+            }
+            watch.stop();
+            long writeTime = watch.elapsed(TimeUnit.MICROSECONDS);
+            watch.reset().start();
+            for (int i = 0; i < runs; i++) {
+                NbtSquisher.expand(bytes);
+            }
+            watch.stop();
+            long readTime = watch.elapsed(TimeUnit.MICROSECONDS);
+            double megabytes = vanillaSize * (double) runs / 1_000_000;
+            System.out.println(names[t] + " writes " + String.format("%.2f", megabytes * 1_000_000 / writeTime)
+                + "MB/s, reads " + String.format("%.2f", megabytes * 1_000_000 / readTime) + "MB/s");
+        }
+
+        // Reading a single value out of the middle of the blueprint, which is what the view is for
+        byte[] bytes = NbtSquisher.squish(nbt, NbtSquishConstants.BUILDCRAFT_V1);
+        Stopwatch watch = Stopwatch.createStarted();
+        for (int i = 0; i < runs; i++) {
+            NbtSquisher.expand(bytes).getTagList("bpt", Constants.NBT.TAG_COMPOUND).getCompoundTagAt(1000);
+        }
+        watch.stop();
+        long expandTime = watch.elapsed(TimeUnit.MICROSECONDS);
+        watch.reset().start();
+        for (int i = 0; i < runs; i++) {
+            NbtSquishView view = NbtSquisher.view(bytes);
+            view.getCompound(view.getRoot().getList("bpt").getValueIndex(1000)).toNbt();
+        }
+        watch.stop();
+        long viewTime = watch.elapsed(TimeUnit.MICROSECONDS);
+        System.out.println("buildcraft[un] single block: expand " + padMicroseconds(expandTime / runs, 10) + ", view "
+            + padMicroseconds(viewTime / runs, 10));
+    }
+
     private static void writeProfilerResults(int indent, String sectionName, Profiler profiler) {
         List<Profiler.Result> list = profiler.getProfilingData(sectionName);
 
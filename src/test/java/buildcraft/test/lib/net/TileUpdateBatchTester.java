@@ -0,0 +1,161 @@
+package buildcraft.test.lib.net;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.math.BlockPos;
+
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+
+import buildcraft.lib.net.MessageUpdateTile;
+import buildcraft.lib.net.MessageUpdateTileBatch;
+import buildcraft.lib.net.PacketBufferBC;
+import buildcraft.lib.net.TileUpdateBatcher.PlayerBatch;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class TileUpdateBatchTester extends VanillaSetupBaseTester {
+    @Test
+    public void testSmallRoundTrip() {
+        List<MessageUpdateTile> messages = new ArrayList<>();
+        messages.add(createMessage(0, new byte[] { 1, 2, 3 }));
+        messages.add(createMessage(-70_000, new byte[0]));
+        messages.add(createMessage(12, new byte[] { 4 }));
+
+        ByteBuf encoded = encode(new MessageUpdateTileBatch(messages));
+        // Too small to be worth compressing
+        Assert.assertEquals(0, new PacketBuffer(encoded.copy()).readVarInt());
+        assertRoundTrip(messages, encoded);
+    }
+
+    @Test
+    public void testCompressedRoundTrip() {
+        List<MessageUpdateTile> messages = new ArrayList<>();
+        int rawSize = 0;
+        for (int i = 0; i < 100; i++) {
+            byte[] payload = new byte[64];
+            Arrays.fill(payload, (byte) (i % 3));
+            MessageUpdateTile message = createMessage(i, payload);
+            messages.add(message);
+            rawSize += encode(message).readableBytes();
+        }
+
+        ByteBuf encoded = encode(new MessageUpdateTileBatch(messages));
+        Assert.assertTrue(new PacketBuffer(encoded.copy()).readVarInt() > 0);
+        Assert.assertTrue(encoded.readableBytes() * 4 < rawSize);
+        assertRoundTrip(messages, encoded);
+    }
+
+    @Test
+    public void testIncompressibleRoundTrip() {
+        Random rand = new Random(0xBA7C4);
+        List<MessageUpdateTile> messages = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            byte[] payload = new byte[rand.nextInt(2000)];
+            rand.nextBytes(payload);
+            messages.add(createMessage(rand.nextInt(), payload));
+        }
+        assertRoundTrip(messages, encode(new MessageUpdateTileBatch(messages)));
+    }
+
+    @Test
+    public void testBrokenLengthRejected() {
+        PacketBuffer buffer = new PacketBuffer(Unpooled.buffer());
+        buffer.writeVarInt(1 << 30);
+        buffer.writeVarInt(1);
+        buffer.writeByte(0);
+        try {
+            new MessageUpdateTileBatch().fromBytes(buffer);
+            Assert.fail("Read a batch with a broken length!");
+        } catch (IllegalStateException expected) {
+            // Good
+        }
+    }
+
+    @Test
+    public void testReplacing() {
+        TileEntity tileA = new TileEntity() {};
+        TileEntity tileB = new TileEntity() {};
+        MessageUpdateTile first = createMessage(1, new byte[] { 1 });
+        MessageUpdateTile delta = createMessage(1, new byte[] { 2 });
+        MessageUpdateTile other = createMessage(2, new byte[] { 3 });
+        MessageUpdateTile last = createMessage(1, new byte[] { 4 });
+        MessageUpdateTile otherId = createMessage(1, new byte[] { 5 });
+
+        PlayerBatch batch = new PlayerBatch();
+        batch.replace(tileA, 1, first);
+        batch.add(delta);
+        batch.replace(tileB, 1, other);
+        batch.replace(tileA, 1, last);
+        batch.replace(tileA, 2, otherId);
+        batch.add(delta);
+
+        List<IMessage> sent = batch.createMessages();
+        Assert.assertEquals(1, sent.size());
+        List<MessageUpdateTile> expected = Arrays.asList(delta, other, last, otherId, delta);
+        Assert.assertEquals(expected, ((MessageUpdateTileBatch) sent.get(0)).getMessages());
+    }
+
+    @Test
+    public void testSingleUpdateNotBatched() {
+        MessageUpdateTile message = createMessage(0, new byte[] { 1 });
+        PlayerBatch batch = new PlayerBatch();
+        batch.add(message);
+        Assert.assertEquals(Arrays.asList(message), batch.createMessages());
+        Assert.assertTrue(new PlayerBatch().createMessages().isEmpty());
+    }
+
+    @Test
+    public void testLargeBatchesSplit() {
+        PlayerBatch batch = new PlayerBatch();
+        List<MessageUpdateTile> messages = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            MessageUpdateTile message = createMessage(i, new byte[300_000]);
+            messages.add(message);
+            batch.add(message);
+        }
+        List<IMessage> sent = batch.createMessages();
+        Assert.assertEquals(2, sent.size());
+        Assert.assertEquals(messages.subList(0, 3), ((MessageUpdateTileBatch) sent.get(0)).getMessages());
+        Assert.assertSame(messages.get(3), sent.get(1));
+    }
+
+    private static MessageUpdateTile createMessage(int x, byte[] payload) {
+        PacketBufferBC buffer = new PacketBufferBC(Unpooled.buffer());
+        buffer.writeBytes(payload);
+        return new MessageUpdateTile(new BlockPos(x, 64, -x), buffer);
+    }
+
+    private static ByteBuf encode(IMessage message) {
+        ByteBuf buf = Unpooled.buffer();
+        message.toBytes(buf);
+        return buf;
+    }
+
+    private static byte[] toArray(ByteBuf buf) {
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), bytes);
+        return bytes;
+    }
+
+    private static void assertRoundTrip(List<MessageUpdateTile> expected, ByteBuf encoded) {
+        MessageUpdateTileBatch read = new MessageUpdateTileBatch();
+        read.fromBytes(encoded);
+        Assert.assertEquals(0, encoded.readableBytes());
+        List<MessageUpdateTile> actual = read.getMessages();
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertArrayEquals(toArray(encode(expected.get(i))), toArray(encode(actual.get(i))));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package buildcraft.test.lib.net.cache;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.lib.net.PacketBufferBC;
+import buildcraft.lib.net.cache.NetworkedObjectCache;
+
+public class NetworkedObjectCacheTester {
+    /** Comfortably more than the number of ticks that an unused object is kept for. */
+    private static final int EXPIRY_TICKS = 20 * 60 * 6;
+    /** The number of low bits of an ID that are the slot. */
+    private static final int SLOT_MASK = (1 << 20) - 1;
+
+    static final class StringCache extends NetworkedObjectCache<String> {
+        StringCache() {
+            super("");
+        }
+
+        @Override
+        protected String getCanonical(String obj) {
+            return obj;
+        }
+
+        @Override
+        protected void writeObject(String obj, PacketBufferBC buffer) {
+            buffer.writeString(obj);
+        }
+
+        @Override
+        protected String readObject(PacketBufferBC buffer) throws IOException {
+            return buffer.readString(255);
+        }
+    }
+
+    private static void tick(NetworkedObjectCache<?> cache, int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            cache.onServerTick();
+        }
+    }
+
+    @Test
+    public void testStoreSameId() {
+        StringCache cache = new StringCache();
+        int a = cache.server().store("a");
+        int b = cache.server().store("b");
+        Assert.assertNotEquals(a, b);
+        Assert.assertEquals(a, cache.server().store("a"));
+        Assert.assertEquals(b, cache.server().getId("b"));
+        Assert.assertEquals(-1, cache.server().getId("c"));
+        Assert.assertEquals("a", cache.server().get(a));
+        Assert.assertEquals(2, cache.getServerEntryCount());
+        Assert.assertEquals(1 / 3.0, cache.getServerHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testEviction() {
+        StringCache cache = new StringCache();
+        int used = cache.server().store("used");
+        int unused = cache.server().store("unused");
+        for (int i = 0; i < 10; i++) {
+            tick(cache, EXPIRY_TICKS / 10);
+            cache.server().store("used");
+        }
+        // Objects that are still being stored keep their ID
+        Assert.assertEquals(used, cache.server().getId("used"));
+        Assert.assertEquals("used", cache.server().get(used));
+        Assert.assertEquals(-1, cache.server().getId("unused"));
+        Assert.assertNull(cache.server().get(unused));
+        Assert.assertEquals(1, cache.getServerEntryCount());
+    }
+
+    @Test
+    public void testSlotReuse() {
+        StringCache cache = new StringCache();
+        int first = cache.server().store("first");
+        tick(cache, EXPIRY_TICKS);
+
+        int second = cache.server().store("second");
+        // The slot is reused, but with a different generation, so the old ID doesn't point at the new object
+        Assert.assertEquals(first & SLOT_MASK, second & SLOT_MASK);
+        Assert.assertNotEquals(first, second);
+        Assert.assertNull(cache.server().get(first));
+        Assert.assertEquals("second", cache.server().get(second));
+
+        // Storing the evicted object again gives it a new ID
+        int again = cache.server().store("first");
+        Assert.assertNotEquals(first, again);
+        Assert.assertNotEquals(second, again);
+        Assert.assertEquals("first", cache.server().get(again));
+        Assert.assertNull(cache.server().get(first));
+    }
+
+    @Test
+    public void testGenerationsWrap() {
+        StringCache cache = new StringCache();
+        Set<Integer> ids = new HashSet<>();
+        int first = cache.server().store("0");
+        ids.add(first);
+        for (int i = 1; i < 2048; i++) {
+            tick(cache, EXPIRY_TICKS);
+            int id = cache.server().store(Integer.toString(i));
+            Assert.assertTrue(id >= 0);
+            Assert.assertEquals(first & SLOT_MASK, id & SLOT_MASK);
+            Assert.assertTrue("Reused " + id, ids.add(id));
+        }
+        // Only after every generation has been used does an ID come back
+        tick(cache, EXPIRY_TICKS);
+        Assert.assertEquals(first, cache.server().store("wrapped"));
+        Assert.assertEquals("wrapped", cache.server().get(first));
+    }
+
+    @Test
+    public void testInvalidIds() {
+        StringCache cache = new StringCache();
+        int id = cache.server().store("a");
+        Assert.assertNull(cache.server().get(-1));
+        Assert.assertNull(cache.server().get(id + 1));
+        Assert.assertNull(cache.server().get(id + SLOT_MASK + 1));
+    }
+}
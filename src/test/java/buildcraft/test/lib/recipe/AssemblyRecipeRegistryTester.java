@@ -0,0 +1,178 @@
+package buildcraft.test.lib.recipe;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.init.Items;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.crafting.Ingredient;
+import net.minecraft.util.NonNullList;
+import net.minecraft.util.ResourceLocation;
+
+import buildcraft.api.recipes.AssemblyRecipe;
+import buildcraft.api.recipes.AssemblyRecipeBasic;
+import buildcraft.api.recipes.IngredientStack;
+
+import buildcraft.lib.recipe.AssemblyRecipeRegistry;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class AssemblyRecipeRegistryTester extends VanillaSetupBaseTester {
+    @After
+    public void clearRegistry() {
+        AssemblyRecipeRegistry.REGISTRY.clear();
+    }
+
+    @Test
+    public void testMatchesLinearSearch() {
+        Random rand = new Random(0xA55E_B1E);
+        List<Item> items = getItems(80);
+        createRecipes(rand, items, 1_000);
+        for (int i = 0; i < 1_000; i++) {
+            NonNullList<ItemStack> inputs = createInputs(rand, items);
+            Assert.assertEquals(findLinear(inputs), new HashSet<>(AssemblyRecipeRegistry.getRecipesFor(inputs)));
+        }
+    }
+
+    @Test
+    public void testInvalidatedByChanges() {
+        NonNullList<ItemStack> inputs = NonNullList.create();
+        inputs.add(new ItemStack(Items.DIAMOND, 4));
+        Assert.assertTrue(AssemblyRecipeRegistry.getRecipesFor(inputs).isEmpty());
+
+        AssemblyRecipe recipe = createRecipe("diamond", Items.DIAMOND, 4);
+        AssemblyRecipeRegistry.register(recipe);
+        Assert.assertEquals(1, AssemblyRecipeRegistry.getRecipesFor(inputs).size());
+
+        AssemblyRecipeRegistry.REGISTRY.remove(recipe.getRegistryName());
+        Assert.assertTrue(AssemblyRecipeRegistry.getRecipesFor(inputs).isEmpty());
+    }
+
+    public static void main(String[] args) {
+        init();
+        Random rand = new Random(0x10_000);
+        List<Item> items = getItems(Integer.MAX_VALUE);
+        List<NonNullList<ItemStack>> tables = new ArrayList<>();
+        for (int count : new int[] { 100, 1_000, 10_000 }) {
+            AssemblyRecipeRegistry.REGISTRY.clear();
+            createRecipes(rand, items, count);
+            tables.clear();
+            // A few tables, each of which is checked every tick
+            for (int i = 0; i < 20; i++) {
+                tables.add(createInputs(rand, items));
+            }
+
+            for (int run = 0; run < 3; run++) {
+                Stopwatch watch = Stopwatch.createStarted();
+                int linearFound = 0;
+                for (int tick = 0; tick < 100; tick++) {
+                    for (NonNullList<ItemStack> inputs : tables) {
+                        linearFound += findLinear(inputs).size();
+                    }
+                }
+                watch.stop();
+                long linearTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+                AssemblyRecipeRegistry.invalidateIndex();
+                watch.reset().start();
+                int indexFound = 0;
+                for (int tick = 0; tick < 100; tick++) {
+                    for (NonNullList<ItemStack> inputs : tables) {
+                        indexFound += AssemblyRecipeRegistry.getRecipesFor(inputs).size();
+                    }
+                }
+                watch.stop();
+                long indexTime = watch.elapsed(TimeUnit.MICROSECONDS);
+                Assert.assertEquals(linearFound, indexFound);
+
+                System.out.println(count + " recipes, " + tables.size() + " tables for 100 ticks:");
+                System.out.println("  Linear search took " + linearTime + "ųs");
+                System.out.println("  Index took " + indexTime + "ųs");
+            }
+        }
+    }
+
+    /** The way that the assembly table used to find recipes. */
+    private static Set<AssemblyRecipe> findLinear(NonNullList<ItemStack> inputs) {
+        Set<AssemblyRecipe> found = new HashSet<>();
+        for (AssemblyRecipe recipe : AssemblyRecipeRegistry.REGISTRY.values()) {
+            if (!recipe.getOutputs(inputs).isEmpty()) {
+                found.add(recipe);
+            }
+        }
+        return found;
+    }
+
+    private static List<Item> getItems(int max) {
+        List<Item> items = new ArrayList<>();
+        for (Item item : Item.REGISTRY) {
+            if (items.size() < max && item != Items.AIR) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private static AssemblyRecipe createRecipe(String name, Item item, int count) {
+        ImmutableSet<IngredientStack> inputs = ImmutableSet.of(new IngredientStack(Ingredient.fromItem(item), count));
+        return new AssemblyRecipeBasic(new ResourceLocation("test", name), 1000, inputs, new ItemStack(Items.STICK));
+    }
+
+    private static void createRecipes(Random rand, List<Item> items, int count) {
+        for (int i = 0; i < count; i++) {
+            ImmutableSet.Builder<IngredientStack> inputs = ImmutableSet.builder();
+            int size = 1 + rand.nextInt(3);
+            for (int j = 0; j < size; j++) {
+                Ingredient ingredient;
+                if (rand.nextInt(8) == 0) {
+                    ingredient = Ingredient.fromItems(randomItem(rand, items), randomItem(rand, items));
+                } else {
+                    ingredient = Ingredient.fromItem(randomItem(rand, items));
+                }
+                inputs.add(new IngredientStack(ingredient, 1 + rand.nextInt(2)));
+            }
+            ItemStack output = new ItemStack(randomItem(rand, items));
+            AssemblyRecipeRegistry.register(
+                new AssemblyRecipeBasic(new ResourceLocation("test", "recipe_" + i), 1000, inputs.build(), output)
+            );
+        }
+    }
+
+    /** An assembly table inventory, with a few random items and (usually) the inputs of a random recipe. */
+    private static NonNullList<ItemStack> createInputs(Random rand, List<Item> items) {
+        NonNullList<ItemStack> inputs = NonNullList.withSize(12, ItemStack.EMPTY);
+        int slot = 0;
+        List<AssemblyRecipe> recipes = new ArrayList<>(AssemblyRecipeRegistry.REGISTRY.values());
+        if (rand.nextInt(4) != 0 && !recipes.isEmpty()) {
+            AssemblyRecipe recipe = recipes.get(rand.nextInt(recipes.size()));
+            for (ItemStack output : recipe.getOutputPreviews()) {
+                for (IngredientStack input : recipe.getInputsFor(output)) {
+                    ItemStack[] stacks = input.ingredient.getMatchingStacks();
+                    ItemStack stack = stacks[rand.nextInt(stacks.length)].copy();
+                    stack.setCount(input.count);
+                    inputs.set(slot++, stack);
+                }
+            }
+        }
+        while (slot < 6) {
+            inputs.set(slot++, new ItemStack(randomItem(rand, items), 1 + rand.nextInt(2)));
+        }
+        return inputs;
+    }
+
+    private static Item randomItem(Random rand, List<Item> items) {
+        return items.get(rand.nextInt(items.size()));
+    }
+}
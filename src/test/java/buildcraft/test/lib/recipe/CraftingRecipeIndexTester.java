@@ -0,0 +1,246 @@
+package buildcraft.test.lib.recipe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.init.Items;
+import net.minecraft.inventory.InventoryCrafting;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.crafting.IRecipe;
+import net.minecraft.item.crafting.Ingredient;
+import net.minecraft.item.crafting.ShapedRecipes;
+import net.minecraft.item.crafting.ShapelessRecipes;
+import net.minecraft.util.NonNullList;
+import net.minecraft.world.World;
+
+import net.minecraftforge.registries.IForgeRegistryEntry;
+
+import buildcraft.lib.recipe.CraftingRecipeIndex;
+import buildcraft.lib.tile.craft.WorkbenchCrafting;
+import buildcraft.lib.tile.item.ItemHandlerSimple;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class CraftingRecipeIndexTester extends VanillaSetupBaseTester {
+    @Test
+    public void testMatchesLinearSearch() {
+        Random rand = new Random(0x2EC1_9E);
+        List<Item> items = getItems(60);
+        List<IRecipe> recipes = createRecipes(rand, items, 2_000);
+        CraftingRecipeIndex index = CraftingRecipeIndex.create(recipes);
+        Assert.assertEquals(2, index.getUnindexedCount());
+        ItemHandlerSimple handler = new ItemHandlerSimple(9);
+        WorkbenchCrafting grid = new WorkbenchCrafting(3, 3, handler);
+        int found = 0;
+        for (int i = 0; i < 2_000; i++) {
+            fillGrid(rand, items, recipes, handler);
+            IRecipe expected = findLinear(recipes, grid, null);
+            Assert.assertSame(expected, index.findMatchingRecipe(grid, null));
+            if (expected != null) {
+                found++;
+            }
+        }
+        Assert.assertTrue(found > 500);
+    }
+
+    public static void main(String[] args) {
+        init();
+        Random rand = new Random(0x50_000);
+        List<Item> items = getItems(Integer.MAX_VALUE);
+        List<IRecipe> recipes = createRecipes(rand, items, 50_000);
+        ItemHandlerSimple handler = new ItemHandlerSimple(9);
+        WorkbenchCrafting grid = new WorkbenchCrafting(3, 3, handler);
+        int lookups = 2_000;
+        List<ItemStack[]> grids = new ArrayList<>();
+        for (int i = 0; i < lookups; i++) {
+            fillGrid(rand, items, recipes, handler);
+            grids.add(handler.stacks.toArray(new ItemStack[0]));
+        }
+
+        for (int run = 0; run < 3; run++) {
+            Stopwatch watch = Stopwatch.createStarted();
+            CraftingRecipeIndex index = CraftingRecipeIndex.create(recipes);
+            watch.stop();
+            long buildTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+            watch.reset().start();
+            int linearFound = 0;
+            for (ItemStack[] stacks : grids) {
+                setGrid(handler, stacks);
+                if (findLinear(recipes, grid, null) != null) {
+                    linearFound++;
+                }
+            }
+            watch.stop();
+            long linearTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+            watch.reset().start();
+            int indexFound = 0;
+            for (ItemStack[] stacks : grids) {
+                setGrid(handler, stacks);
+                if (index.findMatchingRecipe(grid, null) != null) {
+                    indexFound++;
+                }
+            }
+            watch.stop();
+            long indexTime = watch.elapsed(TimeUnit.MICROSECONDS);
+            Assert.assertEquals(linearFound, indexFound);
+
+            System.out.println(recipes.size() + " recipes, " + lookups + " lookups (" + indexFound + " found):");
+            System.out.println("  Linear search took " + linearTime + "ųs");
+            System.out.println("  Index took " + buildTime + "ųs to build, then " + indexTime + "ųs");
+        }
+    }
+
+    /** The way that CraftingUtil used to find recipes. */
+    private static IRecipe findLinear(List<IRecipe> recipes, InventoryCrafting grid, World world) {
+        for (IRecipe recipe : recipes) {
+            if (recipe.matches(grid, world)) {
+                return recipe;
+            }
+        }
+        return null;
+    }
+
+    private static List<Item> getItems(int max) {
+        List<Item> items = new ArrayList<>();
+        for (Item item : Item.REGISTRY) {
+            if (items.size() < max && item != Items.AIR) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private static List<IRecipe> createRecipes(Random rand, List<Item> items, int count) {
+        List<IRecipe> recipes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (i == count / 3 || i == count * 2 / 3) {
+                recipes.add(new DynamicRecipe(items.get(rand.nextInt(items.size()))));
+            }
+            ItemStack result = new ItemStack(items.get(rand.nextInt(items.size())));
+            NonNullList<Ingredient> ingredients = NonNullList.create();
+            if (rand.nextBoolean()) {
+                int width = 1 + rand.nextInt(3);
+                int height = 1 + rand.nextInt(3);
+                for (int j = 0; j < width * height; j++) {
+                    ingredients.add(rand.nextInt(4) == 0 ? Ingredient.EMPTY : randomIngredient(rand, items));
+                }
+                if (ingredients.stream().allMatch(ingredient -> ingredient == Ingredient.EMPTY)) {
+                    ingredients.set(0, randomIngredient(rand, items));
+                }
+                recipes.add(new ShapedRecipes("", width, height, ingredients, result));
+            } else {
+                int size = 1 + rand.nextInt(4);
+                for (int j = 0; j < size; j++) {
+                    ingredients.add(randomIngredient(rand, items));
+                }
+                recipes.add(new ShapelessRecipes("", result, ingredients));
+            }
+        }
+        return recipes;
+    }
+
+    private static Ingredient randomIngredient(Random rand, List<Item> items) {
+        if (rand.nextInt(8) == 0) {
+            return Ingredient.fromItems(items.get(rand.nextInt(items.size())), items.get(rand.nextInt(items.size())));
+        }
+        return Ingredient.fromItems(items.get(rand.nextInt(items.size())));
+    }
+
+    /** Fills the grid with the ingredients of a random recipe, or with random items. */
+    private static void fillGrid(Random rand, List<Item> items, List<IRecipe> recipes, ItemHandlerSimple handler) {
+        for (int i = 0; i < 9; i++) {
+            handler.setStackInSlot(i, ItemStack.EMPTY);
+        }
+        IRecipe recipe = recipes.get(rand.nextInt(recipes.size()));
+        if (rand.nextInt(4) == 0 || recipe instanceof DynamicRecipe) {
+            for (int i = 0; i < 9; i++) {
+                if (rand.nextInt(3) == 0) {
+                    handler.setStackInSlot(i, new ItemStack(items.get(rand.nextInt(items.size()))));
+                }
+            }
+        } else if (recipe instanceof ShapedRecipes) {
+            ShapedRecipes shaped = (ShapedRecipes) recipe;
+            int offsetX = rand.nextInt(4 - shaped.recipeWidth);
+            int offsetY = rand.nextInt(4 - shaped.recipeHeight);
+            for (int y = 0; y < shaped.recipeHeight; y++) {
+                for (int x = 0; x < shaped.recipeWidth; x++) {
+                    Ingredient ingredient = shaped.getIngredients().get(x + y * shaped.recipeWidth);
+                    handler.setStackInSlot(offsetX + x + (offsetY + y) * 3, createStack(rand, ingredient));
+                }
+            }
+        } else {
+            int slot = rand.nextInt(9 - recipe.getIngredients().size() + 1);
+            for (Ingredient ingredient : recipe.getIngredients()) {
+                handler.setStackInSlot(slot++, createStack(rand, ingredient));
+            }
+        }
+    }
+
+    private static ItemStack createStack(Random rand, Ingredient ingredient) {
+        ItemStack[] stacks = ingredient.getMatchingStacks();
+        if (stacks.length == 0) {
+            return ItemStack.EMPTY;
+        }
+        return new ItemStack(stacks[rand.nextInt(stacks.length)].getItem());
+    }
+
+    private static void setGrid(ItemHandlerSimple handler, ItemStack[] stacks) {
+        for (int i = 0; i < stacks.length; i++) {
+            handler.setStackInSlot(i, stacks[i]);
+        }
+    }
+
+    /** A recipe that can't be indexed: it matches any grid that only contains the given item. */
+    private static class DynamicRecipe extends IForgeRegistryEntry.Impl<IRecipe> implements IRecipe {
+        private final Item item;
+
+        DynamicRecipe(Item item) {
+            this.item = item;
+        }
+
+        @Override
+        public boolean matches(InventoryCrafting inv, World world) {
+            boolean found = false;
+            for (int i = 0; i < inv.getSizeInventory(); i++) {
+                ItemStack stack = inv.getStackInSlot(i);
+                if (!stack.isEmpty()) {
+                    if (stack.getItem() != item) {
+                        return false;
+                    }
+                    found = true;
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public ItemStack getCraftingResult(InventoryCrafting inv) {
+            return new ItemStack(item);
+        }
+
+        @Override
+        public boolean canFit(int width, int height) {
+            return true;
+        }
+
+        @Override
+        public ItemStack getRecipeOutput() {
+            return ItemStack.EMPTY;
+        }
+
+        @Override
+        public boolean isDynamic() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package buildcraft.test.lib.recipe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.nbt.NBTTagCompound;
+
+import net.minecraftforge.fluids.FluidRegistry;
+import net.minecraftforge.fluids.FluidStack;
+
+import buildcraft.api.recipes.IRefineryRecipeManager.IDistillationRecipe;
+import buildcraft.api.recipes.IRefineryRecipeManager.IRefineryRegistry;
+
+import buildcraft.lib.recipe.RefineryRecipeRegistry;
+
+import buildcraft.test.VanillaSetupBaseTester;
+
+public class RefineryRecipeRegistryTester extends VanillaSetupBaseTester {
+    private static final IRefineryRegistry<IDistillationRecipe> REGISTRY =
+        RefineryRecipeRegistry.INSTANCE.distillationRegistry;
+
+    @After
+    public void clearRegistry() {
+        REGISTRY.removeRecipes(recipe -> true);
+    }
+
+    @Test
+    public void testLookup() {
+        IDistillationRecipe water = addRecipe(createFluid(-1));
+        IDistillationRecipe tagged = addRecipe(createFluid(7));
+        Assert.assertSame(water, REGISTRY.getRecipeForInput(new FluidStack(FluidRegistry.WATER, 1)));
+        Assert.assertSame(tagged, REGISTRY.getRecipeForInput(createFluid(7)));
+        Assert.assertNull(REGISTRY.getRecipeForInput(createFluid(8)));
+        Assert.assertNull(REGISTRY.getRecipeForInput(new FluidStack(FluidRegistry.LAVA, 1)));
+        Assert.assertNull(REGISTRY.getRecipeForInput(null));
+    }
+
+    @Test
+    public void testReplaceAndRemove() {
+        addRecipe(createFluid(1));
+        addRecipe(createFluid(2));
+        IDistillationRecipe replacement = addRecipe(createFluid(1));
+        Assert.assertEquals(2, REGISTRY.getAllRecipes().size());
+        // Replacing a recipe keeps it where it was
+        Assert.assertSame(replacement, REGISTRY.getAllRecipes().iterator().next());
+        Assert.assertSame(replacement, REGISTRY.getRecipeForInput(createFluid(1)));
+
+        Assert.assertEquals(1, REGISTRY.removeRecipes(recipe -> recipe == replacement).size());
+        Assert.assertNull(REGISTRY.getRecipeForInput(createFluid(1)));
+        Assert.assertNotNull(REGISTRY.getRecipeForInput(createFluid(2)));
+    }
+
+    /** Changing the tag of a fluid after adding its recipe mustn't change the recipe. */
+    @Test
+    public void testTagCopied() {
+        FluidStack fluid = createFluid(3);
+        IDistillationRecipe recipe = addRecipe(fluid);
+        fluid.tag.setInteger("id", 4);
+        Assert.assertSame(recipe, REGISTRY.getRecipeForInput(createFluid(3)));
+        Assert.assertNull(REGISTRY.getRecipeForInput(createFluid(4)));
+    }
+
+    public static void main(String[] args) {
+        init();
+        List<FluidStack> inputs = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            inputs.add(createFluid(i * 2));
+        }
+        for (int count : new int[] { 10, 100, 1_000 }) {
+            REGISTRY.removeRecipes(recipe -> true);
+            for (int i = 0; i < count; i++) {
+                addRecipe(createFluid(i));
+            }
+            for (int run = 0; run < 3; run++) {
+                Stopwatch watch = Stopwatch.createStarted();
+                int linearFound = 0;
+                for (FluidStack fluid : inputs) {
+                    if (findLinear(fluid) != null) {
+                        linearFound++;
+                    }
+                }
+                watch.stop();
+                long linearTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+                watch.reset().start();
+                int indexFound = 0;
+                for (FluidStack fluid : inputs) {
+                    if (REGISTRY.getRecipeForInput(fluid) != null) {
+                        indexFound++;
+                    }
+                }
+                watch.stop();
+                long indexTime = watch.elapsed(TimeUnit.MICROSECONDS);
+                Assert.assertEquals(linearFound, indexFound);
+
+                System.out.println(count + " recipes, " + inputs.size() + " lookups:");
+                System.out.println("  Linear search took " + linearTime + "ųs");
+                System.out.println("  Index took " + indexTime + "ųs");
+            }
+        }
+    }
+
+    /** The way that the registry used to find recipes. */
+    private static IDistillationRecipe findLinear(FluidStack fluid) {
+        for (IDistillationRecipe recipe : REGISTRY.getAllRecipes()) {
+            if (recipe.in().isFluidEqual(fluid)) {
+                return recipe;
+            }
+        }
+        return null;
+    }
+
+    /** @return Water, with a tag holding the given id (or no tag at all if the id is negative). */
+    private static FluidStack createFluid(int id) {
+        FluidStack fluid = new FluidStack(FluidRegistry.WATER, 1000);
+        if (id >= 0) {
+            fluid.tag = new NBTTagCompound();
+            fluid.tag.setInteger("id", id);
+        }
+        return fluid;
+    }
+
+    private static IDistillationRecipe addRecipe(FluidStack in) {
+        FluidStack gas = new FluidStack(FluidRegistry.WATER, 1);
+        FluidStack liquid = new FluidStack(FluidRegistry.LAVA, 1);
+        return REGISTRY.addRecipe(RefineryRecipeRegistry.INSTANCE.createDistillationRecipe(in, gas, liquid, 1));
+    }
+}
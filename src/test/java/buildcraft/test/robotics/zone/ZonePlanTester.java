@@ -0,0 +1,186 @@
+package buildcraft.test.robotics.zone;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.netty.buffer.Unpooled;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.robotics.zone.ZonePlan;
+
+public class ZonePlanTester {
+    private static final int SIZE = 200;
+
+    /** Fills a random plan (in the area -SIZE to SIZE) and adds every block to the given set as x * 65536 + z. */
+    private static ZonePlan createPlan(Random rand, int blocks, Set<Long> expected) {
+        ZonePlan plan = new ZonePlan();
+        for (int i = 0; i < blocks; i++) {
+            int x = rand.nextInt(SIZE * 2) - SIZE;
+            int z = rand.nextInt(SIZE * 2) - SIZE;
+            boolean value = rand.nextInt(4) != 0;
+            plan.set(x, z, value);
+            if (value) {
+                expected.add(key(x, z));
+            } else {
+                expected.remove(key(x, z));
+            }
+        }
+        return plan;
+    }
+
+    private static long key(int x, int z) {
+        return x * 65536L + z;
+    }
+
+    private static void assertMatches(Set<Long> expected, ZonePlan plan) {
+        Assert.assertEquals(expected.size(), plan.getArea());
+        Assert.assertEquals(expected.size(), plan.getAll().size());
+        for (int x = -SIZE - 16; x < SIZE + 16; x++) {
+            for (int z = -SIZE - 16; z < SIZE + 16; z++) {
+                Assert.assertEquals(expected.contains(key(x, z)), plan.get(x, z));
+            }
+        }
+    }
+
+    @Test
+    public void testGetSet() {
+        Set<Long> expected = new HashSet<>();
+        ZonePlan plan = createPlan(new Random(0), 20_000, expected);
+        assertMatches(expected, plan);
+
+        ZonePlan copy = new ZonePlan(plan);
+        copy.set(SIZE + 5, SIZE + 5, true);
+        assertMatches(expected, plan);
+        Assert.assertEquals(expected.size() + 1, copy.getArea());
+    }
+
+    @Test
+    public void testBooleanOps() {
+        Random rand = new Random(1);
+        Set<Long> setA = new HashSet<>();
+        Set<Long> setB = new HashSet<>();
+        ZonePlan a = createPlan(rand, 20_000, setA);
+        ZonePlan b = createPlan(rand, 20_000, setB);
+
+        ZonePlan union = new ZonePlan(a);
+        union.union(b);
+        Set<Long> expected = new HashSet<>(setA);
+        expected.addAll(setB);
+        assertMatches(expected, union);
+
+        ZonePlan intersection = new ZonePlan(a);
+        intersection.intersect(b);
+        expected = new HashSet<>(setA);
+        expected.retainAll(setB);
+        assertMatches(expected, intersection);
+
+        ZonePlan difference = new ZonePlan(a);
+        difference.subtract(b);
+        expected = new HashSet<>(setA);
+        expected.removeAll(setB);
+        assertMatches(expected, difference);
+    }
+
+    @Test
+    public void testRandomBlockPos() {
+        Random rand = new Random(2);
+        Set<Long> expected = new HashSet<>();
+        ZonePlan plan = createPlan(rand, 500, expected);
+        Set<Long> found = new HashSet<>();
+        for (int i = 0; i < expected.size() * 50; i++) {
+            BlockPos pos = plan.getRandomBlockPos(rand);
+            Assert.assertTrue(plan.get(pos.getX(), pos.getZ()));
+            found.add(key(pos.getX(), pos.getZ()));
+        }
+        // Every block should be picked (rather than just every chunk)
+        Assert.assertEquals(expected, found);
+        Assert.assertNull(new ZonePlan().getRandomBlockPos(rand));
+    }
+
+    @Test
+    public void testSerialisation() {
+        Set<Long> expected = new HashSet<>();
+        ZonePlan plan = createPlan(new Random(3), 20_000, expected);
+        // A full chunk is written differently
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                plan.set(x + 16 * 20, z, true);
+                expected.add(key(x + 16 * 20, z));
+            }
+        }
+
+        NBTTagCompound nbt = new NBTTagCompound();
+        plan.writeToNBT(nbt);
+        ZonePlan fromNbt = new ZonePlan();
+        fromNbt.set(SIZE + 10, 0, true);
+        fromNbt.readFromNBT(nbt);
+        assertMatches(expected, fromNbt);
+
+        PacketBuffer buffer = new PacketBuffer(Unpooled.buffer());
+        plan.writeToByteBuf(buffer);
+        assertMatches(expected, new ZonePlan().readFromByteBuf(buffer));
+    }
+
+    @Test
+    public void testOffset() {
+        Set<Long> expected = new HashSet<>();
+        ZonePlan plan = createPlan(new Random(4), 5_000, expected);
+        for (int[] offset : new int[][] { { 32, -48 }, { 5, -7 } }) {
+            ZonePlan moved = plan.getWithOffset(offset[0], offset[1]);
+            Assert.assertEquals(plan.getArea(), moved.getArea());
+            for (long key : expected) {
+                int x = (int) Math.floorDiv(key + 32768, 65536);
+                int z = (int) (key - x * 65536L);
+                Assert.assertTrue(moved.get(x + offset[0], z + offset[1]));
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        Random rand = new Random(5);
+        ZonePlan a = createPlan(rand, 100_000, new HashSet<>());
+        ZonePlan b = createPlan(rand, 100_000, new HashSet<>());
+        for (int run = 0; run < 5; run++) {
+            Stopwatch watch = Stopwatch.createStarted();
+            int count = 0;
+            for (int x = -SIZE; x < SIZE; x++) {
+                for (int z = -SIZE; z < SIZE; z++) {
+                    if (a.get(x, z)) {
+                        count++;
+                    }
+                }
+            }
+            watch.stop();
+            System.out.println("Getting " + (SIZE * SIZE * 4) + " blocks took " + watch.elapsed(TimeUnit.MICROSECONDS)
+                + "ųs (" + count + " set)");
+
+            watch.reset().start();
+            long total = 0;
+            for (int i = 0; i < 100_000; i++) {
+                total += a.getRandomBlockPos(rand).getX();
+            }
+            watch.stop();
+            System.out.println("Picking 100000 random blocks took " + watch.elapsed(TimeUnit.MICROSECONDS) + "ųs ("
+                + total + ")");
+
+            watch.reset().start();
+            ZonePlan merged = new ZonePlan(a);
+            merged.union(b);
+            merged.intersect(a);
+            merged.subtract(b);
+            watch.stop();
+            System.out.println("Merging took " + watch.elapsed(TimeUnit.MICROSECONDS) + "ųs (" + merged.getArea()
+                + " blocks)");
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package buildcraft.test.silicon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.silicon.tile.LaserDemand.Laser;
+import buildcraft.silicon.tile.LaserDemand.Table;
+
+public class LaserDemandTester {
+    private static final int LASERS = 32;
+    /** The power that a single laser can give per tick. */
+    private static final long LASER_POWER = 4;
+    /** The smallest amount of power that a table needs for each recipe. */
+    private static final long RECIPE_POWER = 400;
+    /** The number of ticks that a table waits between recipes. */
+    private static final int RECIPE_GAP = 20;
+    /** How often lasers retarget even if their target still needs power, like TileLaser.serverTargetMoveInterval. */
+    private static final int RETARGET_INTERVAL = 10;
+
+    @Test
+    public void testRetargetWhenDemandStops() {
+        Table<String> a = new Table<>("a");
+        Table<String> b = new Table<>("b");
+        Laser<String> laser = new Laser<>();
+        laser.addVisible(a);
+        laser.addVisible(b);
+        Assert.assertNull(laser.chooseTarget(new Random(0)));
+        Assert.assertEquals(0, laser.getNeedingPowerCount());
+
+        a.setPowerNeeded(true);
+        Assert.assertEquals(1, laser.getNeedingPowerCount());
+        Assert.assertSame(a, laser.chooseTarget(new Random(0)));
+        Assert.assertTrue(laser.hasUsefulTarget());
+        Assert.assertEquals(1, a.getTargetingLasers());
+
+        // Changing to the same demand doesn't add the table twice
+        a.setPowerNeeded(true);
+        Assert.assertEquals(1, laser.getNeedingPowerCount());
+
+        b.setPowerNeeded(true);
+        a.setPowerNeeded(false);
+        Assert.assertFalse(laser.hasUsefulTarget());
+        Assert.assertSame(b, laser.chooseTarget(new Random(0)));
+        Assert.assertEquals(0, a.getTargetingLasers());
+        Assert.assertEquals(1, b.getTargetingLasers());
+
+        b.setPowerNeeded(false);
+        Assert.assertNull(laser.chooseTarget(new Random(0)));
+        Assert.assertEquals(0, b.getTargetingLasers());
+
+        // The demand is remembered for lasers that start seeing the table later
+        a.setPowerNeeded(true);
+        Laser<String> late = new Laser<>();
+        late.addVisible(a);
+        Assert.assertSame(a, late.chooseTarget(new Random(0)));
+    }
+
+    @Test
+    public void testLasersSpreadOut() {
+        List<Table<Integer>> tables = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Table<Integer> table = new Table<>(i);
+            table.setPowerNeeded(true);
+            tables.add(table);
+        }
+        Random rand = new Random(42);
+        List<Laser<Integer>> lasers = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Laser<Integer> laser = new Laser<>();
+            tables.forEach(laser::addVisible);
+            laser.chooseTarget(rand);
+            lasers.add(laser);
+        }
+        for (Table<Integer> table : tables) {
+            Assert.assertEquals(3, table.getTargetingLasers());
+            Assert.assertEquals(12, table.getVisibleLasers());
+        }
+
+        // Retargeting doesn't move a laser away from a table that already has the fewest lasers
+        for (Laser<Integer> laser : lasers) {
+            Table<Integer> before = laser.getTarget();
+            Assert.assertSame(before, laser.chooseTarget(rand));
+        }
+
+        // Once a table stops needing power its lasers spread out over the others
+        Table<Integer> done = tables.get(0);
+        done.setPowerNeeded(false);
+        for (Laser<Integer> laser : lasers) {
+            if (!laser.hasUsefulTarget()) {
+                laser.chooseTarget(rand);
+            }
+        }
+        Assert.assertEquals(0, done.getTargetingLasers());
+        for (Table<Integer> table : tables.subList(1, 4)) {
+            Assert.assertEquals(4, table.getTargetingLasers());
+        }
+    }
+
+    @Test
+    public void testRemovedTable() {
+        Table<String> a = new Table<>("a");
+        Table<String> b = new Table<>("b");
+        a.setPowerNeeded(true);
+        b.setPowerNeeded(true);
+        Laser<String> laser = new Laser<>();
+        laser.addVisible(a);
+        laser.addVisible(b);
+        laser.setTarget(a);
+
+        a.remove();
+        Assert.assertNull(laser.getTarget());
+        Assert.assertFalse(laser.canSee(a));
+        Assert.assertEquals(1, laser.getVisibleCount());
+        Assert.assertEquals(1, laser.getNeedingPowerCount());
+        Assert.assertEquals(0, a.getTargetingLasers());
+
+        // A removed table doesn't tell the laser about any more changes
+        a.setPowerNeeded(false);
+        a.setPowerNeeded(true);
+        Assert.assertEquals(1, laser.getNeedingPowerCount());
+        Assert.assertSame(b, laser.chooseTarget(new Random(0)));
+    }
+
+    @Test
+    public void testClearVisibleKeepsTarget() {
+        Table<String> a = new Table<>("a");
+        a.setPowerNeeded(true);
+        Laser<String> laser = new Laser<>();
+        laser.addVisible(a);
+        laser.chooseTarget(new Random(0));
+
+        // Like TileLaser.findPossibleTargets, when the laser's cone is scanned again
+        laser.clearVisible();
+        Assert.assertFalse(laser.canSee(a));
+        Assert.assertSame(a, laser.getTarget());
+        Assert.assertEquals(0, a.getVisibleLasers());
+        // Tables that the laser can't see any more don't tell it about changes
+        a.setPowerNeeded(false);
+        a.setPowerNeeded(true);
+        Assert.assertEquals(0, laser.getNeedingPowerCount());
+
+        laser.addVisible(a);
+        laser.addVisible(a);
+        Assert.assertEquals(1, laser.getVisibleCount());
+        Assert.assertEquals(1, laser.getNeedingPowerCount());
+        Assert.assertEquals(1, a.getTargetingLasers());
+    }
+
+    @Test
+    public void testRoomsMatch() {
+        for (int tables : new int[] { 1, 4, 16 }) {
+            Room[] rooms = { new PollingRoom(tables), new DemandRoom(tables) };
+            long[] delivered = new long[rooms.length];
+            for (int tick = 0; tick < 2_000; tick++) {
+                for (int r = 0; r < rooms.length; r++) {
+                    delivered[r] += rooms[r].tick(tick);
+                }
+            }
+            // Lasers only stop powering tables when none of them need power, so both ways should deliver (almost)
+            // the same amount of power
+            Assert.assertTrue(delivered[1] > 0 && delivered[1] <= LASERS * LASER_POWER * 2_000);
+            Assert.assertEquals(delivered[0], delivered[1], delivered[0] / 20);
+        }
+    }
+
+    public static void main(String[] args) {
+        int ticks = 20_000;
+        for (int run = 0; run < 3; run++) {
+            for (int tables : new int[] { 1, 4, 16, 64 }) {
+                System.out.println(ticks + " ticks of " + LASERS + " lasers and " + tables + " tables:");
+                for (Room room : new Room[] { new PollingRoom(tables), new DemandRoom(tables) }) {
+                    long delivered = 0;
+                    Stopwatch watch = Stopwatch.createStarted();
+                    for (int tick = 0; tick < ticks; tick++) {
+                        delivered += room.tick(tick);
+                    }
+                    watch.stop();
+                    long time = watch.elapsed(TimeUnit.MICROSECONDS);
+                    System.out.println("  " + room.getClass().getSimpleName() + " took " + time + "ųs ("
+                        + time * 1000 / ticks + "ns per tick, " + delivered + " power delivered)");
+                }
+            }
+        }
+    }
+
+    /** A room where every laser can see every table. */
+    interface Room {
+        /** @return The power delivered to tables during this tick. */
+        long tick(int tick);
+    }
+
+    /** A table that needs between 1 and 2 times {@link #RECIPE_POWER} for every recipe, and waits
+     * {@link #RECIPE_GAP} ticks between them. Tables start at different times, so that they don't all finish their
+     * recipes together. */
+    static final class SimTable {
+        final long recipePower;
+        long power = 0;
+        long target = 0;
+        int waiting;
+
+        SimTable(int index) {
+            recipePower = RECIPE_POWER + index % 4 * RECIPE_POWER / 4;
+            waiting = 1 + index * 7 % RECIPE_GAP;
+        }
+
+        long getRequiredPower() {
+            return target - power;
+        }
+
+        long receive(long given) {
+            long received = Math.min(given, getRequiredPower());
+            power += received;
+            return received;
+        }
+
+        void tick() {
+            if (target > 0 && power >= target) {
+                power = 0;
+                target = 0;
+                waiting = RECIPE_GAP;
+            } else if (target == 0 && --waiting <= 0) {
+                target = recipePower;
+            }
+        }
+    }
+
+    /** How TileLaser used to work: every tick each laser looks up its target, and whenever it retargets it looks up
+     * and polls every table that it can see. */
+    static final class PollingRoom implements Room {
+        /** Like World.getTileEntity */
+        final Map<Long, SimTable> tables = new HashMap<>();
+        final List<Long> positions = new ArrayList<>();
+        final Long[] targets = new Long[LASERS];
+        final Random rand = new Random(0x1A5E2);
+
+        PollingRoom(int tableCount) {
+            for (int i = 0; i < tableCount; i++) {
+                long pos = i * 31L;
+                tables.put(pos, new SimTable(i));
+                positions.add(pos);
+            }
+        }
+
+        private boolean isPowerNeededAt(Long pos) {
+            return pos != null && tables.get(pos).getRequiredPower() > 0;
+        }
+
+        @Override
+        public long tick(int tick) {
+            for (SimTable table : tables.values()) {
+                table.tick();
+            }
+            long delivered = 0;
+            for (int l = 0; l < LASERS; l++) {
+                if (!isPowerNeededAt(targets[l])) {
+                    targets[l] = null;
+                }
+                if ((tick + l) % RETARGET_INTERVAL == 0 || !isPowerNeededAt(targets[l])) {
+                    List<Long> needing = new ArrayList<>();
+                    for (Long pos : positions) {
+                        if (isPowerNeededAt(pos)) {
+                            needing.add(pos);
+                        }
+                    }
+                    targets[l] = needing.isEmpty() ? null : needing.get(rand.nextInt(needing.size()));
+                }
+                if (targets[l] != null) {
+                    SimTable table = tables.get(targets[l]);
+                    delivered += table.receive(Math.min(LASER_POWER, table.getRequiredPower()));
+                }
+            }
+            return delivered;
+        }
+    }
+
+    /** How TileLaser works now: tables publish their demand, and lasers keep a direct reference to their target. */
+    static final class DemandRoom implements Room {
+        final List<Table<SimTable>> tables = new ArrayList<>();
+        final List<Laser<SimTable>> lasers = new ArrayList<>();
+        final Random rand = new Random(0x1A5E2);
+
+        DemandRoom(int tableCount) {
+            for (int i = 0; i < tableCount; i++) {
+                tables.add(new Table<>(new SimTable(i)));
+            }
+            for (int l = 0; l < LASERS; l++) {
+                Laser<SimTable> laser = new Laser<>();
+                tables.forEach(laser::addVisible);
+                lasers.add(laser);
+            }
+        }
+
+        @Override
+        public long tick(int tick) {
+            for (Table<SimTable> table : tables) {
+                // Like TileLaserTableBase.update
+                table.owner.tick();
+                table.setPowerNeeded(table.owner.getRequiredPower() > 0);
+            }
+            long delivered = 0;
+            for (int l = 0; l < LASERS; l++) {
+                Laser<SimTable> laser = lasers.get(l);
+                Table<SimTable> target = laser.getTarget();
+                if ((tick + l) % RETARGET_INTERVAL == 0 || target == null || target.owner.getRequiredPower() <= 0) {
+                    target = laser.chooseTarget(rand);
+                }
+                if (target != null) {
+                    SimTable table = target.owner;
+                    delivered += table.receive(Math.min(LASER_POWER, table.getRequiredPower()));
+                    // Like TileLaserTableBase.receiveLaserPower
+                    target.setPowerNeeded(table.getRequiredPower() > 0);
+                }
+            }
+            return delivered;
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package buildcraft.test.transport.pipe;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.transport.pipe.flow.FluidSectionStore;
+
+public class FluidSectionStoreTester {
+    private static final int SECTIONS = FluidSectionStore.SECTIONS;
+    private static final int WEST = 4, EAST = 5, CENTER = 6;
+    private static final int DELAY = 10, CAPACITY = 1000, TRANSFER = 100;
+    private static final int COOLDOWN_INPUT = -30, COOLDOWN_OUTPUT = 30;
+    private static final int LINE_LENGTH = 5_000;
+
+    @Test
+    public void testMatchesObjects() {
+        Random rand = new Random(0xF1_01D);
+        FluidSectionStore store = new FluidSectionStore();
+        FluidSectionStore other = new FluidSectionStore();
+        RefPipe[] refs = new RefPipe[20];
+        int[] slots = new int[refs.length];
+        for (int i = 0; i < refs.length; i++) {
+            int delay = rand.nextBoolean() ? DELAY : 2;
+            refs[i] = new RefPipe(delay);
+            slots[i] = store.allocate(delay, CAPACITY, TRANSFER);
+        }
+
+        for (int step = 0; step < 100_000; step++) {
+            int p = rand.nextInt(refs.length);
+            RefPipe ref = refs[p];
+            int slot = slots[p];
+            int s = rand.nextInt(SECTIONS);
+            RefSection section = ref.sections[s];
+            int index = slot * SECTIONS + s;
+            int value = rand.nextInt(300);
+            boolean doIt = rand.nextBoolean();
+            switch (rand.nextInt(8)) {
+                case 0:
+                    Assert.assertEquals(section.fill(value, doIt), store.fill(index, value, doIt));
+                    break;
+                case 1:
+                    Assert.assertEquals(section.fillInternal(value, doIt), store.fillInternal(index, value, doIt));
+                    break;
+                case 2:
+                    Assert.assertEquals(section.drainInternal(value, doIt), store.drainInternal(index, value, doIt));
+                    break;
+                case 3:
+                    Assert.assertEquals(ref.advance(), store.advance(slot));
+                    Assert.assertEquals(ref.canAnyOutput(), store.canAnyOutput(slot));
+                    break;
+                case 4:
+                    section.ticksInDirection = doIt ? COOLDOWN_INPUT : COOLDOWN_OUTPUT;
+                    store.setTicksInDirection(index, section.ticksInDirection);
+                    break;
+                case 5: {
+                    for (RefPipe r : refs) {
+                        r.tickCooldowns();
+                    }
+                    store.tickCooldowns();
+                    break;
+                }
+                case 6: {
+                    if (rand.nextInt(50) == 0) {
+                        ref.setFluid(doIt);
+                        store.setFluid(slot, doIt);
+                    }
+                    break;
+                }
+                default: {
+                    // Pipes move between chunks when they are loaded and unloaded
+                    if (rand.nextInt(20) == 0) {
+                        slots[p] = store.moveTo(slot, other);
+                        FluidSectionStore swap = store;
+                        store = other;
+                        other = swap;
+                        // Everything else is still in the other store
+                        for (int i = 0; i < refs.length; i++) {
+                            if (i != p) {
+                                slots[i] = other.moveTo(slots[i], store);
+                            }
+                        }
+                    }
+                    break;
+                }
+            }
+            for (int i = 0; i < SECTIONS; i++) {
+                int idx = slots[p] * SECTIONS + i;
+                RefSection sec = ref.sections[i];
+                Assert.assertEquals(sec.amount, store.getAmount(idx));
+                Assert.assertEquals(sec.ticksInDirection, store.getTicksInDirection(idx));
+                Assert.assertEquals(sec.getMaxFilled(), store.getMaxFilled(idx));
+                Assert.assertEquals(sec.getMaxDrained(), store.getMaxDrained(idx));
+            }
+        }
+        Assert.assertEquals(refs.length, store.size());
+        Assert.assertEquals(0, other.size());
+    }
+
+    @Test
+    public void testReleaseReusesSlots() {
+        FluidSectionStore store = new FluidSectionStore(1);
+        int a = store.allocate(DELAY, CAPACITY, TRANSFER);
+        int b = store.allocate(2, CAPACITY, TRANSFER);
+        store.setFluid(a, true);
+        Assert.assertEquals(100, store.fill(a * SECTIONS + CENTER, 200, true));
+        store.release(a);
+        Assert.assertEquals(1, store.size());
+        int c = store.allocate(DELAY, CAPACITY, TRANSFER);
+        Assert.assertEquals(a, c);
+        Assert.assertEquals(0, store.getAmount(c * SECTIONS + CENTER));
+        Assert.assertEquals(0, store.getIncoming(c * SECTIONS + CENTER, 0));
+        Assert.assertEquals(2, store.getDelay(b));
+    }
+
+    @Test
+    public void testSlotsStayPacked() {
+        FluidSectionStore store = new FluidSectionStore(1);
+        int[] slots = new int[8];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = store.allocate(DELAY, CAPACITY, TRANSFER);
+            store.setFluid(slots[i], true);
+        }
+        store.release(slots[5]);
+        store.release(slots[2]);
+        // The lowest free slot is always used first
+        Assert.assertEquals(slots[2], store.allocate(DELAY, CAPACITY, TRANSFER));
+        Assert.assertEquals(slots[5], store.allocate(DELAY, CAPACITY, TRANSFER));
+
+        // Cooldowns of inactive pipes are left alone, even when they are between active ones
+        store.setFluid(slots[2], false);
+        for (int slot : new int[] { slots[1], slots[2], slots[3], slots[7] }) {
+            store.setTicksInDirection(slot * SECTIONS + WEST, COOLDOWN_INPUT);
+            store.setTicksInDirection(slot * SECTIONS + EAST, COOLDOWN_OUTPUT);
+        }
+        store.tickCooldowns();
+        Assert.assertEquals(COOLDOWN_INPUT + 1, store.getTicksInDirection(slots[1] * SECTIONS + WEST));
+        Assert.assertEquals(COOLDOWN_OUTPUT - 1, store.getTicksInDirection(slots[3] * SECTIONS + EAST));
+        Assert.assertEquals(COOLDOWN_OUTPUT - 1, store.getTicksInDirection(slots[7] * SECTIONS + EAST));
+        Assert.assertEquals(COOLDOWN_INPUT, store.getTicksInDirection(slots[2] * SECTIONS + WEST));
+        Assert.assertEquals(COOLDOWN_OUTPUT, store.getTicksInDirection(slots[2] * SECTIONS + EAST));
+    }
+
+    /** Cooldowns are ticked by FluidSectionStore.tickAll at the end of every world tick, rather than by each pipe. So
+     * a cooldown set on a pipe by its neighbour is counted down at the end of that tick, whether the neighbour ticked
+     * before or after the pipe did. */
+    @Test
+    public void testCooldownOrdering() {
+        for (boolean neighbourFirst : new boolean[] { true, false }) {
+            FluidSectionStore store = new FluidSectionStore();
+            int pipe = store.allocate(DELAY, CAPACITY, TRANSFER);
+            int neighbour = store.allocate(DELAY, CAPACITY, TRANSFER);
+            store.setFluid(pipe, true);
+            store.setFluid(neighbour, true);
+            int west = pipe * SECTIONS + WEST;
+
+            // Like PipeFlowFluids.fill, when the neighbour pushes fluid into the pipe
+            Runnable neighbourTick = () -> {
+                store.advance(neighbour);
+                store.fill(west, TRANSFER, true);
+                store.setTicksInDirection(west, COOLDOWN_INPUT);
+            };
+            if (neighbourFirst) {
+                neighbourTick.run();
+                store.advance(pipe);
+            } else {
+                store.advance(pipe);
+                neighbourTick.run();
+            }
+            store.tickCooldowns();
+            Assert.assertEquals(COOLDOWN_INPUT + 1, store.getTicksInDirection(west));
+
+            // The section can output again after exactly -COOLDOWN_INPUT ticks
+            for (int tick = 1; tick < -COOLDOWN_INPUT; tick++) {
+                Assert.assertTrue(store.getTicksInDirection(west) < 0);
+                store.tickCooldowns();
+            }
+            Assert.assertEquals(0, store.getTicksInDirection(west));
+        }
+    }
+
+    /** Builds a line of pipes, with fluid flowing from west to east. */
+    private static Line[] createLines() {
+        RefPipe[] refs = new RefPipe[LINE_LENGTH];
+        // The line crosses a chunk every 16 pipes
+        FluidSectionStore[] stores = new FluidSectionStore[(LINE_LENGTH + 15) / 16];
+        int[] slots = new int[LINE_LENGTH];
+        for (int i = 0; i < stores.length; i++) {
+            stores[i] = new FluidSectionStore(16);
+        }
+        for (int i = 0; i < LINE_LENGTH; i++) {
+            refs[i] = new RefPipe(DELAY);
+            refs[i].setFluid(true);
+            slots[i] = stores[i / 16].allocate(DELAY, CAPACITY, TRANSFER);
+            stores[i / 16].setFluid(slots[i], true);
+        }
+        return new Line[] { new ObjectLine(refs), new StoreLine(stores, slots) };
+    }
+
+    @Test
+    public void testLineMatches() {
+        Line[] lines = createLines();
+        for (int tick = 0; tick < 500; tick++) {
+            Assert.assertEquals(lines[0].tick(), lines[1].tick());
+        }
+    }
+
+    public static void main(String[] args) {
+        Line[] lines = createLines();
+        int ticks = 2_000;
+        for (int run = 0; run < 5; run++) {
+            System.out.println(ticks + " ticks of " + LINE_LENGTH + " fluid pipes:");
+            for (Line line : lines) {
+                long moved = 0;
+                Stopwatch watch = Stopwatch.createStarted();
+                for (int tick = 0; tick < ticks; tick++) {
+                    moved += line.tick();
+                }
+                watch.stop();
+                long time = watch.elapsed(TimeUnit.MICROSECONDS);
+                System.out.println("  " + line.getClass().getSimpleName() + " took " + time + "ųs (" + (ticks
+                    * 1_000_000L / Math.max(1, time)) + " ticks/second, " + moved + " mB moved)");
+            }
+        }
+    }
+
+    interface Line {
+        /** @return The amount of fluid that moved between pipes. */
+        long tick();
+    }
+
+    /** Does the same as PipeFlowFluids.onTick for a straight line of pipes: the first pipe is filled from a tank, and
+     * the last one is drained into one. */
+    static final class ObjectLine implements Line {
+        final RefPipe[] pipes;
+
+        ObjectLine(RefPipe[] pipes) {
+            this.pipes = pipes;
+        }
+
+        @Override
+        public long tick() {
+            long moved = 0;
+            pipes[0].sections[WEST].fill(TRANSFER, true);
+            for (int i = 0; i < pipes.length; i++) {
+                RefPipe pipe = pipes[i];
+                if (pipe.advance() == 0) {
+                    pipe.tickCooldowns();
+                    continue;
+                }
+                RefSection east = pipe.sections[EAST];
+                if (pipe.canAnyOutput()) {
+                    int drained = east.drainInternal(TRANSFER, false);
+                    int filled = i == pipes.length - 1 ? drained : pipes[i + 1].sections[WEST].fill(drained, true);
+                    if (filled > 0) {
+                        east.drainInternal(filled, true);
+                        east.ticksInDirection = COOLDOWN_OUTPUT;
+                        moved += filled;
+                    }
+                }
+                RefSection center = pipe.sections[CENTER];
+                east.fillInternal(center.drainInternal(east.getMaxFilled(), true), true);
+                RefSection west = pipe.sections[WEST];
+                int entering = Math.min(west.getMaxDrained(), CAPACITY - center.amount);
+                if (entering > 0) {
+                    west.ticksInDirection = COOLDOWN_INPUT;
+                    center.fill(west.drainInternal(entering, true), true);
+                }
+                pipe.tickCooldowns();
+            }
+            return moved;
+        }
+    }
+
+    static final class StoreLine implements Line {
+        final FluidSectionStore[] stores;
+        final int[] slots;
+
+        StoreLine(FluidSectionStore[] stores, int[] slots) {
+            this.stores = stores;
+            this.slots = slots;
+        }
+
+        @Override
+        public long tick() {
+            long moved = 0;
+            stores[0].fill(slots[0] * SECTIONS + WEST, TRANSFER, true);
+            for (int i = 0; i < slots.length; i++) {
+                FluidSectionStore store = stores[i / 16];
+                int slot = slots[i];
+                if (store.advance(slot) == 0) {
+                    continue;
+                }
+                int east = slot * SECTIONS + EAST;
+                if (store.canAnyOutput(slot)) {
+                    int drained = store.drainInternal(east, TRANSFER, false);
+                    int filled;
+                    if (i == slots.length - 1) {
+                        filled = drained;
+                    } else {
+                        filled = stores[(i + 1) / 16].fill(slots[i + 1] * SECTIONS + WEST, drained, true);
+                    }
+                    if (filled > 0) {
+                        store.drainInternal(east, filled, true);
+                        store.setTicksInDirection(east, COOLDOWN_OUTPUT);
+                        moved += filled;
+                    }
+                }
+                int center = slot * SECTIONS + CENTER;
+                store.fillInternal(east, store.drainInternal(center, store.getMaxFilled(east), true), true);
+                int west = slot * SECTIONS + WEST;
+                int entering = Math.min(store.getMaxDrained(west), CAPACITY - store.getAmount(center));
+                if (entering > 0) {
+                    store.setTicksInDirection(west, COOLDOWN_INPUT);
+                    store.fill(center, store.drainInternal(west, entering, true), true);
+                }
+            }
+            // Like FluidSectionStore.tickAll
+            for (FluidSectionStore store : stores) {
+                store.tickCooldowns();
+            }
+            return moved;
+        }
+    }
+
+    /** A copy of how PipeFlowFluids used to store each pipe, with an object per section. */
+    static final class RefPipe {
+        final int delay;
+        final RefSection[] sections = new RefSection[SECTIONS];
+        boolean active;
+        int currentTime;
+
+        RefPipe(int delay) {
+            this.delay = delay;
+            for (int i = 0; i < SECTIONS; i++) {
+                sections[i] = new RefSection(this);
+            }
+        }
+
+        void setFluid(boolean hasFluid) {
+            active = hasFluid;
+            currentTime = 0;
+            for (RefSection section : sections) {
+                section.incoming = new int[delay];
+                section.ticksInDirection = 0;
+            }
+        }
+
+        int advance() {
+            currentTime = (currentTime + 1) % delay;
+            int total = 0;
+            for (RefSection section : sections) {
+                section.incoming[currentTime] = 0;
+                total += section.amount;
+            }
+            return total;
+        }
+
+        boolean canAnyOutput() {
+            for (RefSection section : sections) {
+                if (section.ticksInDirection >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void tickCooldowns() {
+            if (!active) {
+                return;
+            }
+            for (RefSection section : sections) {
+                if (section.ticksInDirection > 0) {
+                    section.ticksInDirection--;
+                } else if (section.ticksInDirection < 0) {
+                    section.ticksInDirection++;
+                }
+            }
+        }
+    }
+
+    static final class RefSection {
+        final RefPipe pipe;
+        int amount;
+        int[] incoming;
+        int ticksInDirection;
+
+        RefSection(RefPipe pipe) {
+            this.pipe = pipe;
+            incoming = new int[pipe.delay];
+        }
+
+        int getMaxFilled() {
+            int availableTotal = CAPACITY - amount;
+            int availableThisTick = TRANSFER - incoming[pipe.currentTime];
+            return Math.min(availableTotal, availableThisTick);
+        }
+
+        int getMaxDrained() {
+            int max = amount;
+            for (int i : incoming) {
+                max -= i;
+            }
+            return Math.min(max, TRANSFER);
+        }
+
+        int fill(int maxFill, boolean doFill) {
+            int amountToFill = Math.min(getMaxFilled(), maxFill);
+            if (amountToFill <= 0) {
+                return 0;
+            }
+            if (doFill) {
+                incoming[pipe.currentTime] += amountToFill;
+                amount += amountToFill;
+            }
+            return amountToFill;
+        }
+
+        int fillInternal(int maxFill, boolean doFill) {
+            int amountToFill = Math.min(CAPACITY - amount, maxFill);
+            if (amountToFill <= 0) {
+                return 0;
+            }
+            if (doFill) {
+                incoming[pipe.currentTime] += amountToFill;
+                amount += amountToFill;
+            }
+            return amountToFill;
+        }
+
+        int drainInternal(int maxDrain, boolean doDrain) {
+            maxDrain = Math.min(maxDrain, getMaxDrained());
+            if (maxDrain <= 0) {
+                return 0;
+            }
+            if (doDrain) {
+                amount -= maxDrain;
+            }
+            return maxDrain;
+        }
+    }
+}
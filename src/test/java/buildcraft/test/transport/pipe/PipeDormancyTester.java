@@ -0,0 +1,198 @@
+package buildcraft.test.transport.pipe;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.minecraft.init.Items;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import buildcraft.api.transport.pipe.PipeApi;
+import buildcraft.api.transport.pipe.PipeDefinition;
+import buildcraft.api.transport.pipe.PipeDefinition.PipeDefinitionBuilder;
+import buildcraft.api.transport.pipe.PipeEventHandler;
+import buildcraft.api.transport.pipe.PipeEventItem;
+import buildcraft.api.transport.pipe.PipeFlowType;
+
+import buildcraft.test.VanillaSetupBaseTester;
+import buildcraft.transport.pipe.PipeRegistry;
+import buildcraft.transport.pipe.behaviour.PipeBehaviourStone;
+import buildcraft.transport.pipe.flow.PipeFlowItems;
+import buildcraft.transport.tile.PipeDormancyManager;
+import buildcraft.transport.tile.TilePipeHolder;
+
+/** Drives a real {@link TilePipeHolder} (with a {@link PipeFlowItems}) through {@link PipeDormancyManager} in a minimal
+ * world, and checks that every item reaches the centre and side of the pipe on exactly the tick that it should, no
+ * matter whether the pipe was asleep, awake, or neighbour-updated when the item was inserted. */
+public class PipeDormancyTester extends VanillaSetupBaseTester {
+    private static final double SPEED = 0.04;
+    /** The number of ticks that an item takes to travel between the centre and an unconnected side at
+     * {@link #SPEED}. */
+    private static final int SIDE_TICKS = (int) Math.ceil(0.25 / SPEED);
+
+    private static PipeDefinition definition;
+
+    @BeforeClass
+    public static void registerPipe() {
+        if (PipeApi.flowItems == null) {
+            PipeApi.flowItems = new PipeFlowType(PipeFlowItems::new, PipeFlowItems::new);
+        }
+        PipeDefinitionBuilder builder = new PipeDefinitionBuilder();
+        builder.identifier = new ResourceLocation("buildcrafttransport", "test_dormancy_item");
+        builder.texturePrefix = "buildcrafttransport:pipes/stone_item";
+        builder.textureSuffixes = new String[] { "" };
+        builder.logicConstructor = PipeBehaviourStone::new;
+        builder.logicLoader = PipeBehaviourStone::new;
+        builder.flow(PipeApi.flowItems);
+        definition = new PipeDefinition(builder);
+        PipeRegistry.INSTANCE.registerPipe(definition);
+    }
+
+    @Test
+    public void testSleepingPipe() {
+        PipeTestWorld world = new PipeTestWorld();
+        TilePipeHolder holder = world.placePipe(new BlockPos(0, 64, 0), definition);
+        ItemTracker tracker = new ItemTracker(world, holder);
+        PipeDormancyManager dormancy = PipeDormancyManager.get(world);
+
+        for (int i = 0; i < 5; i++) {
+            world.tick(null, null);
+        }
+        Assert.assertFalse("The pipe never fell asleep!", world.tickableTileEntities.contains(holder));
+        Assert.assertEquals(1, dormancy.getSleepingCount());
+
+        // Inserted before the pipe would have ticked: this is the case that used to arrive a tick late
+        world.tick(() -> tracker.insert(1), null);
+        Assert.assertEquals(1, tracker.arrivals);
+        Assert.assertTrue(world.tickableTileEntities.contains(holder));
+
+        // Nothing is due until the item reaches the side, so it should go straight back to sleep
+        world.tick(null, null);
+        world.tick(null, null);
+        Assert.assertFalse(world.tickableTileEntities.contains(holder));
+
+        // Like BlockPipeHolder.neighborChanged
+        holder.refreshNeighbours();
+        holder.getPipe().markForUpdate();
+        world.tick(null, null);
+        Assert.assertTrue(world.tickableTileEntities.contains(holder));
+
+        // Inserted after the (now awake) pipe has already ticked
+        world.tick(null, () -> tracker.insert(2));
+        Assert.assertEquals(2, tracker.arrivals);
+
+        for (int i = 0; i < SIDE_TICKS * 4; i++) {
+            world.tick(null, null);
+        }
+        // Both items have reached the side and the centre again at least once more
+        Assert.assertTrue(tracker.arrivals >= 2 + 4);
+        Assert.assertTrue("The pipe never slept between items!", world.pipeTicks < world.ticks);
+    }
+
+    @Test
+    public void testRandomInsertsAndUpdates() {
+        Random rand = new Random(0xD0_11_A7);
+        PipeTestWorld world = new PipeTestWorld();
+        TilePipeHolder holder = world.placePipe(new BlockPos(0, 64, 0), definition);
+        ItemTracker tracker = new ItemTracker(world, holder);
+
+        int inserted = 0;
+        for (int t = 0; t < 5_000; t++) {
+            Runnable before = null, after = null;
+            if (inserted < 40 && rand.nextInt(100) == 0) {
+                int id = ++inserted;
+                if (rand.nextBoolean()) {
+                    before = () -> tracker.insert(id);
+                } else {
+                    after = () -> tracker.insert(id);
+                }
+            }
+            if (rand.nextInt(200) == 0) {
+                holder.refreshNeighbours();
+                holder.getPipe().markForUpdate();
+            }
+            world.tick(before, after);
+        }
+
+        Assert.assertEquals(inserted, tracker.expected.size());
+        Assert.assertTrue(tracker.arrivals > inserted * 10);
+        Assert.assertTrue("The pipe never slept!", world.pipeTicks < world.ticks);
+    }
+
+    @Test
+    public void testReleasedOnUnload() throws InterruptedException {
+        PipeTestWorld world = new PipeTestWorld();
+        world.placePipe(new BlockPos(0, 64, 0), definition);
+        for (int i = 0; i < 5; i++) {
+            world.tick(null, null);
+        }
+        Assert.assertEquals(1, PipeDormancyManager.get(world).getSleepingCount());
+        WeakReference<PipeDormancyManager> manager = new WeakReference<>(PipeDormancyManager.get(world));
+
+        // The world is still strongly held here, so only unloading it can release the manager (and the sleeping pipe)
+        PipeDormancyManager.onWorldUnload(world);
+        for (int i = 0; i < 50 && manager.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull("The manager of an unloaded world wasn't released!", manager.get());
+        Assert.assertEquals(0, PipeDormancyManager.get(world).getSleepingCount());
+    }
+
+    /** Bounces every item between the centre and the west side of the pipe forever, and checks that every arrival
+     * happens on the tick that it should. Items are identified by their damage value. */
+    public static class ItemTracker {
+        final World world;
+        final PipeFlowItems flow;
+        /** The tick that each item is expected to reach its next destination on. */
+        final Map<Integer, Long> expected = new HashMap<>();
+        int arrivals = 0;
+
+        ItemTracker(World world, TilePipeHolder holder) {
+            this.world = world;
+            this.flow = (PipeFlowItems) holder.getPipe().getFlow();
+            holder.eventBus.registerHandler(this);
+        }
+
+        void insert(int id) {
+            // Items inserted directly into the centre should reach it this tick, even if the pipe was asleep
+            expected.put(id, world.getTotalWorldTime());
+            // Unstackable, so that nothing merges
+            flow.insertItemsForce(new ItemStack(Items.DIAMOND_SWORD, 1, id), EnumFacing.WEST, null, SPEED);
+        }
+
+        private void onArrive(ItemStack stack) {
+            int id = stack.getItemDamage();
+            long now = world.getTotalWorldTime();
+            Long due = expected.get(id);
+            Assert.assertNotNull("Unknown item " + id, due);
+            Assert.assertEquals("Item " + id + " arrived at the wrong time!", (long) due, now);
+            expected.put(id, now + SIDE_TICKS);
+            arrivals++;
+        }
+
+        @PipeEventHandler
+        public void reachCenter(PipeEventItem.ReachCenter event) {
+            onArrive(event.getStack());
+        }
+
+        @PipeEventHandler
+        public void reachEnd(PipeEventItem.ReachEnd event) {
+            onArrive(event.getStack());
+        }
+
+        @PipeEventHandler
+        public void tryBounce(PipeEventItem.TryBounce event) {
+            event.canBounce = true;
+        }
+    }
+}
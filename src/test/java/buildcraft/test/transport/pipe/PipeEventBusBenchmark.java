@@ -0,0 +1,128 @@
+package buildcraft.test.transport.pipe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import buildcraft.api.transport.pipe.PipeEvent;
+import buildcraft.api.transport.pipe.PipeEventFluid;
+import buildcraft.api.transport.pipe.PipeEventHandler;
+import buildcraft.api.transport.pipe.PipeEventItem;
+
+import buildcraft.transport.pipe.PipeEventBus;
+
+/** Compares the dispatch used by {@link PipeEventBus} against the old approach of walking every handler, checking
+ * {@link Class#isAssignableFrom(Class)} and then calling {@link MethodHandle#invoke}. Run {@link #main(String[])} for
+ * a longer (more stable) run. */
+public class PipeEventBusBenchmark {
+    private static final int HANDLER_OBJECTS = 4;
+
+    @Test
+    public void testCompare() throws Throwable {
+        long[] times = compare(100_000, false);
+        Assert.assertEquals(times[2], times[3]);
+    }
+
+    public static void main(String[] args) throws Throwable {
+        for (int i = 0; i < 10; i++) {
+            compare(5_000_000, true);
+        }
+    }
+
+    /** @return An array of {oldMicroseconds, newMicroseconds, oldSpeedTotal, newSpeedTotal} */
+    private static long[] compare(int events, boolean print) throws Throwable {
+        PipeEventBus bus = new PipeEventBus();
+        LegacyBus legacy = new LegacyBus();
+        for (int i = 0; i < HANDLER_OBJECTS; i++) {
+            Handlers handlers = new Handlers();
+            bus.registerHandler(handlers);
+            legacy.registerHandler(handlers);
+        }
+
+        long oldTotal = 0;
+        Stopwatch watch = Stopwatch.createStarted();
+        for (int i = 0; i < events; i++) {
+            PipeEventItem.ModifySpeed event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+            legacy.fireEvent(event);
+            oldTotal += (long) event.targetSpeed;
+        }
+        watch.stop();
+        long oldTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+        long newTotal = 0;
+        watch.reset().start();
+        for (int i = 0; i < events; i++) {
+            PipeEventItem.ModifySpeed event = new PipeEventItem.ModifySpeed(null, null, null, 1);
+            bus.fireEvent(event);
+            newTotal += (long) event.targetSpeed;
+        }
+        watch.stop();
+        long newTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+        if (print) {
+            System.out.println("Fired " + events + " events: old = " + oldTime + "ųs, new = " + newTime + "ųs ("
+                + (oldTime * 100 / Math.max(1, newTime)) + "%)");
+        }
+        return new long[] { oldTime, newTime, oldTotal, newTotal };
+    }
+
+    public static class Handlers {
+        @PipeEventHandler
+        public void modifySpeed(PipeEventItem.ModifySpeed event) {
+            event.targetSpeed += 1;
+        }
+
+        @PipeEventHandler
+        public void sideCheck(PipeEventItem.SideCheck event) {
+            throw new IllegalStateException("Not fired in this benchmark!");
+        }
+
+        @PipeEventHandler
+        public void drop(PipeEventItem.Drop event) {
+            throw new IllegalStateException("Not fired in this benchmark!");
+        }
+
+        @PipeEventHandler
+        public void fluidSideCheck(PipeEventFluid.SideCheck event) {
+            throw new IllegalStateException("Not fired in this benchmark!");
+        }
+    }
+
+    /** The dispatch that {@link PipeEventBus} used before it cached handlers per event class. */
+    static class LegacyBus {
+        private final List<Class<?>> classes = new ArrayList<>();
+        private final List<MethodHandle> handles = new ArrayList<>();
+
+        void registerHandler(Object obj) throws IllegalAccessException {
+            for (Method m : obj.getClass().getDeclaredMethods()) {
+                if (m.getAnnotation(PipeEventHandler.class) == null) {
+                    continue;
+                }
+                classes.add(m.getParameterTypes()[0]);
+                handles.add(MethodHandles.publicLookup().unreflect(m).bindTo(obj));
+            }
+        }
+
+        boolean fireEvent(PipeEvent event) throws Throwable {
+            boolean handled = false;
+            for (int i = 0; i < classes.size(); i++) {
+                if (event.isCanceled()) {
+                    continue;
+                }
+                if (classes.get(i).isAssignableFrom(event.getClass())) {
+                    handles.get(i).invoke(event);
+                    handled = true;
+                }
+            }
+            return handled;
+        }
+    }
+}
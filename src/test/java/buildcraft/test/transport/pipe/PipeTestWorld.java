@@ -0,0 +1,114 @@
+package buildcraft.test.transport.pipe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.profiler.Profiler;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.ITickable;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.GameType;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldProviderSurface;
+import net.minecraft.world.WorldSettings;
+import net.minecraft.world.WorldType;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.storage.WorldInfo;
+
+import buildcraft.api.transport.pipe.IPipe;
+import buildcraft.api.transport.pipe.PipeDefinition;
+
+import buildcraft.transport.pipe.Pipe;
+import buildcraft.transport.pipe.flow.PowerNetwork;
+import buildcraft.transport.tile.PipeDormancyManager;
+import buildcraft.transport.tile.TilePipeHolder;
+
+/** A world without any chunks, that just stores tile entities in a map and ticks them in the same order that
+ * {@link World#updateEntities()} and BCTransportEventDist do. */
+class PipeTestWorld extends World {
+    final Map<BlockPos, TileEntity> tiles = new HashMap<>();
+    int ticks = 0, pipeTicks = 0;
+
+    PipeTestWorld() {
+        super(null, new WorldInfo(new WorldSettings(0, GameType.CREATIVE, false, false, WorldType.FLAT), "test"),
+            new WorldProviderSurface(), new Profiler(), false);
+    }
+
+    TilePipeHolder placePipe(BlockPos pos, PipeDefinition definition) {
+        TilePipeHolder holder = new TestPipeHolder();
+        holder.setWorld(this);
+        holder.setPos(pos);
+        NBTTagCompound nbt = new NBTTagCompound();
+        nbt.setInteger("x", pos.getX());
+        nbt.setInteger("y", pos.getY());
+        nbt.setInteger("z", pos.getZ());
+        nbt.setTag("pipe", new Pipe(holder, definition).writeToNbt());
+        holder.readFromNBT(nbt);
+        tiles.put(pos, holder);
+        tickableTileEntities.add(holder);
+        return holder;
+    }
+
+    /** Adds a tile that isn't ticked. */
+    void placeTile(BlockPos pos, TileEntity tile) {
+        tile.setWorld(this);
+        tile.setPos(pos);
+        tiles.put(pos, tile);
+    }
+
+    /** @param beforeTiles Called after the world time has increased, but before any tiles are ticked.
+     * @param afterTiles Called after every tile has been ticked, but before the end of the tick. */
+    void tick(Runnable beforeTiles, Runnable afterTiles) {
+        getWorldInfo().setWorldTotalTime(getTotalWorldTime() + 1);
+        ticks++;
+        if (beforeTiles != null) {
+            beforeTiles.run();
+        }
+        for (TileEntity tile : new ArrayList<>(tickableTileEntities)) {
+            if (tile instanceof TilePipeHolder) {
+                pipeTicks++;
+            }
+            ((ITickable) tile).update();
+        }
+        if (afterTiles != null) {
+            afterTiles.run();
+        }
+        PowerNetwork.tickAll(this);
+        PipeDormancyManager.get(this).tick(this);
+    }
+
+    @Override
+    protected IChunkProvider createChunkProvider() {
+        return null;
+    }
+
+    @Override
+    protected boolean isChunkLoaded(int x, int z, boolean allowEmpty) {
+        return true;
+    }
+
+    @Override
+    public TileEntity getTileEntity(BlockPos pos) {
+        return tiles.get(pos);
+    }
+
+    @Override
+    public IBlockState getBlockState(BlockPos pos) {
+        return Blocks.AIR.getDefaultState();
+    }
+
+    /** Capabilities aren't registered in tests, so this finds neighbouring pipes directly rather than with
+     * {@link buildcraft.api.transport.pipe.PipeApi#CAP_PIPE}. */
+    static class TestPipeHolder extends TilePipeHolder {
+        @Override
+        public IPipe getNeighbourPipe(EnumFacing side) {
+            TileEntity neighbour = getNeighbourTile(side);
+            return neighbour instanceof TilePipeHolder ? ((TilePipeHolder) neighbour).getPipe() : null;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package buildcraft.test.transport.pipe;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.BlockPos;
+
+import net.minecraftforge.common.capabilities.Capability;
+
+import buildcraft.api.mj.IMjConnector;
+import buildcraft.api.mj.IMjReceiver;
+import buildcraft.api.mj.MjAPI;
+import buildcraft.api.transport.pipe.PipeApi;
+import buildcraft.api.transport.pipe.PipeApi.PowerTransferInfo;
+import buildcraft.api.transport.pipe.PipeDefinition;
+import buildcraft.api.transport.pipe.PipeDefinition.PipeDefinitionBuilder;
+import buildcraft.api.transport.pipe.PipeFlowType;
+
+import buildcraft.test.VanillaSetupBaseTester;
+import buildcraft.transport.BCTransportConfig;
+import buildcraft.transport.pipe.PipeRegistry;
+import buildcraft.transport.pipe.behaviour.PipeBehaviourStone;
+import buildcraft.transport.pipe.flow.PipeFlowPower;
+import buildcraft.transport.pipe.flow.PowerNetworkSolver;
+import buildcraft.transport.tile.TilePipeHolder;
+
+public class PowerNetworkSolverTester extends VanillaSetupBaseTester {
+    private static final long MAX_POWER = 10 * MjAPI.MJ;
+    private static final int LINE_LENGTH = 1000;
+    /** The same as a stone kinesis pipe. */
+    private static final long RESISTANCE = MjAPI.MJ / 32;
+
+    private static PipeDefinition receiverPipe, pipe;
+
+    @BeforeClass
+    public static void registerPipes() {
+        if (PipeApi.flowPower == null) {
+            PipeApi.flowPower = new PipeFlowType(PipeFlowPower::new, PipeFlowPower::new);
+        }
+        receiverPipe = registerPipe("test_power_receiver", true);
+        pipe = registerPipe("test_power", false);
+    }
+
+    private static PipeDefinition registerPipe(String name, boolean receiver) {
+        PipeDefinitionBuilder builder = new PipeDefinitionBuilder();
+        builder.identifier = new ResourceLocation("buildcrafttransport", name);
+        builder.texturePrefix = "buildcrafttransport:pipes/stone_power";
+        builder.textureSuffixes = new String[] { "" };
+        builder.logicConstructor = PipeBehaviourStone::new;
+        builder.logicLoader = PipeBehaviourStone::new;
+        builder.flow(PipeApi.flowPower);
+        PipeDefinition definition = new PipeDefinition(builder);
+        PipeRegistry.INSTANCE.registerPipe(definition);
+        PipeApi.powerTransferData.put(definition,
+            PowerTransferInfo.createFromResistance(MAX_POWER, RESISTANCE, receiver));
+        return definition;
+    }
+
+    private static int[][] line(int length) {
+        int[][] neighbours = new int[length][];
+        for (int i = 0; i < length; i++) {
+            if (i == 0) {
+                neighbours[i] = length == 1 ? new int[0] : new int[] { 1 };
+            } else if (i == length - 1) {
+                neighbours[i] = new int[] { i - 1 };
+            } else {
+                neighbours[i] = new int[] { i - 1, i + 1 };
+            }
+        }
+        return neighbours;
+    }
+
+    private static long[] filled(int length, long value) {
+        long[] arr = new long[length];
+        Arrays.fill(arr, value);
+        return arr;
+    }
+
+    @Test
+    public void testLineLoss() {
+        int length = 10;
+        // 1% resistance
+        long resistance = MjAPI.MJ / 100;
+        PowerNetworkSolver solver = new PowerNetworkSolver(line(length), filled(length, MAX_POWER),
+            filled(length, resistance), new int[] { 0 }, new int[] { length - 1 });
+
+        long[] source = { MjAPI.MJ };
+        long[] delivered = new long[1];
+        long total = solver.solve(source, new long[] { 100 * MjAPI.MJ }, delivered);
+
+        long expected = MjAPI.MJ;
+        for (int i = 0; i < length; i++) {
+            expected = expected * (MjAPI.MJ - resistance) / MjAPI.MJ;
+        }
+        Assert.assertEquals(0, source[0]);
+        Assert.assertEquals(expected, delivered[0]);
+        Assert.assertEquals(expected, total);
+    }
+
+    @Test
+    public void testDemandLimited() {
+        PowerNetworkSolver solver = new PowerNetworkSolver(line(5), filled(5, MAX_POWER), filled(5, 0),
+            new int[] { 0 }, new int[] { 4 });
+        long[] source = { 5 * MjAPI.MJ };
+        long[] delivered = new long[1];
+        solver.solve(source, new long[] { 2 * MjAPI.MJ }, delivered);
+        Assert.assertEquals(2 * MjAPI.MJ, delivered[0]);
+        Assert.assertEquals(3 * MjAPI.MJ, source[0]);
+    }
+
+    @Test
+    public void testCapacityLimited() {
+        long[] maxPower = filled(5, MAX_POWER);
+        maxPower[2] = MjAPI.MJ;
+        PowerNetworkSolver solver = new PowerNetworkSolver(line(5), maxPower, filled(5, 0), new int[] { 0 },
+            new int[] { 4 });
+        long[] source = { 5 * MjAPI.MJ };
+        long[] delivered = new long[1];
+        solver.solve(source, new long[] { 5 * MjAPI.MJ }, delivered);
+        Assert.assertEquals(MjAPI.MJ, delivered[0]);
+        Assert.assertEquals(4 * MjAPI.MJ, source[0]);
+    }
+
+    @Test
+    public void testSplitBetweenSinks() {
+        // 0 - 1 - 2, with sinks on 0 and 2 (both ends)
+        PowerNetworkSolver solver = new PowerNetworkSolver(line(3), filled(3, MAX_POWER), filled(3, 0),
+            new int[] { 1 }, new int[] { 0, 2 });
+        long[] source = { 4 * MjAPI.MJ };
+        long[] delivered = new long[2];
+        solver.solve(source, new long[] { 6 * MjAPI.MJ, 2 * MjAPI.MJ }, delivered);
+        Assert.assertEquals(3 * MjAPI.MJ, delivered[0]);
+        Assert.assertEquals(1 * MjAPI.MJ, delivered[1]);
+        Assert.assertEquals(0, source[0]);
+    }
+
+    @Test
+    public void testSharedNode() {
+        // Two sources (0 and 1) that both go through node 2 to get to the sink on node 3
+        int[][] neighbours = { { 2 }, { 2 }, { 0, 1, 3 }, { 2 } };
+        long[] maxPower = filled(4, MAX_POWER);
+        maxPower[2] = 4 * MjAPI.MJ;
+        PowerNetworkSolver solver = new PowerNetworkSolver(neighbours, maxPower, filled(4, 0), new int[] { 0, 1 },
+            new int[] { 3 });
+        long[] source = { 5 * MjAPI.MJ, 5 * MjAPI.MJ };
+        long[] delivered = new long[1];
+        long total = solver.solve(source, new long[] { 20 * MjAPI.MJ }, delivered);
+        Assert.assertEquals(4 * MjAPI.MJ, total);
+        Assert.assertEquals(3 * MjAPI.MJ, source[0]);
+        Assert.assertEquals(3 * MjAPI.MJ, source[1]);
+
+        // The limit shouldn't apply when the demand is lower
+        source = new long[] { 5 * MjAPI.MJ, 5 * MjAPI.MJ };
+        total = solver.solve(source, new long[] { 3 * MjAPI.MJ }, delivered);
+        Assert.assertEquals(3 * MjAPI.MJ, total);
+        Assert.assertEquals(7 * MjAPI.MJ, source[0] + source[1]);
+    }
+
+    @Test
+    public void testSharedLine() {
+        // A line with a source on every node, and a sink on the end: every node carries the power of all of the
+        // sources before it
+        int length = 50;
+        PowerNetworkSolver solver = new PowerNetworkSolver(line(length), filled(length, MAX_POWER),
+            filled(length, 0), new int[] { 0, 10, 20, 30, 40 }, new int[] { length - 1 });
+        long[] source = filled(5, 4 * MjAPI.MJ);
+        long[] delivered = new long[1];
+        long total = solver.solve(source, new long[] { 100 * MjAPI.MJ }, delivered);
+        Assert.assertEquals(MAX_POWER, total);
+        long sent = 0;
+        for (long left : source) {
+            Assert.assertTrue(left >= 0);
+            sent += 4 * MjAPI.MJ - left;
+        }
+        Assert.assertEquals(MAX_POWER, sent);
+    }
+
+    @Test
+    public void testLargePower() {
+        // Big enough that multiplying any two of them overflows a long
+        long huge = Long.MAX_VALUE / 4;
+        PowerNetworkSolver solver = new PowerNetworkSolver(line(3), filled(3, huge), filled(3, MjAPI.MJ / 100),
+            new int[] { 1 }, new int[] { 0, 2 });
+        long[] source = { huge / 2 };
+        long[] delivered = new long[2];
+        long total = solver.solve(source, new long[] { huge, huge }, delivered);
+        Assert.assertTrue(source[0] >= 0);
+        Assert.assertTrue(delivered[0] > 0 && delivered[1] > 0);
+        Assert.assertTrue(total > 0 && total <= huge / 2);
+        Assert.assertEquals(delivered[0] + delivered[1], total);
+    }
+
+    @Test
+    public void testCompareLine() {
+        compareLine(2_500, false);
+    }
+
+    @Test
+    public void testSameLossAsPerPipe() {
+        // Every pipe has some resistance, which neither model should take away from the power that it moves. If the
+        // network applied it then only (1 - 1/32)^20 (about 53%) would arrive
+        int length = 20;
+        int ticks = 400;
+        int countFrom = 200;
+        TestMachine perPipe = runLine(length, false, ticks, countFrom, MjAPI.MJ, MjAPI.MJ);
+        TestMachine network = runLine(length, true, ticks, countFrom, MjAPI.MJ, MjAPI.MJ);
+
+        long expected = (ticks - countFrom) * MjAPI.MJ;
+        Assert.assertEquals(expected, network.counted);
+        // The per pipe model has long since filled up, but can still be a little uneven from tick to tick
+        Assert.assertEquals(expected, perPipe.counted, expected / 100);
+    }
+
+    public static void main(String[] args) {
+        VanillaSetupBaseTester.init();
+        registerPipes();
+        for (int i = 0; i < 5; i++) {
+            compareLine(5_000, true);
+        }
+    }
+
+    /** Runs an engine at one end of a {@link #LINE_LENGTH} line of real {@link PipeFlowPower} pipes, and a machine
+     * that wants 1 MJ/t at the other, first with the per pipe model and then with {@link BCTransportConfig#powerNetworks}
+     * enabled. */
+    private static void compareLine(int ticks, boolean print) {
+        long engineOutput = MjAPI.MJ;
+        long demand = MjAPI.MJ;
+
+        TestMachine perPipe = runLine(LINE_LENGTH, false, ticks, 0, engineOutput, demand);
+        TestMachine network = runLine(LINE_LENGTH, true, ticks, 0, engineOutput, demand);
+
+        Assert.assertTrue("The network should deliver on the first tick that the engine runs",
+            network.firstDeliveryTick <= 2);
+        Assert.assertEquals((ticks - network.firstDeliveryTick) * demand, network.delivered);
+        Assert.assertTrue("The per-pipe model should still deliver something", perPipe.delivered > 0);
+        Assert.assertTrue(perPipe.firstDeliveryTick > LINE_LENGTH);
+
+        if (print) {
+            System.out.println(LINE_LENGTH + " segment line, " + ticks + " ticks:");
+            print("Per pipe", perPipe, ticks);
+            print("Network", network, ticks);
+        }
+    }
+
+    private static void print(String name, TestMachine machine, int ticks) {
+        System.out.println("  " + name + " took " + machine.time + "ųs (" + machine.time * 1000 / ticks
+            + "ns/tick), first power arrived on tick " + machine.firstDeliveryTick + ", delivered "
+            + machine.delivered / MjAPI.MJ + " MJ");
+    }
+
+    /** @param countFrom The first tick to count the power that reaches the machine from, in
+     *            {@link TestMachine#counted}. */
+    private static TestMachine runLine(int length, boolean networks, int ticks, int countFrom, long engineOutput,
+        long demand) {
+        boolean old = BCTransportConfig.powerNetworks;
+        BCTransportConfig.powerNetworks = networks;
+        try {
+            PipeTestWorld world = new PipeTestWorld();
+            TilePipeHolder first = world.placePipe(new BlockPos(0, 64, 0), receiverPipe);
+            for (int i = 1; i < length; i++) {
+                world.placePipe(new BlockPos(i, 64, 0), pipe);
+            }
+            TestMachine machine = new TestMachine(world, demand, countFrom);
+            world.placeTile(new BlockPos(length, 64, 0), machine);
+            PipeFlowPower flow = (PipeFlowPower) first.getPipe().getFlow();
+
+            Stopwatch watch = Stopwatch.createStarted();
+            for (int t = 0; t < ticks; t++) {
+                // Like an engine: push as much as the pipe asks for (if anything), before the pipes tick
+                world.tick(() -> {
+                    IMjReceiver receiver = flow.getReceiver(EnumFacing.WEST);
+                    if (receiver != null) {
+                        long requested = receiver.getPowerRequested();
+                        if (requested > 0) {
+                            receiver.receivePower(Math.min(engineOutput, requested), false);
+                        }
+                    }
+                }, null);
+            }
+            watch.stop();
+            machine.time = watch.elapsed(TimeUnit.MICROSECONDS);
+            return machine;
+        } finally {
+            BCTransportConfig.powerNetworks = old;
+        }
+    }
+
+    /** A machine that always wants the same amount of power every tick. Capabilities aren't registered in tests, so
+     * this returns itself for all of them. */
+    static class TestMachine extends TileEntity implements IMjReceiver {
+        final PipeTestWorld testWorld;
+        final long demand;
+        final int countFrom;
+        long delivered, counted;
+        int firstDeliveryTick = -1;
+        long time;
+
+        TestMachine(PipeTestWorld world, long demand, int countFrom) {
+            this.testWorld = world;
+            this.demand = demand;
+            this.countFrom = countFrom;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getCapability(@Nonnull Capability<T> capability, EnumFacing facing) {
+            return (T) this;
+        }
+
+        @Override
+        public boolean canConnect(@Nonnull IMjConnector other) {
+            return true;
+        }
+
+        @Override
+        public long getPowerRequested() {
+            return demand;
+        }
+
+        @Override
+        public long receivePower(long microJoules, boolean simulate) {
+            if (!simulate && microJoules > 0) {
+                // The world's tick counter has already been increased for this tick
+                int tick = testWorld.ticks - 1;
+                if (firstDeliveryTick == -1) {
+                    firstDeliveryTick = tick;
+                }
+                delivered += microJoules;
+                if (tick >= countFrom) {
+                    counted += microJoules;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean canReceive() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package buildcraft.test.transport.wire;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.minecraft.item.EnumDyeColor;
+import net.minecraft.util.EnumFacing;
+import net.minecraft.util.math.BlockPos;
+
+import buildcraft.api.transport.EnumWirePart;
+import buildcraft.api.transport.WireNode;
+
+import buildcraft.test.VanillaSetupBaseTester;
+import buildcraft.transport.wire.IWireEmitter;
+import buildcraft.transport.wire.WireSystem;
+import buildcraft.transport.wire.WireSystem.WireElement;
+import buildcraft.transport.wire.WorldSavedDataWireSystems;
+
+public class WireSystemIndexTester extends VanillaSetupBaseTester {
+    /** 80 * 80 pipes * 8 wires = 51,200 elements */
+    private static final int SIZE = 80;
+
+    /** A {@link WorldSavedDataWireSystems} that uses maps rather than a real world. Every position with a wire in it is
+     * treated as a pipe that wires can connect through. */
+    static class FakeWireSystems extends WorldSavedDataWireSystems {
+        final Map<BlockPos, Map<EnumWirePart, EnumDyeColor>> wires = new HashMap<>();
+        final Map<WireElement, IWireEmitter> gates = new HashMap<>();
+
+        void setWire(WireElement element, EnumDyeColor colour) {
+            Map<EnumWirePart, EnumDyeColor> map = wires.computeIfAbsent(element.blockPos,
+                p -> new EnumMap<>(EnumWirePart.class));
+            if (colour == null) {
+                map.remove(element.wirePart);
+            } else {
+                map.put(element.wirePart, colour);
+            }
+        }
+
+        @Override
+        protected EnumDyeColor getColorOfPart(WireElement element) {
+            Map<EnumWirePart, EnumDyeColor> map = wires.get(element.blockPos);
+            return map == null ? null : map.get(element.wirePart);
+        }
+
+        @Override
+        protected List<WireElement> getConnectedParts(WireElement element) {
+            WireNode node = new WireNode(element.blockPos, element.wirePart);
+            List<WireElement> list = new ArrayList<>();
+            for (EnumFacing face : EnumFacing.VALUES) {
+                WireNode oNode = node.offset(face);
+                if (oNode.pos == node.pos || wires.containsKey(oNode.pos)) {
+                    list.add(new WireElement(oNode.pos, oNode.part));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        protected IWireEmitter findEmitter(BlockPos pos, EnumFacing side) {
+            return gates.get(new WireElement(pos, side));
+        }
+    }
+
+    static class FakeEmitter implements IWireEmitter {
+        EnumDyeColor emitting;
+
+        @Override
+        public boolean isEmitting(EnumDyeColor colour) {
+            return emitting == colour;
+        }
+
+        @Override
+        public void emitWire(EnumDyeColor colour) {
+            emitting = colour;
+        }
+    }
+
+    private static EnumDyeColor colourAt(int x) {
+        // 8 wide stripes of alternating colours
+        return (x / 8) % 2 == 0 ? EnumDyeColor.RED : EnumDyeColor.BLUE;
+    }
+
+    private static List<WireElement> layout(int size) {
+        List<WireElement> elements = new ArrayList<>();
+        for (int x = 0; x < size; x++) {
+            for (int z = 0; z < size; z++) {
+                BlockPos pos = new BlockPos(x, 64, z);
+                for (EnumWirePart part : EnumWirePart.VALUES) {
+                    elements.add(new WireElement(pos, part));
+                }
+            }
+        }
+        return elements;
+    }
+
+    private static FakeWireSystems build(List<WireElement> elements) {
+        FakeWireSystems systems = new FakeWireSystems();
+        for (WireElement element : elements) {
+            systems.setWire(element, colourAt(element.blockPos.getX()));
+            systems.addPart(element);
+        }
+        return systems;
+    }
+
+    /** Finds every wire system from scratch, in the same way as the old WireSystem.build. */
+    private static List<Set<WireElement>> findAllSystems(FakeWireSystems world) {
+        List<Set<WireElement>> found = new ArrayList<>();
+        Set<WireElement> walked = new HashSet<>();
+        for (Map.Entry<BlockPos, Map<EnumWirePart, EnumDyeColor>> entry : world.wires.entrySet()) {
+            for (EnumWirePart part : entry.getValue().keySet()) {
+                WireElement start = new WireElement(entry.getKey(), part);
+                if (walked.contains(start)) {
+                    continue;
+                }
+                found.add(walk(world, start, walked));
+            }
+        }
+        return found;
+    }
+
+    private static Set<WireElement> walk(FakeWireSystems world, WireElement start, Set<WireElement> walked) {
+        EnumDyeColor colour = world.getColorOfPart(start);
+        Set<WireElement> system = new HashSet<>();
+        ArrayDeque<WireElement> queue = new ArrayDeque<>();
+        queue.add(start);
+        walked.add(start);
+        while (!queue.isEmpty()) {
+            WireElement element = queue.remove();
+            system.add(element);
+            for (WireElement next : world.getConnectedParts(element)) {
+                if (world.getColorOfPart(next) == colour && walked.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return system;
+    }
+
+    private static void assertMatchesRebuild(FakeWireSystems systems) {
+        List<Set<WireElement>> expected = findAllSystems(systems);
+        Assert.assertEquals(expected.size(), systems.wireSystems.size());
+        Map<WireSystem, Boolean> seen = new IdentityHashMap<>();
+        for (Set<WireElement> set : expected) {
+            WireSystem wireSystem = systems.getWireSystemOfPart(set.iterator().next());
+            Assert.assertNotNull(wireSystem);
+            Assert.assertNull("Two separate systems share the same WireSystem!", seen.put(wireSystem, true));
+            Assert.assertEquals(set.size(), wireSystem.getWireCount());
+            for (WireElement element : set) {
+                Assert.assertSame(wireSystem, systems.getWireSystemOfPart(element));
+            }
+        }
+    }
+
+    @Test
+    public void testSplitAndMerge() {
+        // A single line of 10 pipes, of a single colour
+        List<WireElement> line = new ArrayList<>();
+        for (int x = 0; x < 10; x++) {
+            line.add(new WireElement(new BlockPos(x, 0, 0), EnumWirePart.VALUES[0]));
+            line.add(new WireElement(new BlockPos(x, 0, 0), EnumWirePart.VALUES[1]));
+        }
+        FakeWireSystems systems = new FakeWireSystems();
+        for (WireElement element : line) {
+            systems.setWire(element, EnumDyeColor.RED);
+            systems.addPart(element);
+        }
+        assertMatchesRebuild(systems);
+
+        // Cut out the middle pipe
+        for (EnumWirePart part : EnumWirePart.VALUES) {
+            WireElement element = new WireElement(new BlockPos(5, 0, 0), part);
+            systems.setWire(element, null);
+            systems.removePart(element);
+        }
+        systems.wires.remove(new BlockPos(5, 0, 0));
+        assertMatchesRebuild(systems);
+
+        // And put it back
+        for (int i = 0; i < 2; i++) {
+            WireElement element = new WireElement(new BlockPos(5, 0, 0), EnumWirePart.VALUES[i]);
+            systems.setWire(element, EnumDyeColor.RED);
+            systems.addPart(element);
+        }
+        assertMatchesRebuild(systems);
+    }
+
+    @Test
+    public void testEmitters() {
+        FakeWireSystems systems = new FakeWireSystems();
+        BlockPos pos = new BlockPos(0, 0, 0);
+        FakeEmitter gate = new FakeEmitter();
+        WireElement emitter = new WireElement(pos, EnumFacing.UP);
+        systems.gates.put(emitter, gate);
+
+        WireElement red = new WireElement(pos, EnumWirePart.VALUES[0]);
+        systems.setWire(red, EnumDyeColor.RED);
+        systems.addPart(red);
+
+        WireSystem wireSystem = systems.getWireSystemOfPart(red);
+        Assert.assertTrue(wireSystem.hasElement(emitter));
+        Assert.assertEquals(Collections.singletonList(wireSystem), systems.getWireSystemsWithElement(emitter));
+
+        Assert.assertFalse(wireSystem.update(systems));
+        gate.emitWire(EnumDyeColor.RED);
+        Assert.assertTrue(systems.isEmitterEmitting(emitter, EnumDyeColor.RED));
+        Assert.assertTrue(wireSystem.update(systems));
+
+        systems.setWire(red, null);
+        systems.removePart(red);
+        Assert.assertTrue(systems.wireSystems.isEmpty());
+        Assert.assertTrue(systems.getWireSystemsWithElement(emitter).isEmpty());
+    }
+
+    @Test
+    public void testRandomEdits() {
+        runBenchmark(24, 2_000, false);
+    }
+
+    public static void main(String[] args) {
+        init();
+        for (int i = 0; i < 5; i++) {
+            runBenchmark(SIZE, 5_000, true);
+        }
+    }
+
+    private static void runBenchmark(int size, int edits, boolean print) {
+        List<WireElement> elements = layout(size);
+        Stopwatch watch = Stopwatch.createStarted();
+        FakeWireSystems systems = build(elements);
+        watch.stop();
+        long buildTime = watch.elapsed(TimeUnit.MICROSECONDS);
+
+        watch.reset().start();
+        List<Set<WireElement>> rebuilt = findAllSystems(systems);
+        watch.stop();
+        long rebuildTime = watch.elapsed(TimeUnit.MICROSECONDS);
+        assertMatchesRebuild(systems);
+
+        // Remove and re-add random wires. This is what used to rebuild the whole wire system (twice) for every edit.
+        Random rand = new Random(0x3_1E_5);
+        List<WireElement> removed = new ArrayList<>();
+        watch.reset().start();
+        for (int i = 0; i < edits; i++) {
+            if (removed.isEmpty() || rand.nextInt(3) != 0) {
+                WireElement element = elements.get(rand.nextInt(elements.size()));
+                if (systems.getColorOfPart(element) == null) {
+                    continue;
+                }
+                systems.setWire(element, null);
+                systems.removePart(element);
+                removed.add(element);
+            } else {
+                WireElement element = removed.remove(rand.nextInt(removed.size()));
+                systems.setWire(element, colourAt(element.blockPos.getX()));
+                systems.addPart(element);
+            }
+        }
+        watch.stop();
+        long editTime = watch.elapsed(TimeUnit.MICROSECONDS);
+        assertMatchesRebuild(systems);
+
+        if (print) {
+            System.out.println(elements.size() + " wires in " + rebuilt.size() + " systems:");
+            System.out.println("  Incremental build took " + buildTime / 1000 + "ms");
+            System.out.println("  Single full rebuild took " + rebuildTime / 1000 + "ms");
+            System.out.println("  " + edits + " incremental edits took " + editTime / 1000 + "ms ("
+                + editTime * 1000 / edits + "ns/edit)");
+        }
+    }
+}